@@ -0,0 +1,58 @@
+package com.ctrip.framework.apollo.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmarks and writes the results in json, which could be compared across commits, e.g. with the JMH
+ * visualizer. Build with {@code mvn package -pl apollo-benchmark -am -DskipTests}, then run
+ *
+ * <pre>
+ * java -cp apollo-benchmark/target/benchmarks.jar com.ctrip.framework.apollo.benchmark.BenchmarkRunner \
+ *     [--smoke] [--result apollo-benchmark/target/jmh-result.json] [benchmark regexp...]
+ * </pre>
+ *
+ * <p>The smoke mode runs each benchmark for one short iteration in a single fork, which checks in the CI that the
+ * suites still run and records rough numbers. The full mode runs them as annotated, for numbers to compare. Any
+ * benchmark failing fails the run.</p>
+ */
+public final class BenchmarkRunner {
+  private static final String DEFAULT_RESULT = "apollo-benchmark/target/jmh-result.json";
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    boolean smoke = false;
+    String result = DEFAULT_RESULT;
+    ChainedOptionsBuilder options = new OptionsBuilder();
+    for (int i = 0; i < args.length; i++) {
+      if ("--smoke".equals(args[i])) {
+        smoke = true;
+      } else if ("--result".equals(args[i]) && i + 1 < args.length) {
+        result = args[++i];
+      } else {
+        options.include(args[i]);
+      }
+    }
+
+    if (smoke) {
+      options.forks(1)
+          .warmupIterations(1)
+          .warmupTime(TimeValue.milliseconds(200))
+          .measurementIterations(1)
+          .measurementTime(TimeValue.milliseconds(500));
+    }
+
+    new Runner(options
+        .resultFormat(ResultFormatType.JSON)
+        .result(result)
+        .shouldFailOnError(true)
+        .build())
+        .run();
+  }
+}
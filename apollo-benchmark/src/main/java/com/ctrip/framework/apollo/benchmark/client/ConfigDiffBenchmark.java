@@ -0,0 +1,123 @@
+package com.ctrip.framework.apollo.benchmark.client;
+
+import com.ctrip.framework.apollo.enums.PropertyChangeType;
+import com.ctrip.framework.apollo.internals.ConfigDiff;
+import com.ctrip.framework.apollo.model.ConfigChange;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diffs two versions of a large namespace with {@link ConfigDiff} against the set views based calculation it replaced.
+ * Run with {@code -prof gc} to see the allocation per diff ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class ConfigDiffBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class DiffState {
+    @Param({"50000"})
+    public int keys;
+
+    //the keys modified, added and deleted in the new version
+    @Param({"10", "5000"})
+    public int changes;
+
+    Properties previous;
+    Properties current;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      previous = new Properties();
+      current = new Properties();
+      for (int i = 0; i < keys; i++) {
+        String key = "some.config.key" + i;
+        previous.setProperty(key, "someConfigValue" + i);
+        current.setProperty(key, "someConfigValue" + i);
+      }
+      for (int i = 0; i < changes; i++) {
+        int index = i * (keys / changes);
+        switch (i % 3) {
+          case 0:
+            current.setProperty("some.config.key" + index, "anotherConfigValue" + index);
+            break;
+          case 1:
+            current.remove("some.config.key" + index);
+            break;
+          default:
+            current.setProperty("another.config.key" + index, "anotherConfigValue" + index);
+            break;
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public List<ConfigChange> hashDiff(DiffState state) {
+    return ConfigDiff.diff("application", state.previous, state.current);
+  }
+
+  @Benchmark
+  public List<ConfigChange> legacyDiff(DiffState state) {
+    return legacyDiff("application", state.previous, state.current);
+  }
+
+  /**
+   * The previous AbstractConfig#calcPropertyChanges.
+   */
+  private static List<ConfigChange> legacyDiff(String namespace, Properties previous, Properties current) {
+    Set<String> previousKeys = previous.stringPropertyNames();
+    Set<String> currentKeys = current.stringPropertyNames();
+
+    Set<String> commonKeys = Sets.intersection(previousKeys, currentKeys);
+    Set<String> newKeys = Sets.difference(currentKeys, commonKeys);
+    Set<String> removedKeys = Sets.difference(previousKeys, commonKeys);
+
+    List<ConfigChange> changes = Lists.newArrayList();
+
+    for (String newKey : newKeys) {
+      changes.add(new ConfigChange(namespace, newKey, null, current.getProperty(newKey),
+          PropertyChangeType.ADDED));
+    }
+
+    for (String removedKey : removedKeys) {
+      changes.add(new ConfigChange(namespace, removedKey, previous.getProperty(removedKey), null,
+          PropertyChangeType.DELETED));
+    }
+
+    for (String commonKey : commonKeys) {
+      String previousValue = previous.getProperty(commonKey);
+      String currentValue = current.getProperty(commonKey);
+      if (Objects.equal(previousValue, currentValue)) {
+        continue;
+      }
+      changes.add(new ConfigChange(namespace, commonKey, previousValue, currentValue,
+          PropertyChangeType.MODIFIED));
+    }
+
+    return changes;
+  }
+}
@@ -0,0 +1,115 @@
+package com.ctrip.framework.apollo.benchmark.client;
+
+import com.ctrip.framework.apollo.Config;
+import com.ctrip.framework.apollo.benchmark.client.ConfigReadBenchmark.StaticConfigRepository;
+import com.ctrip.framework.apollo.internals.DefaultConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads each type of property from a {@link DefaultConfig}, to catch the regressions of the typed getters of
+ * AbstractConfig, including the lookup of a missing key which falls through to the environment.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ConfigGetterBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class ConfigState {
+    @Param({"100", "10000"})
+    public int keys;
+
+    Config config;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      Properties properties = new Properties();
+      for (int i = 0; i < keys; i++) {
+        properties.setProperty("some.string.key" + i, "someValue" + i);
+        properties.setProperty("some.int.key" + i, String.valueOf(i));
+        properties.setProperty("some.long.key" + i, String.valueOf(Integer.MAX_VALUE + (long) i));
+        properties.setProperty("some.double.key" + i, i + ".5");
+        properties.setProperty("some.boolean.key" + i, String.valueOf(i % 2 == 0));
+        properties.setProperty("some.array.key" + i, "a" + i + ",b" + i + ",c" + i);
+        properties.setProperty("some.date.key" + i, "2021-01-01 00:00:00");
+        properties.setProperty("some.duration.key" + i, i + "s");
+        properties.setProperty("some.enum.key" + i, TimeUnit.values()[i % TimeUnit.values().length].name());
+      }
+      config = new DefaultConfig("benchmark", new StaticConfigRepository(properties));
+    }
+
+    int randomIndex() {
+      return ThreadLocalRandom.current().nextInt(keys);
+    }
+  }
+
+  @Benchmark
+  public String getProperty(ConfigState state) {
+    return state.config.getProperty("some.string.key" + state.randomIndex(), null);
+  }
+
+  @Benchmark
+  public String getMissingProperty(ConfigState state) {
+    return state.config.getProperty("some.missing.key" + state.randomIndex(), null);
+  }
+
+  @Benchmark
+  public Integer getIntProperty(ConfigState state) {
+    return state.config.getIntProperty("some.int.key" + state.randomIndex(), -1);
+  }
+
+  @Benchmark
+  public Long getLongProperty(ConfigState state) {
+    return state.config.getLongProperty("some.long.key" + state.randomIndex(), -1L);
+  }
+
+  @Benchmark
+  public Double getDoubleProperty(ConfigState state) {
+    return state.config.getDoubleProperty("some.double.key" + state.randomIndex(), -1D);
+  }
+
+  @Benchmark
+  public Boolean getBooleanProperty(ConfigState state) {
+    return state.config.getBooleanProperty("some.boolean.key" + state.randomIndex(), false);
+  }
+
+  @Benchmark
+  public String[] getArrayProperty(ConfigState state) {
+    return state.config.getArrayProperty("some.array.key" + state.randomIndex(), ",", null);
+  }
+
+  @Benchmark
+  public Date getDateProperty(ConfigState state) {
+    return state.config.getDateProperty("some.date.key" + state.randomIndex(), null);
+  }
+
+  @Benchmark
+  public long getDurationProperty(ConfigState state) {
+    return state.config.getDurationProperty("some.duration.key" + state.randomIndex(), -1);
+  }
+
+  @Benchmark
+  public TimeUnit getEnumProperty(ConfigState state) {
+    return state.config.getEnumProperty("some.enum.key" + state.randomIndex(), TimeUnit.class, null);
+  }
+}
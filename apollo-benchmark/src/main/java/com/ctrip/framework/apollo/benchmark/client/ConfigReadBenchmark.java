@@ -0,0 +1,209 @@
+package com.ctrip.framework.apollo.benchmark.client;
+
+import com.ctrip.framework.apollo.Config;
+import com.ctrip.framework.apollo.enums.ConfigSourceType;
+import com.ctrip.framework.apollo.internals.ConfigRepository;
+import com.ctrip.framework.apollo.internals.DefaultConfig;
+import com.ctrip.framework.apollo.internals.RepositoryChangeListener;
+import com.ctrip.framework.apollo.util.function.Functions;
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compares the reads of {@link DefaultConfig}, served from the immutable config snapshot, against the lookup chain
+ * and the Guava typed caches of the getters it replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ConfigReadBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class ConfigState {
+    @Param({"snapshot", "legacy"})
+    public String implementation;
+
+    @Param({"1000"})
+    public int keys;
+
+    Reader reader;
+    String[] stringKeys;
+    String[] intKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      Properties properties = new Properties();
+      stringKeys = new String[keys];
+      intKeys = new String[keys];
+      for (int i = 0; i < keys; i++) {
+        stringKeys[i] = "some.string.key" + i;
+        intKeys[i] = "some.int.key" + i;
+        properties.setProperty(stringKeys[i], "someValue" + i);
+        properties.setProperty(intKeys[i], String.valueOf(i));
+      }
+
+      reader = "snapshot".equals(implementation) ? new SnapshotReader(properties) : new LegacyReader(properties);
+    }
+
+    String randomStringKey() {
+      return stringKeys[ThreadLocalRandom.current().nextInt(stringKeys.length)];
+    }
+
+    String randomIntKey() {
+      return intKeys[ThreadLocalRandom.current().nextInt(intKeys.length)];
+    }
+  }
+
+  @Benchmark
+  public String getProperty(ConfigState state) {
+    return state.reader.getProperty(state.randomStringKey());
+  }
+
+  @Benchmark
+  public Integer getIntProperty(ConfigState state) {
+    return state.reader.getIntProperty(state.randomIntKey());
+  }
+
+  interface Reader {
+    String getProperty(String key);
+
+    Integer getIntProperty(String key);
+  }
+
+  static class SnapshotReader implements Reader {
+    private final Config config;
+
+    SnapshotReader(Properties properties) {
+      config = new DefaultConfig("benchmark", new StaticConfigRepository(properties));
+    }
+
+    @Override
+    public String getProperty(String key) {
+      return config.getProperty(key, null);
+    }
+
+    @Override
+    public Integer getIntProperty(String key) {
+      return config.getIntProperty(key, -1);
+    }
+  }
+
+  /**
+   * The previous read path of DefaultConfig and AbstractConfig.
+   */
+  static class LegacyReader implements Reader {
+    private final AtomicReference<Properties> configProperties;
+    private final Properties resourceProperties = null;
+    private final AtomicLong configVersion = new AtomicLong();
+    private volatile Cache<String, Integer> integerCache;
+
+    LegacyReader(Properties properties) {
+      configProperties = new AtomicReference<>(properties);
+    }
+
+    @Override
+    public String getProperty(String key) {
+      String value = System.getProperty(key);
+      if (value == null && configProperties.get() != null) {
+        value = configProperties.get().getProperty(key);
+      }
+      if (value == null) {
+        value = System.getenv(key);
+      }
+      if (value == null && resourceProperties != null) {
+        value = resourceProperties.getProperty(key);
+      }
+      return value;
+    }
+
+    @Override
+    public Integer getIntProperty(String key) {
+      if (integerCache == null) {
+        synchronized (this) {
+          if (integerCache == null) {
+            integerCache = CacheBuilder.newBuilder().maximumSize(500).expireAfterAccess(1, TimeUnit.MINUTES).build();
+          }
+        }
+      }
+      return getValueFromCache(key, Functions.TO_INT_FUNCTION, integerCache, -1);
+    }
+
+    private <T> T getValueFromCache(String key, Function<String, T> parser, Cache<String, T> cache, T defaultValue) {
+      T result = cache.getIfPresent(key);
+      if (result != null) {
+        return result;
+      }
+
+      long currentConfigVersion = configVersion.get();
+      String value = getProperty(key);
+      if (value != null) {
+        result = parser.apply(value);
+        if (result != null) {
+          synchronized (this) {
+            if (configVersion.get() == currentConfigVersion) {
+              cache.put(key, result);
+            }
+          }
+          return result;
+        }
+      }
+      return defaultValue;
+    }
+  }
+
+  static class StaticConfigRepository implements ConfigRepository {
+    private final Properties properties;
+
+    StaticConfigRepository(Properties properties) {
+      this.properties = properties;
+    }
+
+    @Override
+    public Properties getConfig() {
+      return properties;
+    }
+
+    @Override
+    public void setUpstreamRepository(ConfigRepository upstreamConfigRepository) {
+      //no upstream
+    }
+
+    @Override
+    public void addChangeListener(RepositoryChangeListener listener) {
+      //never changes
+    }
+
+    @Override
+    public void removeChangeListener(RepositoryChangeListener listener) {
+      //never changes
+    }
+
+    @Override
+    public ConfigSourceType getSourceType() {
+      return ConfigSourceType.LOCAL;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package com.ctrip.framework.apollo.benchmark.client;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.util.http.DefaultHttpTransport;
+import com.ctrip.framework.apollo.util.http.HttpRequest;
+import com.google.common.base.Function;
+import com.google.common.io.CharStreams;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fetches a config from a local stub server with {@link DefaultHttpTransport}, which negotiates gzip and parses the
+ * response while reading it, against the previous fetch of HttpUtil, which read the whole response into a string
+ * before parsing it. Run with {@code -prof gc} to see the allocation per fetch ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class HttpTransportBenchmark {
+  private static final Gson GSON = new Gson();
+
+  @State(Scope.Benchmark)
+  public static class ServerState {
+    @Param({"streaming", "legacy"})
+    public String implementation;
+
+    @Param({"100", "5000"})
+    public int keys;
+
+    HttpServer server;
+    ExecutorService serverExecutor;
+    String url;
+    Fetcher fetcher;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      Map<String, String> configurations = new HashMap<>();
+      for (int i = 0; i < keys; i++) {
+        configurations.put("some.config.key" + i, "someConfigValue" + i);
+      }
+      ApolloConfig config = new ApolloConfig("someAppId", "default", "application", "someReleaseKey");
+      config.setConfigurations(configurations);
+      final byte[] plain = GSON.toJson(config).getBytes(StandardCharsets.UTF_8);
+      ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+      try (OutputStream out = new GZIPOutputStream(gzipped)) {
+        out.write(plain);
+      }
+      final byte[] compressed = gzipped.toByteArray();
+
+      //the headers and the body are written separately, avoid the delayed ack of the second write
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+      server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+      serverExecutor = Executors.newFixedThreadPool(4);
+      server.setExecutor(serverExecutor);
+      server.createContext("/configs", new HttpHandler() {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+          String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+          byte[] body = plain;
+          if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            body = compressed;
+          }
+          exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+          exchange.sendResponseHeaders(200, body.length);
+          exchange.getResponseBody().write(body);
+          exchange.close();
+        }
+      });
+      server.start();
+      url = String.format("http://127.0.0.1:%d/configs", server.getAddress().getPort());
+
+      fetcher = "streaming".equals(implementation) ? new StreamingFetcher() : new LegacyFetcher();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      server.stop(0);
+      serverExecutor.shutdownNow();
+    }
+  }
+
+  @Benchmark
+  public ApolloConfig fetch(ServerState state) throws IOException {
+    HttpRequest request = new HttpRequest(state.url);
+    request.setConnectTimeout(1000);
+    request.setReadTimeout(5000);
+    return state.fetcher.fetch(request);
+  }
+
+  interface Fetcher {
+    ApolloConfig fetch(HttpRequest request) throws IOException;
+  }
+
+  static class StreamingFetcher implements Fetcher {
+    private final DefaultHttpTransport transport = new DefaultHttpTransport();
+    private final Function<Reader, ApolloConfig> reader = new Function<Reader, ApolloConfig>() {
+      @Override
+      public ApolloConfig apply(Reader input) {
+        return GSON.fromJson(input, ApolloConfig.class);
+      }
+    };
+
+    @Override
+    public ApolloConfig fetch(HttpRequest request) {
+      return transport.execute(request, "GET", null, reader).getBody();
+    }
+  }
+
+  /**
+   * The previous fetch of HttpUtil.
+   */
+  static class LegacyFetcher implements Fetcher {
+    @Override
+    public ApolloConfig fetch(HttpRequest request) throws IOException {
+      HttpURLConnection conn = (HttpURLConnection) new URL(request.getUrl()).openConnection();
+      conn.setRequestMethod("GET");
+      conn.setConnectTimeout(request.getConnectTimeout());
+      conn.setReadTimeout(request.getReadTimeout());
+      conn.connect();
+      conn.getResponseCode();
+      try (InputStreamReader isr = new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8)) {
+        String response = CharStreams.toString(isr);
+        return GSON.fromJson(response, ApolloConfig.class);
+      }
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.ctrip.framework.apollo.benchmark.client;
+
+import com.ctrip.framework.apollo.internals.BinaryLocalCacheFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the local cache file of a namespace, the binary format against the properties format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class LocalCacheFileBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class CacheFileState {
+    @Param({"100", "5000"})
+    public int keys;
+
+    File baseDir;
+    File propertiesFile;
+    File binaryFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      Properties properties = new Properties();
+      for (int i = 0; i < keys; i++) {
+        properties.setProperty("some.config.key" + i, "someConfigValue" + i);
+      }
+      baseDir = Files.createTempDirectory("LocalCacheFileBenchmark").toFile();
+      propertiesFile = new File(baseDir, "someApp+default+application.properties");
+      binaryFile = new File(baseDir, "someApp+default+application.bin");
+      try (OutputStream out = new FileOutputStream(propertiesFile)) {
+        properties.store(out, null);
+      }
+      BinaryLocalCacheFile.write(binaryFile, properties, "someReleaseKey");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      propertiesFile.delete();
+      binaryFile.delete();
+      baseDir.delete();
+    }
+  }
+
+  @Benchmark
+  public Properties loadProperties(CacheFileState state) throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = new FileInputStream(state.propertiesFile)) {
+      properties.load(in);
+    }
+    return properties;
+  }
+
+  @Benchmark
+  public Properties loadBinary(CacheFileState state) throws IOException {
+    return BinaryLocalCacheFile.read(state.binaryFile, true).fill(new Properties());
+  }
+
+  @Benchmark
+  public String openBinaryAndGetReleaseKey(CacheFileState state) throws IOException {
+    return BinaryLocalCacheFile.read(state.binaryFile, true).getReleaseKey();
+  }
+}
@@ -0,0 +1,64 @@
+package com.ctrip.framework.apollo.benchmark.client;
+
+import com.ctrip.framework.apollo.util.yaml.YamlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transforms a yaml namespace to properties with {@link YamlParser}, as done on each change of a yaml namespace.
+ * The document nests the keys in sections with lists, like the application.yml of a Spring Boot application.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class YamlParserBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class YamlState {
+    @Param({"100", "5000"})
+    public int keys;
+
+    YamlParser yamlParser;
+    String yamlContent;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      yamlParser = new YamlParser();
+      StringBuilder builder = new StringBuilder();
+      int keysPerSection = 10;
+      for (int section = 0; section * keysPerSection < keys; section++) {
+        builder.append("section").append(section).append(":\n");
+        builder.append("  nested:\n");
+        for (int i = 0; i < keysPerSection - 2; i++) {
+          builder.append("    key").append(i).append(": someValue").append(section).append('-').append(i).append('\n');
+        }
+        builder.append("  list:\n");
+        builder.append("    - someItem").append(section).append('\n');
+        builder.append("    - anotherItem").append(section).append('\n');
+      }
+      yamlContent = builder.toString();
+    }
+  }
+
+  @Benchmark
+  public Properties yamlToProperties(YamlState state) {
+    return state.yamlParser.yamlToProperties(state.yamlContent);
+  }
+}
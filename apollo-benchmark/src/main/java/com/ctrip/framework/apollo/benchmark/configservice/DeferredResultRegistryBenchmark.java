@@ -0,0 +1,161 @@
+package com.ctrip.framework.apollo.benchmark.configservice;
+
+import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultRegistry;
+import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.collect.TreeMultimap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link DeferredResultRegistry} used by NotificationControllerV2 against the synchronized case
+ * insensitive TreeMultimap it replaced, for the register/unregister cycle of a long poll and the fan out of a
+ * release message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class DeferredResultRegistryBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class RegistryState {
+    @Param({"registry", "multimap"})
+    public String implementation;
+
+    @Param({"1000"})
+    public int watchKeys;
+
+    @Param({"100000"})
+    public int parkedClients;
+
+    Registry registry;
+    String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      registry = "registry".equals(implementation) ? new ConcurrentMapRegistry() : new MultimapRegistry();
+      keys = new String[watchKeys];
+      for (int i = 0; i < watchKeys; i++) {
+        keys[i] = "someAppId" + i + "+default+application";
+      }
+      //every client watches its own app's key plus the first key as a public namespace
+      for (int i = 0; i < parkedClients; i++) {
+        registry.register(Sets.newHashSet(keys[i % watchKeys], keys[0]), new DeferredResultWrapper(60000));
+      }
+    }
+
+    String randomKey() {
+      return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ClientState {
+    DeferredResultWrapper wrapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      wrapper = new DeferredResultWrapper(60000);
+    }
+  }
+
+  @Benchmark
+  public DeferredResultWrapper registerAndUnregister(RegistryState state, ClientState client) {
+    Set<String> watchedKeys = Sets.newHashSet(state.randomKey(), state.keys[0]);
+    state.registry.register(watchedKeys, client.wrapper);
+    state.registry.unregister(watchedKeys, client.wrapper);
+    return client.wrapper;
+  }
+
+  @Benchmark
+  public List<DeferredResultWrapper> fanOutPrivateNamespace(RegistryState state) {
+    return state.registry.get(state.randomKey());
+  }
+
+  @Benchmark
+  @Threads(1)
+  public List<DeferredResultWrapper> fanOutPublicNamespace(RegistryState state) {
+    return state.registry.get(state.keys[0]);
+  }
+
+  interface Registry {
+    void register(Collection<String> watchKeys, DeferredResultWrapper wrapper);
+
+    void unregister(Collection<String> watchKeys, DeferredResultWrapper wrapper);
+
+    List<DeferredResultWrapper> get(String watchKey);
+  }
+
+  static class ConcurrentMapRegistry implements Registry {
+    private final DeferredResultRegistry<DeferredResultWrapper> delegate = new DeferredResultRegistry<>();
+
+    @Override
+    public void register(Collection<String> watchKeys, DeferredResultWrapper wrapper) {
+      delegate.register(watchKeys, wrapper);
+    }
+
+    @Override
+    public void unregister(Collection<String> watchKeys, DeferredResultWrapper wrapper) {
+      delegate.unregister(watchKeys, wrapper);
+    }
+
+    @Override
+    public List<DeferredResultWrapper> get(String watchKey) {
+      return delegate.get(watchKey);
+    }
+  }
+
+  /**
+   * The previous implementation of NotificationControllerV2.
+   */
+  static class MultimapRegistry implements Registry {
+    private final Multimap<String, DeferredResultWrapper> deferredResults =
+        Multimaps.synchronizedSetMultimap(TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
+
+    @Override
+    public void register(Collection<String> watchKeys, DeferredResultWrapper wrapper) {
+      for (String key : watchKeys) {
+        deferredResults.put(key, wrapper);
+      }
+    }
+
+    @Override
+    public void unregister(Collection<String> watchKeys, DeferredResultWrapper wrapper) {
+      for (String key : watchKeys) {
+        deferredResults.remove(key, wrapper);
+      }
+    }
+
+    @Override
+    public List<DeferredResultWrapper> get(String watchKey) {
+      if (!deferredResults.containsKey(watchKey)) {
+        return Lists.newArrayList();
+      }
+      return Lists.newArrayList(deferredResults.get(watchKey));
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.ctrip.framework.apollo.benchmark.configservice;
+
+import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Looks up the app namespaces from maps filled by the benchmark, in place of the caches scanned from the database.
+ */
+class InMemoryAppNamespaceService extends AppNamespaceServiceWithCache {
+  private final Map<String, AppNamespace> appNamespaces = Maps.newHashMap();
+  private final Map<String, AppNamespace> publicAppNamespaces = Maps.newHashMap();
+
+  InMemoryAppNamespaceService() {
+    super(null, null);
+  }
+
+  void add(String appId, String namespaceName, boolean isPublic) {
+    AppNamespace appNamespace = new AppNamespace();
+    appNamespace.setAppId(appId);
+    appNamespace.setName(namespaceName);
+    appNamespace.setPublic(isPublic);
+    appNamespaces.put(appId + "+" + namespaceName, appNamespace);
+    if (isPublic) {
+      publicAppNamespaces.put(namespaceName, appNamespace);
+    }
+  }
+
+  @Override
+  public AppNamespace findByAppIdAndNamespace(String appId, String namespaceName) {
+    return appNamespaces.get(appId + "+" + namespaceName);
+  }
+
+  @Override
+  public List<AppNamespace> findByAppIdAndNamespaces(String appId, Set<String> namespaceNames) {
+    List<AppNamespace> result = Lists.newArrayList();
+    for (String namespaceName : namespaceNames) {
+      AppNamespace appNamespace = appNamespaces.get(appId + "+" + namespaceName);
+      if (appNamespace != null) {
+        result.add(appNamespace);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public AppNamespace findPublicNamespaceByName(String namespaceName) {
+    return publicAppNamespaces.get(namespaceName);
+  }
+
+  @Override
+  public List<AppNamespace> findPublicNamespacesByNames(Set<String> namespaceNames) {
+    List<AppNamespace> result = Lists.newArrayList();
+    for (String namespaceName : namespaceNames) {
+      AppNamespace appNamespace = publicAppNamespaces.get(namespaceName);
+      if (appNamespace != null) {
+        result.add(appNamespace);
+      }
+    }
+    return result;
+  }
+}
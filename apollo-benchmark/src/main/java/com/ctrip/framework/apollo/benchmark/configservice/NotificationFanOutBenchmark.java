@@ -0,0 +1,158 @@
+package com.ctrip.framework.apollo.benchmark.configservice;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
+import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
+import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
+import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notifies the long polling clients of a public namespace released, with
+ * {@link NotificationControllerV2#handleMessage}. The clients are parked by
+ * {@link NotificationControllerV2#pollNotification} before each iteration, and the notification batch is large enough
+ * to notify them all in the call instead of the async fan out.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class NotificationFanOutBenchmark {
+  private static final String PUBLIC_APP_ID = "somePublicAppId";
+  private static final String PUBLIC_NAMESPACE = "somePublicNamespace";
+
+  @State(Scope.Benchmark)
+  public static class ControllerState {
+    @Param({"1000", "10000"})
+    public int clients;
+
+    NotificationControllerV2 controller;
+    ReleaseMessage releaseMessage;
+    private WatchKeysUtil watchKeysUtil;
+    private NamespaceUtil namespaceUtil;
+    private String notifications;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      InMemoryAppNamespaceService appNamespaceService = new InMemoryAppNamespaceService();
+      appNamespaceService.add(PUBLIC_APP_ID, PUBLIC_NAMESPACE, true);
+      watchKeysUtil = new WatchKeysUtil(appNamespaceService);
+      namespaceUtil = new NamespaceUtil(appNamespaceService);
+      notifications = String.format(
+          "[{\"namespaceName\":\"%s\",\"notificationId\":-1},{\"namespaceName\":\"%s\",\"notificationId\":-1}]",
+          ConfigConsts.NAMESPACE_APPLICATION, PUBLIC_NAMESPACE);
+      releaseMessage = new ReleaseMessage(PUBLIC_APP_ID + "+" + ConfigConsts.CLUSTER_NAME_DEFAULT + "+"
+          + PUBLIC_NAMESPACE);
+      releaseMessage.setId(1);
+    }
+
+    /**
+     * The clients notified stay registered without a servlet container to complete them, so each iteration parks new
+     * clients on a new controller.
+     */
+    @Setup(Level.Iteration)
+    public void parkClients() {
+      controller = new NotificationControllerV2(watchKeysUtil, new EmptyReleaseMessageService(),
+          new NoOpEntityManagerUtil(), namespaceUtil, new Gson(), new StaticBizConfig());
+      for (int i = 0; i < clients; i++) {
+        controller.pollNotification("someAppId" + i, ConfigConsts.CLUSTER_NAME_DEFAULT, notifications, null, null,
+            null);
+      }
+    }
+  }
+
+  @Benchmark
+  public NotificationControllerV2 handleMessage(ControllerState state) {
+    state.controller.handleMessage(state.releaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+    return state.controller;
+  }
+
+  static class StaticBizConfig extends BizConfig {
+    StaticBizConfig() {
+      super(null);
+    }
+
+    @Override
+    public long longPollingTimeoutInMilli() {
+      return 60000;
+    }
+
+    @Override
+    public long notificationStreamHeartbeatIntervalInMilli() {
+      return 30000;
+    }
+
+    @Override
+    public int notificationStreamSendThreads() {
+      return 1;
+    }
+
+    @Override
+    public int notificationStreamSendQueueSize() {
+      return 1;
+    }
+
+    @Override
+    public int releaseMessageNotificationBatch() {
+      return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int releaseMessageNotificationBatchIntervalInMilli() {
+      return 0;
+    }
+
+    @Override
+    public int releaseMessageNotificationFanOutThreads() {
+      return 1;
+    }
+
+    @Override
+    public int releaseMessageNotificationQps() {
+      return Integer.MAX_VALUE;
+    }
+  }
+
+  /**
+   * No release message since the clients started polling, so they are parked.
+   */
+  static class EmptyReleaseMessageService extends ReleaseMessageServiceWithCache {
+    EmptyReleaseMessageService() {
+      super(null, null);
+    }
+
+    @Override
+    public List<ReleaseMessage> findLatestReleaseMessagesGroupByMessages(Set<String> messages) {
+      return Collections.emptyList();
+    }
+  }
+
+  static class NoOpEntityManagerUtil extends EntityManagerUtil {
+    @Override
+    public void closeEntityManager() {
+      //no entity manager
+    }
+  }
+}
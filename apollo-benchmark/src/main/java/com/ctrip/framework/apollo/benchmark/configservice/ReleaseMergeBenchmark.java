@@ -0,0 +1,74 @@
+package com.ctrip.framework.apollo.benchmark.configservice;
+
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.configservice.util.ReleaseConfigurationsMerger;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the configurations of the releases loaded for a config query with {@link ReleaseConfigurationsMerger}, which
+ * parses the json of each release. Two releases are the release of a public namespace overridden by the release of the
+ * app.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ReleaseMergeBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class ReleaseState {
+    @Param({"1", "2"})
+    public int releases;
+
+    @Param({"100", "5000"})
+    public int keys;
+
+    ReleaseConfigurationsMerger releaseConfigurationsMerger;
+    List<Release> releaseList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      Gson gson = new Gson();
+      releaseConfigurationsMerger = new ReleaseConfigurationsMerger(gson);
+      releaseList = Lists.newArrayList();
+      //the release in lower index overrides a tenth of the keys of the one in higher index
+      for (int i = 0; i < releases; i++) {
+        Map<String, String> configurations = Maps.newLinkedHashMap();
+        int step = i == releases - 1 ? 1 : 10;
+        for (int j = 0; j < keys; j += step) {
+          configurations.put("some.config.key" + j, "someConfigValue" + i + "-" + j);
+        }
+        Release release = new Release();
+        release.setReleaseKey("someReleaseKey" + i);
+        release.setConfigurations(gson.toJson(configurations));
+        releaseList.add(release);
+      }
+    }
+  }
+
+  @Benchmark
+  public Map<String, String> mergeReleaseConfigurations(ReleaseState state) {
+    return state.releaseConfigurationsMerger.merge(state.releaseList);
+  }
+}
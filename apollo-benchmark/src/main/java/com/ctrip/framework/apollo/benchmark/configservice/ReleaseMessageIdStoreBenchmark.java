@@ -0,0 +1,159 @@
+package com.ctrip.framework.apollo.benchmark.configservice;
+
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.configservice.util.ReleaseMessageIdStore;
+import com.google.common.collect.Maps;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link ReleaseMessageIdStore} used by ReleaseMessageServiceWithCache against the map of release message
+ * entities it replaced, for the lookups of the notification controllers and the update of a release message.
+ *
+ * <p>The retained heap of each implementation is reported by {@link #populate} as the footprint counters, the watch
+ * key strings are shared by both implementations and excluded.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@Threads(8)
+public class ReleaseMessageIdStoreBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class StoreState {
+    @Param({"store", "map"})
+    public String implementation;
+
+    @Param({"1000000"})
+    public int watchKeys;
+
+    Store store;
+    String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      keys = new String[watchKeys];
+      for (int i = 0; i < watchKeys; i++) {
+        keys[i] = "someAppId" + i + "+default+application";
+      }
+
+      store = populateStore();
+    }
+
+    Store populateStore() {
+      Store store = "store".equals(implementation) ? new IdStore() : new EntityMapStore();
+      for (int i = 0; i < keys.length; i++) {
+        store.update(keys[i], i + 1);
+      }
+      return store;
+    }
+
+    String randomKey() {
+      return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+  }
+
+  /**
+   * The retained heap of the store populated by {@link #populate}, reported along with its score.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+    public long footprintBytes;
+    public double footprintBytesPerKey;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 0)
+  @Measurement(iterations = 1)
+  @Threads(1)
+  public Store populate(StoreState state, Footprint footprint) {
+    long before = usedHeap();
+    Store store = state.populateStore();
+    footprint.footprintBytes = usedHeap() - before;
+    footprint.footprintBytesPerKey = (double) footprint.footprintBytes / state.keys.length;
+    return store;
+  }
+
+  @Benchmark
+  public long lookup(StoreState state) {
+    return state.store.get(state.randomKey());
+  }
+
+  @Benchmark
+  public boolean update(StoreState state) {
+    return state.store.update(state.randomKey(), ThreadLocalRandom.current().nextLong(Integer.MAX_VALUE));
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  interface Store {
+    boolean update(String key, long id);
+
+    long get(String key);
+  }
+
+  static class IdStore implements Store {
+    private final ReleaseMessageIdStore delegate = new ReleaseMessageIdStore();
+
+    @Override
+    public boolean update(String key, long id) {
+      return delegate.updateIfGreater(key, id);
+    }
+
+    @Override
+    public long get(String key) {
+      return delegate.get(key);
+    }
+  }
+
+  /**
+   * The previous implementation of ReleaseMessageServiceWithCache.
+   */
+  static class EntityMapStore implements Store {
+    private final ConcurrentMap<String, ReleaseMessage> releaseMessageCache = Maps.newConcurrentMap();
+
+    @Override
+    public synchronized boolean update(String key, long id) {
+      ReleaseMessage old = releaseMessageCache.get(key);
+      if (old == null || id > old.getId()) {
+        ReleaseMessage releaseMessage = new ReleaseMessage(key);
+        releaseMessage.setId(id);
+        releaseMessageCache.put(key, releaseMessage);
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public long get(String key) {
+      ReleaseMessage releaseMessage = releaseMessageCache.get(key);
+      return releaseMessage == null ? ReleaseMessageIdStore.ABSENT : releaseMessage.getId();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.ctrip.framework.apollo.benchmark.configservice;
+
+import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assembles the watch keys of a long polling request with {@link WatchKeysUtil#assembleAllWatchKeys}, for a client
+ * watching its own namespaces and as many public namespaces, in a cluster and a data center.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class WatchKeysBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class WatchKeysState {
+    //half of them public namespaces of another app
+    @Param({"2", "20"})
+    public int namespaces;
+
+    WatchKeysUtil watchKeysUtil;
+    Set<String> namespaceNames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      InMemoryAppNamespaceService appNamespaceService = new InMemoryAppNamespaceService();
+      namespaceNames = Sets.newHashSet();
+      for (int i = 0; i < namespaces; i++) {
+        String namespaceName = "someNamespace" + i;
+        namespaceNames.add(namespaceName);
+        if (i % 2 == 0) {
+          appNamespaceService.add("someAppId", namespaceName, false);
+        } else {
+          appNamespaceService.add("somePublicAppId", namespaceName, true);
+        }
+      }
+      watchKeysUtil = new WatchKeysUtil(appNamespaceService);
+    }
+  }
+
+  @Benchmark
+  public Multimap<String, String> assembleAllWatchKeys(WatchKeysState state) {
+    return state.watchKeysUtil.assembleAllWatchKeys("someAppId", "someCluster", state.namespaceNames,
+        "someDataCenter", null);
+  }
+}
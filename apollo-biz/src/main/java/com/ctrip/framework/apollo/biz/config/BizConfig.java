@@ -26,9 +26,21 @@ public class BizConfig extends RefreshableConfig {
   private static final int DEFAULT_ACCESSKEY_CACHE_REBUILD_INTERVAL = 60; //60s
   private static final int DEFAULT_RELEASE_MESSAGE_CACHE_SCAN_INTERVAL = 1; //1s
   private static final int DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_IN_MS = 1000; //1000ms
+  private static final int DEFAULT_RELEASE_MESSAGE_PUSH_FALLBACK_SCAN_INTERVAL_IN_MS = 10000; //10s
+  private static final int DEFAULT_RELEASE_MESSAGE_PUSH_TIMEOUT_IN_MS = 1000; //1000ms
+  private static final int DEFAULT_RELEASE_MESSAGE_PUSH_MIN_SCAN_INTERVAL_IN_MS = 100; //100ms
   private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH = 100;
   private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH_INTERVAL_IN_MILLI = 100;//100ms
+  private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_FAN_OUT_THREADS = 4;
   private static final int DEFAULT_LONG_POLLING_TIMEOUT = 60; //60s
+  private static final int DEFAULT_NOTIFICATION_STREAM_TIMEOUT = 30 * 60; //30min
+  private static final int DEFAULT_NOTIFICATION_STREAM_HEARTBEAT_INTERVAL = 30; //30s
+  private static final int DEFAULT_NOTIFICATION_STREAM_SEND_THREADS = 16;
+  private static final int DEFAULT_NOTIFICATION_STREAM_SEND_QUEUE_SIZE = 10000;
+  private static final int DEFAULT_INSTANCE_CONFIG_AUDIT_WORKER_THREADS = 2;
+  private static final int DEFAULT_INSTANCE_CONFIG_AUDIT_BATCH_SIZE = 500;
+  private static final int DEFAULT_INSTANCE_CONFIG_AUDIT_QUEUE_SIZE = 10000;
+  private static final int DEFAULT_CONFIG_SERVICE_BATCH_QUERY_MAX_NAMESPACES = 100;
 
   private static final Gson GSON = new Gson();
 
@@ -67,6 +79,40 @@ public class BizConfig extends RefreshableConfig {
     return 1000 * checkInt(timeout, 1, 90, DEFAULT_LONG_POLLING_TIMEOUT);
   }
 
+  public boolean isNotificationStreamEnabled() {
+    return getBooleanProperty("notification.stream.enabled", true);
+  }
+
+  /**
+   * The max lifetime of a notification stream, the client subscribes again with its latest notifications afterwards
+   */
+  public long notificationStreamTimeoutInMilli() {
+    int timeout = getIntProperty("notification.stream.timeout", DEFAULT_NOTIFICATION_STREAM_TIMEOUT);
+    return 1000L * checkInt(timeout, 60, Integer.MAX_VALUE, DEFAULT_NOTIFICATION_STREAM_TIMEOUT);
+  }
+
+  public long notificationStreamHeartbeatIntervalInMilli() {
+    int interval = getIntProperty("notification.stream.heartbeat.interval", DEFAULT_NOTIFICATION_STREAM_HEARTBEAT_INTERVAL);
+    // java client's read timeout is 90 seconds, so the heartbeat interval must be less than 90
+    return 1000L * checkInt(interval, 1, 60, DEFAULT_NOTIFICATION_STREAM_HEARTBEAT_INTERVAL);
+  }
+
+  /**
+   * The max threads writing the notification streams, a stalled write holds a thread until its stream is dropped
+   */
+  public int notificationStreamSendThreads() {
+    int threads = getIntProperty("notification.stream.send.threads", DEFAULT_NOTIFICATION_STREAM_SEND_THREADS);
+    return checkInt(threads, 1, Integer.MAX_VALUE, DEFAULT_NOTIFICATION_STREAM_SEND_THREADS);
+  }
+
+  /**
+   * The max streams waiting for a thread to write, the streams beyond it are dropped and subscribe again
+   */
+  public int notificationStreamSendQueueSize() {
+    int size = getIntProperty("notification.stream.send.queue.size", DEFAULT_NOTIFICATION_STREAM_SEND_QUEUE_SIZE);
+    return checkInt(size, 1, Integer.MAX_VALUE, DEFAULT_NOTIFICATION_STREAM_SEND_QUEUE_SIZE);
+  }
+
   public int itemKeyLengthLimit() {
     int limit = getIntProperty("item.key.length.limit", DEFAULT_ITEM_KEY_LENGTH);
     return checkInt(limit, 5, Integer.MAX_VALUE, DEFAULT_ITEM_KEY_LENGTH);
@@ -153,6 +199,56 @@ public class BizConfig extends RefreshableConfig {
     return checkInt(interval, 100, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_IN_MS);
   }
 
+  public boolean isReleaseMessagePushEnabled() {
+    return getBooleanProperty("apollo.release-message.push.enabled", false);
+  }
+
+  /**
+   * The database scan interval when the release messages are pushed, the scan only repairs the messages missed by
+   * the push
+   */
+  public int releaseMessagePushFallbackScanIntervalInMilli() {
+    int interval = getIntProperty("apollo.release-message.push.fallback-scan.interval",
+        DEFAULT_RELEASE_MESSAGE_PUSH_FALLBACK_SCAN_INTERVAL_IN_MS);
+    return checkInt(interval, 100, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_PUSH_FALLBACK_SCAN_INTERVAL_IN_MS);
+  }
+
+  /**
+   * The config service urls to push the release messages to, the config services registered in discovery are used if
+   * absent
+   */
+  public List<String> releaseMessagePushConfigServiceUrls() {
+    String configuration = getValue("apollo.release-message.push.config-service.urls", "");
+    if (Strings.isNullOrEmpty(configuration)) {
+      return Collections.emptyList();
+    }
+
+    return splitter.splitToList(configuration);
+  }
+
+  public int releaseMessagePushTimeoutInMilli() {
+    int timeout = getIntProperty("apollo.release-message.push.timeout", DEFAULT_RELEASE_MESSAGE_PUSH_TIMEOUT_IN_MS);
+    return checkInt(timeout, 10, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_PUSH_TIMEOUT_IN_MS);
+  }
+
+  /**
+   * The token sent by the admin services in the Authorization header when pushing the release messages, the config
+   * services reject the pushes without it, so the pushes are not accepted until it is configured
+   */
+  public String releaseMessagePushAccessToken() {
+    return getValue("apollo.release-message.push.access-token", "");
+  }
+
+  /**
+   * The minimum interval between the scans triggered by the pushes, the pushes received in between are merged into
+   * the next scan
+   */
+  public int releaseMessagePushMinScanIntervalInMilli() {
+    int interval = getIntProperty("apollo.release-message.push.min-scan.interval",
+        DEFAULT_RELEASE_MESSAGE_PUSH_MIN_SCAN_INTERVAL_IN_MS);
+    return checkInt(interval, 0, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_PUSH_MIN_SCAN_INTERVAL_IN_MS);
+  }
+
   public int releaseMessageNotificationBatch() {
     int batch = getIntProperty("apollo.release-message.notification.batch", DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH);
     return checkInt(batch, 1, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH);
@@ -163,10 +259,72 @@ public class BizConfig extends RefreshableConfig {
     return checkInt(interval, 10, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH_INTERVAL_IN_MILLI);
   }
 
+  public int releaseMessageNotificationFanOutThreads() {
+    int threads = getIntProperty("apollo.release-message.notification.fan-out.threads", DEFAULT_RELEASE_MESSAGE_NOTIFICATION_FAN_OUT_THREADS);
+    return checkInt(threads, 1, 64, DEFAULT_RELEASE_MESSAGE_NOTIFICATION_FAN_OUT_THREADS);
+  }
+
+  /**
+   * The max number of clients notified per second by one config service, which is also the budget of the config
+   * refetch qps caused by the notifications. Defaults to the rate of the batch size and batch interval.
+   */
+  public int releaseMessageNotificationQps() {
+    int defaultQps = Math.max(1,
+        releaseMessageNotificationBatch() * 1000 / releaseMessageNotificationBatchIntervalInMilli());
+    int qps = getIntProperty("apollo.release-message.notification.qps", defaultQps);
+    return checkInt(qps, 1, Integer.MAX_VALUE, defaultQps);
+  }
+
+  public int instanceConfigAuditWorkerThreads() {
+    int threads = getIntProperty("instance.config.audit.worker.threads", DEFAULT_INSTANCE_CONFIG_AUDIT_WORKER_THREADS);
+    return checkInt(threads, 1, 64, DEFAULT_INSTANCE_CONFIG_AUDIT_WORKER_THREADS);
+  }
+
+  /**
+   * The max number of audits written in one batch, which also limits the size of the IN-queries
+   */
+  public int instanceConfigAuditBatchSize() {
+    int batchSize = getIntProperty("instance.config.audit.batch.size", DEFAULT_INSTANCE_CONFIG_AUDIT_BATCH_SIZE);
+    return checkInt(batchSize, 1, 1000, DEFAULT_INSTANCE_CONFIG_AUDIT_BATCH_SIZE);
+  }
+
+  /**
+   * The max number of pending audits of each worker, the audits offered when the queue is full are dropped
+   */
+  public int instanceConfigAuditQueueSize() {
+    int queueSize = getIntProperty("instance.config.audit.queue.size", DEFAULT_INSTANCE_CONFIG_AUDIT_QUEUE_SIZE);
+    return checkInt(queueSize, 1, Integer.MAX_VALUE, DEFAULT_INSTANCE_CONFIG_AUDIT_QUEUE_SIZE);
+  }
+
   public boolean isConfigServiceCacheEnabled() {
     return getBooleanProperty("config-service.cache.enabled", false);
   }
 
+  public boolean isConfigServiceResponseCacheEnabled() {
+    return getBooleanProperty("config-service.response-cache.enabled", true);
+  }
+
+  public boolean isConfigServiceResponseGzipEnabled() {
+    return getBooleanProperty("config-service.response-cache.gzip.enabled", true);
+  }
+
+  public boolean isConfigServiceIncrementalSyncEnabled() {
+    return getBooleanProperty("config-service.incremental-sync.enabled", true);
+  }
+
+  public boolean isConfigServiceBatchQueryEnabled() {
+    return getBooleanProperty("config-service.batch-query.enabled", true);
+  }
+
+  /**
+   * The max number of namespaces queried in one batch config query
+   */
+  public int configServiceBatchQueryMaxNamespaces() {
+    int maxNamespaces = getIntProperty("config-service.batch-query.max-namespaces",
+        DEFAULT_CONFIG_SERVICE_BATCH_QUERY_MAX_NAMESPACES);
+    return checkInt(maxNamespaces, 1, Integer.MAX_VALUE, DEFAULT_CONFIG_SERVICE_BATCH_QUERY_MAX_NAMESPACES);
+  }
+
   int checkInt(int value, int min, int max, int defaultValue) {
     if (value >= min && value <= max) {
       return value;
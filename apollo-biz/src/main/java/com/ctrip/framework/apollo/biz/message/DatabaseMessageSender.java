@@ -10,6 +10,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.PostConstruct;
 import java.util.List;
@@ -32,11 +34,14 @@ public class DatabaseMessageSender implements MessageSender {
   private final AtomicBoolean cleanStopped;
 
   private final ReleaseMessageRepository releaseMessageRepository;
+  private final List<ReleaseMessagePublisher> releaseMessagePublishers;
 
-  public DatabaseMessageSender(final ReleaseMessageRepository releaseMessageRepository) {
+  public DatabaseMessageSender(final ReleaseMessageRepository releaseMessageRepository,
+      final List<ReleaseMessagePublisher> releaseMessagePublishers) {
     cleanExecutorService = Executors.newSingleThreadExecutor(ApolloThreadFactory.create("DatabaseMessageSender", true));
     cleanStopped = new AtomicBoolean(false);
     this.releaseMessageRepository = releaseMessageRepository;
+    this.releaseMessagePublishers = releaseMessagePublishers;
   }
 
   @Override
@@ -53,6 +58,7 @@ public class DatabaseMessageSender implements MessageSender {
     try {
       ReleaseMessage newMessage = releaseMessageRepository.save(new ReleaseMessage(message));
       toClean.offer(newMessage.getId());
+      publishAfterCommit(newMessage);
       transaction.setStatus(Transaction.SUCCESS);
     } catch (Throwable ex) {
       logger.error("Sending message to database failed", ex);
@@ -63,6 +69,33 @@ public class DatabaseMessageSender implements MessageSender {
     }
   }
 
+  /**
+   * The config services would not see the message before the transaction is committed
+   */
+  private void publishAfterCommit(ReleaseMessage message) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      publish(message);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        publish(message);
+      }
+    });
+  }
+
+  private void publish(ReleaseMessage message) {
+    for (ReleaseMessagePublisher publisher : releaseMessagePublishers) {
+      try {
+        publisher.publish(message);
+      } catch (Throwable ex) {
+        Tracer.logError(ex);
+        logger.error("Failed to publish release message {} with {}", message.getId(), publisher.getClass(), ex);
+      }
+    }
+  }
+
   @PostConstruct
   private void initialize() {
     cleanExecutorService.submit(() -> {
@@ -0,0 +1,125 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.core.ServiceNameConsts;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes the release messages to all the config services over http, enabled by
+ * {@link BizConfig#isReleaseMessagePushEnabled()}.
+ *
+ * <p>The pushes are sent asynchronously and dropped on failures or when the queue is full, the config services
+ * pick the dropped messages up in their fallback database scan. The pushes carry
+ * {@link BizConfig#releaseMessagePushAccessToken()} in the Authorization header and are not sent if it is absent, as
+ * the config services would reject them.</p>
+ */
+@Component
+public class HttpReleaseMessagePublisher implements ReleaseMessagePublisher {
+  private static final Logger logger = LoggerFactory.getLogger(HttpReleaseMessagePublisher.class);
+  private static final String PUSH_PATH = "release-messages/push?id={id}";
+  private static final int PUSH_THREADS = 4;
+  private static final int PUSH_QUEUE_SIZE = 1000;
+
+  private final BizConfig bizConfig;
+  private final ObjectProvider<DiscoveryClient> discoveryClientProvider;
+  private ThreadPoolExecutor pushExecutorService;
+  private RestTemplate restTemplate;
+
+  public HttpReleaseMessagePublisher(final BizConfig bizConfig,
+      final ObjectProvider<DiscoveryClient> discoveryClientProvider) {
+    this.bizConfig = bizConfig;
+    this.discoveryClientProvider = discoveryClientProvider;
+  }
+
+  @PostConstruct
+  void initialize() {
+    pushExecutorService = new ThreadPoolExecutor(PUSH_THREADS, PUSH_THREADS, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(PUSH_QUEUE_SIZE), ApolloThreadFactory.create("HttpReleaseMessagePublisher", true),
+        (task, executor) -> Tracer.logEvent("Apollo.ReleaseMessage.Push.Dropped", "queue is full"));
+
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setConnectTimeout(bizConfig.releaseMessagePushTimeoutInMilli());
+    requestFactory.setReadTimeout(bizConfig.releaseMessagePushTimeoutInMilli());
+    restTemplate = new RestTemplate(requestFactory);
+  }
+
+  @Override
+  public void publish(ReleaseMessage message) {
+    if (!bizConfig.isReleaseMessagePushEnabled()) {
+      return;
+    }
+    String accessToken = bizConfig.releaseMessagePushAccessToken();
+    if (Strings.isNullOrEmpty(accessToken)) {
+      Tracer.logEvent("Apollo.ReleaseMessage.Push.Dropped", "no access token");
+      return;
+    }
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.AUTHORIZATION, accessToken);
+    HttpEntity<Void> request = new HttpEntity<>(headers);
+    for (String configServiceUrl : getConfigServiceUrls()) {
+      pushExecutorService.execute(() -> push(configServiceUrl, request, message.getId()));
+    }
+  }
+
+  private void push(String configServiceUrl, HttpEntity<Void> request, long messageId) {
+    String url = configServiceUrl.endsWith("/") ? configServiceUrl + PUSH_PATH : configServiceUrl + "/" + PUSH_PATH;
+    Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessage", "push");
+    transaction.addData("Url", configServiceUrl);
+    try {
+      restTemplate.postForEntity(url, request, Void.class, messageId);
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      //the message would be picked up by the fallback scan of the config service
+      logger.warn("Push release message {} to {} failed, reason: {}", messageId, configServiceUrl, ex.getMessage());
+      transaction.setStatus(ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private List<String> getConfigServiceUrls() {
+    List<String> configuredUrls = bizConfig.releaseMessagePushConfigServiceUrls();
+    if (!configuredUrls.isEmpty()) {
+      return configuredUrls;
+    }
+
+    DiscoveryClient discoveryClient = discoveryClientProvider.getIfAvailable();
+    if (discoveryClient == null) {
+      return Collections.emptyList();
+    }
+
+    List<String> urls = Lists.newArrayList();
+    try {
+      for (ServiceInstance instance : discoveryClient.getInstances(ServiceNameConsts.APOLLO_CONFIGSERVICE)) {
+        urls.add(instance.getUri().toString());
+      }
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      logger.warn("Find config services to push release messages failed, reason: {}", ex.getMessage());
+    }
+    return urls;
+  }
+}
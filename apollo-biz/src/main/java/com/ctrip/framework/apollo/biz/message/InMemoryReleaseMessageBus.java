@@ -0,0 +1,43 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * In-JVM release message bus, which delivers the published messages to the listeners in the same JVM directly.
+ *
+ * <p>It is a stand-in of the http push when the admin service and config service run in one process, e.g. in
+ * tests.</p>
+ */
+public class InMemoryReleaseMessageBus implements ReleaseMessagePublisher {
+  private static final Logger logger = LoggerFactory.getLogger(InMemoryReleaseMessageBus.class);
+
+  private final List<ReleaseMessagePushListener> listeners = Lists.newCopyOnWriteArrayList();
+
+  public void subscribe(ReleaseMessagePushListener listener) {
+    if (!listeners.contains(listener)) {
+      listeners.add(listener);
+    }
+  }
+
+  public void unsubscribe(ReleaseMessagePushListener listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public void publish(ReleaseMessage message) {
+    for (ReleaseMessagePushListener listener : listeners) {
+      try {
+        listener.onMessagePushed(message.getId());
+      } catch (Throwable ex) {
+        Tracer.logError(ex);
+        logger.error("Failed to push release message {} to listener {}", message.getId(), listener.getClass(), ex);
+      }
+    }
+  }
+}
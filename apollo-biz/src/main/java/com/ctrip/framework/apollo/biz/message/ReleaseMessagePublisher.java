@@ -0,0 +1,18 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+
+/**
+ * Pushes the release messages saved by {@link DatabaseMessageSender} to the config services, so that they are
+ * handled without waiting for the next database scan.
+ *
+ * <p>The database stays the source of truth, a pushed message only tells the receiver there is something new to
+ * scan, so an implementation is free to drop messages on failures.</p>
+ */
+public interface ReleaseMessagePublisher {
+
+  /**
+   * Publish the saved release message, called after the transaction which saved the message is committed
+   */
+  void publish(ReleaseMessage message);
+}
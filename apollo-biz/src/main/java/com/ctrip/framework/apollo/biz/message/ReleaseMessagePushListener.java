@@ -0,0 +1,12 @@
+package com.ctrip.framework.apollo.biz.message;
+
+/**
+ * Receives the release messages pushed by {@link ReleaseMessagePublisher}
+ */
+public interface ReleaseMessagePushListener {
+
+  /**
+   * @param messageId the id of the release message pushed
+   */
+  void onMessagePushed(long messageId);
+}
@@ -1,9 +1,12 @@
 package com.ctrip.framework.apollo.biz.message;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,30 +21,59 @@ import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
+ * Scans the new release messages from database and notifies the listeners.
+ *
+ * <p>When the release messages are pushed, the scan is triggered right away by {@link #onMessagePushed(long)} and the
+ * periodic scan runs at {@link BizConfig#releaseMessagePushFallbackScanIntervalInMilli()} to repair the messages
+ * missed by the push. The ids skipped by a scan, e.g. those of the transactions committed out of order, are
+ * rechecked by the following scans. The ids are only rechecked when the push is enabled, and the gaps larger than
+ * {@link #MISSING_RELEASE_MESSAGE_MAX_GAP}, e.g. those of the auto increment jumps or the bulk deletes, are skipped,
+ * as well as the gaps beyond {@link #MISSING_RELEASE_MESSAGE_MAX_COUNT} ids tracked in total.</p>
+ *
+ * <p>The pushes are ignored when the push is disabled, and the scans triggered by the pushes are at least
+ * {@link BizConfig#releaseMessagePushMinScanIntervalInMilli()} apart, the pushes received in between are merged into
+ * the next scan.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
-public class ReleaseMessageScanner implements InitializingBean {
+public class ReleaseMessageScanner implements InitializingBean, ReleaseMessagePushListener {
   private static final Logger logger = LoggerFactory.getLogger(ReleaseMessageScanner.class);
+  private static final int MISSING_RELEASE_MESSAGE_MAX_AGE = 10; // hardcoded to 10, could be configured via BizConfig if necessary
+  private static final int MISSING_RELEASE_MESSAGE_MAX_GAP = 100;
+  private static final int MISSING_RELEASE_MESSAGE_MAX_COUNT = 1000;
   @Autowired
   private BizConfig bizConfig;
   @Autowired
   private ReleaseMessageRepository releaseMessageRepository;
   private int databaseScanInterval;
+  private boolean releaseMessagePushEnabled;
+  private int pushedScanMinInterval;
+  private volatile long lastPushedScanTime;
   private List<ReleaseMessageListener> listeners;
   private ScheduledExecutorService executorService;
-  private long maxIdScanned;
+  private volatile long maxIdScanned;
+  //missing release message id => age counter
+  private final Map<Long, Integer> missingReleaseMessages;
+  private final AtomicBoolean pushedScanScheduled;
 
   public ReleaseMessageScanner() {
     listeners = Lists.newCopyOnWriteArrayList();
     executorService = Executors.newScheduledThreadPool(1, ApolloThreadFactory
         .create("ReleaseMessageScanner", true));
+    missingReleaseMessages = Maps.newConcurrentMap();
+    pushedScanScheduled = new AtomicBoolean(false);
   }
 
   @Override
   public void afterPropertiesSet() throws Exception {
-    databaseScanInterval = bizConfig.releaseMessageScanIntervalInMilli();
+    releaseMessagePushEnabled = bizConfig.isReleaseMessagePushEnabled();
+    pushedScanMinInterval = bizConfig.releaseMessagePushMinScanIntervalInMilli();
+    databaseScanInterval = releaseMessagePushEnabled ?
+        bizConfig.releaseMessagePushFallbackScanIntervalInMilli() : bizConfig.releaseMessageScanIntervalInMilli();
     maxIdScanned = loadLargestMessageId();
     executorService.scheduleWithFixedDelay(() -> {
       Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageScanner", "scanMessage");
@@ -68,10 +100,48 @@ public class ReleaseMessageScanner implements InitializingBean {
     }
   }
 
+  /**
+   * Scan the new messages right away, or once the min interval since the last pushed scan passes, the scans triggered
+   * before the scheduled one starts are merged into it
+   */
+  @Override
+  public void onMessagePushed(long messageId) {
+    if (!releaseMessagePushEnabled) {
+      return;
+    }
+    if (messageId <= maxIdScanned && !missingReleaseMessages.containsKey(messageId)) {
+      return;
+    }
+
+    Tracer.logEvent("Apollo.ReleaseMessageScanner.Pushed", String.valueOf(messageId));
+    if (!pushedScanScheduled.compareAndSet(false, true)) {
+      return;
+    }
+
+    long delay = Math.max(0, lastPushedScanTime + pushedScanMinInterval - System.currentTimeMillis());
+    executorService.schedule(() -> {
+      //reset before scanning, so the messages pushed during the scan trigger another one
+      pushedScanScheduled.set(false);
+      lastPushedScanTime = System.currentTimeMillis();
+      Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageScanner", "scanPushedMessage");
+      try {
+        scanMessages();
+        transaction.setStatus(Transaction.SUCCESS);
+      } catch (Throwable ex) {
+        transaction.setStatus(ex);
+        logger.error("Scan and send pushed message failed", ex);
+      } finally {
+        transaction.complete();
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
   /**
    * Scan messages, continue scanning until there is no more messages
    */
   private void scanMessages() {
+    scanMissingMessages();
+
     boolean hasMoreMessages = true;
     while (hasMoreMessages && !Thread.currentThread().isInterrupted()) {
       hasMoreMessages = scanAndSendMessages();
@@ -90,12 +160,61 @@ public class ReleaseMessageScanner implements InitializingBean {
     if (CollectionUtils.isEmpty(releaseMessages)) {
       return false;
     }
+    if (releaseMessagePushEnabled) {
+      recordMissingReleaseMessageIds(releaseMessages, maxIdScanned);
+    }
     fireMessageScanned(releaseMessages);
     int messageScanned = releaseMessages.size();
     maxIdScanned = releaseMessages.get(messageScanned - 1).getId();
     return messageScanned == 500;
   }
 
+  /**
+   * Recheck the ids skipped by the previous scans, the ones still missing after
+   * {@link #MISSING_RELEASE_MESSAGE_MAX_AGE} scans are given up, e.g. those of the rolled back transactions
+   */
+  private void scanMissingMessages() {
+    if (missingReleaseMessages.isEmpty()) {
+      return;
+    }
+
+    List<ReleaseMessage> releaseMessages = Lists.newArrayList(
+        releaseMessageRepository.findAllById(Sets.newHashSet(missingReleaseMessages.keySet())));
+    if (!releaseMessages.isEmpty()) {
+      releaseMessages.sort(Comparator.comparingLong(ReleaseMessage::getId));
+      for (ReleaseMessage releaseMessage : releaseMessages) {
+        missingReleaseMessages.remove(releaseMessage.getId());
+      }
+      Tracer.logEvent("Apollo.ReleaseMessageScanner.MissingMessageFound", String.valueOf(releaseMessages.size()));
+      fireMessageScanned(releaseMessages);
+    }
+
+    missingReleaseMessages.replaceAll((id, age) -> age + 1);
+    missingReleaseMessages.values().removeIf(age -> age > MISSING_RELEASE_MESSAGE_MAX_AGE);
+  }
+
+  private void recordMissingReleaseMessageIds(List<ReleaseMessage> messages, long startId) {
+    if (startId <= 0) {
+      //no message scanned yet, the ids before the first message are not missing
+      startId = messages.get(0).getId();
+    }
+    for (ReleaseMessage message : messages) {
+      long currentId = message.getId();
+      long gap = currentId - startId - 1;
+      if (gap > MISSING_RELEASE_MESSAGE_MAX_GAP
+          || missingReleaseMessages.size() + gap > MISSING_RELEASE_MESSAGE_MAX_COUNT) {
+        Tracer.logEvent("Apollo.ReleaseMessageScanner.MissingMessageSkipped", String.valueOf(gap));
+        logger.warn("Skip rechecking the {} release message ids between {} and {}, {} ids tracked already", gap,
+            startId, currentId, missingReleaseMessages.size());
+      } else {
+        for (long id = startId + 1; id < currentId; id++) {
+          missingReleaseMessages.putIfAbsent(id, 0);
+        }
+      }
+      startId = currentId;
+    }
+  }
+
   /**
    * find largest message id as the current start point
    * @return current largest message id
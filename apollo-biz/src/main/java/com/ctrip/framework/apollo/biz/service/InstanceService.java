@@ -4,17 +4,24 @@ import com.ctrip.framework.apollo.biz.entity.Instance;
 import com.ctrip.framework.apollo.biz.entity.InstanceConfig;
 import com.ctrip.framework.apollo.biz.repository.InstanceConfigRepository;
 import com.ctrip.framework.apollo.biz.repository.InstanceRepository;
+import com.ctrip.framework.apollo.tracer.Tracer;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -27,14 +34,26 @@ import java.util.stream.Collectors;
  */
 @Service
 public class InstanceService {
+  private static final Logger logger = LoggerFactory.getLogger(InstanceService.class);
+  private static final String INSERT_INSTANCE_SQL = "INSERT INTO Instance (AppId, ClusterName, DataCenter, Ip, "
+      + "DataChange_CreatedTime, DataChange_LastTime) VALUES (?, ?, ?, ?, ?, ?)";
+  private static final String INSERT_INSTANCE_CONFIG_SQL = "INSERT INTO InstanceConfig (InstanceId, ConfigAppId, "
+      + "ConfigClusterName, ConfigNamespaceName, ReleaseKey, ReleaseDeliveryTime, DataChange_CreatedTime, "
+      + "DataChange_LastTime) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String UPDATE_INSTANCE_CONFIG_SQL = "UPDATE InstanceConfig SET ConfigClusterName = ?, "
+      + "ReleaseKey = ?, ReleaseDeliveryTime = ?, DataChange_LastTime = ? WHERE Id = ?";
+
   private final InstanceRepository instanceRepository;
   private final InstanceConfigRepository instanceConfigRepository;
+  private final JdbcTemplate jdbcTemplate;
 
   public InstanceService(
       final InstanceRepository instanceRepository,
-      final InstanceConfigRepository instanceConfigRepository) {
+      final InstanceConfigRepository instanceConfigRepository,
+      final JdbcTemplate jdbcTemplate) {
     this.instanceRepository = instanceRepository;
     this.instanceConfigRepository = instanceConfigRepository;
+    this.jdbcTemplate = jdbcTemplate;
   }
 
   public Instance findInstance(String appId, String clusterName, String dataCenter, String ip) {
@@ -42,6 +61,10 @@ public class InstanceService {
         dataCenter, ip);
   }
 
+  public List<Instance> findInstances(String appId, String clusterName, String dataCenter, Set<String> ips) {
+    return instanceRepository.findByAppIdAndClusterNameAndDataCenterAndIpIn(appId, clusterName, dataCenter, ips);
+  }
+
   public List<Instance> findInstancesByIds(Set<Long> instanceIds) {
     Iterable<Instance> instances = instanceRepository.findAllById(instanceIds);
     return Lists.newArrayList(instances);
@@ -61,6 +84,12 @@ public class InstanceService {
             instanceId, configAppId, configNamespaceName);
   }
 
+  public List<InstanceConfig> findInstanceConfigs(String configAppId, String configNamespaceName,
+      Set<Long> instanceIds) {
+    return instanceConfigRepository.findByConfigAppIdAndConfigNamespaceNameAndInstanceIdIn(configAppId,
+        configNamespaceName, instanceIds);
+  }
+
   public Page<InstanceConfig> findActiveInstanceConfigsByReleaseKey(String releaseKey, Pageable
       pageable) {
     return instanceConfigRepository.findByReleaseKeyAndDataChangeLastModifiedTimeAfter(releaseKey,
@@ -169,6 +198,81 @@ public class InstanceService {
     return instanceConfigRepository.save(existedInstanceConfig);
   }
 
+  /**
+   * Create the instances in one jdbc batch, the instances created concurrently by others are skipped.
+   * The ids are not populated, query the instances to get them.
+   *
+   * @return the number of instances failed to create for the data integrity violations other than duplicate keys
+   */
+  public int batchCreateInstances(List<Instance> instances) {
+    Date now = new Date();
+    List<Object[]> batchArgs = instances.stream().map(instance -> new Object[]{instance.getAppId(),
+        instance.getClusterName(), instance.getDataCenter(), instance.getIp(), now, now})
+        .collect(Collectors.toList());
+
+    return batchInsert(INSERT_INSTANCE_SQL, batchArgs);
+  }
+
+  /**
+   * Create the instance configs in one jdbc batch, the instance configs created concurrently by others are skipped
+   *
+   * @return the number of instance configs failed to create for the data integrity violations other than duplicate
+   * keys
+   */
+  public int batchCreateInstanceConfigs(List<InstanceConfig> instanceConfigs) {
+    List<Object[]> batchArgs = instanceConfigs.stream().map(instanceConfig -> {
+      Date createdTime = instanceConfig.getDataChangeCreatedTime() == null ? new Date() :
+          instanceConfig.getDataChangeCreatedTime();
+      return new Object[]{instanceConfig.getInstanceId(), instanceConfig.getConfigAppId(),
+          instanceConfig.getConfigClusterName(), instanceConfig.getConfigNamespaceName(),
+          instanceConfig.getReleaseKey(), instanceConfig.getReleaseDeliveryTime(), createdTime, createdTime};
+    }).collect(Collectors.toList());
+
+    return batchInsert(INSERT_INSTANCE_CONFIG_SQL, batchArgs);
+  }
+
+  /**
+   * Update the release of the instance configs by id in one jdbc batch
+   */
+  @Transactional
+  public void batchUpdateInstanceConfigs(List<InstanceConfig> instanceConfigs) {
+    List<Object[]> batchArgs = instanceConfigs.stream().map(instanceConfig -> new Object[]{
+        instanceConfig.getConfigClusterName(), instanceConfig.getReleaseKey(),
+        instanceConfig.getReleaseDeliveryTime(), instanceConfig.getDataChangeLastModifiedTime(),
+        instanceConfig.getId()}).collect(Collectors.toList());
+
+    jdbcTemplate.batchUpdate(UPDATE_INSTANCE_CONFIG_SQL, batchArgs);
+  }
+
+  /**
+   * @return the number of rows failed to insert for the data integrity violations other than duplicate keys
+   */
+  private int batchInsert(String sql, List<Object[]> batchArgs) {
+    if (batchArgs.isEmpty()) {
+      return 0;
+    }
+    try {
+      jdbcTemplate.batchUpdate(sql, batchArgs);
+      return 0;
+    } catch (DataIntegrityViolationException ex) {
+      //concurrent insertion or invalid rows, insert one by one and skip the existing ones
+      int failed = 0;
+      for (Object[] args : batchArgs) {
+        try {
+          jdbcTemplate.update(sql, args);
+        } catch (DuplicateKeyException duplicateEx) {
+          //created concurrently, safe to ignore
+        } catch (DataIntegrityViolationException violationEx) {
+          failed++;
+          Tracer.logError(violationEx);
+          logger.error("Insert failed for data integrity violation, sql: {}, args: {}", sql, Arrays.toString(args),
+              violationEx);
+        }
+      }
+      return failed;
+    }
+  }
+
   @Transactional
   public int batchDeleteInstanceConfig(String configAppId, String configClusterName, String configNamespaceName){
     return instanceConfigRepository.batchDelete(configAppId, configClusterName, configNamespaceName);
@@ -62,6 +62,25 @@ public class BizConfigTest {
     assertEquals(defaultBatch, bizConfig.releaseMessageNotificationBatch());
   }
 
+  @Test
+  public void testReleaseMessageNotificationQps() throws Exception {
+    int someQps = 500;
+    when(environment.getProperty("apollo.release-message.notification.qps")).thenReturn(String.valueOf(someQps));
+
+    assertEquals(someQps, bizConfig.releaseMessageNotificationQps());
+  }
+
+  @Test
+  public void testReleaseMessageNotificationQpsWithDefaultValue() throws Exception {
+    int someBatch = 20;
+    int someBatchInterval = 50;
+    when(environment.getProperty("apollo.release-message.notification.batch")).thenReturn(String.valueOf(someBatch));
+    when(environment.getProperty("apollo.release-message.notification.batch.interval"))
+        .thenReturn(String.valueOf(someBatchInterval));
+
+    assertEquals(someBatch * 1000 / someBatchInterval, bizConfig.releaseMessageNotificationQps());
+  }
+
   @Test
   public void testCheckInt() throws Exception {
     int someInvalidValue = 1;
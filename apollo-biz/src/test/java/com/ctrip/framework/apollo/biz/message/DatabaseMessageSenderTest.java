@@ -3,6 +3,7 @@ package com.ctrip.framework.apollo.biz.message;
 import com.ctrip.framework.apollo.biz.AbstractUnitTest;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -18,10 +19,12 @@ public class DatabaseMessageSenderTest extends AbstractUnitTest{
   private DatabaseMessageSender messageSender;
   @Mock
   private ReleaseMessageRepository releaseMessageRepository;
+  @Mock
+  private ReleaseMessagePublisher releaseMessagePublisher;
 
   @Before
   public void setUp() throws Exception {
-    messageSender = new DatabaseMessageSender(releaseMessageRepository);
+    messageSender = new DatabaseMessageSender(releaseMessageRepository, Lists.newArrayList(releaseMessagePublisher));
   }
 
   @Test
@@ -38,6 +41,7 @@ public class DatabaseMessageSenderTest extends AbstractUnitTest{
 
     verify(releaseMessageRepository, times(1)).save(captor.capture());
     assertEquals(someMessage, captor.getValue().getMessage());
+    verify(releaseMessagePublisher, times(1)).publish(someReleaseMessage);
   }
 
   @Test
@@ -48,6 +52,7 @@ public class DatabaseMessageSenderTest extends AbstractUnitTest{
     messageSender.sendMessage(someMessage, someUnsupportedTopic);
 
     verify(releaseMessageRepository, never()).save(any(ReleaseMessage.class));
+    verify(releaseMessagePublisher, never()).publish(any(ReleaseMessage.class));
   }
 
   @Test(expected = RuntimeException.class)
@@ -2,6 +2,7 @@ package com.ctrip.framework.apollo.biz.message;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.SettableFuture;
 
 import com.ctrip.framework.apollo.biz.AbstractUnitTest;
@@ -13,9 +14,15 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 /**
@@ -78,6 +85,163 @@ public class ReleaseMessageScannerTest extends AbstractUnitTest {
 
   }
 
+  @Test
+  public void testPushedMessageIsScannedImmediately() throws Exception {
+    ReleaseMessageScanner pushedScanner = assemblePushedScanner(0);
+    InMemoryReleaseMessageBus releaseMessageBus = new InMemoryReleaseMessageBus();
+    releaseMessageBus.subscribe(pushedScanner);
+
+    BlockingQueue<ReleaseMessage> receivedMessages = new LinkedBlockingQueue<>();
+    pushedScanner.addMessageListener((message, channel) -> receivedMessages.add(message));
+
+    long someId = 100;
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(someId, "someMessage");
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(
+        Lists.newArrayList(someReleaseMessage));
+
+    releaseMessageBus.publish(someReleaseMessage);
+
+    //the fallback scan interval is 1 minute, so the message must be scanned by the push
+    ReleaseMessage received = receivedMessages.poll(5000, TimeUnit.MILLISECONDS);
+    assertNotNull(received);
+    assertEquals(someId, received.getId());
+
+    //the message already scanned would not trigger another scan
+    releaseMessageBus.publish(someReleaseMessage);
+
+    assertNull(receivedMessages.poll(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testMissingMessagesAreRepaired() throws Exception {
+    long someStartId = 10;
+    ReleaseMessageScanner pushedScanner = assemblePushedScanner(someStartId);
+
+    BlockingQueue<ReleaseMessage> receivedMessages = new LinkedBlockingQueue<>();
+    pushedScanner.addMessageListener((message, channel) -> receivedMessages.add(message));
+
+    //message 11 is committed after message 12
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(someStartId + 1, "someMessage");
+    ReleaseMessage anotherReleaseMessage = assembleReleaseMessage(someStartId + 2, "anotherMessage");
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(someStartId)).thenReturn(
+        Lists.newArrayList(anotherReleaseMessage));
+
+    pushedScanner.onMessagePushed(anotherReleaseMessage.getId());
+
+    assertEquals(anotherReleaseMessage.getId(), receivedMessages.poll(5000, TimeUnit.MILLISECONDS).getId());
+
+    when(releaseMessageRepository.findAllById(Sets.newHashSet(someReleaseMessage.getId()))).thenReturn(
+        Lists.newArrayList(someReleaseMessage));
+
+    pushedScanner.onMessagePushed(someReleaseMessage.getId());
+
+    assertEquals(someReleaseMessage.getId(), receivedMessages.poll(5000, TimeUnit.MILLISECONDS).getId());
+  }
+
+  @Test
+  public void testMissingMessagesNotTrackedWhenPushDisabled() throws Exception {
+    BlockingQueue<ReleaseMessage> receivedMessages = new LinkedBlockingQueue<>();
+    releaseMessageScanner.addMessageListener((message, channel) -> receivedMessages.add(message));
+
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(1, "someMessage");
+    ReleaseMessage anotherReleaseMessage = assembleReleaseMessage(5, "anotherMessage");
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(
+        Lists.newArrayList(someReleaseMessage, anotherReleaseMessage));
+
+    assertEquals(someReleaseMessage.getId(), receivedMessages.poll(5000, TimeUnit.MILLISECONDS).getId());
+    assertEquals(anotherReleaseMessage.getId(), receivedMessages.poll(5000, TimeUnit.MILLISECONDS).getId());
+
+    assertTrue(getMissingReleaseMessages(releaseMessageScanner).isEmpty());
+  }
+
+  @Test
+  public void testLargeGapsAreSkipped() throws Exception {
+    long someStartId = 10;
+    ReleaseMessageScanner pushedScanner = assemblePushedScanner(someStartId);
+
+    BlockingQueue<ReleaseMessage> receivedMessages = new LinkedBlockingQueue<>();
+    pushedScanner.addMessageListener((message, channel) -> receivedMessages.add(message));
+
+    //an auto increment jump, followed by a small gap
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(someStartId + 1000000, "someMessage");
+    ReleaseMessage anotherReleaseMessage = assembleReleaseMessage(someStartId + 1000003, "anotherMessage");
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(someStartId)).thenReturn(
+        Lists.newArrayList(someReleaseMessage, anotherReleaseMessage));
+
+    pushedScanner.onMessagePushed(anotherReleaseMessage.getId());
+
+    assertEquals(someReleaseMessage.getId(), receivedMessages.poll(5000, TimeUnit.MILLISECONDS).getId());
+    assertEquals(anotherReleaseMessage.getId(), receivedMessages.poll(5000, TimeUnit.MILLISECONDS).getId());
+
+    assertEquals(Sets.newHashSet(someStartId + 1000001, someStartId + 1000002),
+        getMissingReleaseMessages(pushedScanner).keySet());
+  }
+
+  @Test
+  public void testPushIgnoredWhenPushDisabled() throws Exception {
+    ReleaseMessageScanner someScanner = new ReleaseMessageScanner();
+    ReflectionTestUtils.setField(someScanner, "releaseMessageRepository", releaseMessageRepository);
+    ReflectionTestUtils.setField(someScanner, "bizConfig", bizConfig);
+    when(bizConfig.releaseMessageScanIntervalInMilli()).thenReturn(60000);
+    someScanner.afterPropertiesSet();
+
+    BlockingQueue<ReleaseMessage> receivedMessages = new LinkedBlockingQueue<>();
+    someScanner.addMessageListener((message, channel) -> receivedMessages.add(message));
+
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(
+        Lists.newArrayList(assembleReleaseMessage(1, "someMessage")));
+
+    someScanner.onMessagePushed(1);
+
+    assertNull(receivedMessages.poll(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testPushedScansAreRateLimited() throws Exception {
+    when(bizConfig.releaseMessagePushMinScanIntervalInMilli()).thenReturn(1000);
+    ReleaseMessageScanner pushedScanner = assemblePushedScanner(0);
+
+    BlockingQueue<ReleaseMessage> receivedMessages = new LinkedBlockingQueue<>();
+    pushedScanner.addMessageListener((message, channel) -> receivedMessages.add(message));
+
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(1, "someMessage");
+    ReleaseMessage anotherReleaseMessage = assembleReleaseMessage(2, "anotherMessage");
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(
+        Lists.newArrayList(someReleaseMessage));
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(1L)).thenReturn(
+        Lists.newArrayList(anotherReleaseMessage));
+
+    pushedScanner.onMessagePushed(someReleaseMessage.getId());
+    assertEquals(someReleaseMessage.getId(), receivedMessages.poll(5000, TimeUnit.MILLISECONDS).getId());
+
+    //the pushes right after a scan are merged into one scan after the min interval
+    pushedScanner.onMessagePushed(anotherReleaseMessage.getId());
+    pushedScanner.onMessagePushed(anotherReleaseMessage.getId() + 1);
+
+    assertNull(receivedMessages.poll(200, TimeUnit.MILLISECONDS));
+    assertEquals(anotherReleaseMessage.getId(), receivedMessages.poll(5000, TimeUnit.MILLISECONDS).getId());
+    assertNull(receivedMessages.poll(200, TimeUnit.MILLISECONDS));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<Long, Integer> getMissingReleaseMessages(ReleaseMessageScanner scanner) {
+    return (Map<Long, Integer>) ReflectionTestUtils.getField(scanner, "missingReleaseMessages");
+  }
+
+  private ReleaseMessageScanner assemblePushedScanner(long largestMessageId) throws Exception {
+    ReleaseMessageScanner pushedScanner = new ReleaseMessageScanner();
+    ReflectionTestUtils.setField(pushedScanner, "releaseMessageRepository", releaseMessageRepository);
+    ReflectionTestUtils.setField(pushedScanner, "bizConfig", bizConfig);
+    when(bizConfig.isReleaseMessagePushEnabled()).thenReturn(true);
+    when(bizConfig.releaseMessagePushFallbackScanIntervalInMilli()).thenReturn(60000);
+    if (largestMessageId > 0) {
+      when(releaseMessageRepository.findTopByOrderByIdDesc()).thenReturn(
+          assembleReleaseMessage(largestMessageId, "someMessage"));
+    }
+    pushedScanner.afterPropertiesSet();
+    return pushedScanner;
+  }
+
   private ReleaseMessage assembleReleaseMessage(long id, String message) {
     ReleaseMessage releaseMessage = new ReleaseMessage();
     releaseMessage.setId(id);
@@ -1,5 +1,6 @@
 package com.ctrip.framework.apollo.biz.service;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -14,6 +15,8 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.annotation.Rollback;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -30,6 +33,8 @@ import static org.junit.Assert.assertNull;
 public class InstanceServiceTest extends AbstractIntegrationTest {
   @Autowired
   private InstanceService instanceService;
+  @PersistenceContext
+  private EntityManager entityManager;
 
   @Test
   @Rollback
@@ -250,6 +255,87 @@ public class InstanceServiceTest extends AbstractIntegrationTest {
     return instanceService.createInstanceConfig(someConfig);
   }
 
+  @Test
+  @Rollback
+  public void testBatchCreateAndFindInstances() throws Exception {
+    String someAppId = "someAppId";
+    String someClusterName = "someClusterName";
+    String someDataCenter = "someDataCenter";
+    String someIp = "someIp";
+    String anotherIp = "anotherIp";
+
+    instanceService.batchCreateInstances(Lists.newArrayList(
+        assembleInstance(someAppId, someClusterName, someDataCenter, someIp),
+        assembleInstance(someAppId, someClusterName, someDataCenter, anotherIp)));
+
+    List<Instance> instances = instanceService.findInstances(someAppId, someClusterName, someDataCenter,
+        Sets.newHashSet(someIp, anotherIp, "yetAnotherIp"));
+
+    assertEquals(Sets.newHashSet(someIp, anotherIp),
+        instances.stream().map(Instance::getIp).collect(Collectors.toSet()));
+    instances.forEach(instance -> assertNotEquals(0, instance.getId()));
+  }
+
+  @Test
+  @Rollback
+  public void testBatchCreateInstancesWithDataIntegrityViolation() throws Exception {
+    String someAppId = "someAppId";
+    String someClusterName = "someClusterName";
+    String someDataCenter = "someDataCenter";
+    String someIp = "someIp";
+    //longer than the column
+    String anotherIp = Strings.repeat("1", 256);
+
+    int failed = instanceService.batchCreateInstances(Lists.newArrayList(
+        assembleInstance(someAppId, someClusterName, someDataCenter, someIp),
+        assembleInstance(someAppId, someClusterName, someDataCenter, anotherIp)));
+
+    assertEquals(1, failed);
+
+    List<Instance> instances = instanceService.findInstances(someAppId, someClusterName, someDataCenter,
+        Sets.newHashSet(someIp, anotherIp));
+
+    assertEquals(Sets.newHashSet(someIp), instances.stream().map(Instance::getIp).collect(Collectors.toSet()));
+  }
+
+  @Test
+  @Rollback
+  public void testBatchCreateAndUpdateInstanceConfigs() throws Exception {
+    long someInstanceId = 1;
+    long anotherInstanceId = 2;
+    String someConfigAppId = "someConfigAppId";
+    String someConfigClusterName = "someConfigClusterName";
+    String someConfigNamespaceName = "someConfigNamespaceName";
+    String someReleaseKey = "someReleaseKey";
+    String anotherReleaseKey = "anotherReleaseKey";
+
+    InstanceConfig someInstanceConfig = assembleInstanceConfig(someInstanceId, someConfigAppId,
+        someConfigClusterName, someConfigNamespaceName, someReleaseKey);
+    someInstanceConfig.setReleaseDeliveryTime(new Date());
+    InstanceConfig anotherInstanceConfig = assembleInstanceConfig(anotherInstanceId, someConfigAppId,
+        someConfigClusterName, someConfigNamespaceName, someReleaseKey);
+    anotherInstanceConfig.setReleaseDeliveryTime(new Date());
+
+    instanceService.batchCreateInstanceConfigs(Lists.newArrayList(someInstanceConfig, anotherInstanceConfig));
+
+    List<InstanceConfig> instanceConfigs = instanceService.findInstanceConfigs(someConfigAppId,
+        someConfigNamespaceName, Sets.newHashSet(someInstanceId, anotherInstanceId));
+
+    assertEquals(2, instanceConfigs.size());
+
+    InstanceConfig toUpdate = instanceConfigs.get(0);
+    toUpdate.setReleaseKey(anotherReleaseKey);
+    toUpdate.setDataChangeLastModifiedTime(new Date());
+    instanceService.batchUpdateInstanceConfigs(Lists.newArrayList(toUpdate));
+    //the jdbc batch bypasses the persistence context
+    entityManager.clear();
+
+    InstanceConfig updated = instanceService.findInstanceConfig(toUpdate.getInstanceId(), someConfigAppId,
+        someConfigNamespaceName);
+
+    assertEquals(anotherReleaseKey, updated.getReleaseKey());
+  }
+
   private Instance assembleInstance(String appId, String clusterName, String dataCenter, String
       ip) {
     Instance instance = new Instance();
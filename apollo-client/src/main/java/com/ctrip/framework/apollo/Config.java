@@ -3,6 +3,7 @@ package com.ctrip.framework.apollo;
 import com.ctrip.framework.apollo.enums.ConfigSourceType;
 import com.google.common.base.Function;
 
+import java.lang.reflect.Type;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Set;
@@ -227,6 +228,74 @@ public interface Config {
    */
   <T> T getProperty(String key, Function<String, T> function, T defaultValue);
 
+  /**
+   * Return a handle of the string property with the given key, which is updated when the config changes.
+   *
+   * @param key          the property name
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @return the property handle
+   */
+  PropertyHandle<String> getPropertyHandle(String key, String defaultValue);
+
+  /**
+   * Return a handle of the integer property with the given key, which is updated when the config changes.
+   *
+   * @param key          the property name
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @return the property handle
+   */
+  PropertyHandle<Integer> getIntPropertyHandle(String key, Integer defaultValue);
+
+  /**
+   * Return a handle of the long property with the given key, which is updated when the config changes.
+   *
+   * @param key          the property name
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @return the property handle
+   */
+  PropertyHandle<Long> getLongPropertyHandle(String key, Long defaultValue);
+
+  /**
+   * Return a handle of the boolean property with the given key, which is updated when the config changes.
+   *
+   * @param key          the property name
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @return the property handle
+   */
+  PropertyHandle<Boolean> getBooleanPropertyHandle(String key, Boolean defaultValue);
+
+  /**
+   * Return a handle of the duration property with the given key, which is updated when the config changes. The
+   * format is the same as {@link #getDurationProperty(String, long)}.
+   *
+   * @param key          the property name
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @return the property handle of the value in milliseconds
+   */
+  PropertyHandle<Long> getDurationPropertyHandle(String key, long defaultValue);
+
+  /**
+   * Return a handle of the json property with the given key, which is updated when the config changes.
+   *
+   * @param key          the property name
+   * @param type         the type to deserialize the json to, e.g. a class or a generic type
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @param <T>          the deserialized type
+   * @return the property handle
+   */
+  <T> PropertyHandle<T> getJsonPropertyHandle(String key, Type type, T defaultValue);
+
+  /**
+   * Return a handle of the user-defined property with the given key, which is updated when the config changes.
+   *
+   * @param key          the property name
+   * @param function     the transform {@link Function}. from String to user-defined type
+   * @param defaultValue the default value when key is not found or any error occurred
+   * @param <T>          user-defined type
+   * @return the property handle
+   */
+  <T> PropertyHandle<T> getPropertyHandle(String key, Function<String, T> function, T defaultValue);
+
   /**
    * Return the config's source type, i.e. where is the config loaded from
    *
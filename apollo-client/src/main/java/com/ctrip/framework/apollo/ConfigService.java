@@ -4,8 +4,12 @@ import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
 import com.ctrip.framework.apollo.internals.ConfigManager;
+import com.ctrip.framework.apollo.internals.ConfigPreloader;
 import com.ctrip.framework.apollo.spi.ConfigFactory;
 import com.ctrip.framework.apollo.spi.ConfigRegistry;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * Entry point for client config use
@@ -17,6 +21,7 @@ public class ConfigService {
 
   private volatile ConfigManager m_configManager;
   private volatile ConfigRegistry m_configRegistry;
+  private volatile ConfigPreloader m_configPreloader;
 
   private ConfigManager getManager() {
     if (m_configManager == null) {
@@ -42,6 +47,18 @@ public class ConfigService {
     return m_configRegistry;
   }
 
+  private ConfigPreloader getPreloader() {
+    if (m_configPreloader == null) {
+      synchronized (this) {
+        if (m_configPreloader == null) {
+          m_configPreloader = ApolloInjector.getInstance(ConfigPreloader.class);
+        }
+      }
+    }
+
+    return m_configPreloader;
+  }
+
   /**
    * Get Application's config instance.
    *
@@ -65,6 +82,16 @@ public class ConfigService {
     return s_instance.getManager().getConfigFile(namespace, configFileFormat);
   }
 
+  /**
+   * Load the config instances for the namespaces concurrently, without blocking the caller.
+   *
+   * @param namespaces the namespaces of the configs
+   * @return the future of the config instances by namespace, the namespaces failed to load are left out
+   */
+  public static ListenableFuture<Map<String, Config>> preloadConfigs(Collection<String> namespaces) {
+    return s_instance.getPreloader().preload(namespaces);
+  }
+
   static void setConfig(Config config) {
     setConfig(ConfigConsts.NAMESPACE_APPLICATION, config);
   }
@@ -109,6 +136,7 @@ public class ConfigService {
     synchronized (s_instance) {
       s_instance.m_configManager = null;
       s_instance.m_configRegistry = null;
+      s_instance.m_configPreloader = null;
     }
   }
 }
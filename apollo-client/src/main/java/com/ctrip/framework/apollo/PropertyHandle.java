@@ -0,0 +1,24 @@
+package com.ctrip.framework.apollo;
+
+/**
+ * A typed handle of a property, returned by the {@code get*PropertyHandle} methods of {@link Config}.
+ *
+ * <p>The value is parsed when the config changes instead of when it is read, so {@link #get()} is a single volatile
+ * read. The handle is kept updated as long as it is referenced, so it should be obtained once and held, e.g. in a
+ * field, rather than obtained on each read.</p>
+ *
+ * @param <T> the property type
+ */
+public interface PropertyHandle<T> {
+  /**
+   * @return the property name
+   */
+  String getKey();
+
+  /**
+   * Return the current property value, or the default value if the key doesn't exist or any error occurred.
+   *
+   * @return the property value
+   */
+  T get();
+}
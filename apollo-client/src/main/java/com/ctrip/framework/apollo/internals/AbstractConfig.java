@@ -2,37 +2,33 @@ package com.ctrip.framework.apollo.internals;
 
 import com.ctrip.framework.apollo.Config;
 import com.ctrip.framework.apollo.ConfigChangeListener;
+import com.ctrip.framework.apollo.PropertyHandle;
 import com.ctrip.framework.apollo.build.ApolloInjector;
-import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
-import com.ctrip.framework.apollo.enums.PropertyChangeType;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
 import com.ctrip.framework.apollo.model.ConfigChange;
 import com.ctrip.framework.apollo.model.ConfigChangeEvent;
 import com.ctrip.framework.apollo.tracer.Tracer;
-import com.ctrip.framework.apollo.tracer.spi.Transaction;
-import com.ctrip.framework.apollo.util.ConfigUtil;
 import com.ctrip.framework.apollo.util.factory.PropertiesFactory;
 import com.ctrip.framework.apollo.util.function.Functions;
 import com.ctrip.framework.apollo.util.parser.Parsers;
 import com.google.common.base.Function;
-import com.google.common.base.Objects;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.google.gson.Gson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -40,37 +36,29 @@ import java.util.concurrent.atomic.AtomicLong;
 public abstract class AbstractConfig implements Config {
   private static final Logger logger = LoggerFactory.getLogger(AbstractConfig.class);
 
-  private static final ExecutorService m_executorService;
-
-  private final List<ConfigChangeListener> m_listeners = Lists.newCopyOnWriteArrayList();
-  private final Map<ConfigChangeListener, Set<String>> m_interestedKeys = Maps.newConcurrentMap();
-  private final Map<ConfigChangeListener, Set<String>> m_interestedKeyPrefixes = Maps.newConcurrentMap();
-  private final ConfigUtil m_configUtil;
-  private volatile Cache<String, Integer> m_integerCache;
-  private volatile Cache<String, Long> m_longCache;
-  private volatile Cache<String, Short> m_shortCache;
-  private volatile Cache<String, Float> m_floatCache;
-  private volatile Cache<String, Double> m_doubleCache;
-  private volatile Cache<String, Byte> m_byteCache;
-  private volatile Cache<String, Boolean> m_booleanCache;
-  private volatile Cache<String, Date> m_dateCache;
-  private volatile Cache<String, Long> m_durationCache;
-  private final Map<String, Cache<String, String[]>> m_arrayCache;
-  private final List<Cache> allCaches;
-  private final AtomicLong m_configVersion; //indicate config version
+  private static final ListenerDispatcher m_listenerDispatcher;
+  private static final Gson GSON = new Gson();
+  private static final Function<String, String> STRING_FUNCTION = new Function<String, String>() {
+    @Override
+    public String apply(String input) {
+      return input;
+    }
+  };
+
+  private final ConfigChangeListenerRouter m_listenerRouter = new ConfigChangeListenerRouter();
+  private volatile ConfigSnapshot m_configSnapshot = ConfigSnapshot.EMPTY;
+  //the handles are weakly referenced, so they are dropped once not held by the callers, and the keys without any
+  //handle left are pruned on change, the handles are registered and pruned while holding the map's monitor
+  private final ConcurrentMap<String, Set<DefaultPropertyHandle<?>>> m_propertyHandles = Maps.newConcurrentMap();
 
   protected PropertiesFactory propertiesFactory;
 
   static {
-    m_executorService = Executors.newCachedThreadPool(ApolloThreadFactory
-        .create("Config", true));
+    m_listenerDispatcher = new ListenerDispatcher("Config",
+        Math.max(2, Runtime.getRuntime().availableProcessors()));
   }
 
   public AbstractConfig() {
-    m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
-    m_configVersion = new AtomicLong();
-    m_arrayCache = Maps.newConcurrentMap();
-    allCaches = Lists.newArrayList();
     propertiesFactory = ApolloInjector.getInstance(PropertiesFactory.class);
   }
 
@@ -86,36 +74,18 @@ public abstract class AbstractConfig implements Config {
 
   @Override
   public void addChangeListener(ConfigChangeListener listener, Set<String> interestedKeys, Set<String> interestedKeyPrefixes) {
-    if (!m_listeners.contains(listener)) {
-      m_listeners.add(listener);
-      if (interestedKeys != null && !interestedKeys.isEmpty()) {
-        m_interestedKeys.put(listener, Sets.newHashSet(interestedKeys));
-      }
-      if (interestedKeyPrefixes != null && !interestedKeyPrefixes.isEmpty()) {
-        m_interestedKeyPrefixes.put(listener, Sets.newHashSet(interestedKeyPrefixes));
-      }
-    }
+    m_listenerRouter.add(listener, interestedKeys, interestedKeyPrefixes);
   }
 
   @Override
   public boolean removeChangeListener(ConfigChangeListener listener) {
-    m_interestedKeys.remove(listener);
-    m_interestedKeyPrefixes.remove(listener);
-    return m_listeners.remove(listener);
+    return m_listenerRouter.remove(listener);
   }
 
   @Override
   public Integer getIntProperty(String key, Integer defaultValue) {
     try {
-      if (m_integerCache == null) {
-        synchronized (this) {
-          if (m_integerCache == null) {
-            m_integerCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_INT_FUNCTION, m_integerCache, defaultValue);
+      return getTypedValue(key, ConfigSnapshot.INT, Functions.TO_INT_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getIntProperty for %s failed, return default value %d", key,
@@ -127,15 +97,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Long getLongProperty(String key, Long defaultValue) {
     try {
-      if (m_longCache == null) {
-        synchronized (this) {
-          if (m_longCache == null) {
-            m_longCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_LONG_FUNCTION, m_longCache, defaultValue);
+      return getTypedValue(key, ConfigSnapshot.LONG, Functions.TO_LONG_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getLongProperty for %s failed, return default value %d", key,
@@ -147,15 +109,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Short getShortProperty(String key, Short defaultValue) {
     try {
-      if (m_shortCache == null) {
-        synchronized (this) {
-          if (m_shortCache == null) {
-            m_shortCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_SHORT_FUNCTION, m_shortCache, defaultValue);
+      return getTypedValue(key, ConfigSnapshot.SHORT, Functions.TO_SHORT_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getShortProperty for %s failed, return default value %d", key,
@@ -167,15 +121,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Float getFloatProperty(String key, Float defaultValue) {
     try {
-      if (m_floatCache == null) {
-        synchronized (this) {
-          if (m_floatCache == null) {
-            m_floatCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_FLOAT_FUNCTION, m_floatCache, defaultValue);
+      return getTypedValue(key, ConfigSnapshot.FLOAT, Functions.TO_FLOAT_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getFloatProperty for %s failed, return default value %f", key,
@@ -187,15 +133,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Double getDoubleProperty(String key, Double defaultValue) {
     try {
-      if (m_doubleCache == null) {
-        synchronized (this) {
-          if (m_doubleCache == null) {
-            m_doubleCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_DOUBLE_FUNCTION, m_doubleCache, defaultValue);
+      return getTypedValue(key, ConfigSnapshot.DOUBLE, Functions.TO_DOUBLE_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getDoubleProperty for %s failed, return default value %f", key,
@@ -207,15 +145,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Byte getByteProperty(String key, Byte defaultValue) {
     try {
-      if (m_byteCache == null) {
-        synchronized (this) {
-          if (m_byteCache == null) {
-            m_byteCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_BYTE_FUNCTION, m_byteCache, defaultValue);
+      return getTypedValue(key, ConfigSnapshot.BYTE, Functions.TO_BYTE_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getByteProperty for %s failed, return default value %d", key,
@@ -227,15 +157,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Boolean getBooleanProperty(String key, Boolean defaultValue) {
     try {
-      if (m_booleanCache == null) {
-        synchronized (this) {
-          if (m_booleanCache == null) {
-            m_booleanCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_BOOLEAN_FUNCTION, m_booleanCache, defaultValue);
+      return getTypedValue(key, ConfigSnapshot.BOOLEAN, Functions.TO_BOOLEAN_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getBooleanProperty for %s failed, return default value %b", key,
@@ -247,27 +169,15 @@ public abstract class AbstractConfig implements Config {
   @Override
   public String[] getArrayProperty(String key, final String delimiter, String[] defaultValue) {
     try {
-      if (!m_arrayCache.containsKey(delimiter)) {
-        synchronized (this) {
-          if (!m_arrayCache.containsKey(delimiter)) {
-            m_arrayCache.put(delimiter, this.<String[]>newCache());
-          }
-        }
+      ConfigSnapshot.Entry entry = m_configSnapshot.getEntry(key);
+      if (entry != null) {
+        return entry.getArrayValue(delimiter);
       }
 
-      Cache<String, String[]> cache = m_arrayCache.get(delimiter);
-      String[] result = cache.getIfPresent(key);
-
-      if (result != null) {
-        return result;
+      String value = getProperty(key, null);
+      if (value != null) {
+        return value.split(delimiter);
       }
-
-      return getValueAndStoreToCache(key, new Function<String, String[]>() {
-        @Override
-        public String[] apply(String input) {
-          return input.split(delimiter);
-        }
-      }, cache, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getArrayProperty for %s failed, return default value", key), ex));
@@ -295,15 +205,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public Date getDateProperty(String key, Date defaultValue) {
     try {
-      if (m_dateCache == null) {
-        synchronized (this) {
-          if (m_dateCache == null) {
-            m_dateCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_DATE_FUNCTION, m_dateCache, defaultValue);
+      return getTypedValue(key, ConfigSnapshot.DATE, Functions.TO_DATE_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getDateProperty for %s failed, return default value %s", key,
@@ -350,15 +252,7 @@ public abstract class AbstractConfig implements Config {
   @Override
   public long getDurationProperty(String key, long defaultValue) {
     try {
-      if (m_durationCache == null) {
-        synchronized (this) {
-          if (m_durationCache == null) {
-            m_durationCache = newCache();
-          }
-        }
-      }
-
-      return getValueFromCache(key, Functions.TO_DURATION_FUNCTION, m_durationCache, defaultValue);
+      return getTypedValue(key, ConfigSnapshot.DURATION, Functions.TO_DURATION_FUNCTION, defaultValue);
     } catch (Throwable ex) {
       Tracer.logError(new ApolloConfigException(
           String.format("getDurationProperty for %s failed, return default value %d", key,
@@ -385,154 +279,158 @@ public abstract class AbstractConfig implements Config {
     return defaultValue;
   }
 
-  private <T> T getValueFromCache(String key, Function<String, T> parser, Cache<String, T> cache, T defaultValue) {
-    T result = cache.getIfPresent(key);
-
-    if (result != null) {
-      return result;
-    }
-
-    return getValueAndStoreToCache(key, parser, cache, defaultValue);
+  @Override
+  public PropertyHandle<String> getPropertyHandle(String key, String defaultValue) {
+    return getPropertyHandle(key, STRING_FUNCTION, defaultValue);
   }
 
-  private <T> T getValueAndStoreToCache(String key, Function<String, T> parser, Cache<String, T> cache, T defaultValue) {
-    long currentConfigVersion = m_configVersion.get();
-    String value = getProperty(key, null);
-
-    if (value != null) {
-      T result = parser.apply(value);
+  @Override
+  public PropertyHandle<Integer> getIntPropertyHandle(String key, Integer defaultValue) {
+    return getPropertyHandle(key, Functions.TO_INT_FUNCTION, defaultValue);
+  }
 
-      if (result != null) {
-        synchronized (this) {
-          if (m_configVersion.get() == currentConfigVersion) {
-            cache.put(key, result);
-          }
-        }
-        return result;
-      }
-    }
+  @Override
+  public PropertyHandle<Long> getLongPropertyHandle(String key, Long defaultValue) {
+    return getPropertyHandle(key, Functions.TO_LONG_FUNCTION, defaultValue);
+  }
 
-    return defaultValue;
+  @Override
+  public PropertyHandle<Boolean> getBooleanPropertyHandle(String key, Boolean defaultValue) {
+    return getPropertyHandle(key, Functions.TO_BOOLEAN_FUNCTION, defaultValue);
   }
 
-  private <T> Cache<String, T> newCache() {
-    Cache<String, T> cache = CacheBuilder.newBuilder()
-        .maximumSize(m_configUtil.getMaxConfigCacheSize())
-        .expireAfterAccess(m_configUtil.getConfigCacheExpireTime(), m_configUtil.getConfigCacheExpireTimeUnit())
-        .build();
-    allCaches.add(cache);
-    return cache;
+  @Override
+  public PropertyHandle<Long> getDurationPropertyHandle(String key, long defaultValue) {
+    return getPropertyHandle(key, Functions.TO_DURATION_FUNCTION, defaultValue);
   }
 
-  /**
-   * Clear config cache
-   */
-  protected void clearConfigCache() {
-    synchronized (this) {
-      for (Cache c : allCaches) {
-        if (c != null) {
-          c.invalidateAll();
-        }
+  @Override
+  public <T> PropertyHandle<T> getJsonPropertyHandle(String key, final Type type, T defaultValue) {
+    return getPropertyHandle(key, new Function<String, T>() {
+      @Override
+      public T apply(String input) {
+        return GSON.fromJson(input, type);
       }
-      m_configVersion.incrementAndGet();
-    }
+    }, defaultValue);
   }
 
-  protected void fireConfigChange(final ConfigChangeEvent changeEvent) {
-    for (final ConfigChangeListener listener : m_listeners) {
-      // check whether the listener is interested in this change event
-      if (!isConfigChangeListenerInterested(listener, changeEvent)) {
-        continue;
+  @Override
+  public <T> PropertyHandle<T> getPropertyHandle(String key, Function<String, T> function, T defaultValue) {
+    DefaultPropertyHandle<T> handle = new DefaultPropertyHandle<>(this, key, function, defaultValue);
+
+    //register before the first refresh, so the changes afterwards are not missed
+    synchronized (m_propertyHandles) {
+      Set<DefaultPropertyHandle<?>> handles = m_propertyHandles.get(key);
+      if (handles == null) {
+        handles = Collections.newSetFromMap(new MapMaker().weakKeys().<DefaultPropertyHandle<?>, Boolean>makeMap());
+        m_propertyHandles.put(key, handles);
       }
-      m_executorService.submit(new Runnable() {
-        @Override
-        public void run() {
-          String listenerName = listener.getClass().getName();
-          Transaction transaction = Tracer.newTransaction("Apollo.ConfigChangeListener", listenerName);
-          try {
-            listener.onChange(changeEvent);
-            transaction.setStatus(Transaction.SUCCESS);
-          } catch (Throwable ex) {
-            transaction.setStatus(ex);
-            Tracer.logError(ex);
-            logger.error("Failed to invoke config change listener {}", listenerName, ex);
-          } finally {
-            transaction.complete();
-          }
-        }
-      });
+      handles.add(handle);
     }
-  }
+    handle.refresh();
 
-  private boolean isConfigChangeListenerInterested(ConfigChangeListener configChangeListener, ConfigChangeEvent configChangeEvent) {
-    Set<String> interestedKeys = m_interestedKeys.get(configChangeListener);
-    Set<String> interestedKeyPrefixes = m_interestedKeyPrefixes.get(configChangeListener);
+    return handle;
+  }
 
-    if ((interestedKeys == null || interestedKeys.isEmpty())
-        && (interestedKeyPrefixes == null || interestedKeyPrefixes.isEmpty())) {
-      return true; // no interested keys means interested in all keys
+  /**
+   * Push the new values of the changed keys to their property handles, should be called after the config is
+   * updated and before the change listeners are notified. The keys whose handles are all garbage collected are
+   * pruned as well.
+   *
+   * @param changedKeys the changed keys
+   */
+  protected void refreshPropertyHandles(Collection<String> changedKeys) {
+    if (m_propertyHandles.isEmpty()) {
+      return;
     }
-
-    if (interestedKeys != null) {
-      for (String interestedKey : interestedKeys) {
-        if (configChangeEvent.isChanged(interestedKey)) {
-          return true;
-        }
+    for (String key : changedKeys) {
+      Set<DefaultPropertyHandle<?>> handles = m_propertyHandles.get(key);
+      if (handles == null) {
+        continue;
+      }
+      for (DefaultPropertyHandle<?> handle : handles) {
+        handle.refresh();
       }
     }
+    prunePropertyHandles();
+  }
 
-    if (interestedKeyPrefixes != null) {
-      for (String prefix : interestedKeyPrefixes) {
-        for (final String changedKey : configChangeEvent.changedKeys()) {
-          if (changedKey.startsWith(prefix)) {
-            return true;
-          }
+  private void prunePropertyHandles() {
+    synchronized (m_propertyHandles) {
+      Iterator<Set<DefaultPropertyHandle<?>>> iterator = m_propertyHandles.values().iterator();
+      while (iterator.hasNext()) {
+        //the iterator skips the collected handles, while the size may still count them until they are cleaned up
+        if (!iterator.next().iterator().hasNext()) {
+          iterator.remove();
         }
       }
     }
-
-    return false;
   }
 
-  List<ConfigChange> calcPropertyChanges(String namespace, Properties previous,
-                                         Properties current) {
-    if (previous == null) {
-      previous = propertiesFactory.getPropertiesInstance();
+  private <T> T getTypedValue(String key, int type, Function<String, T> parser, T defaultValue) {
+    ConfigSnapshot.Entry entry = m_configSnapshot.getEntry(key);
+    if (entry != null) {
+      T result = entry.getParsedValue(type, parser);
+      return result == null ? defaultValue : result;
     }
 
-    if (current == null) {
-      current =  propertiesFactory.getPropertiesInstance();
+    //not resolved in the snapshot, e.g. only set by system properties or environment variables
+    String value = getProperty(key, null);
+    if (value != null) {
+      T result = parser.apply(value);
+      if (result != null) {
+        return result;
+      }
     }
 
-    Set<String> previousKeys = previous.stringPropertyNames();
-    Set<String> currentKeys = current.stringPropertyNames();
+    return defaultValue;
+  }
 
-    Set<String> commonKeys = Sets.intersection(previousKeys, currentKeys);
-    Set<String> newKeys = Sets.difference(currentKeys, commonKeys);
-    Set<String> removedKeys = Sets.difference(previousKeys, commonKeys);
+  /**
+   * Swap in the snapshot of a new config version. The values must be resolved the same as {@link
+   * #getProperty(String, String)}, the typed getters read from the snapshot and only fall back to getProperty for
+   * the keys absent from it.
+   *
+   * @param resolvedValues the resolved values of the keys
+   */
+  protected void updateConfigSnapshot(Map<String, String> resolvedValues) {
+    m_configSnapshot = new ConfigSnapshot(resolvedValues);
+  }
 
-    List<ConfigChange> changes = Lists.newArrayList();
+  /**
+   * The resolved values of the current config version, an unmodifiable view replaced by a new instance once the config
+   * changes, so the callers deriving data from the config can tell whether it is still current by identity.
+   */
+  public Map<String, String> getResolvedProperties() {
+    return m_configSnapshot.getResolvedValues();
+  }
 
-    for (String newKey : newKeys) {
-      changes.add(new ConfigChange(namespace, newKey, null, current.getProperty(newKey),
-          PropertyChangeType.ADDED));
-    }
+  ConfigSnapshot getConfigSnapshot() {
+    return m_configSnapshot;
+  }
 
-    for (String removedKey : removedKeys) {
-      changes.add(new ConfigChange(namespace, removedKey, previous.getProperty(removedKey), null,
-          PropertyChangeType.DELETED));
-    }
+  /**
+   * Clear config cache
+   */
+  protected void clearConfigCache() {
+    //drop the typed values parsed so far
+    m_configSnapshot = new ConfigSnapshot(m_configSnapshot.getValues());
+  }
 
-    for (String commonKey : commonKeys) {
-      String previousValue = previous.getProperty(commonKey);
-      String currentValue = current.getProperty(commonKey);
-      if (Objects.equal(previousValue, currentValue)) {
-        continue;
-      }
-      changes.add(new ConfigChange(namespace, commonKey, previousValue, currentValue,
-          PropertyChangeType.MODIFIED));
+  protected void fireConfigChange(final ConfigChangeEvent changeEvent) {
+    // only the listeners interested in the changed keys
+    for (final ConfigChangeListener listener : m_listenerRouter.route(changeEvent.changedKeys())) {
+      m_listenerDispatcher.dispatch(listener, "Apollo.ConfigChangeListener", new Runnable() {
+        @Override
+        public void run() {
+          listener.onChange(changeEvent);
+        }
+      });
     }
+  }
 
-    return changes;
+  List<ConfigChange> calcPropertyChanges(String namespace, Properties previous,
+                                         Properties current) {
+    return ConfigDiff.diff(namespace, previous, current);
   }
 }
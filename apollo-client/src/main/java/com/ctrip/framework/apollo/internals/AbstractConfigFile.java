@@ -5,8 +5,6 @@ import com.ctrip.framework.apollo.enums.ConfigSourceType;
 import com.ctrip.framework.apollo.util.factory.PropertiesFactory;
 import java.util.List;
 import java.util.Properties;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
@@ -14,11 +12,9 @@ import org.slf4j.LoggerFactory;
 
 import com.ctrip.framework.apollo.ConfigFile;
 import com.ctrip.framework.apollo.ConfigFileChangeListener;
-import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.enums.PropertyChangeType;
 import com.ctrip.framework.apollo.model.ConfigFileChangeEvent;
 import com.ctrip.framework.apollo.tracer.Tracer;
-import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.ctrip.framework.apollo.util.ExceptionUtil;
 import com.google.common.collect.Lists;
 
@@ -27,7 +23,7 @@ import com.google.common.collect.Lists;
  */
 public abstract class AbstractConfigFile implements ConfigFile, RepositoryChangeListener {
   private static final Logger logger = LoggerFactory.getLogger(AbstractConfigFile.class);
-  private static ExecutorService m_executorService;
+  private static final ListenerDispatcher m_listenerDispatcher;
   protected final ConfigRepository m_configRepository;
   protected final String m_namespace;
   protected final AtomicReference<Properties> m_configProperties;
@@ -37,8 +33,8 @@ public abstract class AbstractConfigFile implements ConfigFile, RepositoryChange
   private volatile ConfigSourceType m_sourceType = ConfigSourceType.NONE;
 
   static {
-    m_executorService = Executors.newCachedThreadPool(ApolloThreadFactory
-        .create("ConfigFile", true));
+    m_listenerDispatcher = new ListenerDispatcher("ConfigFile",
+        Math.max(2, Runtime.getRuntime().availableProcessors()));
   }
 
   public AbstractConfigFile(String namespace, ConfigRepository configRepository) {
@@ -74,6 +70,8 @@ public abstract class AbstractConfigFile implements ConfigFile, RepositoryChange
   @Override
   public synchronized void onRepositoryChange(String namespace, Properties newProperties) {
     if (newProperties.equals(m_configProperties.get())) {
+      //the source may change without content change, e.g. the local cache is confirmed by the remote
+      m_sourceType = m_configRepository.getSourceType();
       return;
     }
     Properties newConfigProperties = propertiesFactory.getPropertiesInstance();
@@ -118,21 +116,10 @@ public abstract class AbstractConfigFile implements ConfigFile, RepositoryChange
 
   private void fireConfigChange(final ConfigFileChangeEvent changeEvent) {
     for (final ConfigFileChangeListener listener : m_listeners) {
-      m_executorService.submit(new Runnable() {
+      m_listenerDispatcher.dispatch(listener, "Apollo.ConfigFileChangeListener", new Runnable() {
         @Override
         public void run() {
-          String listenerName = listener.getClass().getName();
-          Transaction transaction = Tracer.newTransaction("Apollo.ConfigFileChangeListener", listenerName);
-          try {
-            listener.onChange(changeEvent);
-            transaction.setStatus(Transaction.SUCCESS);
-          } catch (Throwable ex) {
-            transaction.setStatus(ex);
-            Tracer.logError(ex);
-            logger.error("Failed to invoke config file change listener {}", listenerName, ex);
-          } finally {
-            transaction.complete();
-          }
+          listener.onChange(changeEvent);
         }
       });
     }
@@ -0,0 +1,245 @@
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * The binary format of the local config cache file, an alternative to the properties file.
+ *
+ * <pre>
+ * header:  magic (int) | version (int) | payload length (int) | payload crc32 (int)
+ * payload: release key | entry count (int) | entries of key and value
+ * </pre>
+ *
+ * The strings are stored as the length (int) followed by the UTF-8 bytes, a null release key has length -1.
+ *
+ * <p>The file is written to a temp file and renamed to the target, so a torn write never replaces a valid file. It is
+ * read through a memory-mapped buffer, the checksum is verified and the entries are indexed on open, but the keys and
+ * values are only decoded when they are accessed.</p>
+ */
+public final class BinaryLocalCacheFile {
+  private static final int MAGIC = 0x41504c43; //APLC
+  private static final int VERSION = 1;
+  private static final int HEADER_LENGTH = 16;
+  private static final int CHECKSUM_CHUNK = 8192;
+
+  private final ByteBuffer m_buffer;
+  private final String m_releaseKey;
+  //the offset of each entry, the key starts at the offset and the value follows it
+  private final int[] m_entryOffsets;
+
+  private BinaryLocalCacheFile(ByteBuffer buffer, String releaseKey, int[] entryOffsets) {
+    m_buffer = buffer;
+    m_releaseKey = releaseKey;
+    m_entryOffsets = entryOffsets;
+  }
+
+  /**
+   * Write the properties to the file atomically.
+   *
+   * @param file       the target file
+   * @param properties the properties to write
+   * @param releaseKey the release key of the properties, null if unknown
+   * @throws IOException if the file could not be written
+   */
+  public static void write(File file, Properties properties, String releaseKey) throws IOException {
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(4096);
+    DataOutputStream out = new DataOutputStream(payload);
+    writeString(out, releaseKey);
+    out.writeInt(properties.size());
+    for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+      writeString(out, String.valueOf(entry.getKey()));
+      writeString(out, String.valueOf(entry.getValue()));
+    }
+    out.flush();
+
+    byte[] content = payload.toByteArray();
+    CRC32 crc32 = new CRC32();
+    crc32.update(content);
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+    header.putInt(MAGIC).putInt(VERSION).putInt(content.length).putInt((int) crc32.getValue());
+    header.flip();
+
+    File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+    try {
+      FileOutputStream fos = new FileOutputStream(tempFile);
+      try {
+        FileChannel channel = fos.getChannel();
+        while (header.hasRemaining()) {
+          channel.write(header);
+        }
+        ByteBuffer body = ByteBuffer.wrap(content);
+        while (body.hasRemaining()) {
+          channel.write(body);
+        }
+        channel.force(true);
+      } finally {
+        fos.close();
+      }
+
+      try {
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      //only left when the write or the move failed
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+
+  /**
+   * Open the file and verify it.
+   *
+   * @param file   the file
+   * @param mapped whether to map the file into memory, or read it into the heap, e.g. on Windows where a mapped file
+   *               could not be replaced until it is unmapped
+   * @return the opened file
+   * @throws IOException           if the file could not be read
+   * @throws ApolloConfigException if the file is not in the binary format, in an unknown version or corrupted
+   */
+  public static BinaryLocalCacheFile read(File file, boolean mapped) throws IOException {
+    ByteBuffer buffer;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      if (size < HEADER_LENGTH || size > Integer.MAX_VALUE) {
+        throw new ApolloConfigException(String.format("Invalid local cache file %s of size %d", file, size));
+      }
+      if (mapped) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+          //read fully
+        }
+        buffer.flip();
+      }
+    } finally {
+      raf.close();
+    }
+
+    if (buffer.getInt(0) != MAGIC) {
+      throw new ApolloConfigException(String.format("Local cache file %s is not in the binary format", file));
+    }
+    int version = buffer.getInt(4);
+    if (version != VERSION) {
+      throw new ApolloConfigException(
+          String.format("Local cache file %s is in an unknown version %d", file, version));
+    }
+    int payloadLength = buffer.getInt(8);
+    if (payloadLength != buffer.limit() - HEADER_LENGTH) {
+      throw new ApolloConfigException(String.format("Local cache file %s is truncated", file));
+    }
+    if (checksum(buffer, HEADER_LENGTH, payloadLength) != buffer.getInt(12)) {
+      throw new ApolloConfigException(String.format("Local cache file %s is corrupted, checksum mismatch", file));
+    }
+
+    int position = HEADER_LENGTH;
+    String releaseKey = readString(buffer, position);
+    position += stringLength(buffer, position);
+    int count = buffer.getInt(position);
+    position += 4;
+    int[] entryOffsets = new int[count];
+    for (int i = 0; i < count; i++) {
+      entryOffsets[i] = position;
+      position += stringLength(buffer, position);
+      position += stringLength(buffer, position);
+    }
+
+    return new BinaryLocalCacheFile(buffer, releaseKey, entryOffsets);
+  }
+
+  public String getReleaseKey() {
+    return m_releaseKey;
+  }
+
+  public int size() {
+    return m_entryOffsets.length;
+  }
+
+  public String getKey(int index) {
+    return readString(m_buffer, m_entryOffsets[index]);
+  }
+
+  public String getValue(int index) {
+    int offset = m_entryOffsets[index];
+    return readString(m_buffer, offset + stringLength(m_buffer, offset));
+  }
+
+  /**
+   * Decode all the entries into the properties.
+   *
+   * @param properties the properties to fill
+   * @return the properties
+   */
+  public Properties fill(Properties properties) {
+    for (int i = 0; i < m_entryOffsets.length; i++) {
+      properties.setProperty(getKey(i), getValue(i));
+    }
+    return properties;
+  }
+
+  private static int checksum(ByteBuffer buffer, int offset, int length) {
+    CRC32 crc32 = new CRC32();
+    ByteBuffer payload = buffer.duplicate();
+    payload.position(offset);
+    payload.limit(offset + length);
+    byte[] chunk = new byte[Math.min(CHECKSUM_CHUNK, length)];
+    while (payload.hasRemaining()) {
+      int read = Math.min(chunk.length, payload.remaining());
+      payload.get(chunk, 0, read);
+      crc32.update(chunk, 0, read);
+    }
+    return (int) crc32.getValue();
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * @return the length of the string at the offset, including the length field
+   */
+  private static int stringLength(ByteBuffer buffer, int offset) {
+    return 4 + Math.max(buffer.getInt(offset), 0);
+  }
+
+  private static String readString(ByteBuffer buffer, int offset) {
+    int length = buffer.getInt(offset);
+    if (length < 0) {
+      return null;
+    }
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + offset + 4, length, StandardCharsets.UTF_8);
+    }
+    byte[] bytes = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(offset + 4);
+    source.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
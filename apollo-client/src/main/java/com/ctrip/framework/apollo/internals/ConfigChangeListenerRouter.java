@@ -0,0 +1,169 @@
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.ConfigChangeListener;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the change listeners interested in the changed keys of a config.
+ *
+ * <p>The interested keys are indexed by a map and the interested key prefixes by a trie, so a change is routed by
+ * looking up each changed key once, instead of matching each listener against the changed keys. The index is rebuilt
+ * when a listener is added or removed, which is rare compared to the changes, and replaced atomically, so routing
+ * needs no lock.</p>
+ */
+final class ConfigChangeListenerRouter {
+  private final List<Registration> m_registrations = Lists.newArrayList();
+  private volatile Index m_index = new Index(Collections.<Registration>emptyList());
+
+  /**
+   * @param interestedKeys        the keys interested, null or empty along with the prefixes means all keys
+   * @param interestedKeyPrefixes the key prefixes interested
+   * @return false if the listener is added already
+   */
+  synchronized boolean add(ConfigChangeListener listener, Set<String> interestedKeys,
+      Set<String> interestedKeyPrefixes) {
+    for (Registration registration : m_registrations) {
+      if (registration.listener.equals(listener)) {
+        return false;
+      }
+    }
+    m_registrations.add(new Registration(listener, interestedKeys, interestedKeyPrefixes));
+    m_index = new Index(m_registrations);
+    return true;
+  }
+
+  synchronized boolean remove(ConfigChangeListener listener) {
+    for (int i = 0; i < m_registrations.size(); i++) {
+      if (m_registrations.get(i).listener.equals(listener)) {
+        m_registrations.remove(i);
+        m_index = new Index(m_registrations);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the listeners interested in all keys or any of the changed keys, in the order they are added
+   */
+  List<ConfigChangeListener> route(Collection<String> changedKeys) {
+    return m_index.route(changedKeys);
+  }
+
+  private static class Registration {
+    private final ConfigChangeListener listener;
+    private final Set<String> interestedKeys;
+    private final Set<String> interestedKeyPrefixes;
+
+    Registration(ConfigChangeListener listener, Set<String> interestedKeys, Set<String> interestedKeyPrefixes) {
+      this.listener = listener;
+      this.interestedKeys = interestedKeys == null ? ImmutableSet.<String>of() : ImmutableSet.copyOf(interestedKeys);
+      this.interestedKeyPrefixes = interestedKeyPrefixes == null ? ImmutableSet.<String>of() :
+          ImmutableSet.copyOf(interestedKeyPrefixes);
+    }
+
+    boolean isInterestedInAllKeys() {
+      return interestedKeys.isEmpty() && interestedKeyPrefixes.isEmpty();
+    }
+  }
+
+  /**
+   * The listeners are referred by their positions, so the matches are collected into a bit set without duplicates and
+   * read back in the order the listeners are added.
+   */
+  private static class Index {
+    private final ConfigChangeListener[] listeners;
+    private final BitSet allKeysListeners;
+    private final Map<String, BitSet> keyListeners;
+    private final TrieNode prefixListeners;
+
+    Index(List<Registration> registrations) {
+      listeners = new ConfigChangeListener[registrations.size()];
+      allKeysListeners = new BitSet();
+      keyListeners = Maps.newHashMap();
+      prefixListeners = new TrieNode();
+      for (int i = 0; i < registrations.size(); i++) {
+        Registration registration = registrations.get(i);
+        listeners[i] = registration.listener;
+        if (registration.isInterestedInAllKeys()) {
+          allKeysListeners.set(i);
+          continue;
+        }
+        for (String key : registration.interestedKeys) {
+          BitSet bits = keyListeners.get(key);
+          if (bits == null) {
+            bits = new BitSet();
+            keyListeners.put(key, bits);
+          }
+          bits.set(i);
+        }
+        for (String prefix : registration.interestedKeyPrefixes) {
+          prefixListeners.insert(prefix).listeners.set(i);
+        }
+      }
+    }
+
+    List<ConfigChangeListener> route(Collection<String> changedKeys) {
+      if (listeners.length == 0) {
+        return Collections.emptyList();
+      }
+      BitSet matched = (BitSet) allKeysListeners.clone();
+      for (String changedKey : changedKeys) {
+        BitSet bits = keyListeners.get(changedKey);
+        if (bits != null) {
+          matched.or(bits);
+        }
+        prefixListeners.collect(changedKey, matched);
+      }
+
+      ImmutableList.Builder<ConfigChangeListener> result = ImmutableList.builder();
+      for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+        result.add(listeners[i]);
+      }
+      return result.build();
+    }
+  }
+
+  private static class TrieNode {
+    private final Map<Character, TrieNode> children = Maps.newHashMap();
+    private final BitSet listeners = new BitSet();
+
+    TrieNode insert(String prefix) {
+      TrieNode node = this;
+      for (int i = 0; i < prefix.length(); i++) {
+        Character c = prefix.charAt(i);
+        TrieNode child = node.children.get(c);
+        if (child == null) {
+          child = new TrieNode();
+          node.children.put(c, child);
+        }
+        node = child;
+      }
+      return node;
+    }
+
+    /**
+     * Collect the listeners of all the prefixes of the key
+     */
+    void collect(String key, BitSet matched) {
+      TrieNode node = this;
+      matched.or(node.listeners);
+      for (int i = 0; i < key.length(); i++) {
+        node = node.children.get(key.charAt(i));
+        if (node == null) {
+          return;
+        }
+        matched.or(node.listeners);
+      }
+    }
+  }
+}
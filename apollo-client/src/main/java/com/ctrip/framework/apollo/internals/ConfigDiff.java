@@ -0,0 +1,99 @@
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.enums.PropertyChangeType;
+import com.ctrip.framework.apollo.model.ConfigChange;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Calculates the changes between two versions of the config properties.
+ *
+ * <p>Each version is iterated once and the keys are looked up in the other one by hash, without copying the key sets
+ * or building set views, so only the changes found are allocated. Like {@link Properties#stringPropertyNames()}, the
+ * entries whose key or value is not a string are ignored, while the default properties are not looked into.</p>
+ */
+public final class ConfigDiff {
+
+  private ConfigDiff() {
+  }
+
+  /**
+   * @param namespace the namespace of the properties
+   * @param previous  the previous properties, null means empty
+   * @param current   the current properties, null means empty
+   * @return the added changes, then the deleted and then the modified ones
+   */
+  public static List<ConfigChange> diff(String namespace, Properties previous, Properties current) {
+    List<ConfigChange> added = null;
+    List<ConfigChange> modified = null;
+    List<ConfigChange> deleted = null;
+
+    if (current != null) {
+      for (Map.Entry<Object, Object> entry : current.entrySet()) {
+        if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof String)) {
+          continue;
+        }
+        String key = (String) entry.getKey();
+        String currentValue = (String) entry.getValue();
+        String previousValue = getString(previous, key);
+        if (previousValue == null) {
+          added = add(added, new ConfigChange(namespace, key, null, currentValue, PropertyChangeType.ADDED));
+        } else if (!previousValue.equals(currentValue)) {
+          modified = add(modified,
+              new ConfigChange(namespace, key, previousValue, currentValue, PropertyChangeType.MODIFIED));
+        }
+      }
+    }
+
+    if (previous != null) {
+      for (Map.Entry<Object, Object> entry : previous.entrySet()) {
+        if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof String)) {
+          continue;
+        }
+        String key = (String) entry.getKey();
+        if (getString(current, key) == null) {
+          deleted = add(deleted,
+              new ConfigChange(namespace, key, (String) entry.getValue(), null, PropertyChangeType.DELETED));
+        }
+      }
+    }
+
+    if (added == null && deleted == null && modified == null) {
+      return Collections.emptyList();
+    }
+    List<ConfigChange> changes = Lists.newArrayListWithCapacity(size(added) + size(deleted) + size(modified));
+    addAll(changes, added);
+    addAll(changes, deleted);
+    addAll(changes, modified);
+    return changes;
+  }
+
+  private static String getString(Properties properties, String key) {
+    if (properties == null) {
+      return null;
+    }
+    Object value = properties.get(key);
+    return value instanceof String ? (String) value : null;
+  }
+
+  private static List<ConfigChange> add(List<ConfigChange> changes, ConfigChange change) {
+    if (changes == null) {
+      changes = Lists.newArrayList();
+    }
+    changes.add(change);
+    return changes;
+  }
+
+  private static int size(List<ConfigChange> changes) {
+    return changes == null ? 0 : changes.size();
+  }
+
+  private static void addAll(List<ConfigChange> changes, List<ConfigChange> toAdd) {
+    if (toAdd != null) {
+      changes.addAll(toAdd);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.Config;
+import com.ctrip.framework.apollo.ConfigService;
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.ctrip.framework.apollo.util.ExceptionUtil;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the configs of a set of namespaces concurrently, backs {@link ConfigService#preloadConfigs(Collection)}.
+ *
+ * <p>The namespaces are first loaded together with one request if the batch query is enabled, then the configs are
+ * created in parallel, so the startup waits for the slowest namespace instead of the sum of all of them.</p>
+ */
+public class ConfigPreloader {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigPreloader.class);
+  private static final int PRELOAD_THREADS = 8;
+
+  private final ListeningExecutorService m_executorService;
+  private final RemoteConfigBatchService m_remoteConfigBatchService;
+
+  /**
+   * Constructor.
+   */
+  public ConfigPreloader() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(PRELOAD_THREADS, PRELOAD_THREADS, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), ApolloThreadFactory.create("ConfigPreloader", true));
+    //the threads are only needed at startup
+    executor.allowCoreThreadTimeOut(true);
+    m_executorService = MoreExecutors.listeningDecorator(executor);
+    m_remoteConfigBatchService = ApolloInjector.getInstance(RemoteConfigBatchService.class);
+  }
+
+  /**
+   * Load the configs of the namespaces concurrently. The future never fails, the namespaces failed to load are left
+   * out of the result and logged.
+   *
+   * @param namespaces the namespaces to load
+   * @return the future of the configs by namespace, in the order of the namespaces
+   */
+  public ListenableFuture<Map<String, Config>> preload(Collection<String> namespaces) {
+    final Set<String> namespaceSet = Sets.newLinkedHashSet(namespaces);
+    if (namespaceSet.isEmpty()) {
+      return Futures.immediateFuture(Collections.<String, Config>emptyMap());
+    }
+
+    final long startTime = System.currentTimeMillis();
+    //the batch query blocks, so it is done in the background too before the namespaces are fanned out
+    ListenableFuture<List<Config>> configs = Futures.transformAsync(
+        m_executorService.submit(new Runnable() {
+          @Override
+          public void run() {
+            m_remoteConfigBatchService.preload(namespaceSet);
+          }
+        }), new AsyncFunction<Object, List<Config>>() {
+          @Override
+          public ListenableFuture<List<Config>> apply(Object input) {
+            List<ListenableFuture<Config>> futures = Lists.newArrayListWithCapacity(namespaceSet.size());
+            for (String namespace : namespaceSet) {
+              futures.add(m_executorService.submit(loadConfig(namespace)));
+            }
+            return Futures.allAsList(futures);
+          }
+        }, MoreExecutors.directExecutor());
+
+    return Futures.transform(configs, new Function<List<Config>, Map<String, Config>>() {
+      @Override
+      public Map<String, Config> apply(List<Config> input) {
+        Map<String, Config> result = Maps.newLinkedHashMap();
+        int index = 0;
+        for (String namespace : namespaceSet) {
+          Config config = input.get(index++);
+          if (config != null) {
+            result.put(namespace, config);
+          }
+        }
+
+        long costInMillis = System.currentTimeMillis() - startTime;
+        logger.debug("Preloaded {} of {} namespaces in {} ms", result.size(), namespaceSet.size(), costInMillis);
+        Tracer.logEvent("Apollo.Client.Bootstrap", "preloadConfigs", Transaction.SUCCESS,
+            String.format("namespaces=%d&loaded=%d&costInMillis=%d", namespaceSet.size(), result.size(),
+                costInMillis));
+        return result;
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  private Callable<Config> loadConfig(final String namespace) {
+    return new Callable<Config>() {
+      @Override
+      public Config call() {
+        long startTime = System.currentTimeMillis();
+        try {
+          Config config = ConfigService.getConfig(namespace);
+          Tracer.logEvent("Apollo.Client.Bootstrap.Namespace", namespace, Transaction.SUCCESS,
+              String.format("costInMillis=%d", System.currentTimeMillis() - startTime));
+          return config;
+        } catch (Throwable ex) {
+          Tracer.logError(ex);
+          logger.warn("Preload config for namespace {} failed, reason: {}", namespace,
+              ExceptionUtil.getDetailMessage(ex));
+          return null;
+        }
+      }
+    };
+  }
+}
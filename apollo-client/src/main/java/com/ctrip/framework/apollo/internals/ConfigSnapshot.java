@@ -0,0 +1,140 @@
+package com.ctrip.framework.apollo.internals;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Maps;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable view of one config version, holding the resolved values of the keys and the typed values parsed from
+ * them.
+ *
+ * <p>A new snapshot is swapped in on each config change, so the reads need neither locking nor cache invalidation.
+ * The typed values are memoized lazily per key, the racing parses of the same value are harmless as the last one
+ * wins.</p>
+ *
+ * @see AbstractConfig#updateConfigSnapshot(Map)
+ */
+final class ConfigSnapshot {
+  static final int INT = 0;
+  static final int LONG = 1;
+  static final int SHORT = 2;
+  static final int FLOAT = 3;
+  static final int DOUBLE = 4;
+  static final int BYTE = 5;
+  static final int BOOLEAN = 6;
+  static final int DATE = 7;
+  static final int DURATION = 8;
+  static final int ARRAY = 9;
+  private static final int TYPE_COUNT = 10;
+
+  private static final Function<Entry, String> ENTRY_VALUE = new Function<Entry, String>() {
+    @Override
+    public String apply(Entry input) {
+      return input.getValue();
+    }
+  };
+
+  static final ConfigSnapshot EMPTY = new ConfigSnapshot(Collections.<String, String>emptyMap());
+
+  private final Map<String, Entry> m_entries;
+  private final Map<String, String> m_resolvedValues;
+
+  ConfigSnapshot(Map<String, String> values) {
+    Map<String, Entry> entries = Maps.newHashMapWithExpectedSize(values.size());
+    for (Map.Entry<String, String> value : values.entrySet()) {
+      if (value.getKey() != null && value.getValue() != null) {
+        entries.put(value.getKey(), new Entry(value.getValue()));
+      }
+    }
+    m_entries = entries;
+    m_resolvedValues = Collections.unmodifiableMap(Maps.transformValues(entries, ENTRY_VALUE));
+  }
+
+  /**
+   * @return the entry of the key, or null if the key is not resolved in this snapshot
+   */
+  Entry getEntry(String key) {
+    return m_entries.get(key);
+  }
+
+  /**
+   * @return the unmodifiable view of the resolved values, the same instance for the lifetime of this snapshot
+   */
+  Map<String, String> getResolvedValues() {
+    return m_resolvedValues;
+  }
+
+  Map<String, String> getValues() {
+    Map<String, String> values = Maps.newHashMapWithExpectedSize(m_entries.size());
+    for (Map.Entry<String, Entry> entry : m_entries.entrySet()) {
+      values.put(entry.getKey(), entry.getValue().getValue());
+    }
+    return values;
+  }
+
+  static final class Entry {
+    private final String m_value;
+    //copied on write, so the parsed values are safely published by the volatile write
+    private volatile Object[] m_parsedValues;
+
+    Entry(String value) {
+      m_value = value;
+    }
+
+    String getValue() {
+      return m_value;
+    }
+
+    /**
+     * @return the value parsed to the type, or null if the parser returns null
+     */
+    @SuppressWarnings("unchecked")
+    <T> T getParsedValue(int type, Function<String, T> parser) {
+      Object[] parsedValues = m_parsedValues;
+      if (parsedValues != null && parsedValues[type] != null) {
+        return (T) parsedValues[type];
+      }
+
+      T result = parser.apply(m_value);
+      if (result != null) {
+        memoize(type, result);
+      }
+      return result;
+    }
+
+    /**
+     * The array values are memoized for the last delimiter used.
+     */
+    String[] getArrayValue(String delimiter) {
+      Object[] parsedValues = m_parsedValues;
+      if (parsedValues != null && parsedValues[ARRAY] != null) {
+        ArrayValue arrayValue = (ArrayValue) parsedValues[ARRAY];
+        if (arrayValue.m_delimiter.equals(delimiter)) {
+          return arrayValue.m_values;
+        }
+      }
+
+      String[] result = m_value.split(delimiter);
+      memoize(ARRAY, new ArrayValue(delimiter, result));
+      return result;
+    }
+
+    private void memoize(int type, Object value) {
+      Object[] parsedValues = m_parsedValues;
+      Object[] updated = parsedValues == null ? new Object[TYPE_COUNT] : parsedValues.clone();
+      updated[type] = value;
+      m_parsedValues = updated;
+    }
+  }
+
+  private static final class ArrayValue {
+    private final String m_delimiter;
+    private final String[] m_values;
+
+    ArrayValue(String delimiter, String[] values) {
+      m_delimiter = delimiter;
+      m_values = values;
+    }
+  }
+}
@@ -22,6 +22,7 @@ import com.ctrip.framework.apollo.model.ConfigChangeEvent;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.util.ExceptionUtil;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.RateLimiter;
 
 
@@ -69,12 +70,28 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
 
   @Override
   public String getProperty(String key, String defaultValue) {
+    //the keys of the config and resource properties are resolved in the snapshot
+    ConfigSnapshot.Entry entry = getConfigSnapshot().getEntry(key);
+    if (entry != null) {
+      return entry.getValue();
+    }
+
+    String value = resolveProperty(key, m_configProperties.get());
+
+    if (value == null && m_configProperties.get() == null && m_warnLogRateLimiter.tryAcquire()) {
+      logger.warn("Could not load config for namespace {} from Apollo, please check whether the configs are released in Apollo! Return default value now!", m_namespace);
+    }
+
+    return value == null ? defaultValue : value;
+  }
+
+  private String resolveProperty(String key, Properties configProperties) {
     // step 1: check system properties, i.e. -Dkey=value
     String value = System.getProperty(key);
 
     // step 2: check local cached properties file
-    if (value == null && m_configProperties.get() != null) {
-      value = m_configProperties.get().getProperty(key);
+    if (value == null && configProperties != null) {
+      value = configProperties.getProperty(key);
     }
 
     /**
@@ -91,11 +108,26 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
       value = m_resourceProperties.getProperty(key);
     }
 
-    if (value == null && m_configProperties.get() == null && m_warnLogRateLimiter.tryAcquire()) {
-      logger.warn("Could not load config for namespace {} from Apollo, please check whether the configs are released in Apollo! Return default value now!", m_namespace);
-    }
+    return value;
+  }
 
-    return value == null ? defaultValue : value;
+  /**
+   * Resolve the keys of the config and resource properties once per config version, so the reads are served from
+   * the snapshot. The system properties and environment variables are taken as they are at this point.
+   */
+  private Map<String, String> resolveProperties(Properties configProperties) {
+    Map<String, String> resolved = Maps.newHashMap();
+    if (m_resourceProperties != null) {
+      for (String key : stringPropertyNames(m_resourceProperties)) {
+        resolved.put(key, resolveProperty(key, configProperties));
+      }
+    }
+    if (configProperties != null) {
+      for (String key : stringPropertyNames(configProperties)) {
+        resolved.put(key, resolveProperty(key, configProperties));
+      }
+    }
+    return resolved;
   }
 
   @Override
@@ -128,7 +160,12 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
 
   @Override
   public synchronized void onRepositoryChange(String namespace, Properties newProperties) {
-    if (newProperties.equals(m_configProperties.get())) {
+    Properties previousProperties = m_configProperties.get();
+    //the diff also tells whether the content is changed, so the properties are not compared separately
+    List<ConfigChange> configChanges = calcPropertyChanges(m_namespace, previousProperties, newProperties);
+    if (configChanges.isEmpty() && previousProperties != null) {
+      //the source may change without content change, e.g. the local cache is confirmed by the remote
+      m_sourceType = m_configRepository.getSourceType();
       return;
     }
 
@@ -136,13 +173,15 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
     Properties newConfigProperties = propertiesFactory.getPropertiesInstance();
     newConfigProperties.putAll(newProperties);
 
-    Map<String, ConfigChange> actualChanges = updateAndCalcConfigChanges(newConfigProperties, sourceType);
+    Map<String, ConfigChange> actualChanges =
+        updateAndCalcConfigChanges(configChanges, newConfigProperties, sourceType);
 
     //check double checked result
     if (actualChanges.isEmpty()) {
       return;
     }
 
+    this.refreshPropertyHandles(actualChanges.keySet());
     this.fireConfigChange(new ConfigChangeEvent(m_namespace, actualChanges));
 
     Tracer.logEvent("Apollo.Client.ConfigChanges", m_namespace);
@@ -150,27 +189,24 @@ public class DefaultConfig extends AbstractConfig implements RepositoryChangeLis
 
   private void updateConfig(Properties newConfigProperties, ConfigSourceType sourceType) {
     m_configProperties.set(newConfigProperties);
+    updateConfigSnapshot(resolveProperties(newConfigProperties));
     m_sourceType = sourceType;
   }
 
-  private Map<String, ConfigChange> updateAndCalcConfigChanges(Properties newConfigProperties,
-      ConfigSourceType sourceType) {
-    List<ConfigChange> configChanges =
-        calcPropertyChanges(m_namespace, m_configProperties.get(), newConfigProperties);
-
+  private Map<String, ConfigChange> updateAndCalcConfigChanges(List<ConfigChange> configChanges,
+      Properties newConfigProperties, ConfigSourceType sourceType) {
     ImmutableMap.Builder<String, ConfigChange> actualChanges =
         new ImmutableMap.Builder<>();
 
     /** === Double check since DefaultConfig has multiple config sources ==== **/
 
-    //1. use getProperty to update configChanges's old value
+    //1. use getProperty to update configChanges's old value, a lookup of the snapshot unless the key is not resolved
     for (ConfigChange change : configChanges) {
       change.setOldValue(this.getProperty(change.getPropertyName(), change.getOldValue()));
     }
 
-    //2. update m_configProperties
+    //2. update m_configProperties and the snapshot
     updateConfig(newConfigProperties, sourceType);
-    clearConfigCache();
 
     //3. use getProperty to update configChange's new value and calc the final changes
     for (ConfigChange change : configChanges) {
@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.internals;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import com.ctrip.framework.apollo.Config;
 import com.ctrip.framework.apollo.ConfigFile;
@@ -18,6 +19,9 @@ public class DefaultConfigManager implements ConfigManager {
 
   private Map<String, Config> m_configs = Maps.newConcurrentMap();
   private Map<String, ConfigFile> m_configFiles = Maps.newConcurrentMap();
+  //the configs of different namespaces are created in parallel, only the same namespace is serialized
+  private final ConcurrentMap<String, Object> m_configLocks = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, Object> m_configFileLocks = Maps.newConcurrentMap();
 
   public DefaultConfigManager() {
     m_factoryManager = ApolloInjector.getInstance(ConfigFactoryManager.class);
@@ -28,7 +32,7 @@ public class DefaultConfigManager implements ConfigManager {
     Config config = m_configs.get(namespace);
 
     if (config == null) {
-      synchronized (this) {
+      synchronized (getLock(m_configLocks, namespace)) {
         config = m_configs.get(namespace);
 
         if (config == null) {
@@ -49,7 +53,7 @@ public class DefaultConfigManager implements ConfigManager {
     ConfigFile configFile = m_configFiles.get(namespaceFileName);
 
     if (configFile == null) {
-      synchronized (this) {
+      synchronized (getLock(m_configFileLocks, namespaceFileName)) {
         configFile = m_configFiles.get(namespaceFileName);
 
         if (configFile == null) {
@@ -63,4 +67,16 @@ public class DefaultConfigManager implements ConfigManager {
 
     return configFile;
   }
+
+  private Object getLock(ConcurrentMap<String, Object> locks, String name) {
+    Object lock = locks.get(name);
+    if (lock == null) {
+      Object newLock = new Object();
+      lock = locks.putIfAbsent(name, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+    return lock;
+  }
 }
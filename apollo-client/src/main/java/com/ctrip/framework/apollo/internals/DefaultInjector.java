@@ -12,6 +12,8 @@ import com.ctrip.framework.apollo.util.ConfigUtil;
 import com.ctrip.framework.apollo.util.factory.DefaultPropertiesFactory;
 import com.ctrip.framework.apollo.util.factory.PropertiesFactory;
 import com.ctrip.framework.apollo.util.http.HttpUtil;
+import com.ctrip.framework.apollo.util.loadbalancer.ConfigServiceLoadBalancer;
+import com.ctrip.framework.apollo.util.loadbalancer.ConfigServiceLoadBalancerProvider;
 
 import com.ctrip.framework.apollo.util.yaml.YamlParser;
 import com.google.inject.AbstractModule;
@@ -62,7 +64,11 @@ public class DefaultInjector implements Injector {
       bind(ConfigUtil.class).in(Singleton.class);
       bind(HttpUtil.class).in(Singleton.class);
       bind(ConfigServiceLocator.class).in(Singleton.class);
+      bind(ConfigServiceLoadBalancer.class).toProvider(ConfigServiceLoadBalancerProvider.class).in(Singleton.class);
       bind(RemoteConfigLongPollService.class).in(Singleton.class);
+      bind(RemoteConfigBatchService.class).in(Singleton.class);
+      bind(RemoteConfigRefreshScheduler.class).in(Singleton.class);
+      bind(ConfigPreloader.class).in(Singleton.class);
       bind(YamlParser.class).in(Singleton.class);
       bind(PropertiesFactory.class).to(DefaultPropertiesFactory.class).in(Singleton.class);
     }
@@ -0,0 +1,46 @@
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.Config;
+import com.ctrip.framework.apollo.PropertyHandle;
+import com.google.common.base.Function;
+
+/**
+ * The property handle registered in {@link AbstractConfig}, refreshed when its key changes.
+ */
+class DefaultPropertyHandle<T> implements PropertyHandle<T> {
+  private final Config m_config;
+  private final String m_key;
+  private final Function<String, T> m_function;
+  private final T m_defaultValue;
+  private volatile T m_value;
+
+  DefaultPropertyHandle(Config config, String key, Function<String, T> function, T defaultValue) {
+    m_config = config;
+    m_key = key;
+    m_function = function;
+    m_defaultValue = defaultValue;
+  }
+
+  @Override
+  public String getKey() {
+    return m_key;
+  }
+
+  @Override
+  public T get() {
+    return m_value;
+  }
+
+  /**
+   * Parse the current value of the key. Synchronized so that a refresh racing with the config change could not
+   * overwrite the newer value with the older one, as the value is read inside the lock.
+   */
+  synchronized void refresh() {
+    m_value = m_config.getProperty(m_key, m_function, m_defaultValue);
+  }
+
+  @Override
+  public String toString() {
+    return "PropertyHandle{key='" + m_key + "', value=" + m_value + "}";
+  }
+}
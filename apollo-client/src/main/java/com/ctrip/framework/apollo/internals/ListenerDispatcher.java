@@ -0,0 +1,160 @@
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.collect.MapMaker;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches the change events to the listeners on a bounded thread pool.
+ *
+ * <p>Each listener has its own queue drained by at most one thread at a time, so a listener receives the events in
+ * the order they are fired, and a slow listener holds back only its own events instead of occupying more threads.
+ * A listener with many events queued yields its thread to the others from time to time.</p>
+ *
+ * <p>Each notification transaction carries the time its event waited and the number of events still queued, and a
+ * listener whose backlog grows past each power of two from {@value #BACKLOG_LOG_THRESHOLD} is logged as the
+ * Apollo.ConfigChangeListener.Backlog event.</p>
+ */
+final class ListenerDispatcher {
+  private static final Logger logger = LoggerFactory.getLogger(ListenerDispatcher.class);
+  private static final int MAX_EVENTS_PER_RUN = 16;
+  private static final int BACKLOG_LOG_THRESHOLD = 64;
+
+  private final ThreadPoolExecutor m_executorService;
+  //the queues are dropped along with the listeners no longer referenced
+  private final ConcurrentMap<Object, ListenerQueue> m_queues = new MapMaker().weakKeys().makeMap();
+  private final AtomicInteger m_pendingEvents = new AtomicInteger();
+  private final AtomicLong m_maxQueueTimeInMillis = new AtomicLong();
+
+  ListenerDispatcher(String threadNamePrefix, int maxThreads) {
+    m_executorService = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), ApolloThreadFactory.create(threadNamePrefix, true));
+    m_executorService.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Notify the listener after the events dispatched to it before.
+   *
+   * @param listener        the listener, whose events are dispatched in order
+   * @param transactionType the type of the transaction logged for the notification
+   * @param notification    notifies the listener
+   */
+  void dispatch(Object listener, String transactionType, Runnable notification) {
+    ListenerQueue queue = m_queues.get(listener);
+    if (queue == null) {
+      ListenerQueue newQueue = new ListenerQueue(listener.getClass().getName());
+      queue = m_queues.putIfAbsent(listener, newQueue);
+      if (queue == null) {
+        queue = newQueue;
+      }
+    }
+    queue.offer(new Event(transactionType, notification));
+  }
+
+  /**
+   * @return the number of events dispatched but not yet delivered
+   */
+  int getPendingEvents() {
+    return m_pendingEvents.get();
+  }
+
+  /**
+   * @return the longest time an event waited in the queue before being delivered
+   */
+  long getMaxQueueTimeInMillis() {
+    return m_maxQueueTimeInMillis.get();
+  }
+
+  private static class Event {
+    private final String transactionType;
+    private final Runnable notification;
+    private final long dispatchedAt = System.currentTimeMillis();
+
+    Event(String transactionType, Runnable notification) {
+      this.transactionType = transactionType;
+      this.notification = notification;
+    }
+  }
+
+  private class ListenerQueue implements Runnable {
+    private final String m_listenerName;
+    private final Queue<Event> m_events = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger m_size = new AtomicInteger();
+    private final AtomicBoolean m_scheduled = new AtomicBoolean(false);
+
+    ListenerQueue(String listenerName) {
+      m_listenerName = listenerName;
+    }
+
+    void offer(Event event) {
+      m_events.offer(event);
+      m_pendingEvents.incrementAndGet();
+      int size = m_size.incrementAndGet();
+      if (size >= BACKLOG_LOG_THRESHOLD && Integer.bitCount(size) == 1) {
+        Tracer.logEvent("Apollo.ConfigChangeListener.Backlog", m_listenerName, Transaction.SUCCESS,
+            "pendingEvents=" + size);
+      }
+      schedule();
+    }
+
+    private void schedule() {
+      if (m_scheduled.compareAndSet(false, true)) {
+        m_executorService.execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        Event event;
+        int delivered = 0;
+        while (delivered < MAX_EVENTS_PER_RUN && (event = m_events.poll()) != null) {
+          m_size.decrementAndGet();
+          m_pendingEvents.decrementAndGet();
+          deliver(event);
+          delivered++;
+        }
+      } finally {
+        m_scheduled.set(false);
+      }
+      //the events offered after the last poll, or left for the next run
+      if (!m_events.isEmpty()) {
+        schedule();
+      }
+    }
+
+    private void deliver(Event event) {
+      long queueTime = System.currentTimeMillis() - event.dispatchedAt;
+      long maxQueueTime = m_maxQueueTimeInMillis.get();
+      while (queueTime > maxQueueTime && !m_maxQueueTimeInMillis.compareAndSet(maxQueueTime, queueTime)) {
+        maxQueueTime = m_maxQueueTimeInMillis.get();
+      }
+
+      Transaction transaction = Tracer.newTransaction(event.transactionType, m_listenerName);
+      transaction.addData("QueueTimeInMillis", queueTime);
+      transaction.addData("PendingEvents", m_pendingEvents.get());
+      try {
+        event.notification.run();
+        transaction.setStatus(Transaction.SUCCESS);
+      } catch (Throwable ex) {
+        transaction.setStatus(ex);
+        Tracer.logError(ex);
+        logger.error("Failed to invoke change listener {}", m_listenerName, ex);
+      } finally {
+        transaction.complete();
+      }
+    }
+  }
+}
@@ -11,12 +11,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.core.utils.ClassLoaderUtil;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
 import com.ctrip.framework.apollo.tracer.Tracer;
@@ -27,12 +32,22 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 
 /**
+ * Caches the config of the upstream in the local file, so the config could still be loaded when the upstream is not
+ * available.
+ *
+ * <p>When the binary local cache is enabled, the binary file is preferred when loading, and the properties file is
+ * still persisted next to it in the background and never deleted, so the binary local cache could be disabled again
+ * without losing the cache, and the tools reading the properties file keep working. The binary file is deleted once the
+ * properties file is persisted with the binary local cache disabled, so it is never preferred while stale.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 public class LocalFileConfigRepository extends AbstractConfigRepository
     implements RepositoryChangeListener {
   private static final Logger logger = LoggerFactory.getLogger(LocalFileConfigRepository.class);
   private static final String CONFIG_DIR = "/config-cache";
+  private static final ExecutorService s_executorService = Executors.newCachedThreadPool(
+      ApolloThreadFactory.create("LocalFileConfigRepository", true));
   private final String m_namespace;
   private File m_baseDir;
   private final ConfigUtil m_configUtil;
@@ -40,6 +55,10 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
   private volatile ConfigRepository m_upstream;
 
   private volatile ConfigSourceType m_sourceType = ConfigSourceType.LOCAL;
+  //when the local cache file was served first at startup, 0 if not served or the upstream is already loaded
+  private volatile long m_servingLocalCacheSince = 0;
+  private final AtomicBoolean m_syncFromUpstreamPending = new AtomicBoolean(false);
+  private final Object m_propertiesFileLock = new Object();
 
   /**
    * Constructor.
@@ -54,8 +73,15 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
     m_namespace = namespace;
     m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
     this.setLocalCacheDir(findLocalCacheDir(), false);
-    this.setUpstreamRepository(upstream);
-    this.trySync();
+    if (upstream != null && m_configUtil.isStaleFirstStartupEnabled() && tryLoadFromLocalCacheFileFirst()) {
+      //the upstream is loaded in the background once the config is initialized and listening to the changes
+      m_upstream = upstream;
+      upstream.addChangeListener(this);
+      m_syncFromUpstreamPending.set(true);
+    } else {
+      this.setUpstreamRepository(upstream);
+      this.trySync();
+    }
   }
 
   void setLocalCacheDir(File baseDir, boolean syncImmediately) {
@@ -112,11 +138,24 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
     return m_sourceType;
   }
 
+  @Override
+  public void addChangeListener(RepositoryChangeListener listener) {
+    super.addChangeListener(listener);
+    if (m_syncFromUpstreamPending.compareAndSet(true, false)) {
+      scheduleSyncFromUpstream();
+    }
+  }
+
   @Override
   public void onRepositoryChange(String namespace, Properties newProperties) {
     if (newProperties.equals(m_fileProperties)) {
+      if (stopServingLocalCacheFirst()) {
+        //nothing changed, but the listeners should know the config is loaded from upstream now
+        this.fireRepositoryChange(namespace, newProperties);
+      }
       return;
     }
+    stopServingLocalCacheFirst();
     Properties newFileProperties = propertiesFactory.getPropertiesInstance();
     newFileProperties.putAll(newProperties);
     updateFileProperties(newFileProperties, m_upstream.getSourceType());
@@ -155,6 +194,97 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
     }
   }
 
+  /**
+   * Load the local cache file if it is not older than the max staleness, so the config could be served before the
+   * upstream is loaded
+   */
+  private boolean tryLoadFromLocalCacheFileFirst() {
+    File file = findLocalCacheFile(m_baseDir, m_namespace);
+    if (!file.isFile()) {
+      return false;
+    }
+    long stalenessInMillis = System.currentTimeMillis() - file.lastModified();
+    if (stalenessInMillis > TimeUnit.SECONDS.toMillis(m_configUtil.getMaxStalenessInSeconds())) {
+      logger.info("Local cache file {} is {} ms old, exceeding the max staleness, will load from upstream first",
+          file.getAbsolutePath(), stalenessInMillis);
+      Tracer.logEvent("Apollo.Client.StaleFirstStartup.Expired", m_namespace);
+      return false;
+    }
+
+    try {
+      m_fileProperties = this.loadFromLocalCacheFile(m_baseDir, m_namespace);
+      m_sourceType = ConfigSourceType.LOCAL;
+      m_servingLocalCacheSince = System.currentTimeMillis();
+      Tracer.logEvent("Apollo.Client.StaleFirstStartup", m_namespace, Transaction.SUCCESS,
+          String.format("stalenessInMillis=%d", stalenessInMillis));
+      return true;
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      logger.warn("Load local cache file {} failed, will load from upstream first, reason: {}",
+          file.getAbsolutePath(), ExceptionUtil.getDetailMessage(ex));
+    }
+    return false;
+  }
+
+  private void scheduleSyncFromUpstream() {
+    s_executorService.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          onRepositoryChange(m_namespace, m_upstream.getConfig());
+        } catch (Throwable ex) {
+          //the upstream keeps refreshing itself and notifies the change when it succeeds
+          Tracer.logError(ex);
+          logger.warn("Sync config from upstream repository {} in background failed, will serve the local cache "
+              + "until the upstream is refreshed, reason: {}", m_upstream.getClass(), ExceptionUtil
+              .getDetailMessage(ex));
+        }
+      }
+    });
+  }
+
+  /**
+   * Called once the upstream is loaded, reports how long the local cache was served instead of the upstream
+   *
+   * @return true if the local cache was served until now
+   */
+  private boolean stopServingLocalCacheFirst() {
+    if (m_servingLocalCacheSince == 0) {
+      return false;
+    }
+    synchronized (this) {
+      if (m_servingLocalCacheSince == 0) {
+        return false;
+      }
+      long servedInMillis = System.currentTimeMillis() - m_servingLocalCacheSince;
+      m_servingLocalCacheSince = 0;
+      m_sourceType = m_upstream.getSourceType();
+      //the cache files are confirmed by the upstream even if nothing changed, so they are fresh for the next startup
+      touchLocalCacheFile(assembleLocalCacheFile(m_baseDir, m_namespace));
+      if (m_configUtil.isBinaryLocalCacheEnabled()) {
+        touchLocalCacheFile(assembleBinaryLocalCacheFile(m_baseDir, m_namespace));
+      }
+      logger.debug("Served local cache of namespace {} for {} ms before the upstream was loaded", m_namespace,
+          servedInMillis);
+      Tracer.logEvent("Apollo.Client.StaleFirstStartup.Served", m_namespace, Transaction.SUCCESS,
+          String.format("servedInMillis=%d", servedInMillis));
+      return true;
+    }
+  }
+
+  private void touchLocalCacheFile(File file) {
+    if (file.isFile() && !file.setLastModified(System.currentTimeMillis())) {
+      logger.debug("Unable to touch local cache file {}", file.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Whether the local cache file is still served while the upstream is being loaded in the background
+   */
+  boolean isServingLocalCacheFirst() {
+    return m_servingLocalCacheSince != 0;
+  }
+
   private boolean trySyncFromUpstream() {
     if (m_upstream == null) {
       return false;
@@ -183,6 +313,32 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
   private Properties loadFromLocalCacheFile(File baseDir, String namespace) throws IOException {
     Preconditions.checkNotNull(baseDir, "Basedir cannot be null");
 
+    if (!m_configUtil.isBinaryLocalCacheEnabled()) {
+      return loadFromPropertiesCacheFile(baseDir, namespace);
+    }
+
+    File binaryFile = assembleBinaryLocalCacheFile(baseDir, namespace);
+    if (binaryFile.isFile()) {
+      try {
+        //a mapped file could not be replaced on windows until it is garbage collected
+        BinaryLocalCacheFile cacheFile = BinaryLocalCacheFile.read(binaryFile, !m_configUtil.isOSWindows());
+        logger.debug("Loading local config file {} of release {} successfully!", binaryFile.getAbsolutePath(),
+            cacheFile.getReleaseKey());
+        return cacheFile.fill(propertiesFactory.getPropertiesInstance());
+      } catch (Throwable ex) {
+        Tracer.logError(ex);
+        logger.warn("Load local cache file {} failed, will try the properties file, reason: {}",
+            binaryFile.getAbsolutePath(), ExceptionUtil.getDetailMessage(ex));
+      }
+    }
+
+    //migrate the properties file persisted before the binary format is enabled, the properties file is kept
+    Properties properties = loadFromPropertiesCacheFile(baseDir, namespace);
+    writeBinaryLocalCacheFile(binaryFile, properties, null);
+    return properties;
+  }
+
+  private Properties loadFromPropertiesCacheFile(File baseDir, String namespace) throws IOException {
     File file = assembleLocalCacheFile(baseDir, namespace);
     Properties properties = null;
 
@@ -215,19 +371,73 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
     return properties;
   }
 
-  void persistLocalCacheFile(File baseDir, String namespace) {
+  /**
+   * Persist the binary file if the binary local cache is enabled, with the properties copy written in the background so
+   * the slow properties serialization stays off the config update path. Otherwise persist the properties file and
+   * delete the binary file, which would be stale once the binary local cache is enabled again.
+   */
+  void persistLocalCacheFile(final File baseDir, final String namespace) {
     if (baseDir == null) {
       return;
     }
-    File file = assembleLocalCacheFile(baseDir, namespace);
+    if (m_configUtil.isBinaryLocalCacheEnabled()) {
+      String releaseKey = m_upstream instanceof RemoteConfigRepository ?
+          ((RemoteConfigRepository) m_upstream).getReleaseKey() : null;
+      writeBinaryLocalCacheFile(assembleBinaryLocalCacheFile(baseDir, namespace), m_fileProperties, releaseKey);
+      s_executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          writePropertiesLocalCacheFile(assembleLocalCacheFile(baseDir, namespace));
+        }
+      });
+      return;
+    }
+    writePropertiesLocalCacheFile(assembleLocalCacheFile(baseDir, namespace));
+    File binaryFile = assembleBinaryLocalCacheFile(baseDir, namespace);
+    if (binaryFile.isFile() && !binaryFile.delete()) {
+      logger.warn("Unable to delete stale binary local cache file {}", binaryFile.getAbsolutePath());
+    }
+  }
 
-    OutputStream out = null;
+  /**
+   * Always writes the latest properties, serialized so the background copies never interleave
+   */
+  private void writePropertiesLocalCacheFile(File file) {
+    synchronized (m_propertiesFileLock) {
+      OutputStream out = null;
 
+      Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "persistLocalConfigFile");
+      transaction.addData("LocalConfigFile", file.getAbsolutePath());
+      try {
+        out = new FileOutputStream(file);
+        m_fileProperties.store(out, "Persisted by DefaultConfig");
+        transaction.setStatus(Transaction.SUCCESS);
+      } catch (IOException ex) {
+        ApolloConfigException exception =
+            new ApolloConfigException(
+                String.format("Persist local cache file %s failed", file.getAbsolutePath()), ex);
+        Tracer.logError(exception);
+        transaction.setStatus(exception);
+        logger.warn("Persist local cache file {} failed, reason: {}.", file.getAbsolutePath(),
+            ExceptionUtil.getDetailMessage(ex));
+      } finally {
+        if (out != null) {
+          try {
+            out.close();
+          } catch (IOException ex) {
+            //ignore
+          }
+        }
+        transaction.complete();
+      }
+    }
+  }
+
+  private void writeBinaryLocalCacheFile(File file, Properties properties, String releaseKey) {
     Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "persistLocalConfigFile");
     transaction.addData("LocalConfigFile", file.getAbsolutePath());
     try {
-      out = new FileOutputStream(file);
-      m_fileProperties.store(out, "Persisted by DefaultConfig");
+      BinaryLocalCacheFile.write(file, properties, releaseKey);
       transaction.setStatus(Transaction.SUCCESS);
     } catch (IOException ex) {
       ApolloConfigException exception =
@@ -238,13 +448,6 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
       logger.warn("Persist local cache file {} failed, reason: {}.", file.getAbsolutePath(),
           ExceptionUtil.getDetailMessage(ex));
     } finally {
-      if (out != null) {
-        try {
-          out.close();
-        } catch (IOException ex) {
-          //ignore
-        }
-      }
       transaction.complete();
     }
   }
@@ -274,9 +477,28 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
   }
 
   File assembleLocalCacheFile(File baseDir, String namespace) {
-    String fileName =
-        String.format("%s.properties", Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
-            .join(m_configUtil.getAppId(), m_configUtil.getAppTag(), m_configUtil.getCluster(), namespace));
-    return new File(baseDir, fileName);
+    return new File(baseDir, assembleLocalCacheFileName(namespace, "properties"));
+  }
+
+  File assembleBinaryLocalCacheFile(File baseDir, String namespace) {
+    return new File(baseDir, assembleLocalCacheFileName(namespace, "bin"));
+  }
+
+  /**
+   * @return the local cache file in use, the binary one if enabled and already persisted
+   */
+  private File findLocalCacheFile(File baseDir, String namespace) {
+    if (m_configUtil.isBinaryLocalCacheEnabled()) {
+      File binaryFile = assembleBinaryLocalCacheFile(baseDir, namespace);
+      if (binaryFile.isFile()) {
+        return binaryFile;
+      }
+    }
+    return assembleLocalCacheFile(baseDir, namespace);
+  }
+
+  private String assembleLocalCacheFileName(String namespace, String extension) {
+    return String.format("%s.%s", Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(m_configUtil.getAppId(), m_configUtil.getAppTag(), m_configUtil.getCluster(), namespace), extension);
   }
 }
@@ -0,0 +1,287 @@
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.Apollo;
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigQuery;
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.core.signature.Signature;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.core.utils.StringUtils;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.apollo.util.ExceptionUtil;
+import com.ctrip.framework.apollo.util.http.HttpRequest;
+import com.ctrip.framework.apollo.util.http.HttpResponse;
+import com.ctrip.framework.apollo.util.http.HttpUtil;
+import com.ctrip.framework.apollo.util.loadbalancer.ConfigServiceLoadBalancer;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import com.google.common.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the remote namespaces together with one request, enabled by {@link ConfigUtil#isBatchConfigQueryEnabled()}.
+ *
+ * <p>The namespaces are preloaded before their repositories are created at startup, and the repositories submitted
+ * share one periodic refresh instead of refreshing one by one. The config services respond only the changed
+ * namespaces, so the namespaces absent from the response are not modified.</p>
+ *
+ * <p>The config services not supporting the batch query are skipped afterwards, and the repositories fall back to
+ * load themselves if the batch query is not available.</p>
+ */
+public class RemoteConfigBatchService {
+  private static final Logger logger = LoggerFactory.getLogger(RemoteConfigBatchService.class);
+  private static final Joiner.MapJoiner MAP_JOINER = Joiner.on("&").withKeyValueSeparator("=");
+  private static final Escaper pathEscaper = UrlEscapers.urlPathSegmentEscaper();
+  private static final Escaper queryParamEscaper = UrlEscapers.urlFormParameterEscaper();
+  private static final Type RESPONSE_TYPE = new TypeToken<List<ApolloConfig>>() {
+  }.getType();
+
+  private final ConcurrentMap<String, RemoteConfigRepository> m_repositories;
+  private final ConcurrentMap<String, ApolloConfig> m_preloadedConfigs;
+  //the homepage urls of the config services not supporting the batch query
+  private final Set<String> m_batchQueryUnsupportedServices;
+  private final AtomicBoolean m_periodicRefreshStarted;
+  private final ScheduledExecutorService m_executorService;
+  private final ConfigUtil m_configUtil;
+  private final HttpUtil m_httpUtil;
+  private final ConfigServiceLocator m_serviceLocator;
+  private final ConfigServiceLoadBalancer m_loadBalancer;
+
+  /**
+   * Constructor.
+   */
+  public RemoteConfigBatchService() {
+    m_repositories = Maps.newConcurrentMap();
+    m_preloadedConfigs = Maps.newConcurrentMap();
+    m_batchQueryUnsupportedServices = Sets.newConcurrentHashSet();
+    m_periodicRefreshStarted = new AtomicBoolean(false);
+    m_executorService = Executors.newScheduledThreadPool(1,
+        ApolloThreadFactory.create("RemoteConfigBatchService", true));
+    m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
+    m_httpUtil = ApolloInjector.getInstance(HttpUtil.class);
+    m_serviceLocator = ApolloInjector.getInstance(ConfigServiceLocator.class);
+    m_loadBalancer = ApolloInjector.getInstance(ConfigServiceLoadBalancer.class);
+  }
+
+  /**
+   * Load the namespaces not loaded yet with one request, the configs loaded are taken by the repositories created
+   * afterwards. Nothing happens if the batch query is disabled or failed, so the repositories load themselves.
+   *
+   * @param namespaces the namespaces to load
+   */
+  public void preload(Collection<String> namespaces) {
+    //the configs are loaded in the background when the local cache is served first, so startup should not wait here
+    if (!m_configUtil.isBatchConfigQueryEnabled() || m_configUtil.isInLocalMode()
+        || m_configUtil.isStaleFirstStartupEnabled()) {
+      return;
+    }
+
+    List<ApolloConfigQuery> queries = Lists.newArrayList();
+    for (String namespace : namespaces) {
+      if (!m_repositories.containsKey(namespace) && !m_preloadedConfigs.containsKey(namespace)) {
+        queries.add(new ApolloConfigQuery(namespace, null));
+      }
+    }
+    if (queries.size() <= 1) {
+      //no benefit for a single namespace
+      return;
+    }
+
+    try {
+      for (ApolloConfig config : queryConfigs(queries)) {
+        m_preloadedConfigs.put(config.getNamespaceName(), config);
+      }
+    } catch (Throwable ex) {
+      logger.warn("Preload namespaces {} failed, reason: {}", namespaces, ExceptionUtil.getDetailMessage(ex));
+    }
+  }
+
+  /**
+   * @return the preloaded config of the namespace, or null if not preloaded
+   */
+  public ApolloConfig takePreloadedConfig(String namespace) {
+    return m_preloadedConfigs.remove(namespace);
+  }
+
+  /**
+   * Refresh the repository in the shared periodic refresh.
+   */
+  public void submit(String namespace, RemoteConfigRepository remoteConfigRepository) {
+    m_repositories.put(namespace, remoteConfigRepository);
+    if (!m_periodicRefreshStarted.get()) {
+      schedulePeriodicRefresh();
+    }
+  }
+
+  private void schedulePeriodicRefresh() {
+    if (!m_periodicRefreshStarted.compareAndSet(false, true)) {
+      //already started
+      return;
+    }
+    logger.debug("Schedule batch periodic refresh with interval: {} {}",
+        m_configUtil.getRefreshInterval(), m_configUtil.getRefreshIntervalTimeUnit());
+    m_executorService.scheduleAtFixedRate(
+        new Runnable() {
+          @Override
+          public void run() {
+            Tracer.logEvent("Apollo.ConfigService", "batchPeriodicRefresh");
+            refresh();
+            Tracer.logEvent("Apollo.Client.Version", Apollo.VERSION);
+          }
+        }, m_configUtil.getRefreshInterval(), m_configUtil.getRefreshInterval(),
+        m_configUtil.getRefreshIntervalTimeUnit());
+  }
+
+  void refresh() {
+    Map<String, RemoteConfigRepository> repositories = Maps.newHashMap(m_repositories);
+    if (repositories.isEmpty()) {
+      return;
+    }
+
+    if (!tryRefresh(repositories)) {
+      for (RemoteConfigRepository repository : repositories.values()) {
+        repository.trySync();
+      }
+    }
+  }
+
+  /**
+   * Refresh the repositories with one batch query.
+   *
+   * @param repositories the repositories keyed by namespace
+   * @return false if the batch query failed, the repositories are not refreshed then
+   */
+  boolean tryRefresh(Map<String, RemoteConfigRepository> repositories) {
+    List<ApolloConfigQuery> queries = Lists.newArrayListWithCapacity(repositories.size());
+    for (RemoteConfigRepository repository : repositories.values()) {
+      queries.add(repository.assembleConfigQuery());
+    }
+
+    List<ApolloConfig> configs;
+    try {
+      configs = queryConfigs(queries);
+    } catch (Throwable ex) {
+      logger.debug("Batch refresh failed, refresh the namespaces one by one, reason: {}",
+          ExceptionUtil.getDetailMessage(ex));
+      return false;
+    }
+
+    for (ApolloConfig config : configs) {
+      RemoteConfigRepository repository = repositories.get(config.getNamespaceName());
+      if (repository == null) {
+        continue;
+      }
+      try {
+        repository.onBatchLoaded(config);
+      } catch (Throwable ex) {
+        Tracer.logError(ex);
+        logger.warn("Refresh namespace {} failed, reason: {}", config.getNamespaceName(),
+            ExceptionUtil.getDetailMessage(ex));
+      }
+    }
+    return true;
+  }
+
+  List<ApolloConfig> queryConfigs(List<ApolloConfigQuery> queries) {
+    String appId = m_configUtil.getAppId();
+    String appTag = m_configUtil.getAppTag();
+    String cluster = m_configUtil.getCluster();
+    String dataCenter = m_configUtil.getDataCenter();
+    String secret = m_configUtil.getAccessKeySecret();
+
+    List<ServiceDTO> configServices = m_loadBalancer.select(m_serviceLocator.getConfigServices());
+
+    Throwable exception = null;
+    for (ServiceDTO configService : configServices) {
+      if (m_batchQueryUnsupportedServices.contains(configService.getHomepageUrl())) {
+        continue;
+      }
+
+      String url = assembleQueryConfigsUrl(configService.getHomepageUrl(), appId, appTag, cluster, dataCenter);
+      HttpRequest request = new HttpRequest(url);
+      if (!StringUtils.isBlank(secret)) {
+        Map<String, String> headers = Signature.buildHttpHeaders(url, appId, secret);
+        request.setHeaders(headers);
+      }
+
+      Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "queryConfigs");
+      transaction.addData("Url", url);
+      transaction.addData("Namespaces", queries.size());
+      try {
+        HttpResponse<List<ApolloConfig>> response = m_httpUtil.doPost(request, queries, RESPONSE_TYPE);
+        //not counted as latency, the batch query takes longer than the others
+        m_loadBalancer.onSuccess(configService, -1);
+        transaction.setStatus(Transaction.SUCCESS);
+        List<ApolloConfig> result = response.getBody();
+        return result == null ? Collections.<ApolloConfig>emptyList() : result;
+      } catch (ApolloConfigStatusCodeException ex) {
+        //the batch query is disabled or not implemented by the config service
+        if (ex.getStatusCode() == 404 || ex.getStatusCode() == 405) {
+          logger.info("Config service {} does not support batch query", configService.getHomepageUrl());
+          m_batchQueryUnsupportedServices.add(configService.getHomepageUrl());
+        } else {
+          m_loadBalancer.onFailure(configService);
+        }
+        transaction.setStatus(ex);
+        exception = ex;
+      } catch (Throwable ex) {
+        m_loadBalancer.onFailure(configService);
+        Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
+        transaction.setStatus(ex);
+        exception = ex;
+      } finally {
+        transaction.complete();
+      }
+    }
+
+    throw new ApolloConfigException(
+        String.format("Batch query configs failed - appId: %s, cluster: %s", appId, cluster), exception);
+  }
+
+  String assembleQueryConfigsUrl(String uri, String appId, String appTag, String cluster, String dataCenter) {
+    String path = String.format("configs/%s/%s", pathEscaper.escape(appId), pathEscaper.escape(cluster));
+    Map<String, String> queryParams = Maps.newLinkedHashMap();
+
+    if (!Strings.isNullOrEmpty(dataCenter)) {
+      queryParams.put("dataCenter", queryParamEscaper.escape(dataCenter));
+    }
+
+    String localIp = m_configUtil.getLocalIp();
+    if (!Strings.isNullOrEmpty(localIp)) {
+      queryParams.put("ip", queryParamEscaper.escape(localIp));
+    }
+
+    if (!Strings.isNullOrEmpty(appTag)) {
+      queryParams.put("appTag", queryParamEscaper.escape(appTag));
+    }
+
+    if (!queryParams.isEmpty()) {
+      path += "?" + MAP_JOINER.join(queryParams);
+    }
+    if (!uri.endsWith("/")) {
+      uri += "/";
+    }
+    return uri + path;
+  }
+}
@@ -12,13 +12,16 @@ import com.ctrip.framework.apollo.core.signature.Signature;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.ctrip.framework.apollo.util.ConfigUtil;
 import com.ctrip.framework.apollo.util.ExceptionUtil;
+import com.ctrip.framework.apollo.util.http.EventStreamListener;
 import com.ctrip.framework.apollo.util.http.HttpRequest;
 import com.ctrip.framework.apollo.util.http.HttpResponse;
 import com.ctrip.framework.apollo.util.http.HttpUtil;
+import com.ctrip.framework.apollo.util.loadbalancer.ConfigServiceLoadBalancer;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.HashMultimap;
@@ -26,6 +29,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
 import com.google.common.escape.Escaper;
 import com.google.common.net.UrlEscapers;
 import com.google.common.reflect.TypeToken;
@@ -35,6 +39,7 @@ import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -54,6 +59,9 @@ public class RemoteConfigLongPollService {
   private static final long INIT_NOTIFICATION_ID = ConfigConsts.NOTIFICATION_ID_PLACEHOLDER;
   //90 seconds, should be longer than server side's long polling timeout, which is now 60 seconds
   private static final int LONG_POLLING_READ_TIMEOUT = 90 * 1000;
+  private static final String NOTIFICATIONS_PATH = "notifications/v2";
+  private static final String NOTIFICATION_STREAM_PATH = "notifications/v2/stream";
+  private static final String NOTIFICATIONS_EVENT = "notifications";
   private final ExecutorService m_longPollingService;
   private final AtomicBoolean m_longPollingStopped;
   private SchedulePolicy m_longPollFailSchedulePolicyInSecond;
@@ -62,11 +70,15 @@ public class RemoteConfigLongPollService {
   private final Multimap<String, RemoteConfigRepository> m_longPollNamespaces;
   private final ConcurrentMap<String, Long> m_notifications;
   private final Map<String, ApolloNotificationMessages> m_remoteNotificationMessages;//namespaceName -> watchedKey -> notificationId
+  private final AtomicBoolean m_notificationStreamOutdated;
+  //the homepage urls of the config services not supporting the notification stream, only accessed by the long polling thread
+  private final Set<String> m_notificationStreamUnsupportedServices;
   private Type m_responseType;
   private static final Gson GSON = new Gson();
   private ConfigUtil m_configUtil;
   private HttpUtil m_httpUtil;
   private ConfigServiceLocator m_serviceLocator;
+  private ConfigServiceLoadBalancer m_loadBalancer;
 
   /**
    * Constructor.
@@ -81,17 +93,23 @@ public class RemoteConfigLongPollService {
         Multimaps.synchronizedSetMultimap(HashMultimap.<String, RemoteConfigRepository>create());
     m_notifications = Maps.newConcurrentMap();
     m_remoteNotificationMessages = Maps.newConcurrentMap();
+    m_notificationStreamOutdated = new AtomicBoolean(false);
+    m_notificationStreamUnsupportedServices = Sets.newHashSet();
     m_responseType = new TypeToken<List<ApolloConfigNotification>>() {
     }.getType();
     m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
     m_httpUtil = ApolloInjector.getInstance(HttpUtil.class);
     m_serviceLocator = ApolloInjector.getInstance(ConfigServiceLocator.class);
+    m_loadBalancer = ApolloInjector.getInstance(ConfigServiceLoadBalancer.class);
     m_longPollRateLimiter = RateLimiter.create(m_configUtil.getLongPollQPS());
   }
 
   public boolean submit(String namespace, RemoteConfigRepository remoteConfigRepository) {
     boolean added = m_longPollNamespaces.put(namespace, remoteConfigRepository);
-    m_notifications.putIfAbsent(namespace, INIT_NOTIFICATION_ID);
+    if (m_notifications.putIfAbsent(namespace, INIT_NOTIFICATION_ID) == null) {
+      //subscribe again with the new namespace
+      m_notificationStreamOutdated.set(true);
+    }
     if (!m_longPollStarted.get()) {
       startLongPolling();
     }
@@ -153,7 +171,33 @@ public class RemoteConfigLongPollService {
       try {
         if (lastServiceDto == null) {
           List<ServiceDTO> configServices = getConfigServices();
-          lastServiceDto = configServices.get(random.nextInt(configServices.size()));
+          lastServiceDto = m_loadBalancer.select(configServices).get(0);
+        }
+
+        if (isNotificationStreamSupported(lastServiceDto)) {
+          m_notificationStreamOutdated.set(false);
+          url = assembleNotificationStreamUrl(lastServiceDto.getHomepageUrl(), appId, appTag, cluster, dataCenter,
+              m_notifications);
+          transaction.addData("Url", url);
+          try {
+            streamNotifications(lastServiceDto, url, appId, secret);
+            m_loadBalancer.onSuccess(lastServiceDto, -1);
+
+            //the stream is closed by the server or outdated, subscribe again from any config service
+            lastServiceDto = null;
+            m_longPollFailSchedulePolicyInSecond.success();
+            transaction.addData("Transport", "stream");
+            transaction.setStatus(Transaction.SUCCESS);
+            continue;
+          } catch (ApolloConfigStatusCodeException ex) {
+            if (ex.getStatusCode() != 404 && ex.getStatusCode() != 405) {
+              throw ex;
+            }
+            m_notificationStreamUnsupportedServices.add(lastServiceDto.getHomepageUrl());
+            Tracer.logEvent("Apollo.ConfigService.NotificationStream.Unsupported", lastServiceDto.getHomepageUrl());
+            logger.info("Notification stream is not supported by {}, fall back to long polling",
+                lastServiceDto.getHomepageUrl());
+          }
         }
 
         url =
@@ -173,6 +217,8 @@ public class RemoteConfigLongPollService {
 
         final HttpResponse<List<ApolloConfigNotification>> response =
             m_httpUtil.doGet(request, m_responseType);
+        //the long polling holds the request, so its latency is not measured
+        m_loadBalancer.onSuccess(lastServiceDto, -1);
 
         logger.debug("Long polling response: {}, url: {}", response.getStatusCode(), url);
         if (response.getStatusCode() == 200 && response.getBody() != null) {
@@ -191,6 +237,9 @@ public class RemoteConfigLongPollService {
         transaction.addData("StatusCode", response.getStatusCode());
         transaction.setStatus(Transaction.SUCCESS);
       } catch (Throwable ex) {
+        if (lastServiceDto != null) {
+          m_loadBalancer.onFailure(lastServiceDto);
+        }
         lastServiceDto = null;
         Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
         transaction.setStatus(ex);
@@ -209,6 +258,44 @@ public class RemoteConfigLongPollService {
     }
   }
 
+  private boolean isNotificationStreamSupported(ServiceDTO serviceDto) {
+    return m_configUtil.isNotificationStreamEnabled()
+        && !m_notificationStreamUnsupportedServices.contains(serviceDto.getHomepageUrl());
+  }
+
+  /**
+   * Subscribe the notifications once and handle them as they come, until the stream is closed by the server or
+   * outdated by new namespaces. The new namespaces are subscribed on the next event, which is a heartbeat at the latest.
+   */
+  private void streamNotifications(final ServiceDTO serviceDto, String url, String appId, String secret) {
+    logger.debug("Streaming notifications from {}", url);
+
+    HttpRequest request = new HttpRequest(url);
+    //the server sends heartbeats when idle, so the read timeout is the same as long polling
+    request.setReadTimeout(LONG_POLLING_READ_TIMEOUT);
+    if (!StringUtils.isBlank(secret)) {
+      Map<String, String> headers = Signature.buildHttpHeaders(url, appId, secret);
+      request.setHeaders(headers);
+    }
+
+    m_httpUtil.doGetEventStream(request, new EventStreamListener() {
+      @Override
+      public boolean onEvent(String event, String data) {
+        if (NOTIFICATIONS_EVENT.equals(event)) {
+          List<ApolloConfigNotification> notifications = GSON.fromJson(data, m_responseType);
+          if (notifications != null && !notifications.isEmpty()) {
+            logger.debug("Notification stream event: {}, url: {}", notifications, serviceDto.getHomepageUrl());
+            Tracer.logEvent("Apollo.ConfigService.NotificationStream.Notified", notifications.toString());
+            updateNotifications(notifications);
+            updateRemoteNotifications(notifications);
+            RemoteConfigLongPollService.this.notify(serviceDto, notifications);
+          }
+        }
+        return !m_longPollingStopped.get() && !m_notificationStreamOutdated.get();
+      }
+    });
+  }
+
   private void notify(ServiceDTO lastServiceDto, List<ApolloConfigNotification> notifications) {
     if (notifications == null || notifications.isEmpty()) {
       return;
@@ -278,6 +365,17 @@ public class RemoteConfigLongPollService {
 
   String assembleLongPollRefreshUrl(String uri, String appId, String appTag, String cluster, String dataCenter,
                                     Map<String, Long> notificationsMap) {
+    return assembleNotificationsUrl(uri, NOTIFICATIONS_PATH, appId, appTag, cluster, dataCenter, notificationsMap);
+  }
+
+  String assembleNotificationStreamUrl(String uri, String appId, String appTag, String cluster, String dataCenter,
+                                       Map<String, Long> notificationsMap) {
+    return assembleNotificationsUrl(uri, NOTIFICATION_STREAM_PATH, appId, appTag, cluster, dataCenter,
+        notificationsMap);
+  }
+
+  private String assembleNotificationsUrl(String uri, String path, String appId, String appTag, String cluster,
+                                          String dataCenter, Map<String, Long> notificationsMap) {
     Map<String, String> queryParams = Maps.newHashMap();
     queryParams.put("appId", queryParamEscaper.escape(appId));
     if (!Strings.isNullOrEmpty(appTag)) {
@@ -300,7 +398,7 @@ public class RemoteConfigLongPollService {
       uri += "/";
     }
 
-    return uri + "notifications/v2?" + params;
+    return uri + path + "?" + params;
   }
 
   String assembleNotifications(Map<String, Long> notificationsMap) {
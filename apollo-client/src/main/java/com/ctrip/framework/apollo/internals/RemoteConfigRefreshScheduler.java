@@ -0,0 +1,233 @@
+package com.ctrip.framework.apollo.internals;
+
+import com.ctrip.framework.apollo.Apollo;
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.apollo.util.ExceptionUtil;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Refreshes the remote namespaces in coalesced ticks, enabled by {@link ConfigUtil#isCoalescedRefreshEnabled()}.
+ *
+ * <p>Instead of a periodic refresh and a sync task per namespace, the registered namespaces are all marked due by one
+ * periodic refresh, and a namespace notified by the long polling is marked due after a short coalescing window, so the
+ * notifications arriving close together are refreshed in one tick. A namespace due again before its refresh runs is
+ * refreshed only once. Each tick loads the due namespaces with one batch query if
+ * {@link ConfigUtil#isBatchConfigQueryEnabled()}, or syncs them one by one with at most
+ * {@link ConfigUtil#getCoalescedRefreshMaxConcurrency()} syncs running at the same time.</p>
+ *
+ * <p>The lag of a namespace, from being due to being refreshed, is logged as the Apollo.Client.RefreshLag event and
+ * exposed by {@link #getRefreshLagsInMillis()}.</p>
+ */
+public class RemoteConfigRefreshScheduler {
+  private static final Logger logger = LoggerFactory.getLogger(RemoteConfigRefreshScheduler.class);
+  private static final long NOTIFICATION_COALESCE_WINDOW_IN_MILLIS = 100;
+
+  private final ConcurrentMap<String, RemoteConfigRepository> m_repositories;
+  //the namespaces due to refresh, with the time they became due
+  private final ConcurrentMap<String, Long> m_dueNamespaces;
+  private final Set<String> m_refreshingNamespaces;
+  private final ConcurrentMap<String, Long> m_refreshLags;
+  private final AtomicBoolean m_periodicRefreshStarted;
+  private final AtomicBoolean m_tickScheduled;
+  private final ScheduledExecutorService m_tickExecutorService;
+  private final ExecutorService m_refreshExecutorService;
+  private final ConfigUtil m_configUtil;
+  private final RemoteConfigBatchService m_remoteConfigBatchService;
+
+  /**
+   * Constructor.
+   */
+  public RemoteConfigRefreshScheduler() {
+    m_repositories = Maps.newConcurrentMap();
+    m_dueNamespaces = Maps.newConcurrentMap();
+    m_refreshingNamespaces = Sets.newConcurrentHashSet();
+    m_refreshLags = Maps.newConcurrentMap();
+    m_periodicRefreshStarted = new AtomicBoolean(false);
+    m_tickScheduled = new AtomicBoolean(false);
+    m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
+    m_remoteConfigBatchService = ApolloInjector.getInstance(RemoteConfigBatchService.class);
+    m_tickExecutorService = Executors.newScheduledThreadPool(1,
+        ApolloThreadFactory.create("RemoteConfigRefreshScheduler", true));
+    int maxConcurrency = Math.max(1, m_configUtil.getCoalescedRefreshMaxConcurrency());
+    ThreadPoolExecutor refreshExecutorService = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+        60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        ApolloThreadFactory.create("RemoteConfigRefreshScheduler-refresh", true));
+    refreshExecutorService.allowCoreThreadTimeOut(true);
+    m_refreshExecutorService = refreshExecutorService;
+  }
+
+  /**
+   * Refresh the repository in the shared periodic refresh.
+   */
+  public void register(String namespace, RemoteConfigRepository remoteConfigRepository) {
+    m_repositories.put(namespace, remoteConfigRepository);
+    if (!m_periodicRefreshStarted.get()) {
+      schedulePeriodicRefresh();
+    }
+  }
+
+  /**
+   * Refresh the namespace in the next tick, which runs after a short coalescing window.
+   */
+  public void requestRefresh(String namespace) {
+    if (!m_repositories.containsKey(namespace)) {
+      return;
+    }
+    m_dueNamespaces.putIfAbsent(namespace, System.currentTimeMillis());
+    scheduleTick(NOTIFICATION_COALESCE_WINDOW_IN_MILLIS);
+  }
+
+  /**
+   * @return the lag of the last refresh of each namespace, from being due to being refreshed
+   */
+  public Map<String, Long> getRefreshLagsInMillis() {
+    return ImmutableMap.copyOf(m_refreshLags);
+  }
+
+  private void schedulePeriodicRefresh() {
+    if (!m_periodicRefreshStarted.compareAndSet(false, true)) {
+      //already started
+      return;
+    }
+    logger.debug("Schedule coalesced periodic refresh with interval: {} {}",
+        m_configUtil.getRefreshInterval(), m_configUtil.getRefreshIntervalTimeUnit());
+    m_tickExecutorService.scheduleAtFixedRate(
+        new Runnable() {
+          @Override
+          public void run() {
+            Tracer.logEvent("Apollo.ConfigService", "coalescedPeriodicRefresh");
+            long now = System.currentTimeMillis();
+            for (String namespace : m_repositories.keySet()) {
+              m_dueNamespaces.putIfAbsent(namespace, now);
+            }
+            tick();
+            Tracer.logEvent("Apollo.Client.Version", Apollo.VERSION);
+          }
+        }, m_configUtil.getRefreshInterval(), m_configUtil.getRefreshInterval(),
+        m_configUtil.getRefreshIntervalTimeUnit());
+  }
+
+  private void scheduleTick(long delayInMillis) {
+    if (!m_tickScheduled.compareAndSet(false, true)) {
+      //the scheduled tick will take the namespace
+      return;
+    }
+    m_tickExecutorService.schedule(new Runnable() {
+      @Override
+      public void run() {
+        tick();
+      }
+    }, delayInMillis, TimeUnit.MILLISECONDS);
+  }
+
+  void tick() {
+    m_tickScheduled.set(false);
+
+    //the namespaces being refreshed stay due, and are taken by the tick after their refresh completes
+    final Map<String, Long> dueTimes = Maps.newHashMap();
+    final Map<String, RemoteConfigRepository> repositories = Maps.newHashMap();
+    for (Map.Entry<String, Long> entry : m_dueNamespaces.entrySet()) {
+      String namespace = entry.getKey();
+      RemoteConfigRepository repository = m_repositories.get(namespace);
+      if (repository == null || !m_refreshingNamespaces.add(namespace)) {
+        continue;
+      }
+      m_dueNamespaces.remove(namespace, entry.getValue());
+      dueTimes.put(namespace, entry.getValue());
+      repositories.put(namespace, repository);
+    }
+    if (repositories.isEmpty()) {
+      return;
+    }
+
+    if (repositories.size() > 1 && m_configUtil.isBatchConfigQueryEnabled()) {
+      m_refreshExecutorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          refreshInBatch(repositories, dueTimes);
+        }
+      });
+      return;
+    }
+
+    for (final Map.Entry<String, RemoteConfigRepository> entry : repositories.entrySet()) {
+      m_refreshExecutorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          refresh(entry.getKey(), entry.getValue(), dueTimes.get(entry.getKey()));
+        }
+      });
+    }
+  }
+
+  private void refreshInBatch(Map<String, RemoteConfigRepository> repositories, Map<String, Long> dueTimes) {
+    Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "coalescedRefresh");
+    transaction.addData("Namespaces", repositories.size());
+    try {
+      if (m_remoteConfigBatchService.tryRefresh(repositories)) {
+        for (String namespace : repositories.keySet()) {
+          onRefreshed(namespace, dueTimes.get(namespace));
+        }
+        transaction.setStatus(Transaction.SUCCESS);
+        return;
+      }
+      transaction.setStatus("batch query failed");
+    } finally {
+      transaction.complete();
+    }
+
+    //fall back to sync one by one, still bounded by the refresh executor
+    for (final Map.Entry<String, RemoteConfigRepository> entry : repositories.entrySet()) {
+      final Long dueTime = dueTimes.get(entry.getKey());
+      m_refreshExecutorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          refresh(entry.getKey(), entry.getValue(), dueTime);
+        }
+      });
+    }
+  }
+
+  private void refresh(String namespace, RemoteConfigRepository repository, long dueTime) {
+    try {
+      logger.debug("refresh config for namespace: {}", namespace);
+      repository.trySync();
+    } catch (Throwable ex) {
+      //trySync does not throw, just in case
+      Tracer.logError(ex);
+      logger.warn("Refresh namespace {} failed, reason: {}", namespace, ExceptionUtil.getDetailMessage(ex));
+    } finally {
+      onRefreshed(namespace, dueTime);
+    }
+  }
+
+  private void onRefreshed(String namespace, long dueTime) {
+    long lag = System.currentTimeMillis() - dueTime;
+    m_refreshLags.put(namespace, lag);
+    Tracer.logEvent("Apollo.Client.RefreshLag", namespace, Transaction.SUCCESS, "lagInMillis=" + lag);
+    m_refreshingNamespaces.remove(namespace);
+
+    //notified again while being refreshed
+    if (m_dueNamespaces.containsKey(namespace)) {
+      scheduleTick(NOTIFICATION_COALESCE_WINDOW_IN_MILLIS);
+    }
+  }
+}
@@ -4,8 +4,11 @@ import com.ctrip.framework.apollo.Apollo;
 import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigQuery;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
 import com.ctrip.framework.apollo.core.schedule.ExponentialSchedulePolicy;
 import com.ctrip.framework.apollo.core.schedule.SchedulePolicy;
 import com.ctrip.framework.apollo.core.signature.Signature;
@@ -21,6 +24,7 @@ import com.ctrip.framework.apollo.util.ExceptionUtil;
 import com.ctrip.framework.apollo.util.http.HttpRequest;
 import com.ctrip.framework.apollo.util.http.HttpResponse;
 import com.ctrip.framework.apollo.util.http.HttpUtil;
+import com.ctrip.framework.apollo.util.loadbalancer.ConfigServiceLoadBalancer;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
@@ -29,9 +33,9 @@ import com.google.common.escape.Escaper;
 import com.google.common.net.UrlEscapers;
 import com.google.common.util.concurrent.RateLimiter;
 import com.google.gson.Gson;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -52,9 +56,12 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
   private static final Escaper queryParamEscaper = UrlEscapers.urlFormParameterEscaper();
 
   private final ConfigServiceLocator m_serviceLocator;
+  private final ConfigServiceLoadBalancer m_loadBalancer;
   private final HttpUtil m_httpUtil;
   private final ConfigUtil m_configUtil;
   private final RemoteConfigLongPollService remoteConfigLongPollService;
+  private final RemoteConfigBatchService m_remoteConfigBatchService;
+  private final RemoteConfigRefreshScheduler m_refreshScheduler;
   private volatile AtomicReference<ApolloConfig> m_configCache;
   private final String m_namespace;
   private final static ScheduledExecutorService m_executorService;
@@ -76,19 +83,39 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
    * @param namespace the namespace
    */
   public RemoteConfigRepository(String namespace) {
+    this(namespace, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param namespace        the namespace
+   * @param deferInitialSync whether to skip loading the config in the constructor, the config is then loaded by the
+   *                         first {@link #getConfig()}, the periodic refresh or the long polling notification
+   */
+  public RemoteConfigRepository(String namespace, boolean deferInitialSync) {
     m_namespace = namespace;
     m_configCache = new AtomicReference<>();
     m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
     m_httpUtil = ApolloInjector.getInstance(HttpUtil.class);
     m_serviceLocator = ApolloInjector.getInstance(ConfigServiceLocator.class);
+    m_loadBalancer = ApolloInjector.getInstance(ConfigServiceLoadBalancer.class);
     remoteConfigLongPollService = ApolloInjector.getInstance(RemoteConfigLongPollService.class);
+    m_remoteConfigBatchService = ApolloInjector.getInstance(RemoteConfigBatchService.class);
+    m_refreshScheduler = ApolloInjector.getInstance(RemoteConfigRefreshScheduler.class);
     m_longPollServiceDto = new AtomicReference<>();
     m_remoteMessages = new AtomicReference<>();
     m_loadConfigRateLimiter = RateLimiter.create(m_configUtil.getLoadConfigQPS());
     m_configNeedForceRefresh = new AtomicBoolean(true);
     m_loadConfigFailSchedulePolicy = new ExponentialSchedulePolicy(m_configUtil.getOnErrorRetryInterval(),
         m_configUtil.getOnErrorRetryInterval() * 8);
-    this.trySync();
+    ApolloConfig preloadedConfig = m_remoteConfigBatchService.takePreloadedConfig(m_namespace);
+    if (preloadedConfig != null) {
+      m_configCache.set(preloadedConfig);
+      m_configNeedForceRefresh.set(false);
+    } else if (!deferInitialSync) {
+      this.trySync();
+    }
     this.schedulePeriodicRefresh();
     this.scheduleLongPollingRefresh();
   }
@@ -112,6 +139,14 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
   }
 
   private void schedulePeriodicRefresh() {
+    if (m_configUtil.isCoalescedRefreshEnabled()) {
+      m_refreshScheduler.register(m_namespace, this);
+      return;
+    }
+    if (m_configUtil.isBatchConfigQueryEnabled()) {
+      m_remoteConfigBatchService.submit(m_namespace, this);
+      return;
+    }
     logger.debug("Schedule periodic refresh with interval: {} {}",
         m_configUtil.getRefreshInterval(), m_configUtil.getRefreshIntervalTimeUnit());
     m_executorService.scheduleAtFixedRate(
@@ -156,6 +191,40 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     }
   }
 
+  /**
+   * Apply the config loaded by the batch query of {@link RemoteConfigBatchService}
+   */
+  synchronized void onBatchLoaded(ApolloConfig current) {
+    //loaded from the config service, the same as a successful query in sync
+    m_configNeedForceRefresh.set(false);
+    m_loadConfigFailSchedulePolicy.success();
+
+    ApolloConfig previous = m_configCache.get();
+    if (previous != null && Objects.equals(previous.getReleaseKey(), current.getReleaseKey())) {
+      return;
+    }
+
+    logger.debug("Remote Config refreshed by batch query!");
+    m_configCache.set(current);
+    this.fireRepositoryChange(m_namespace, this.getConfig());
+    Tracer.logEvent(String.format("Apollo.Client.Configs.%s", current.getNamespaceName()), current.getReleaseKey());
+  }
+
+  /**
+   * @return the release key of the config loaded, null if not loaded yet
+   */
+  String getReleaseKey() {
+    ApolloConfig current = m_configCache.get();
+    return current == null ? null : current.getReleaseKey();
+  }
+
+  ApolloConfigQuery assembleConfigQuery() {
+    ApolloConfig previous = m_configCache.get();
+    ApolloConfigQuery query = new ApolloConfigQuery(m_namespace, previous == null ? null : previous.getReleaseKey());
+    query.setMessages(m_remoteMessages.get());
+    return query;
+  }
+
   private Properties transformApolloConfigToProperties(ApolloConfig apolloConfig) {
     Properties result = propertiesFactory.getPropertiesInstance();
     result.putAll(apolloConfig.getConfigurations());
@@ -184,14 +253,13 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     String url = null;
     retryLoopLabel:
     for (int i = 0; i < maxRetries; i++) {
-      List<ServiceDTO> randomConfigServices = Lists.newLinkedList(configServices);
-      Collections.shuffle(randomConfigServices);
+      List<ServiceDTO> selectedConfigServices = Lists.newLinkedList(m_loadBalancer.select(configServices));
       //Access the server which notifies the client first
       if (m_longPollServiceDto.get() != null) {
-        randomConfigServices.add(0, m_longPollServiceDto.getAndSet(null));
+        selectedConfigServices.add(0, m_longPollServiceDto.getAndSet(null));
       }
 
-      for (ServiceDTO configService : randomConfigServices) {
+      for (ServiceDTO configService : selectedConfigServices) {
         if (onErrorSleepTime > 0) {
           logger.warn(
               "Load config failed, will retry in {} {}. appId: {}, cluster: {}, namespaces: {}",
@@ -217,9 +285,11 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
 
         Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "queryConfig");
         transaction.addData("Url", url);
+        long start = System.currentTimeMillis();
         try {
 
           HttpResponse<ApolloConfig> response = m_httpUtil.doGet(request, ApolloConfig.class);
+          m_loadBalancer.onSuccess(configService, System.currentTimeMillis() - start);
           m_configNeedForceRefresh.set(false);
           m_loadConfigFailSchedulePolicy.success();
 
@@ -233,6 +303,12 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
 
           ApolloConfig result = response.getBody();
 
+          if (result != null && result.getConfigSyncType() == ConfigSyncType.INCREMENTAL_SYNC) {
+            result.setConfigurations(mergeConfigurationChanges(m_configCache.get(), result.getConfigurationChanges()));
+            result.setConfigSyncType(ConfigSyncType.FULL_SYNC);
+            result.setConfigurationChanges(null);
+          }
+
           logger.debug("Loaded config for {}: {}", m_namespace, result);
 
           return result;
@@ -251,9 +327,13 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
           transaction.setStatus(statusCodeException);
           exception = statusCodeException;
           if(ex.getStatusCode() == 404) {
+            //the config service responded, just the config is not released
+            m_loadBalancer.onSuccess(configService, System.currentTimeMillis() - start);
             break retryLoopLabel;
           }
+          m_loadBalancer.onFailure(configService);
         } catch (Throwable ex) {
+          m_loadBalancer.onFailure(configService);
           Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
           transaction.setStatus(ex);
           exception = ex;
@@ -273,6 +353,42 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     throw new ApolloConfigException(message, exception);
   }
 
+  /**
+   * Apply the changes returned in incremental sync mode to the configurations held in cache
+   */
+  private Map<String, String> mergeConfigurationChanges(ApolloConfig previousConfig,
+      List<ConfigurationChange> configurationChanges) {
+    if (previousConfig == null || previousConfig.getConfigurations() == null) {
+      //should not happen as the incremental sync is only requested with a previous release
+      throw new ApolloConfigException(String.format(
+          "Received incremental config changes without previous config for namespace %s", m_namespace));
+    }
+
+    Map<String, String> result = Maps.newLinkedHashMap(previousConfig.getConfigurations());
+    if (configurationChanges == null) {
+      return result;
+    }
+
+    for (ConfigurationChange change : configurationChanges) {
+      if (change.getConfigurationChangeType() == null) {
+        continue;
+      }
+      switch (change.getConfigurationChangeType()) {
+        case ADDED:
+        case MODIFIED:
+          result.put(change.getKey(), change.getNewValue());
+          break;
+        case DELETED:
+          result.remove(change.getKey());
+          break;
+        default:
+          //do nothing
+          break;
+      }
+    }
+    return result;
+  }
+
   String assembleQueryConfigUrl(String uri, String appId, String appTag, String cluster, String namespace,
                                 String dataCenter, ApolloNotificationMessages remoteMessages, ApolloConfig previousConfig) {
 
@@ -284,6 +400,9 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
 
     if (previousConfig != null) {
       queryParams.put("releaseKey", queryParamEscaper.escape(previousConfig.getReleaseKey()));
+      if (m_configUtil.isIncrementalSyncEnabled()) {
+        queryParams.put("incrementalSync", "true");
+      }
     }
 
     if (!Strings.isNullOrEmpty(dataCenter)) {
@@ -321,6 +440,11 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
   public void onLongPollNotified(ServiceDTO longPollNotifiedServiceDto, ApolloNotificationMessages remoteMessages) {
     m_longPollServiceDto.set(longPollNotifiedServiceDto);
     m_remoteMessages.set(remoteMessages);
+    if (m_configUtil.isCoalescedRefreshEnabled()) {
+      m_configNeedForceRefresh.set(true);
+      m_refreshScheduler.requestRefresh(m_namespace);
+      return;
+    }
     m_executorService.submit(new Runnable() {
       @Override
       public void run() {
@@ -94,8 +94,8 @@ public class SimpleConfig extends AbstractConfig implements RepositoryChangeList
         });
 
     updateConfig(newConfigProperties, m_configRepository.getSourceType());
-    clearConfigCache();
 
+    this.refreshPropertyHandles(changeMap.keySet());
     this.fireConfigChange(new ConfigChangeEvent(m_namespace, changeMap));
 
     Tracer.logEvent("Apollo.Client.ConfigChanges", m_namespace);
@@ -103,6 +103,11 @@ public class SimpleConfig extends AbstractConfig implements RepositoryChangeList
 
   private void updateConfig(Properties newConfigProperties, ConfigSourceType sourceType) {
     m_configProperties = newConfigProperties;
+    Map<String, String> values = Maps.newHashMap();
+    for (String key : newConfigProperties.stringPropertyNames()) {
+      values.put(key, newConfigProperties.getProperty(key));
+    }
+    updateConfigSnapshot(values);
     m_sourceType = sourceType;
   }
 }
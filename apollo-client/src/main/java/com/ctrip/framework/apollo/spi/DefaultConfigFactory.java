@@ -74,7 +74,8 @@ public class DefaultConfigFactory implements ConfigFactory {
   }
 
   RemoteConfigRepository createRemoteConfigRepository(String namespace) {
-    return new RemoteConfigRepository(namespace);
+    //the local file repository loads the remote config in the background when serving the local cache first
+    return new RemoteConfigRepository(namespace, m_configUtil.isStaleFirstStartupEnabled());
   }
 
   PropertiesCompatibleFileConfigRepository createPropertiesCompatibleFileConfigRepository(String namespace,
@@ -151,7 +151,7 @@ public class ApolloAnnotationProcessor extends ApolloProcessor implements BeanFa
     field.setAccessible(accessible);
 
     if (configUtil.isAutoUpdateInjectedSpringPropertiesEnabled()) {
-      Set<String> keys = placeholderHelper.extractPlaceholderKeys(placeholder);
+      Set<String> keys = extractPlaceholderKeys(field, ApolloJsonValue.class, placeholder);
       for (String key : keys) {
         SpringValue springValue = new SpringValue(key, placeholder, bean, beanName, field, true);
         springValueRegistry.register(this.configurableBeanFactory, key, springValue);
@@ -186,7 +186,7 @@ public class ApolloAnnotationProcessor extends ApolloProcessor implements BeanFa
     method.setAccessible(accessible);
 
     if (configUtil.isAutoUpdateInjectedSpringPropertiesEnabled()) {
-      Set<String> keys = placeholderHelper.extractPlaceholderKeys(placeHolder);
+      Set<String> keys = extractPlaceholderKeys(method, ApolloJsonValue.class, placeHolder);
       for (String key : keys) {
         SpringValue springValue = new SpringValue(key, apolloJsonValue.value(), bean, beanName,
             method, true);
@@ -0,0 +1,196 @@
+package com.ctrip.framework.apollo.spring.annotation;
+
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * The Apollo injection points recorded at compile time by
+ * {@link com.ctrip.framework.apollo.spring.annotation.processing.ApolloInjectionPointIndexProcessor}, so that the
+ * processors could skip the beans without any, instead of walking all their fields and methods.
+ *
+ * <p>Each line of the index is a class compiled with the annotation processor, optionally followed by one of its
+ * annotated members, separated by tabs:</p>
+ * <pre>
+ * com.some.Bean
+ * com.some.Bean  field  timeout  org.springframework.beans.factory.annotation.Value  some.timeout
+ * </pre>
+ * <p>The placeholder keys are recorded for @Value and @ApolloJsonValue only. A class is skipped only if it and all its
+ * super classes and interfaces are indexed without any member, except for the classes of jdk, the generated proxy
+ * classes, and the interfaces without any concrete method, which never have Apollo injection points processed. So the
+ * classes compiled without the annotation processor, including those of spring, spring boot and spring cloud, are
+ * always processed by reflection as before.</p>
+ */
+public class ApolloInjectionPointIndex {
+  public static final String INDEX_LOCATION = "META-INF/apollo/injection-points.index";
+  public static final String FIELD = "field";
+  public static final String METHOD = "method";
+
+  private static final Logger logger = LoggerFactory.getLogger(ApolloInjectionPointIndex.class);
+  private static final Splitter COLUMN_SPLITTER = Splitter.on('\t');
+  private static final String[] EXCLUDED_PACKAGES = {"java.", "javax."};
+
+  private final Set<String> indexedClasses = Sets.newHashSet();
+  private final Set<String> classesWithInjectionPoints = Sets.newHashSet();
+  private final Map<String, Set<String>> placeholderKeys = Maps.newHashMap();
+  private final Set<String> ambiguousMembers = Sets.newHashSet();
+  //weakly keyed, so the classes of the refreshed or closed contexts are not pinned
+  private final ConcurrentMap<Class<?>, Boolean> skippableClasses = new MapMaker().weakKeys().makeMap();
+
+  public ApolloInjectionPointIndex() {
+    this(ClassUtils.getDefaultClassLoader());
+  }
+
+  ApolloInjectionPointIndex(ClassLoader classLoader) {
+    if (classLoader == null) {
+      return;
+    }
+    try {
+      Enumeration<URL> resources = classLoader.getResources(INDEX_LOCATION);
+      while (resources.hasMoreElements()) {
+        load(resources.nextElement());
+      }
+    } catch (Throwable ex) {
+      // without the index, all the classes are processed by reflection
+      indexedClasses.clear();
+      Tracer.logError(ex);
+      logger.warn("Load Apollo injection point index failed, all beans will be processed by reflection", ex);
+    }
+  }
+
+  private void load(URL url) throws IOException {
+    InputStream in = url.openStream();
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(in, Charsets.UTF_8));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        addEntry(Lists.newArrayList(COLUMN_SPLITTER.split(line)));
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private void addEntry(List<String> columns) {
+    String className = columns.get(0);
+    indexedClasses.add(className);
+    if (columns.size() < 4) {
+      if (columns.size() > 1) {
+        // not a complete member, don't trust the class
+        classesWithInjectionPoints.add(className);
+      }
+      return;
+    }
+    classesWithInjectionPoints.add(className);
+
+    String member = memberKey(className, columns.get(1), columns.get(2), columns.get(3));
+    if (ambiguousMembers.contains(member)) {
+      return;
+    }
+    Set<String> keys = ImmutableSet.copyOf(columns.subList(4, columns.size()));
+    Set<String> existing = placeholderKeys.put(member, keys);
+    // overloaded methods with different placeholders
+    if (existing != null && !existing.equals(keys)) {
+      placeholderKeys.remove(member);
+      ambiguousMembers.add(member);
+    }
+  }
+
+  /**
+   * @return whether the index is sure that the class doesn't have any Apollo injection point
+   */
+  public boolean hasNoInjectionPoints(Class<?> clazz) {
+    if (indexedClasses.isEmpty()) {
+      return false;
+    }
+    Boolean skippable = skippableClasses.get(clazz);
+    if (skippable == null) {
+      skippable = hasNoInjectionPoints(clazz, Sets.<Class<?>>newHashSet());
+      skippableClasses.putIfAbsent(clazz, skippable);
+    }
+    return skippable;
+  }
+
+  private boolean hasNoInjectionPoints(Class<?> clazz, Set<Class<?>> visited) {
+    if (clazz == null || !visited.add(clazz) || isExcluded(clazz)) {
+      return true;
+    }
+    String className = clazz.getName();
+    if (!ClassUtils.isCglibProxyClassName(className) && !Proxy.isProxyClass(clazz)) {
+      if (classesWithInjectionPoints.contains(className)) {
+        return false;
+      }
+      // only the concrete methods of the interfaces are processed, e.g. the default methods
+      if (!indexedClasses.contains(className) && (!clazz.isInterface() || hasConcreteMethods(clazz))) {
+        return false;
+      }
+    }
+    for (Class<?> anInterface : clazz.getInterfaces()) {
+      if (!hasNoInjectionPoints(anInterface, visited)) {
+        return false;
+      }
+    }
+    return hasNoInjectionPoints(clazz.getSuperclass(), visited);
+  }
+
+  private boolean hasConcreteMethods(Class<?> anInterface) {
+    for (Method method : anInterface.getDeclaredMethods()) {
+      if (!Modifier.isAbstract(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isExcluded(Class<?> clazz) {
+    String className = clazz.getName();
+    for (String excludedPackage : EXCLUDED_PACKAGES) {
+      if (className.startsWith(excludedPackage)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the placeholder keys of the annotation on the member recorded at compile time, or null if not recorded
+   */
+  public Set<String> getPlaceholderKeys(Member member, Class<? extends Annotation> annotationType) {
+    if (placeholderKeys.isEmpty()) {
+      return null;
+    }
+    return placeholderKeys.get(memberKey(member.getDeclaringClass().getName(),
+        member instanceof Field ? FIELD : METHOD, member.getName(), annotationType.getName()));
+  }
+
+  private String memberKey(String className, String memberType, String memberName, String annotationType) {
+    return className + '#' + memberType + ':' + memberName + '@' + annotationType;
+  }
+}
@@ -1,9 +1,12 @@
 package com.ctrip.framework.apollo.spring.annotation;
 
+import com.ctrip.framework.apollo.spring.property.PlaceholderHelper;
+import com.ctrip.framework.apollo.spring.util.SpringInjector;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Set;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.core.Ordered;
@@ -15,16 +18,29 @@ import org.springframework.util.ReflectionUtils;
  */
 public abstract class ApolloProcessor implements BeanPostProcessor, PriorityOrdered {
 
+  private final ApolloInjectionPointIndex injectionPointIndex = SpringInjector
+      .getInstance(ApolloInjectionPointIndex.class);
+  private final PlaceholderHelper placeholderHelper = SpringInjector.getInstance(PlaceholderHelper.class);
+
   @Override
-  public Object postProcessBeforeInitialization(Object bean, String beanName)
+  public Object postProcessBeforeInitialization(final Object bean, final String beanName)
       throws BeansException {
     Class clazz = bean.getClass();
-    for (Field field : findAllField(clazz)) {
-      processField(bean, beanName, field);
-    }
-    for (Method method : findAllMethod(clazz)) {
-      processMethod(bean, beanName, method);
+    if (injectionPointIndex.hasNoInjectionPoints(clazz)) {
+      return bean;
     }
+    ReflectionUtils.doWithFields(clazz, new ReflectionUtils.FieldCallback() {
+      @Override
+      public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
+        processField(bean, beanName, field);
+      }
+    });
+    ReflectionUtils.doWithMethods(clazz, new ReflectionUtils.MethodCallback() {
+      @Override
+      public void doWith(Method method) throws IllegalArgumentException, IllegalAccessException {
+        processMethod(bean, beanName, method);
+      }
+    });
     return bean;
   }
 
@@ -50,25 +66,13 @@ public abstract class ApolloProcessor implements BeanPostProcessor, PriorityOrde
     return Ordered.LOWEST_PRECEDENCE;
   }
 
-  private List<Field> findAllField(Class clazz) {
-    final List<Field> res = new LinkedList<>();
-    ReflectionUtils.doWithFields(clazz, new ReflectionUtils.FieldCallback() {
-      @Override
-      public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
-        res.add(field);
-      }
-    });
-    return res;
-  }
-
-  private List<Method> findAllMethod(Class clazz) {
-    final List<Method> res = new LinkedList<>();
-    ReflectionUtils.doWithMethods(clazz, new ReflectionUtils.MethodCallback() {
-      @Override
-      public void doWith(Method method) throws IllegalArgumentException, IllegalAccessException {
-        res.add(method);
-      }
-    });
-    return res;
+  /**
+   * Extract the keys of the placeholder in the annotation on the member, recorded in the injection point index if
+   * compiled with the annotation processor.
+   */
+  protected Set<String> extractPlaceholderKeys(Member member, Class<? extends Annotation> annotationType,
+      String placeholder) {
+    Set<String> keys = injectionPointIndex.getPlaceholderKeys(member, annotationType);
+    return keys != null ? keys : placeholderHelper.extractPlaceholderKeys(placeholder);
   }
 }
@@ -1,7 +1,6 @@
 package com.ctrip.framework.apollo.spring.annotation;
 
 import com.ctrip.framework.apollo.build.ApolloInjector;
-import com.ctrip.framework.apollo.spring.property.PlaceholderHelper;
 import com.ctrip.framework.apollo.spring.property.SpringValue;
 import com.ctrip.framework.apollo.spring.property.SpringValueDefinition;
 import com.ctrip.framework.apollo.spring.property.SpringValueDefinitionProcessor;
@@ -38,7 +37,6 @@ public class SpringValueProcessor extends ApolloProcessor implements BeanFactory
   private static final Logger logger = LoggerFactory.getLogger(SpringValueProcessor.class);
 
   private final ConfigUtil configUtil;
-  private final PlaceholderHelper placeholderHelper;
   private final SpringValueRegistry springValueRegistry;
 
   private BeanFactory beanFactory;
@@ -46,7 +44,6 @@ public class SpringValueProcessor extends ApolloProcessor implements BeanFactory
 
   public SpringValueProcessor() {
     configUtil = ApolloInjector.getInstance(ConfigUtil.class);
-    placeholderHelper = SpringInjector.getInstance(PlaceholderHelper.class);
     springValueRegistry = SpringInjector.getInstance(SpringValueRegistry.class);
     beanName2SpringValueDefinitions = LinkedListMultimap.create();
   }
@@ -78,7 +75,7 @@ public class SpringValueProcessor extends ApolloProcessor implements BeanFactory
     if (value == null) {
       return;
     }
-    Set<String> keys = placeholderHelper.extractPlaceholderKeys(value.value());
+    Set<String> keys = extractPlaceholderKeys(field, Value.class, value.value());
 
     if (keys.isEmpty()) {
       return;
@@ -108,7 +105,7 @@ public class SpringValueProcessor extends ApolloProcessor implements BeanFactory
       return;
     }
 
-    Set<String> keys = placeholderHelper.extractPlaceholderKeys(value.value());
+    Set<String> keys = extractPlaceholderKeys(method, Value.class, value.value());
 
     if (keys.isEmpty()) {
       return;
@@ -0,0 +1,160 @@
+package com.ctrip.framework.apollo.spring.annotation.processing;
+
+import com.ctrip.framework.apollo.spring.annotation.ApolloInjectionPointIndex;
+import com.ctrip.framework.apollo.spring.property.PlaceholderKeyExtractor;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Records the Apollo injection points of the compiled classes into {@link ApolloInjectionPointIndex#INDEX_LOCATION},
+ * i.e. the fields and methods with @Value, @ApolloJsonValue, @ApolloConfig, @ApolloConfigChangeListener or the
+ * annotations meta-annotated with them, and the placeholder keys of @Value and @ApolloJsonValue.
+ *
+ * <p>It's optional and not registered as a service, enable it with {@code -processor} of javac, or the
+ * {@code annotationProcessors} of maven-compiler-plugin. The classes are matched by name, so it doesn't need spring at
+ * compile time.</p>
+ */
+@SupportedAnnotationTypes("*")
+public class ApolloInjectionPointIndexProcessor extends AbstractProcessor {
+  private static final String VALUE = "org.springframework.beans.factory.annotation.Value";
+  private static final String APOLLO_JSON_VALUE = "com.ctrip.framework.apollo.spring.annotation.ApolloJsonValue";
+  private static final Set<String> PLACEHOLDER_ANNOTATIONS = ImmutableSet.of(VALUE, APOLLO_JSON_VALUE);
+  private static final Set<String> INJECTION_ANNOTATIONS = ImmutableSet.of(VALUE, APOLLO_JSON_VALUE,
+      "com.ctrip.framework.apollo.spring.annotation.ApolloConfig",
+      "com.ctrip.framework.apollo.spring.annotation.ApolloConfigChangeListener");
+  private static final Joiner COLUMN_JOINER = Joiner.on('\t');
+
+  // class name -> injection points, in the order of compilation
+  private final Map<String, List<String>> injectionPoints = Maps.newLinkedHashMap();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      writeIndex();
+    } else {
+      for (Element element : roundEnv.getRootElements()) {
+        if (isType(element)) {
+          indexType((TypeElement) element);
+        }
+      }
+    }
+    // don't claim the annotations, other processors may need them
+    return false;
+  }
+
+  private void indexType(TypeElement type) {
+    String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+    List<String> points = Lists.newArrayList();
+    for (Element member : type.getEnclosedElements()) {
+      ElementKind kind = member.getKind();
+      if (kind == ElementKind.FIELD || kind == ElementKind.ENUM_CONSTANT) {
+        indexMember(className, ApolloInjectionPointIndex.FIELD, member, points);
+      } else if (kind == ElementKind.METHOD) {
+        indexMember(className, ApolloInjectionPointIndex.METHOD, member, points);
+      } else if (isType(member)) {
+        indexType((TypeElement) member);
+      }
+    }
+    injectionPoints.put(className, points);
+  }
+
+  private void indexMember(String className, String memberType, Element member, List<String> points) {
+    for (AnnotationMirror annotation : member.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+      String annotationName = annotationType.getQualifiedName().toString();
+      if (PLACEHOLDER_ANNOTATIONS.contains(annotationName)) {
+        List<String> columns = Lists.newArrayList(className, memberType, member.getSimpleName().toString(),
+            annotationName);
+        columns.addAll(PlaceholderKeyExtractor.extract(getValue(annotation)));
+        points.add(COLUMN_JOINER.join(columns));
+      } else if (isInjectionAnnotation(annotationType, Sets.<String>newHashSet())) {
+        points.add(COLUMN_JOINER.join(className, memberType, member.getSimpleName(), annotationName));
+      }
+    }
+  }
+
+  private boolean isInjectionAnnotation(TypeElement annotationType, Set<String> visited) {
+    String annotationName = annotationType.getQualifiedName().toString();
+    if (INJECTION_ANNOTATIONS.contains(annotationName)) {
+      return true;
+    }
+    if (!visited.add(annotationName)) {
+      return false;
+    }
+    for (AnnotationMirror metaAnnotation : annotationType.getAnnotationMirrors()) {
+      if (isInjectionAnnotation((TypeElement) metaAnnotation.getAnnotationType().asElement(), visited)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String getValue(AnnotationMirror annotation) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv.getElementUtils()
+        .getElementValuesWithDefaults(annotation).entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals("value")) {
+        Object value = entry.getValue().getValue();
+        return value instanceof String ? (String) value : null;
+      }
+    }
+    return null;
+  }
+
+  private boolean isType(Element element) {
+    return element.getKind().isClass() || element.getKind().isInterface();
+  }
+
+  private void writeIndex() {
+    if (injectionPoints.isEmpty()) {
+      return;
+    }
+    try {
+      FileObject index = processingEnv.getFiler()
+          .createResource(StandardLocation.CLASS_OUTPUT, "", ApolloInjectionPointIndex.INDEX_LOCATION);
+      Writer writer = new OutputStreamWriter(index.openOutputStream(), Charsets.UTF_8);
+      try {
+        for (Map.Entry<String, List<String>> entry : injectionPoints.entrySet()) {
+          writer.write(entry.getKey());
+          writer.write('\n');
+          for (String point : entry.getValue()) {
+            writer.write(point);
+            writer.write('\n');
+          }
+        }
+      } finally {
+        writer.close();
+      }
+    } catch (IOException ex) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+          "Write Apollo injection point index failed: " + ex.getMessage());
+    }
+  }
+}
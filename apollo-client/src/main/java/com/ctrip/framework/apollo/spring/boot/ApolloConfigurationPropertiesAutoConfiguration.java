@@ -0,0 +1,24 @@
+package com.ctrip.framework.apollo.spring.boot;
+
+import com.ctrip.framework.apollo.spring.config.PropertySourcesConstants;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationPropertiesBindingPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Auto update the @ConfigurationProperties beans, see {@link ApolloConfigurationPropertiesRebinder}.
+ */
+@Configuration
+@ConditionalOnClass(ConfigurationPropertiesBindingPostProcessor.class)
+@ConditionalOnProperty(PropertySourcesConstants.APOLLO_AUTO_UPDATE_CONFIGURATION_PROPERTIES)
+public class ApolloConfigurationPropertiesAutoConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean(ApolloConfigurationPropertiesRebinder.class)
+  public static ApolloConfigurationPropertiesRebinder apolloConfigurationPropertiesRebinder() {
+    return new ApolloConfigurationPropertiesRebinder();
+  }
+}
@@ -0,0 +1,220 @@
+package com.ctrip.framework.apollo.spring.boot;
+
+import com.ctrip.framework.apollo.ConfigChangeListener;
+import com.ctrip.framework.apollo.model.ConfigChangeEvent;
+import com.ctrip.framework.apollo.spring.config.ConfigPropertySource;
+import com.ctrip.framework.apollo.spring.config.ConfigPropertySourceFactory;
+import com.ctrip.framework.apollo.spring.property.AutoUpdateLockProvider;
+import com.ctrip.framework.apollo.spring.util.SpringInjector;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConfigurationPropertiesBindingPostProcessor;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Rebinds the singleton @ConfigurationProperties beans when the Apollo configs under their prefixes change.
+ *
+ * <p>The beans are indexed by their relaxed prefixes when created, so a change looks up the prefixes of each changed
+ * key and its parents, and rebinds only the beans under them, with the binding post processor of spring boot, which
+ * keeps its binder and validator across the binds. The beans are rebound in place, while holding their locks if they
+ * implement {@link AutoUpdateLockProvider}, the same as the @Value updates, so a property deleted keeps its last
+ * value, and the beans bound by constructor are not rebound.</p>
+ *
+ * <p>Enabled by {@code apollo.autoUpdateConfigurationProperties=true}.</p>
+ */
+public class ApolloConfigurationPropertiesRebinder implements BeanPostProcessor, SmartInitializingSingleton,
+    ApplicationContextAware, ConfigChangeListener {
+  private static final Logger logger = LoggerFactory.getLogger(ApolloConfigurationPropertiesRebinder.class);
+
+  private final ConfigPropertySourceFactory configPropertySourceFactory = SpringInjector
+      .getInstance(ConfigPropertySourceFactory.class);
+  // relaxed prefix -> the beans bound under it
+  private final ConcurrentMap<String, List<BindTarget>> bindTargets = Maps.newConcurrentMap();
+
+  private ConfigurableApplicationContext applicationContext;
+  private volatile BeanPostProcessor bindingPostProcessor;
+
+  @Override
+  public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+    ConfigurationProperties annotation = findConfigurationProperties(bean, beanName);
+    if (annotation == null) {
+      return bean;
+    }
+
+    String prefix = toRelaxedName(annotation.prefix());
+    List<BindTarget> targets = bindTargets.get(prefix);
+    if (targets == null) {
+      targets = new CopyOnWriteArrayList<>();
+      List<BindTarget> existing = bindTargets.putIfAbsent(prefix, targets);
+      if (existing != null) {
+        targets = existing;
+      }
+    }
+    targets.add(new BindTarget(bean, beanName, annotation.prefix()));
+    return bean;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+    return bean;
+  }
+
+  /**
+   * Find the annotation on the class or the factory method of the singleton bean, the same as spring boot
+   */
+  private ConfigurationProperties findConfigurationProperties(Object bean, String beanName) {
+    ConfigurableListableBeanFactory beanFactory = applicationContext.getBeanFactory();
+    if (!beanFactory.containsBeanDefinition(beanName)) {
+      return null;
+    }
+    BeanDefinition beanDefinition = beanFactory.getMergedBeanDefinition(beanName);
+    if (!beanDefinition.isSingleton()) {
+      return null;
+    }
+    ConfigurationProperties annotation = AnnotationUtils
+        .findAnnotation(ClassUtils.getUserClass(bean), ConfigurationProperties.class);
+    if (annotation != null || beanDefinition.getFactoryMethodName() == null) {
+      return annotation;
+    }
+
+    Class<?> factoryClass = beanDefinition.getFactoryBeanName() != null ? beanFactory
+        .getType(beanDefinition.getFactoryBeanName()) : ClassUtils
+        .resolveClassName(beanDefinition.getBeanClassName(), beanFactory.getBeanClassLoader());
+    if (factoryClass == null) {
+      return null;
+    }
+    for (Method method : ReflectionUtils.getUniqueDeclaredMethods(ClassUtils.getUserClass(factoryClass))) {
+      if (method.getName().equals(beanDefinition.getFactoryMethodName())) {
+        annotation = AnnotationUtils.findAnnotation(method, ConfigurationProperties.class);
+        if (annotation != null) {
+          return annotation;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    Map<String, ConfigurationPropertiesBindingPostProcessor> bindingPostProcessors = applicationContext
+        .getBeansOfType(ConfigurationPropertiesBindingPostProcessor.class, false, false);
+    if (bindingPostProcessors.isEmpty()) {
+      logger.warn("No ConfigurationPropertiesBindingPostProcessor found, @ConfigurationProperties beans won't be "
+          + "updated automatically");
+      return;
+    }
+    bindingPostProcessor = bindingPostProcessors.values().iterator().next();
+
+    for (ConfigPropertySource configPropertySource : configPropertySourceFactory.getAllConfigPropertySources()) {
+      configPropertySource.addChangeListener(this);
+    }
+  }
+
+  @Override
+  public void onChange(ConfigChangeEvent changeEvent) {
+    if (bindTargets.isEmpty() || bindingPostProcessor == null) {
+      return;
+    }
+    Set<BindTarget> targets = Sets.newLinkedHashSet();
+    for (String key : changeEvent.changedKeys()) {
+      // the key itself and its parents could be the prefixes, up to the empty prefix
+      String name = toRelaxedName(key);
+      while (true) {
+        List<BindTarget> prefixTargets = bindTargets.get(name);
+        if (prefixTargets != null) {
+          targets.addAll(prefixTargets);
+        }
+        if (name.isEmpty()) {
+          break;
+        }
+        int lastDot = name.lastIndexOf('.');
+        name = lastDot < 0 ? "" : name.substring(0, lastDot);
+      }
+    }
+
+    for (BindTarget target : targets) {
+      rebind(target);
+    }
+  }
+
+  private void rebind(BindTarget target) {
+    try {
+      Lock lock = target.bean instanceof AutoUpdateLockProvider ?
+          ((AutoUpdateLockProvider) target.bean).getAutoUpdateLock() : null;
+      if (lock == null) {
+        bindingPostProcessor.postProcessBeforeInitialization(target.bean, target.beanName);
+      } else {
+        lock.lock();
+        try {
+          bindingPostProcessor.postProcessBeforeInitialization(target.bean, target.beanName);
+        } finally {
+          lock.unlock();
+        }
+      }
+      logger.info("Auto update apollo changed @ConfigurationProperties successfully, bean: {}, prefix: {}",
+          target.beanName, target.prefix);
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      logger.error("Auto update apollo changed @ConfigurationProperties failed, bean: {}, prefix: {}",
+          target.beanName, target.prefix, ex);
+    }
+  }
+
+  /**
+   * The relaxed form of a property name, e.g. some-prefix.someKey[0], some_prefix.some-key[0] => someprefix.somekey
+   */
+  static String toRelaxedName(String name) {
+    StringBuilder relaxedName = new StringBuilder(name.length());
+    boolean inIndex = false;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c == '[') {
+        inIndex = true;
+      } else if (c == ']') {
+        inIndex = false;
+      } else if (!inIndex && c != '-' && c != '_') {
+        relaxedName.append(c);
+      }
+    }
+    return relaxedName.toString().toLowerCase(Locale.ROOT);
+  }
+
+  @Override
+  public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+    this.applicationContext = (ConfigurableApplicationContext) applicationContext;
+  }
+
+  private static class BindTarget {
+    private final Object bean;
+    private final String beanName;
+    private final String prefix;
+
+    BindTarget(Object bean, String beanName, String prefix) {
+      this.bean = bean;
+      this.beanName = beanName;
+      this.prefix = prefix;
+    }
+  }
+}
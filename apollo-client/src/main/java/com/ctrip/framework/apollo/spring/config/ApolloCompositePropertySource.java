@@ -0,0 +1,254 @@
+package com.ctrip.framework.apollo.spring.config;
+
+import com.ctrip.framework.apollo.ConfigChangeListener;
+import com.ctrip.framework.apollo.model.ConfigChangeEvent;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.core.env.CompositePropertySource;
+import org.springframework.core.env.PropertySource;
+
+/**
+ * Composite property source of the Apollo namespaces, backed by a merged index of the properties across the
+ * namespaces, so a lookup is a single map access instead of a walk through the namespaces in order.
+ *
+ * <p>The index records the config version of each namespace it is built from, and is only used while all of them are
+ * still current, so the lookups never see stale values, even before the change listeners are notified. On a change,
+ * only the keys changed between the versions are resolved again, and the property names are collected once per
+ * version. The property sources other than the versioned Apollo configs are looked up the same as
+ * {@link CompositePropertySource}.</p>
+ */
+public class ApolloCompositePropertySource extends CompositePropertySource {
+  private final ConfigChangeListener indexUpdater = new ConfigChangeListener() {
+    @Override
+    public void onChange(ConfigChangeEvent changeEvent) {
+      currentIndex();
+    }
+  };
+
+  // null if any of the property sources is not indexed
+  private volatile List<ConfigPropertySource> configPropertySources = Collections.emptyList();
+  private volatile PropertyIndex index;
+
+  public ApolloCompositePropertySource(String name) {
+    super(name);
+  }
+
+  @Override
+  public void addPropertySource(PropertySource<?> propertySource) {
+    super.addPropertySource(propertySource);
+    onPropertySourceAdded(propertySource);
+  }
+
+  @Override
+  public void addFirstPropertySource(PropertySource<?> propertySource) {
+    super.addFirstPropertySource(propertySource);
+    onPropertySourceAdded(propertySource);
+  }
+
+  private synchronized void onPropertySourceAdded(PropertySource<?> propertySource) {
+    List<ConfigPropertySource> sources = Lists.newArrayList();
+    for (PropertySource<?> source : getPropertySources()) {
+      if (!(source instanceof ConfigPropertySource)
+          || ((ConfigPropertySource) source).getResolvedProperties() == null) {
+        sources = null;
+        break;
+      }
+      sources.add((ConfigPropertySource) source);
+    }
+    configPropertySources = sources == null ? null : Collections.unmodifiableList(sources);
+    index = null;
+
+    if (sources != null) {
+      ((ConfigPropertySource) propertySource).addChangeListener(indexUpdater);
+    }
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    PropertyIndex index = currentIndex();
+    if (index != null) {
+      Object value = index.values.get(name);
+      if (value != null) {
+        return value;
+      }
+    }
+    // not a key of the configs, but the configs may still resolve it, e.g. from the system properties
+    return super.getProperty(name);
+  }
+
+  @Override
+  public boolean containsProperty(String name) {
+    PropertyIndex index = currentIndex();
+    if (index != null) {
+      return index.nameSet.contains(name);
+    }
+    return super.containsProperty(name);
+  }
+
+  /**
+   * @return the property names, shared by the callers until the configs change, so they must not be modified
+   */
+  @Override
+  public String[] getPropertyNames() {
+    PropertyIndex index = currentIndex();
+    if (index != null) {
+      return index.names;
+    }
+    return super.getPropertyNames();
+  }
+
+  /**
+   * @return the index of the current config versions, or null if the property sources are not indexed
+   */
+  PropertyIndex currentIndex() {
+    List<ConfigPropertySource> sources = configPropertySources;
+    if (sources == null) {
+      return null;
+    }
+    PropertyIndex current = index;
+    if (current != null && current.isCurrent(sources)) {
+      return current;
+    }
+    return updateIndex();
+  }
+
+  private synchronized PropertyIndex updateIndex() {
+    List<ConfigPropertySource> sources = configPropertySources;
+    if (sources == null) {
+      return null;
+    }
+    PropertyIndex base = index;
+    if (base != null && base.isCurrent(sources)) {
+      return base;
+    }
+    if (base == null) {
+      base = PropertyIndex.empty(sources.size());
+    }
+
+    // the configs may change while resolving the keys, then the keys are resolved again from the same base, until the
+    // versions before and after resolving them are the same
+    while (true) {
+      List<Map<String, String>> versions = versionsOf(sources);
+      PropertyIndex updated = base.update(sources, versions);
+      if (sameVersions(versions, versionsOf(sources))) {
+        index = updated;
+        return updated;
+      }
+    }
+  }
+
+  private static List<Map<String, String>> versionsOf(List<ConfigPropertySource> sources) {
+    List<Map<String, String>> versions = Lists.newArrayListWithCapacity(sources.size());
+    for (ConfigPropertySource source : sources) {
+      versions.add(source.getResolvedProperties());
+    }
+    return versions;
+  }
+
+  private static boolean sameVersions(List<Map<String, String>> versions, List<Map<String, String>> others) {
+    for (int i = 0; i < versions.size(); i++) {
+      if (versions.get(i) != others.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Immutable index of the properties resolved from some versions of the configs
+   */
+  static class PropertyIndex {
+    private final List<Map<String, String>> versions;
+    private final List<String[]> sourceNames;
+    private final Map<String, Object> values;
+    private final String[] names;
+    private final Set<String> nameSet;
+
+    private PropertyIndex(List<Map<String, String>> versions, List<String[]> sourceNames,
+        Map<String, Object> values, String[] names, Set<String> nameSet) {
+      this.versions = versions;
+      this.sourceNames = sourceNames;
+      this.values = values;
+      this.names = names;
+      this.nameSet = nameSet;
+    }
+
+    static PropertyIndex empty(int sourceCount) {
+      return new PropertyIndex(Collections.nCopies(sourceCount, Collections.<String, String>emptyMap()),
+          Collections.nCopies(sourceCount, new String[0]), Collections.<String, Object>emptyMap(), new String[0],
+          Collections.<String>emptySet());
+    }
+
+    boolean isCurrent(List<ConfigPropertySource> sources) {
+      for (int i = 0; i < versions.size(); i++) {
+        if (versions.get(i) != sources.get(i).getResolvedProperties()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Resolve the keys changed between the versions of this index and the given versions again, in the order of the
+     * property sources, and collect the property names of the changed sources
+     */
+    PropertyIndex update(List<ConfigPropertySource> sources, List<Map<String, String>> newVersions) {
+      Set<String> changedKeys = Sets.newHashSet();
+      List<String[]> newSourceNames = Lists.newArrayList(sourceNames);
+      for (int i = 0; i < sources.size(); i++) {
+        if (versions.get(i) != newVersions.get(i)) {
+          collectChangedKeys(versions.get(i), newVersions.get(i), changedKeys);
+          newSourceNames.set(i, sources.get(i).getPropertyNames());
+        }
+      }
+
+      Map<String, Object> newValues = Maps.newHashMapWithExpectedSize(values.size() + changedKeys.size());
+      newValues.putAll(values);
+      for (String key : changedKeys) {
+        Object value = resolve(sources, key);
+        if (value == null) {
+          newValues.remove(key);
+        } else {
+          newValues.put(key, value);
+        }
+      }
+
+      Set<String> newNameSet = Sets.newLinkedHashSet();
+      for (String[] names : newSourceNames) {
+        Collections.addAll(newNameSet, names);
+      }
+      return new PropertyIndex(newVersions, newSourceNames, newValues,
+          newNameSet.toArray(new String[newNameSet.size()]), ImmutableSet.copyOf(newNameSet));
+    }
+
+    private static void collectChangedKeys(Map<String, String> previous, Map<String, String> current,
+        Set<String> changedKeys) {
+      for (Map.Entry<String, String> entry : current.entrySet()) {
+        if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+          changedKeys.add(entry.getKey());
+        }
+      }
+      for (String key : previous.keySet()) {
+        if (!current.containsKey(key)) {
+          changedKeys.add(key);
+        }
+      }
+    }
+
+    private static Object resolve(List<ConfigPropertySource> sources, String key) {
+      for (ConfigPropertySource source : sources) {
+        Object value = source.getProperty(key);
+        if (value != null) {
+          return value;
+        }
+      }
+      return null;
+    }
+  }
+}
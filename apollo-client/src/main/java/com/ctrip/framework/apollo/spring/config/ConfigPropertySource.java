@@ -1,6 +1,8 @@
 package com.ctrip.framework.apollo.spring.config;
 
 import com.ctrip.framework.apollo.ConfigChangeListener;
+import com.ctrip.framework.apollo.internals.AbstractConfig;
+import java.util.Map;
 import java.util.Set;
 
 import org.springframework.core.env.EnumerablePropertySource;
@@ -36,4 +38,15 @@ public class ConfigPropertySource extends EnumerablePropertySource<Config> {
   public void addChangeListener(ConfigChangeListener listener) {
     this.source.addChangeListener(listener);
   }
+
+  /**
+   * @return the resolved values of the current config version, or null if the config is not versioned
+   * @see AbstractConfig#getResolvedProperties()
+   */
+  Map<String, String> getResolvedProperties() {
+    if (this.source instanceof AbstractConfig) {
+      return ((AbstractConfig) this.source).getResolvedProperties();
+    }
+    return null;
+  }
 }
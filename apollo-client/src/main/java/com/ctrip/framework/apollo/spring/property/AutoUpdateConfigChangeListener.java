@@ -3,16 +3,28 @@ package com.ctrip.framework.apollo.spring.property;
 import com.ctrip.framework.apollo.ConfigChangeListener;
 import com.ctrip.framework.apollo.model.ConfigChangeEvent;
 import com.ctrip.framework.apollo.spring.util.SpringInjector;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.gson.Gson;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Type;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.Lock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.TypeConverter;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanExpressionContext;
+import org.springframework.beans.factory.config.BeanExpressionResolver;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.Scope;
 import org.springframework.core.env.Environment;
 import org.springframework.util.CollectionUtils;
 
@@ -21,23 +33,25 @@ import org.springframework.util.CollectionUtils;
  */
 public class AutoUpdateConfigChangeListener implements ConfigChangeListener{
   private static final Logger logger = LoggerFactory.getLogger(AutoUpdateConfigChangeListener.class);
+  private static final String EXPRESSION_PREFIX = "#{";
 
   private final boolean typeConverterHasConvertIfNecessaryWithFieldParameter;
   private final Environment environment;
   private final ConfigurableBeanFactory beanFactory;
   private final TypeConverter typeConverter;
-  private final PlaceholderHelper placeholderHelper;
   private final SpringValueRegistry springValueRegistry;
   private final Gson gson;
+  private final Map<SpringValue, CompiledSpringValue> compiledSpringValues;
 
   public AutoUpdateConfigChangeListener(Environment environment, ConfigurableListableBeanFactory beanFactory){
     this.typeConverterHasConvertIfNecessaryWithFieldParameter = testTypeConverterHasConvertIfNecessaryWithFieldParameter();
     this.beanFactory = beanFactory;
     this.typeConverter = this.beanFactory.getTypeConverter();
     this.environment = environment;
-    this.placeholderHelper = SpringInjector.getInstance(PlaceholderHelper.class);
     this.springValueRegistry = SpringInjector.getInstance(SpringValueRegistry.class);
     this.gson = new Gson();
+    // cleaned along with the spring values of the collected beans
+    this.compiledSpringValues = Collections.synchronizedMap(new WeakHashMap<SpringValue, CompiledSpringValue>());
   }
 
   @Override
@@ -46,6 +60,8 @@ public class AutoUpdateConfigChangeListener implements ConfigChangeListener{
     if (CollectionUtils.isEmpty(keys)) {
       return;
     }
+    // bean -> the spring values to update, a value with several changed keys in its placeholder is updated once
+    Map<Object, Map<Member, SpringValue>> beanSpringValues = Maps.newIdentityHashMap();
     for (String key : keys) {
       // 1. check whether the changed key is relevant
       Collection<SpringValue> targetValues = springValueRegistry.get(beanFactory, key);
@@ -53,33 +69,99 @@ public class AutoUpdateConfigChangeListener implements ConfigChangeListener{
         continue;
       }
 
-      // 2. update the value
       for (SpringValue val : targetValues) {
-        updateSpringValue(val);
+        Object bean = val.getBean();
+        if (bean == null) {
+          continue;
+        }
+        Map<Member, SpringValue> springValues = beanSpringValues.get(bean);
+        if (springValues == null) {
+          springValues = Maps.newLinkedHashMap();
+          beanSpringValues.put(bean, springValues);
+        }
+        if (!springValues.containsKey(val.getMember())) {
+          springValues.put(val.getMember(), val);
+        }
       }
     }
+
+    // 2. update the values
+    for (Map.Entry<Object, Map<Member, SpringValue>> entry : beanSpringValues.entrySet()) {
+      updateSpringValues(entry.getKey(), entry.getValue().values());
+    }
   }
 
-  private void updateSpringValue(SpringValue springValue) {
+  /**
+   * Resolve all the values of the bean first, then write them in one batch, while holding the lock of the bean if it
+   * implements {@link AutoUpdateLockProvider}. A value failing to resolve is skipped as before, without holding back
+   * the others.
+   */
+  private void updateSpringValues(Object bean, Collection<SpringValue> springValues) {
+    List<ResolvedSpringValue> resolvedValues = Lists.newArrayListWithCapacity(springValues.size());
+    for (SpringValue springValue : springValues) {
+      try {
+        ResolvedSpringValue resolvedValue = resolvePropertyValue(springValue);
+        if (resolvedValue != null) {
+          resolvedValues.add(resolvedValue);
+        }
+      } catch (Throwable ex) {
+        logger.error("Auto update apollo changed value failed, {}", springValue.toString(), ex);
+      }
+    }
+    if (resolvedValues.isEmpty()) {
+      return;
+    }
+
+    Lock lock = bean instanceof AutoUpdateLockProvider ? ((AutoUpdateLockProvider) bean).getAutoUpdateLock() : null;
+    if (lock == null) {
+      writeSpringValues(bean, resolvedValues);
+      return;
+    }
+    lock.lock();
     try {
-      Object value = resolvePropertyValue(springValue);
-      springValue.update(value);
+      writeSpringValues(bean, resolvedValues);
+    } finally {
+      lock.unlock();
+    }
+  }
 
-      logger.info("Auto update apollo changed value successfully, new value: {}, {}", value,
-          springValue);
-    } catch (Throwable ex) {
-      logger.error("Auto update apollo changed value failed, {}", springValue.toString(), ex);
+  private void writeSpringValues(Object bean, List<ResolvedSpringValue> resolvedValues) {
+    for (ResolvedSpringValue resolvedValue : resolvedValues) {
+      try {
+        resolvedValue.springValue.update(bean, resolvedValue.value);
+        resolvedValue.compiled.lastPlaceholderValue = resolvedValue.placeholderValue;
+
+        logger.info("Auto update apollo changed value successfully, new value: {}, {}", resolvedValue.value,
+            resolvedValue.springValue);
+      } catch (Throwable ex) {
+        logger.error("Auto update apollo changed value failed, {}", resolvedValue.springValue.toString(), ex);
+      }
     }
   }
 
   /**
    * Logic transplanted from DefaultListableBeanFactory
    * @see org.springframework.beans.factory.support.DefaultListableBeanFactory#doResolveDependency(org.springframework.beans.factory.config.DependencyDescriptor, java.lang.String, java.util.Set, org.springframework.beans.TypeConverter)
+   *
+   * @return the resolved value, or null if the placeholder resolves to the same value as the last update
    */
-  private Object resolvePropertyValue(SpringValue springValue) {
+  private ResolvedSpringValue resolvePropertyValue(SpringValue springValue) {
+    CompiledSpringValue compiled = getCompiledSpringValue(springValue);
+
     // value will never be null, as @Value and @ApolloJsonValue will not allow that
-    Object value = placeholderHelper
-        .resolvePropertyValue(beanFactory, springValue.getBeanName(), springValue.getPlaceholder());
+    String placeholderValue = beanFactory.resolveEmbeddedValue(springValue.getPlaceholder());
+    if (placeholderValue != null && placeholderValue.equals(compiled.lastPlaceholderValue)
+        && !placeholderValue.contains(EXPRESSION_PREFIX)) {
+      logger.debug("Skip auto update apollo value not changed, {}", springValue);
+      return null;
+    }
+
+    // resolve expressions like "#{systemProperties.myProp}"
+    Object value = placeholderValue;
+    BeanExpressionResolver expressionResolver = beanFactory.getBeanExpressionResolver();
+    if (expressionResolver != null) {
+      value = expressionResolver.evaluate(placeholderValue, compiled.getExpressionContext());
+    }
 
     if (springValue.isJson()) {
       value = parseJsonValue((String)value, springValue.getGenericType());
@@ -98,7 +180,18 @@ public class AutoUpdateConfigChangeListener implements ConfigChangeListener{
       }
     }
 
-    return value;
+    return new ResolvedSpringValue(springValue, compiled, placeholderValue, value);
+  }
+
+  private CompiledSpringValue getCompiledSpringValue(SpringValue springValue) {
+    synchronized (compiledSpringValues) {
+      CompiledSpringValue compiled = compiledSpringValues.get(springValue);
+      if (compiled == null) {
+        compiled = new CompiledSpringValue(springValue.getBeanName());
+        compiledSpringValues.put(springValue, compiled);
+      }
+      return compiled;
+    }
   }
 
   private Object parseJsonValue(String json, Type targetType) {
@@ -119,4 +212,43 @@ public class AutoUpdateConfigChangeListener implements ConfigChangeListener{
 
     return true;
   }
+
+  /**
+   * The state of a spring value kept across the updates: the expression context of its bean, looked up once, and the
+   * placeholder value of the last update, to skip the updates not changing it.
+   */
+  private class CompiledSpringValue {
+    private final String beanName;
+    private volatile BeanExpressionContext expressionContext;
+    private volatile String lastPlaceholderValue;
+
+    CompiledSpringValue(String beanName) {
+      this.beanName = beanName;
+    }
+
+    BeanExpressionContext getExpressionContext() {
+      if (expressionContext == null) {
+        BeanDefinition bd = (beanFactory.containsBean(beanName) ? beanFactory
+            .getMergedBeanDefinition(beanName) : null);
+        Scope scope = (bd != null ? beanFactory.getRegisteredScope(bd.getScope()) : null);
+        expressionContext = new BeanExpressionContext(beanFactory, scope);
+      }
+      return expressionContext;
+    }
+  }
+
+  private static class ResolvedSpringValue {
+    private final SpringValue springValue;
+    private final CompiledSpringValue compiled;
+    private final String placeholderValue;
+    private final Object value;
+
+    ResolvedSpringValue(SpringValue springValue, CompiledSpringValue compiled, String placeholderValue,
+        Object value) {
+      this.springValue = springValue;
+      this.compiled = compiled;
+      this.placeholderValue = placeholderValue;
+      this.value = value;
+    }
+  }
 }
@@ -0,0 +1,20 @@
+package com.ctrip.framework.apollo.spring.property;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Implemented by the beans which need their auto updated values changed atomically.
+ *
+ * <p>Apollo holds the lock while writing all the changed @Value and @ApolloJsonValue values of the bean of a config
+ * change, and while rebinding the bean if it is a @ConfigurationProperties bean, so the readers holding the same lock
+ * never see some of the values updated but not the others. The lock is taken on the config change notification thread,
+ * so it must not be held for long by the readers, and never while waiting on Apollo. The beans not implementing this
+ * interface are updated without any lock.</p>
+ */
+public interface AutoUpdateLockProvider {
+
+  /**
+   * @return the lock to hold while updating the values of this bean, the same instance on each call
+   */
+  Lock getAutoUpdateLock();
+}
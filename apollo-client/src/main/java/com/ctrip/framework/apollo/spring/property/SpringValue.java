@@ -1,9 +1,14 @@
 package com.ctrip.framework.apollo.spring.property;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import org.springframework.core.MethodParameter;
 
@@ -14,6 +19,7 @@ import org.springframework.core.MethodParameter;
  * @since 2018/2/6.
  */
 public class SpringValue {
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
 
   private MethodParameter methodParameter;
   private Field field;
@@ -24,6 +30,8 @@ public class SpringValue {
   private Class<?> targetType;
   private Type genericType;
   private boolean isJson;
+  // (bean, value) -> void, built on first update
+  private volatile MethodHandle setter;
 
   public SpringValue(String key, String placeholder, Object bean, String beanName, Field field, boolean isJson) {
     this.beanRef = new WeakReference<>(bean);
@@ -53,31 +61,55 @@ public class SpringValue {
   }
 
   public void update(Object newVal) throws IllegalAccessException, InvocationTargetException {
-    if (isField()) {
-      injectField(newVal);
-    } else {
-      injectMethod(newVal);
-    }
-  }
-
-  private void injectField(Object newVal) throws IllegalAccessException {
     Object bean = beanRef.get();
     if (bean == null) {
       return;
     }
-    boolean accessible = field.isAccessible();
-    field.setAccessible(true);
-    field.set(bean, newVal);
-    field.setAccessible(accessible);
+    update(bean, newVal);
   }
 
-  private void injectMethod(Object newVal)
-      throws InvocationTargetException, IllegalAccessException {
-    Object bean = beanRef.get();
-    if (bean == null) {
-      return;
+  void update(Object bean, Object newVal) throws IllegalAccessException, InvocationTargetException {
+    MethodHandle setter = getSetter();
+    try {
+      setter.invokeExact(bean, newVal);
+    } catch (IllegalAccessException | InvocationTargetException | RuntimeException | Error ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new InvocationTargetException(ex);
+    }
+  }
+
+  private MethodHandle getSetter() throws IllegalAccessException {
+    if (setter == null) {
+      setter = createSetter();
     }
-    methodParameter.getMethod().invoke(bean, newVal);
+    return setter;
+  }
+
+  private MethodHandle createSetter() throws IllegalAccessException {
+    MethodHandle handle;
+    if (isField()) {
+      boolean accessible = field.isAccessible();
+      field.setAccessible(true);
+      try {
+        handle = MethodHandles.lookup().unreflectSetter(field);
+      } finally {
+        field.setAccessible(accessible);
+      }
+    } else {
+      Method method = methodParameter.getMethod();
+      boolean accessible = method.isAccessible();
+      method.setAccessible(true);
+      try {
+        handle = MethodHandles.lookup().unreflect(method);
+      } finally {
+        method.setAccessible(accessible);
+      }
+    }
+    if (Modifier.isStatic(getMember().getModifiers())) {
+      handle = MethodHandles.dropArguments(handle, 0, Object.class);
+    }
+    return handle.asType(SETTER_TYPE);
   }
 
   public String getBeanName() {
@@ -112,6 +144,14 @@ public class SpringValue {
     return isJson;
   }
 
+  Member getMember() {
+    return isField() ? field : methodParameter.getMethod();
+  }
+
+  Object getBean() {
+    return beanRef.get();
+  }
+
   boolean isTargetBeanValid() {
     return beanRef.get() != null;
   }
@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.spring.util;
 
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.spring.annotation.ApolloInjectionPointIndex;
 import com.ctrip.framework.apollo.spring.config.ConfigPropertySourceFactory;
 import com.ctrip.framework.apollo.spring.property.PlaceholderHelper;
 import com.ctrip.framework.apollo.spring.property.SpringValueRegistry;
@@ -48,6 +49,7 @@ public class SpringInjector {
       bind(PlaceholderHelper.class).in(Singleton.class);
       bind(ConfigPropertySourceFactory.class).in(Singleton.class);
       bind(SpringValueRegistry.class).in(Singleton.class);
+      bind(ApolloInjectionPointIndex.class).in(Singleton.class);
     }
   }
 }
@@ -40,6 +40,17 @@ public class ConfigUtil {
   private boolean autoUpdateInjectedSpringProperties = true;
   private final RateLimiter warnLogRateLimiter;
   private boolean propertiesOrdered = false;
+  private boolean incrementalSyncEnabled = false;
+  private boolean notificationStreamEnabled = false;
+  private boolean batchConfigQueryEnabled = false;
+  private boolean staleFirstStartupEnabled = false;
+  private long maxStalenessInSeconds = 24 * 60 * 60;//1 day
+  private boolean binaryLocalCacheEnabled = false;
+  private boolean coalescedRefreshEnabled = false;
+  private int coalescedRefreshMaxConcurrency = 4;
+  private String configServiceLoadBalancer = "random";
+  private int configServiceMaxConsecutiveFailures = 3;
+  private long configServiceEjectionTimeInMillis = 30000;
 
   public ConfigUtil() {
     warnLogRateLimiter = RateLimiter.create(0.017); // 1 warning log output per minute
@@ -52,6 +63,13 @@ public class ConfigUtil {
     initLongPollingInitialDelayInMills();
     initAutoUpdateInjectedSpringProperties();
     initPropertiesOrdered();
+    initIncrementalSyncEnabled();
+    initNotificationStreamEnabled();
+    initBatchConfigQueryEnabled();
+    initStaleFirstStartup();
+    initBinaryLocalCacheEnabled();
+    initCoalescedRefresh();
+    initConfigServiceLoadBalancer();
   }
 
   /**
@@ -343,4 +361,241 @@ public class ConfigUtil {
   public boolean isPropertiesOrderEnabled() {
     return propertiesOrdered;
   }
+
+  private void initIncrementalSyncEnabled() {
+    // 1. Get from System Property
+    String enableIncrementalSync = System.getProperty("apollo.incrementalSync.enabled");
+    if (Strings.isNullOrEmpty(enableIncrementalSync)) {
+      // 2. Get from app.properties
+      enableIncrementalSync = Foundation.app().getProperty("apollo.incrementalSync.enabled", null);
+    }
+    if (!Strings.isNullOrEmpty(enableIncrementalSync)) {
+      incrementalSyncEnabled = Boolean.parseBoolean(enableIncrementalSync.trim());
+    }
+  }
+
+  /**
+   * Whether to ask the config service for the changes against the local release instead of the full
+   * configurations when a namespace is refreshed
+   */
+  public boolean isIncrementalSyncEnabled() {
+    return incrementalSyncEnabled;
+  }
+
+  private void initNotificationStreamEnabled() {
+    // 1. Get from System Property
+    String enableNotificationStream = System.getProperty("apollo.notificationStream.enabled");
+    if (Strings.isNullOrEmpty(enableNotificationStream)) {
+      // 2. Get from app.properties
+      enableNotificationStream = Foundation.app().getProperty("apollo.notificationStream.enabled", null);
+    }
+    if (!Strings.isNullOrEmpty(enableNotificationStream)) {
+      notificationStreamEnabled = Boolean.parseBoolean(enableNotificationStream.trim());
+    }
+  }
+
+  /**
+   * Whether to subscribe the notifications once over a streaming connection instead of long polling, the long polling
+   * is still used for the config services not supporting it
+   */
+  public boolean isNotificationStreamEnabled() {
+    return notificationStreamEnabled;
+  }
+
+  private void initBatchConfigQueryEnabled() {
+    // 1. Get from System Property
+    String enableBatchConfigQuery = System.getProperty("apollo.batchConfigQuery.enabled");
+    if (Strings.isNullOrEmpty(enableBatchConfigQuery)) {
+      // 2. Get from app.properties
+      enableBatchConfigQuery = Foundation.app().getProperty("apollo.batchConfigQuery.enabled", null);
+    }
+    if (!Strings.isNullOrEmpty(enableBatchConfigQuery)) {
+      batchConfigQueryEnabled = Boolean.parseBoolean(enableBatchConfigQuery.trim());
+    }
+  }
+
+  /**
+   * Whether to load the namespaces together in one request at startup and in the periodic refresh, the namespaces
+   * are still loaded one by one from the config services not supporting it
+   */
+  public boolean isBatchConfigQueryEnabled() {
+    return batchConfigQueryEnabled;
+  }
+
+  private void initStaleFirstStartup() {
+    // 1. Get from System Property
+    String enableStaleFirstStartup = System.getProperty("apollo.staleFirstStartup.enabled");
+    if (Strings.isNullOrEmpty(enableStaleFirstStartup)) {
+      // 2. Get from app.properties
+      enableStaleFirstStartup = Foundation.app().getProperty("apollo.staleFirstStartup.enabled", null);
+    }
+    if (!Strings.isNullOrEmpty(enableStaleFirstStartup)) {
+      staleFirstStartupEnabled = Boolean.parseBoolean(enableStaleFirstStartup.trim());
+    }
+
+    String customizedMaxStaleness = System.getProperty("apollo.staleFirstStartup.maxStalenessInSeconds");
+    if (Strings.isNullOrEmpty(customizedMaxStaleness)) {
+      customizedMaxStaleness = Foundation.app().getProperty("apollo.staleFirstStartup.maxStalenessInSeconds", null);
+    }
+    if (!Strings.isNullOrEmpty(customizedMaxStaleness)) {
+      try {
+        maxStalenessInSeconds = Long.parseLong(customizedMaxStaleness.trim());
+      } catch (Throwable ex) {
+        logger.error("Config for apollo.staleFirstStartup.maxStalenessInSeconds is invalid: {}",
+            customizedMaxStaleness);
+      }
+    }
+  }
+
+  /**
+   * Whether to initialize the configs from the local cache files at startup and load them from the config service
+   * in the background, instead of waiting for the config service first
+   */
+  public boolean isStaleFirstStartupEnabled() {
+    return staleFirstStartupEnabled;
+  }
+
+  /**
+   * The max age of a local cache file served at startup when {@link #isStaleFirstStartupEnabled()}, the age is counted
+   * from the last time the file was written or confirmed by the config service
+   */
+  public long getMaxStalenessInSeconds() {
+    return maxStalenessInSeconds;
+  }
+
+  private void initBinaryLocalCacheEnabled() {
+    // 1. Get from System Property
+    String enableBinaryLocalCache = System.getProperty("apollo.binaryLocalCache.enabled");
+    if (Strings.isNullOrEmpty(enableBinaryLocalCache)) {
+      // 2. Get from app.properties
+      enableBinaryLocalCache = Foundation.app().getProperty("apollo.binaryLocalCache.enabled", null);
+    }
+    if (!Strings.isNullOrEmpty(enableBinaryLocalCache)) {
+      binaryLocalCacheEnabled = Boolean.parseBoolean(enableBinaryLocalCache.trim());
+    }
+  }
+
+  /**
+   * Whether to persist the local cache files in the checksummed binary format as well as the properties format, the
+   * binary files are preferred when loading, and the existing properties files are migrated when loaded but kept
+   */
+  public boolean isBinaryLocalCacheEnabled() {
+    return binaryLocalCacheEnabled;
+  }
+
+  private void initCoalescedRefresh() {
+    // 1. Get from System Property
+    String enableCoalescedRefresh = System.getProperty("apollo.coalescedRefresh.enabled");
+    if (Strings.isNullOrEmpty(enableCoalescedRefresh)) {
+      // 2. Get from app.properties
+      enableCoalescedRefresh = Foundation.app().getProperty("apollo.coalescedRefresh.enabled", null);
+    }
+    if (!Strings.isNullOrEmpty(enableCoalescedRefresh)) {
+      coalescedRefreshEnabled = Boolean.parseBoolean(enableCoalescedRefresh.trim());
+    }
+
+    String customizedMaxConcurrency = System.getProperty("apollo.coalescedRefresh.maxConcurrency");
+    if (Strings.isNullOrEmpty(customizedMaxConcurrency)) {
+      customizedMaxConcurrency = Foundation.app().getProperty("apollo.coalescedRefresh.maxConcurrency", null);
+    }
+    if (!Strings.isNullOrEmpty(customizedMaxConcurrency)) {
+      try {
+        int maxConcurrency = Integer.parseInt(customizedMaxConcurrency.trim());
+        if (maxConcurrency > 0) {
+          coalescedRefreshMaxConcurrency = maxConcurrency;
+        } else {
+          logger.error("Config for apollo.coalescedRefresh.maxConcurrency should be positive: {}",
+              customizedMaxConcurrency);
+        }
+      } catch (Throwable ex) {
+        logger.error("Config for apollo.coalescedRefresh.maxConcurrency is invalid: {}", customizedMaxConcurrency);
+      }
+    }
+  }
+
+  /**
+   * Whether to refresh the remote namespaces together in coalesced ticks, instead of each namespace refreshing on its
+   * own schedule
+   */
+  public boolean isCoalescedRefreshEnabled() {
+    return coalescedRefreshEnabled;
+  }
+
+  /**
+   * The max number of namespaces synced at the same time by the coalesced refresh
+   */
+  public int getCoalescedRefreshMaxConcurrency() {
+    return coalescedRefreshMaxConcurrency;
+  }
+
+  private void initConfigServiceLoadBalancer() {
+    // 1. Get from System Property
+    String customizedLoadBalancer = System.getProperty("apollo.configService.loadBalancer");
+    if (Strings.isNullOrEmpty(customizedLoadBalancer)) {
+      // 2. Get from app.properties
+      customizedLoadBalancer = Foundation.app().getProperty("apollo.configService.loadBalancer", null);
+    }
+    if (!Strings.isNullOrEmpty(customizedLoadBalancer)) {
+      configServiceLoadBalancer = customizedLoadBalancer.trim();
+    }
+
+    String customizedMaxConsecutiveFailures = System.getProperty("apollo.configService.maxConsecutiveFailures");
+    if (Strings.isNullOrEmpty(customizedMaxConsecutiveFailures)) {
+      customizedMaxConsecutiveFailures = Foundation.app()
+          .getProperty("apollo.configService.maxConsecutiveFailures", null);
+    }
+    if (!Strings.isNullOrEmpty(customizedMaxConsecutiveFailures)) {
+      try {
+        int maxConsecutiveFailures = Integer.parseInt(customizedMaxConsecutiveFailures.trim());
+        if (maxConsecutiveFailures > 0) {
+          configServiceMaxConsecutiveFailures = maxConsecutiveFailures;
+        } else {
+          logger.error("Config for apollo.configService.maxConsecutiveFailures should be positive: {}",
+              customizedMaxConsecutiveFailures);
+        }
+      } catch (Throwable ex) {
+        logger.error("Config for apollo.configService.maxConsecutiveFailures is invalid: {}",
+            customizedMaxConsecutiveFailures);
+      }
+    }
+
+    String customizedEjectionTime = System.getProperty("apollo.configService.ejectionTimeInMillis");
+    if (Strings.isNullOrEmpty(customizedEjectionTime)) {
+      customizedEjectionTime = Foundation.app().getProperty("apollo.configService.ejectionTimeInMillis", null);
+    }
+    if (!Strings.isNullOrEmpty(customizedEjectionTime)) {
+      try {
+        long ejectionTime = Long.parseLong(customizedEjectionTime.trim());
+        if (ejectionTime > 0) {
+          configServiceEjectionTimeInMillis = ejectionTime;
+        } else {
+          logger.error("Config for apollo.configService.ejectionTimeInMillis should be positive: {}",
+              customizedEjectionTime);
+        }
+      } catch (Throwable ex) {
+        logger.error("Config for apollo.configService.ejectionTimeInMillis is invalid: {}", customizedEjectionTime);
+      }
+    }
+  }
+
+  /**
+   * The name of the load balancer selecting the config service to access, e.g. random or adaptive
+   */
+  public String getConfigServiceLoadBalancer() {
+    return configServiceLoadBalancer;
+  }
+
+  /**
+   * The number of consecutive failures after which a config service is ejected by the adaptive load balancer
+   */
+  public int getConfigServiceMaxConsecutiveFailures() {
+    return configServiceMaxConsecutiveFailures;
+  }
+
+  /**
+   * The time a config service is ejected for by the adaptive load balancer, doubled on each consecutive ejection
+   */
+  public long getConfigServiceEjectionTimeInMillis() {
+    return configServiceEjectionTimeInMillis;
+  }
 }
@@ -0,0 +1,132 @@
+package com.ctrip.framework.apollo.util.http;
+
+import com.ctrip.framework.apollo.core.spi.Ordered;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
+import com.google.common.base.Function;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The {@link HttpTransport} based on {@link HttpURLConnection}, without any extra dependency.
+ *
+ * <p>The connections are pooled by the keep-alive cache of the JDK, which keeps at most {@code http.maxConnections}
+ * (5 by default) idle connections per server. A connection is only returned to the cache after its response is read
+ * to the end, so the responses are always drained, even when the body is not used. The response is requested with
+ * gzip encoding and parsed while being read, without copying it to a string first.</p>
+ */
+public class DefaultHttpTransport implements HttpTransport {
+  private static final String JSON_CONTENT_TYPE = "application/json;charset=UTF-8";
+  private static final String GZIP_ENCODING = "gzip";
+
+  @Override
+  public <T> HttpResponse<T> execute(HttpRequest httpRequest, String method, String body,
+      Function<Reader, T> responseReader) {
+    int statusCode;
+    try {
+      HttpURLConnection conn = openConnection(httpRequest, method);
+      conn.setRequestProperty("Accept-Encoding", GZIP_ENCODING);
+
+      if (body != null) {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", JSON_CONTENT_TYPE);
+        conn.setFixedLengthStreamingMode(content.length);
+        OutputStream os = conn.getOutputStream();
+        try {
+          os.write(content);
+        } finally {
+          os.close();
+        }
+      } else {
+        conn.connect();
+      }
+
+      statusCode = conn.getResponseCode();
+
+      if (statusCode == 200) {
+        InputStream in = conn.getInputStream();
+        try {
+          InputStream decoded = GZIP_ENCODING.equalsIgnoreCase(conn.getContentEncoding()) ?
+              new GZIPInputStream(in) : in;
+          return new HttpResponse<>(statusCode,
+              responseReader.apply(new InputStreamReader(decoded, StandardCharsets.UTF_8)));
+        } finally {
+          drainAndClose(in);
+        }
+      }
+
+      /**
+       * according to https://docs.oracle.com/javase/7/docs/technotes/guides/net/http-keepalive.html,
+       * we should clean up the connection by reading the response body so that the connection
+       * could be reused.
+       */
+      drainAndClose(statusCode < 400 ? conn.getInputStream() : conn.getErrorStream());
+
+      if (statusCode == 304) {
+        return new HttpResponse<>(statusCode, null);
+      }
+    } catch (ApolloConfigStatusCodeException ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new ApolloConfigException(String.format("Could not complete %s operation", method.toLowerCase()), ex);
+    }
+
+    throw new ApolloConfigStatusCodeException(statusCode,
+        String.format("%s%s operation failed for %s", method.charAt(0), method.substring(1).toLowerCase(),
+            httpRequest.getUrl()));
+  }
+
+  /**
+   * Read the rest of the raw response, e.g. the gzip trailer left by the parser, then close it
+   */
+  private void drainAndClose(InputStream in) {
+    if (in == null) {
+      return;
+    }
+    try {
+      byte[] buffer = new byte[512];
+      while (in.read(buffer) >= 0) {
+        //discard
+      }
+    } catch (IOException ex) {
+      //ignore
+    } finally {
+      try {
+        in.close();
+      } catch (IOException ex) {
+        //ignore
+      }
+    }
+  }
+
+  static HttpURLConnection openConnection(HttpRequest httpRequest, String method) throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL(httpRequest.getUrl()).openConnection();
+
+    conn.setRequestMethod(method);
+
+    Map<String, String> headers = httpRequest.getHeaders();
+    if (headers != null && headers.size() > 0) {
+      for (Map.Entry<String, String> entry : headers.entrySet()) {
+        conn.setRequestProperty(entry.getKey(), entry.getValue());
+      }
+    }
+
+    conn.setConnectTimeout(httpRequest.getConnectTimeout());
+    conn.setReadTimeout(httpRequest.getReadTimeout());
+    return conn;
+  }
+
+  @Override
+  public int getOrder() {
+    return Ordered.LOWEST_PRECEDENCE;
+  }
+}
@@ -0,0 +1,14 @@
+package com.ctrip.framework.apollo.util.http;
+
+/**
+ * Listener of the events of a server-sent events stream, see {@link HttpUtil#doGetEventStream}
+ */
+public interface EventStreamListener {
+
+  /**
+   * @param event the event name, or null if not specified
+   * @param data  the event data, multiple data lines are joined with line feeds
+   * @return whether to keep reading the stream
+   */
+  boolean onEvent(String event, String data);
+}
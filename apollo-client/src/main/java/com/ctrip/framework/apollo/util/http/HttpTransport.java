@@ -0,0 +1,29 @@
+package com.ctrip.framework.apollo.util.http;
+
+import com.ctrip.framework.apollo.core.spi.Ordered;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
+import com.google.common.base.Function;
+import java.io.Reader;
+
+/**
+ * The transport of the http requests sent by {@link HttpUtil}, loaded from /META-INF/services. The one with the
+ * highest priority is used, so another http client could be plugged in by declaring an implementation with an order
+ * smaller than {@link DefaultHttpTransport}.
+ */
+public interface HttpTransport extends Ordered {
+
+  /**
+   * Execute the http request.
+   *
+   * @param httpRequest    the request, with the timeouts resolved
+   * @param method         the http method
+   * @param body           the json request body, null if there is no body
+   * @param responseReader reads the response body of status code 200, the reader is closed by the transport
+   * @return the response, the body is null for status code 304
+   * @throws ApolloConfigStatusCodeException if the response code is neither 200 nor 304
+   * @throws ApolloConfigException           if any other error happened
+   */
+  <T> HttpResponse<T> execute(HttpRequest httpRequest, String method, String body,
+      Function<Reader, T> responseReader);
+}
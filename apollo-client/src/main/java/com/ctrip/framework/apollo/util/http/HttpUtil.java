@@ -4,30 +4,32 @@ import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
 import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.foundation.internals.ServiceBootstrap;
 import com.google.common.base.Function;
-import com.google.common.io.CharStreams;
 import com.google.gson.Gson;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
  */
 public class HttpUtil {
   private ConfigUtil m_configUtil;
+  private final HttpTransport m_httpTransport;
   private static final Gson GSON = new Gson();
+  private static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream";
 
   /**
    * Constructor.
    */
   public HttpUtil() {
     m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
+    m_httpTransport = ServiceBootstrap.loadPrimary(HttpTransport.class);
   }
 
   /**
@@ -39,14 +41,7 @@ public class HttpUtil {
    * @throws ApolloConfigException if any error happened or response code is neither 200 nor 304
    */
   public <T> HttpResponse<T> doGet(HttpRequest httpRequest, final Class<T> responseType) {
-    Function<String, T> convertResponse = new Function<String, T>() {
-      @Override
-      public T apply(String input) {
-        return GSON.fromJson(input, responseType);
-      }
-    };
-
-    return doGetWithSerializeFunction(httpRequest, convertResponse);
+    return doRequest(httpRequest, "GET", null, HttpUtil.<T>jsonReader(responseType));
   }
 
   /**
@@ -58,110 +53,128 @@ public class HttpUtil {
    * @throws ApolloConfigException if any error happened or response code is neither 200 nor 304
    */
   public <T> HttpResponse<T> doGet(HttpRequest httpRequest, final Type responseType) {
-    Function<String, T> convertResponse = new Function<String, T>() {
+    return doRequest(httpRequest, "GET", null, HttpUtil.<T>jsonReader(responseType));
+  }
+
+  /**
+   * Do post operation for the http request, the body is sent as json.
+   *
+   * @param httpRequest  the request
+   * @param body         the request body
+   * @param responseType the response type
+   * @return the response
+   * @throws ApolloConfigException if any error happened or response code is neither 200 nor 304
+   */
+  public <T> HttpResponse<T> doPost(HttpRequest httpRequest, Object body, final Type responseType) {
+    return doRequest(httpRequest, "POST", GSON.toJson(body), HttpUtil.<T>jsonReader(responseType));
+  }
+
+  private <T> HttpResponse<T> doRequest(HttpRequest httpRequest, String method, String body,
+                                        Function<Reader, T> responseReader) {
+    resolveTimeouts(httpRequest);
+    return m_httpTransport.execute(httpRequest, method, body, responseReader);
+  }
+
+  private static <T> Function<Reader, T> jsonReader(final Type responseType) {
+    return new Function<Reader, T>() {
       @Override
-      public T apply(String input) {
+      public T apply(Reader input) {
+        //parse while reading the response, without copying it to a string
         return GSON.fromJson(input, responseType);
       }
     };
-
-    return doGetWithSerializeFunction(httpRequest, convertResponse);
   }
 
-  private <T> HttpResponse<T> doGetWithSerializeFunction(HttpRequest httpRequest,
-                                                         Function<String, T> serializeFunction) {
-    InputStreamReader isr = null;
-    InputStreamReader esr = null;
-    int statusCode;
+  /**
+   * Do get operation for a server-sent events stream, the events are passed to the listener until the stream is
+   * closed by the server or the listener asks to stop. The read timeout of the request applies to the interval
+   * between two reads.
+   *
+   * @param httpRequest the request
+   * @param listener    the listener of the events
+   * @throws ApolloConfigStatusCodeException if the response code is not 200
+   * @throws ApolloConfigException           if any other error happened
+   */
+  public void doGetEventStream(HttpRequest httpRequest, EventStreamListener listener) {
+    HttpURLConnection conn = null;
+    BufferedReader reader = null;
     try {
-      HttpURLConnection conn = (HttpURLConnection) new URL(httpRequest.getUrl()).openConnection();
-
-      conn.setRequestMethod("GET");
-
-      Map<String, String> headers = httpRequest.getHeaders();
-      if (headers != null && headers.size() > 0) {
-        for (Map.Entry<String, String> entry : headers.entrySet()) {
-          conn.setRequestProperty(entry.getKey(), entry.getValue());
-        }
-      }
-
-      int connectTimeout = httpRequest.getConnectTimeout();
-      if (connectTimeout < 0) {
-        connectTimeout = m_configUtil.getConnectTimeout();
-      }
-
-      int readTimeout = httpRequest.getReadTimeout();
-      if (readTimeout < 0) {
-        readTimeout = m_configUtil.getReadTimeout();
-      }
-
-      conn.setConnectTimeout(connectTimeout);
-      conn.setReadTimeout(readTimeout);
+      resolveTimeouts(httpRequest);
+      conn = DefaultHttpTransport.openConnection(httpRequest, "GET");
+      conn.setRequestProperty("Accept", EVENT_STREAM_CONTENT_TYPE);
 
       conn.connect();
 
-      statusCode = conn.getResponseCode();
-      String response;
-
-      try {
-        isr = new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8);
-        response = CharStreams.toString(isr);
-      } catch (IOException ex) {
-        /**
-         * according to https://docs.oracle.com/javase/7/docs/technotes/guides/net/http-keepalive.html,
-         * we should clean up the connection by reading the response body so that the connection
-         * could be reused.
-         */
-        InputStream errorStream = conn.getErrorStream();
+      int statusCode = conn.getResponseCode();
+      if (statusCode != 200) {
+        throw new ApolloConfigStatusCodeException(statusCode,
+            String.format("Get event stream failed for %s", httpRequest.getUrl()));
+      }
 
-        if (errorStream != null) {
-          esr = new InputStreamReader(errorStream, StandardCharsets.UTF_8);
-          try {
-            CharStreams.toString(esr);
-          } catch (IOException ioe) {
-            //ignore
+      reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
+      String event = null;
+      StringBuilder data = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        //an empty line dispatches the event
+        if (line.isEmpty()) {
+          if (event != null || data != null) {
+            boolean proceed = listener.onEvent(event, data == null ? "" : data.toString());
+            event = null;
+            data = null;
+            if (!proceed) {
+              return;
+            }
           }
+          continue;
         }
-
-        // 200 and 304 should not trigger IOException, thus we must throw the original exception out
-        if (statusCode == 200 || statusCode == 304) {
-          throw ex;
+        //comment line
+        if (line.startsWith(":")) {
+          continue;
         }
-        // for status codes like 404, IOException is expected when calling conn.getInputStream()
-        throw new ApolloConfigStatusCodeException(statusCode, ex);
-      }
 
-      if (statusCode == 200) {
-        return new HttpResponse<>(statusCode, serializeFunction.apply(response));
-      }
-
-      if (statusCode == 304) {
-        return new HttpResponse<>(statusCode, null);
+        int colonIndex = line.indexOf(':');
+        String field = colonIndex < 0 ? line : line.substring(0, colonIndex);
+        String value = colonIndex < 0 ? "" : line.substring(colonIndex + 1);
+        if (value.startsWith(" ")) {
+          value = value.substring(1);
+        }
+        if ("event".equals(field)) {
+          event = value;
+        } else if ("data".equals(field)) {
+          if (data == null) {
+            data = new StringBuilder(value);
+          } else {
+            data.append('\n').append(value);
+          }
+        }
       }
     } catch (ApolloConfigStatusCodeException ex) {
       throw ex;
     } catch (Throwable ex) {
-      throw new ApolloConfigException("Could not complete get operation", ex);
+      throw new ApolloConfigException("Could not complete event stream operation", ex);
     } finally {
-      if (isr != null) {
+      if (reader != null) {
         try {
-          isr.close();
+          reader.close();
         } catch (IOException ex) {
           // ignore
         }
       }
-
-      if (esr != null) {
-        try {
-          esr.close();
-        } catch (IOException ex) {
-          // ignore
-        }
+      //the stream may be left unread, so the connection could not be reused
+      if (conn != null) {
+        conn.disconnect();
       }
     }
-
-    throw new ApolloConfigStatusCodeException(statusCode,
-        String.format("Get operation failed for %s", httpRequest.getUrl()));
   }
 
+  private void resolveTimeouts(HttpRequest httpRequest) {
+    if (httpRequest.getConnectTimeout() < 0) {
+      httpRequest.setConnectTimeout(m_configUtil.getConnectTimeout());
+    }
+
+    if (httpRequest.getReadTimeout() < 0) {
+      httpRequest.setReadTimeout(m_configUtil.getReadTimeout());
+    }
+  }
 }
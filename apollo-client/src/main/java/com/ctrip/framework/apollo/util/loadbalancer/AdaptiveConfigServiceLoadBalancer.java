@@ -0,0 +1,203 @@
+package com.ctrip.framework.apollo.util.loadbalancer;
+
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prefers the config services responding faster, chosen by the name adaptive.
+ *
+ * <p>The latency of each config service is tracked as an exponentially weighted moving average, which decays while
+ * the service is not accessed, so a service turned slow once is tried again later. The preferred service is the faster
+ * one of two picked at random, which spreads the load better than always picking the fastest one. The others follow
+ * from the fastest to the slowest, for the retries.</p>
+ *
+ * <p>A service failing {@link ConfigUtil#getConfigServiceMaxConsecutiveFailures()} times in a row is ejected for
+ * {@link ConfigUtil#getConfigServiceEjectionTimeInMillis()}, and tried only after the others until then. A service
+ * failing again once readmitted is ejected for twice as long, up to 32 times as long.</p>
+ */
+public class AdaptiveConfigServiceLoadBalancer implements ConfigServiceLoadBalancer {
+  private static final Logger logger = LoggerFactory.getLogger(AdaptiveConfigServiceLoadBalancer.class);
+  public static final String NAME = "adaptive";
+  private static final double LATENCY_WEIGHT = 0.3;
+  private static final double LATENCY_DECAY_TIME_IN_MILLIS = 10000;
+  private static final int MAX_EJECTION_TIME_MULTIPLIER_SHIFT = 5;
+
+  private final ConcurrentMap<String, ServiceStats> m_stats = Maps.newConcurrentMap();
+  private final Random m_random = new Random();
+  private final int m_maxConsecutiveFailures;
+  private final long m_ejectionTimeInMillis;
+  private final Ticker m_ticker;
+
+  /**
+   * Constructor.
+   */
+  public AdaptiveConfigServiceLoadBalancer() {
+    this(ApolloInjector.getInstance(ConfigUtil.class), Ticker.systemTicker());
+  }
+
+  AdaptiveConfigServiceLoadBalancer(ConfigUtil configUtil, Ticker ticker) {
+    m_maxConsecutiveFailures = configUtil.getConfigServiceMaxConsecutiveFailures();
+    m_ejectionTimeInMillis = configUtil.getConfigServiceEjectionTimeInMillis();
+    m_ticker = ticker;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public List<ServiceDTO> select(List<ServiceDTO> services) {
+    long now = currentTimeMillis();
+    List<ServiceDTO> available = Lists.newArrayListWithCapacity(services.size());
+    List<ServiceDTO> ejected = Lists.newArrayList();
+    for (ServiceDTO service : services) {
+      if (getStats(service).isEjected(now)) {
+        ejected.add(service);
+      } else {
+        available.add(service);
+      }
+    }
+    //all ejected, try them anyway
+    if (available.isEmpty()) {
+      available = ejected;
+      ejected = Collections.emptyList();
+    }
+
+    //shuffled so the services with the same cost are tried in random order
+    Collections.shuffle(available, m_random);
+    final double[] costs = new double[available.size()];
+    List<Integer> indexes = Lists.newArrayListWithCapacity(available.size());
+    for (int i = 0; i < available.size(); i++) {
+      costs[i] = getStats(available.get(i)).getCost(now);
+      indexes.add(i);
+    }
+    Collections.sort(indexes, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        return Double.compare(costs[o1], costs[o2]);
+      }
+    });
+
+    List<ServiceDTO> result = Lists.newArrayListWithCapacity(services.size());
+    if (available.size() > 1) {
+      //power of two choices, the shuffled list makes the first two a random pair
+      int preferred = costs[0] <= costs[1] ? 0 : 1;
+      result.add(available.get(preferred));
+      for (Integer index : indexes) {
+        if (index != preferred) {
+          result.add(available.get(index));
+        }
+      }
+    } else {
+      result.addAll(available);
+    }
+    result.addAll(ejected);
+    return result;
+  }
+
+  @Override
+  public void onSuccess(ServiceDTO service, long latencyInMillis) {
+    getStats(service).onSuccess(latencyInMillis, currentTimeMillis());
+  }
+
+  @Override
+  public void onFailure(ServiceDTO service) {
+    long ejectionTime = getStats(service).onFailure(currentTimeMillis());
+    if (ejectionTime > 0) {
+      Tracer.logEvent("Apollo.ConfigService.Ejected", service.getHomepageUrl());
+      logger.warn("Config service {} failed {} times in a row, ejected for {} ms", service.getHomepageUrl(),
+          m_maxConsecutiveFailures, ejectionTime);
+    }
+  }
+
+  private ServiceStats getStats(ServiceDTO service) {
+    String key = service.getHomepageUrl();
+    ServiceStats stats = m_stats.get(key);
+    if (stats == null) {
+      ServiceStats newStats = new ServiceStats();
+      stats = m_stats.putIfAbsent(key, newStats);
+      if (stats == null) {
+        stats = newStats;
+      }
+    }
+    return stats;
+  }
+
+  private long currentTimeMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(m_ticker.read());
+  }
+
+  private class ServiceStats {
+    //0 until measured, so a new service is tried first to measure it
+    private double m_latency;
+    private boolean m_latencyMeasured;
+    private long m_latencyUpdatedAt;
+    private int m_consecutiveFailures;
+    private int m_ejections;
+    //the ticker may read negative
+    private long m_ejectedUntil = Long.MIN_VALUE;
+
+    synchronized boolean isEjected(long now) {
+      return now < m_ejectedUntil;
+    }
+
+    synchronized double getCost(long now) {
+      return decayedLatency(now);
+    }
+
+    synchronized void onSuccess(long latencyInMillis, long now) {
+      m_consecutiveFailures = 0;
+      m_ejections = 0;
+      if (latencyInMillis < 0) {
+        return;
+      }
+      if (m_latencyMeasured) {
+        m_latency = LATENCY_WEIGHT * latencyInMillis + (1 - LATENCY_WEIGHT) * decayedLatency(now);
+      } else {
+        m_latency = latencyInMillis;
+        m_latencyMeasured = true;
+      }
+      m_latencyUpdatedAt = now;
+    }
+
+    /**
+     * @return the ejection time if ejected, otherwise 0
+     */
+    synchronized long onFailure(long now) {
+      if (isEjected(now)) {
+        return 0;
+      }
+      if (++m_consecutiveFailures < m_maxConsecutiveFailures) {
+        return 0;
+      }
+      long ejectionTime = m_ejectionTimeInMillis << Math.min(m_ejections, MAX_EJECTION_TIME_MULTIPLIER_SHIFT);
+      m_ejections++;
+      m_ejectedUntil = now + ejectionTime;
+      //one more failure once readmitted ejects it again
+      m_consecutiveFailures = m_maxConsecutiveFailures - 1;
+      return ejectionTime;
+    }
+
+    private double decayedLatency(long now) {
+      if (!m_latencyMeasured) {
+        return m_latency;
+      }
+      long elapsed = Math.max(0, now - m_latencyUpdatedAt);
+      return m_latency * Math.exp(-elapsed / LATENCY_DECAY_TIME_IN_MILLIS);
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.ctrip.framework.apollo.util.loadbalancer;
+
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import java.util.List;
+
+/**
+ * Selects the config service to access, loaded from /META-INF/services and chosen by name with
+ * {@link ConfigUtil#getConfigServiceLoadBalancer()}. One instance is shared by all the namespaces, and is told the
+ * outcome of each request, so it could adapt to the config services.
+ */
+public interface ConfigServiceLoadBalancer {
+
+  /**
+   * @return the name to choose the load balancer by
+   */
+  String getName();
+
+  /**
+   * @param services the config services located, not empty
+   * @return the config services in the order to try, the preferred one first
+   */
+  List<ServiceDTO> select(List<ServiceDTO> services);
+
+  /**
+   * @param service         the config service responded
+   * @param latencyInMillis the latency of the request, negative if not measured, e.g. for the long polling
+   */
+  void onSuccess(ServiceDTO service, long latencyInMillis);
+
+  /**
+   * @param service the config service failed to respond, or responded with a server error
+   */
+  void onFailure(ServiceDTO service);
+}
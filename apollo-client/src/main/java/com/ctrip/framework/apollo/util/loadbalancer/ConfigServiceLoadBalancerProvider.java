@@ -0,0 +1,32 @@
+package com.ctrip.framework.apollo.util.loadbalancer;
+
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.foundation.internals.ServiceBootstrap;
+import com.google.inject.Provider;
+import java.util.Iterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides the {@link ConfigServiceLoadBalancer} named by {@link ConfigUtil#getConfigServiceLoadBalancer()}, or the
+ * random one if not found.
+ */
+public class ConfigServiceLoadBalancerProvider implements Provider<ConfigServiceLoadBalancer> {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigServiceLoadBalancerProvider.class);
+
+  @Override
+  public ConfigServiceLoadBalancer get() {
+    String name = ApolloInjector.getInstance(ConfigUtil.class).getConfigServiceLoadBalancer();
+    Iterator<ConfigServiceLoadBalancer> loadBalancers = ServiceBootstrap.loadAll(ConfigServiceLoadBalancer.class);
+    while (loadBalancers.hasNext()) {
+      ConfigServiceLoadBalancer loadBalancer = loadBalancers.next();
+      if (loadBalancer.getName().equalsIgnoreCase(name)) {
+        return loadBalancer;
+      }
+    }
+    logger.warn("Config service load balancer {} is not found, fall back to {}", name,
+        RandomConfigServiceLoadBalancer.NAME);
+    return new RandomConfigServiceLoadBalancer();
+  }
+}
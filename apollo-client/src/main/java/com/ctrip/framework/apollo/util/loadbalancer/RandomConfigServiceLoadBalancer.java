@@ -0,0 +1,33 @@
+package com.ctrip.framework.apollo.util.loadbalancer;
+
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tries the config services in random order, which is the default.
+ */
+public class RandomConfigServiceLoadBalancer implements ConfigServiceLoadBalancer {
+  public static final String NAME = "random";
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public List<ServiceDTO> select(List<ServiceDTO> services) {
+    List<ServiceDTO> result = Lists.newArrayList(services);
+    Collections.shuffle(result);
+    return result;
+  }
+
+  @Override
+  public void onSuccess(ServiceDTO service, long latencyInMillis) {
+  }
+
+  @Override
+  public void onFailure(ServiceDTO service) {
+  }
+}
@@ -44,6 +44,7 @@ public abstract class BaseIntegrationTest {
   protected static int refreshInterval;
   protected static TimeUnit refreshTimeUnit;
   protected static boolean propertiesOrderEnabled;
+  protected static boolean notificationStreamEnabled;
   private Server server;
   protected Gson gson = new Gson();
 
@@ -65,6 +66,7 @@ public abstract class BaseIntegrationTest {
     refreshInterval = 5;
     refreshTimeUnit = TimeUnit.MINUTES;
     propertiesOrderEnabled = false;
+    notificationStreamEnabled = false;
 
     MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
   }
@@ -144,6 +146,10 @@ public abstract class BaseIntegrationTest {
     BaseIntegrationTest.propertiesOrderEnabled = propertiesOrderEnabled;
   }
 
+  protected void setNotificationStreamEnabled(boolean notificationStreamEnabled) {
+    BaseIntegrationTest.notificationStreamEnabled = notificationStreamEnabled;
+  }
+
   public static class MockConfigUtil extends ConfigUtil {
 
     @Override
@@ -210,6 +216,11 @@ public abstract class BaseIntegrationTest {
     public boolean isPropertiesOrderEnabled() {
       return propertiesOrderEnabled;
     }
+
+    @Override
+    public boolean isNotificationStreamEnabled() {
+      return notificationStreamEnabled;
+    }
   }
 
   /**
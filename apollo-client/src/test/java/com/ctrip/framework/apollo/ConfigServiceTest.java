@@ -1,9 +1,20 @@
 package com.ctrip.framework.apollo;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import com.ctrip.framework.apollo.enums.ConfigSourceType;
+import com.ctrip.framework.apollo.internals.RemoteConfigBatchService;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -85,6 +96,29 @@ public class ConfigServiceTest {
     assertEquals(someNamespaceFileName + ":" + someConfigFileFormat.getValue(), configFile.getContent());
   }
 
+  @Test
+  public void testPreloadConfigs() throws Exception {
+    String someNamespace = "mock";
+    String anotherNamespace = "anotherMock";
+    String brokenNamespace = "broken";
+    String someKey = "someKey";
+    RemoteConfigBatchService remoteConfigBatchService = mock(RemoteConfigBatchService.class);
+    MockInjector.setInstance(RemoteConfigBatchService.class, remoteConfigBatchService);
+    MockInjector.setInstance(ConfigFactory.class, someNamespace, new MockConfigFactory());
+    MockInjector.setInstance(ConfigFactory.class, anotherNamespace, new MockConfigFactory());
+    ConfigFactory brokenConfigFactory = mock(ConfigFactory.class);
+    when(brokenConfigFactory.create(brokenNamespace)).thenThrow(new IllegalStateException("some error"));
+    MockInjector.setInstance(ConfigFactory.class, brokenNamespace, brokenConfigFactory);
+
+    List<String> namespaces = Lists.newArrayList(someNamespace, brokenNamespace, anotherNamespace);
+    Map<String, Config> configs = ConfigService.preloadConfigs(namespaces).get(5, TimeUnit.SECONDS);
+
+    verify(remoteConfigBatchService, times(1)).preload(Sets.newLinkedHashSet(namespaces));
+    assertEquals(Lists.newArrayList(someNamespace, anotherNamespace), Lists.newArrayList(configs.keySet()));
+    assertSame(ConfigService.getConfig(someNamespace), configs.get(someNamespace));
+    assertEquals(anotherNamespace + ":" + someKey, configs.get(anotherNamespace).getProperty(someKey, null));
+  }
+
   private static class MockConfig extends AbstractConfig {
     private final String m_namespace;
 
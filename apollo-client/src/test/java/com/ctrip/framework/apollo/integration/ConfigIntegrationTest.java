@@ -9,6 +9,7 @@ import com.ctrip.framework.apollo.util.OrderedProperties;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -371,6 +372,43 @@ public class ConfigIntegrationTest extends BaseIntegrationTest {
     assertEquals(anotherValue, config.getProperty(someKey, null));
   }
 
+  @Test
+  public void testNotificationStreamRefresh() throws Exception {
+    final String someKey = "someKey";
+    final String someValue = "someValue";
+    final String anotherValue = "anotherValue";
+    long someNotificationId = 1;
+
+    setNotificationStreamEnabled(true);
+    long streamIntervalInMS = 50;
+    Map<String, String> configurations = Maps.newHashMap();
+    configurations.put(someKey, someValue);
+    ApolloConfig apolloConfig = assembleApolloConfig(configurations);
+    ContextHandler configHandler = mockConfigServerHandler(HttpServletResponse.SC_OK, apolloConfig);
+    ContextHandler streamHandler = mockNotificationStreamHandler(streamIntervalInMS,
+        Lists.newArrayList(new ApolloConfigNotification(apolloConfig.getNamespaceName(), someNotificationId)));
+
+    startServerWithHandlers(configHandler, streamHandler);
+
+    Config config = ConfigService.getAppConfig();
+    assertEquals(someValue, config.getProperty(someKey, null));
+
+    final SettableFuture<Boolean> notified = SettableFuture.create();
+
+    config.addChangeListener(new ConfigChangeListener() {
+      @Override
+      public void onChange(ConfigChangeEvent changeEvent) {
+        notified.set(true);
+      }
+    });
+
+    apolloConfig.getConfigurations().put(someKey, anotherValue);
+
+    notified.get(streamIntervalInMS * 20, TimeUnit.MILLISECONDS);
+
+    assertEquals(anotherValue, config.getProperty(someKey, null));
+  }
+
   @Test
   public void testLongPollRefreshWithMultipleNamespacesAndOnlyOneNamespaceNotified()
       throws Exception {
@@ -501,6 +539,33 @@ public class ConfigIntegrationTest extends BaseIntegrationTest {
     return context;
   }
 
+  private ContextHandler mockNotificationStreamHandler(final long eventIntervalInMS,
+      final List<ApolloConfigNotification> result) {
+    ContextHandler context = new ContextHandler("/notifications/v2/stream");
+    context.setHandler(new AbstractHandler() {
+      @Override
+      public void handle(String target, Request baseRequest, HttpServletRequest request,
+          HttpServletResponse response) throws IOException, ServletException {
+        response.setContentType("text/event-stream;charset=UTF-8");
+        response.setStatus(HttpServletResponse.SC_OK);
+        PrintWriter writer = response.getWriter();
+        writer.print("event:heartbeat\ndata:\n\n");
+        writer.flush();
+
+        try {
+          TimeUnit.MILLISECONDS.sleep(eventIntervalInMS);
+        } catch (InterruptedException e) {
+        }
+
+        writer.print("event:notifications\ndata:" + gson.toJson(result) + "\n\n");
+        writer.flush();
+        baseRequest.setHandled(true);
+      }
+    });
+
+    return context;
+  }
+
   private ContextHandler mockConfigServerHandler(final int statusCode, final ApolloConfig result,
       final boolean failedAtFirstTime) {
     ContextHandler context = new ContextHandler("/configs/*");
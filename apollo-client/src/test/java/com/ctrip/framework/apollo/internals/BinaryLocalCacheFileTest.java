@@ -0,0 +1,134 @@
+package com.ctrip.framework.apollo.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryLocalCacheFileTest {
+  private File someBaseDir;
+  private File someFile;
+  private String someReleaseKey;
+
+  @Before
+  public void setUp() throws Exception {
+    someBaseDir = java.nio.file.Files.createTempDirectory("BinaryLocalCacheFileTest").toFile();
+    someFile = new File(someBaseDir, "someApp+someCluster+someNamespace.bin");
+    someReleaseKey = "someReleaseKey";
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    File[] files = someBaseDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    someBaseDir.delete();
+  }
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    Properties someProperties = assembleProperties(100);
+
+    BinaryLocalCacheFile.write(someFile, someProperties, someReleaseKey);
+
+    for (boolean mapped : new boolean[]{true, false}) {
+      BinaryLocalCacheFile cacheFile = BinaryLocalCacheFile.read(someFile, mapped);
+
+      assertEquals(someReleaseKey, cacheFile.getReleaseKey());
+      assertEquals(someProperties.size(), cacheFile.size());
+      assertEquals(someProperties, cacheFile.fill(new Properties()));
+    }
+    assertEquals(1, someBaseDir.listFiles().length);
+  }
+
+  @Test
+  public void testWriteAndReadWithNullReleaseKeyAndUnicode() throws Exception {
+    Properties someProperties = new Properties();
+    someProperties.setProperty("someKey", "某个值\nanother line");
+    someProperties.setProperty("emptyKey", "");
+
+    BinaryLocalCacheFile.write(someFile, someProperties, null);
+    BinaryLocalCacheFile cacheFile = BinaryLocalCacheFile.read(someFile, true);
+
+    assertNull(cacheFile.getReleaseKey());
+    assertEquals(someProperties, cacheFile.fill(new Properties()));
+  }
+
+  @Test
+  public void testOverwrite() throws Exception {
+    BinaryLocalCacheFile.write(someFile, assembleProperties(100), someReleaseKey);
+    Properties anotherProperties = assembleProperties(10);
+    String anotherReleaseKey = "anotherReleaseKey";
+
+    BinaryLocalCacheFile.write(someFile, anotherProperties, anotherReleaseKey);
+    BinaryLocalCacheFile cacheFile = BinaryLocalCacheFile.read(someFile, false);
+
+    assertEquals(anotherReleaseKey, cacheFile.getReleaseKey());
+    assertEquals(anotherProperties, cacheFile.fill(new Properties()));
+  }
+
+  @Test
+  public void testReadCorruptedFile() throws Exception {
+    BinaryLocalCacheFile.write(someFile, assembleProperties(10), someReleaseKey);
+    RandomAccessFile raf = new RandomAccessFile(someFile, "rw");
+    try {
+      raf.seek(raf.length() - 1);
+      int last = raf.read();
+      raf.seek(raf.length() - 1);
+      raf.write(last ^ 0xff);
+    } finally {
+      raf.close();
+    }
+
+    assertReadFailed();
+  }
+
+  @Test
+  public void testReadTruncatedFile() throws Exception {
+    BinaryLocalCacheFile.write(someFile, assembleProperties(10), someReleaseKey);
+    RandomAccessFile raf = new RandomAccessFile(someFile, "rw");
+    try {
+      raf.setLength(raf.length() - 10);
+    } finally {
+      raf.close();
+    }
+
+    assertReadFailed();
+  }
+
+  @Test
+  public void testReadPropertiesFile() throws Exception {
+    Files.write("someKey=someValue", someFile, Charsets.UTF_8);
+
+    assertReadFailed();
+  }
+
+  private void assertReadFailed() throws Exception {
+    try {
+      BinaryLocalCacheFile.read(someFile, false);
+      fail();
+    } catch (ApolloConfigException ex) {
+      //expected
+    }
+  }
+
+  private Properties assembleProperties(int size) {
+    Properties properties = new Properties();
+    for (int i = 0; i < size; i++) {
+      properties.setProperty("someKey" + i, "someValue" + i);
+    }
+    return properties;
+  }
+}
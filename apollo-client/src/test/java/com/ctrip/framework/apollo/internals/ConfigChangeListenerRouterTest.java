@@ -0,0 +1,78 @@
+package com.ctrip.framework.apollo.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.ctrip.framework.apollo.ConfigChangeListener;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigChangeListenerRouterTest {
+  private ConfigChangeListenerRouter router;
+  private ConfigChangeListener allKeysListener;
+  private ConfigChangeListener keyListener;
+  private ConfigChangeListener prefixListener;
+  private ConfigChangeListener keyAndPrefixListener;
+
+  @Before
+  public void setUp() throws Exception {
+    router = new ConfigChangeListenerRouter();
+    allKeysListener = mock(ConfigChangeListener.class);
+    keyListener = mock(ConfigChangeListener.class);
+    prefixListener = mock(ConfigChangeListener.class);
+    keyAndPrefixListener = mock(ConfigChangeListener.class);
+
+    router.add(allKeysListener, null, null);
+    router.add(keyListener, Sets.newHashSet("someKey", "anotherKey"), null);
+    router.add(prefixListener, null, Sets.newHashSet("some.prefix.", "another.prefix."));
+    router.add(keyAndPrefixListener, Sets.newHashSet("someKey"), Sets.newHashSet("some."));
+  }
+
+  @Test
+  public void testRoute() throws Exception {
+    assertEquals(Lists.newArrayList(allKeysListener, keyListener, keyAndPrefixListener),
+        router.route(Sets.newHashSet("someKey")));
+    assertEquals(Lists.newArrayList(allKeysListener, keyListener), router.route(Sets.newHashSet("anotherKey")));
+    assertEquals(Lists.newArrayList(allKeysListener, prefixListener, keyAndPrefixListener),
+        router.route(Sets.newHashSet("some.prefix.key")));
+    assertEquals(Lists.newArrayList(allKeysListener, keyAndPrefixListener),
+        router.route(Sets.newHashSet("some.prefix")));
+    assertEquals(Lists.newArrayList(allKeysListener, prefixListener),
+        router.route(Sets.newHashSet("another.prefix.key")));
+    assertEquals(Lists.newArrayList(allKeysListener), router.route(Sets.newHashSet("unknownKey", "another.prefix")));
+    assertEquals(Lists.newArrayList(allKeysListener), router.route(Collections.<String>emptySet()));
+  }
+
+  @Test
+  public void testRouteWithManyChangedKeys() throws Exception {
+    assertEquals(Lists.newArrayList(allKeysListener, keyListener, prefixListener, keyAndPrefixListener),
+        router.route(Sets.newHashSet("someKey", "anotherKey", "some.prefix.key", "another.prefix.key", "unknownKey")));
+  }
+
+  @Test
+  public void testRouteWithEmptyPrefix() throws Exception {
+    ConfigChangeListener emptyPrefixListener = mock(ConfigChangeListener.class);
+    router = new ConfigChangeListenerRouter();
+    router.add(emptyPrefixListener, null, Sets.newHashSet(""));
+
+    assertEquals(Lists.newArrayList(emptyPrefixListener), router.route(Sets.newHashSet("anyKey")));
+  }
+
+  @Test
+  public void testAddAndRemove() throws Exception {
+    assertFalse(router.add(keyListener, Sets.newHashSet("yetAnotherKey"), null));
+    assertEquals(Lists.newArrayList(allKeysListener), router.route(Sets.newHashSet("yetAnotherKey")));
+
+    assertTrue(router.remove(allKeysListener));
+    assertFalse(router.remove(allKeysListener));
+    assertEquals(Lists.newArrayList(keyListener, keyAndPrefixListener), router.route(Sets.newHashSet("someKey")));
+
+    assertTrue(router.remove(keyAndPrefixListener));
+    assertTrue(router.route(Sets.newHashSet("some.key")).isEmpty());
+  }
+}
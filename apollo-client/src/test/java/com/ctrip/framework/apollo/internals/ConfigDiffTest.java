@@ -0,0 +1,89 @@
+package com.ctrip.framework.apollo.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.ctrip.framework.apollo.enums.PropertyChangeType;
+import com.ctrip.framework.apollo.model.ConfigChange;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigDiffTest {
+  private String someNamespace;
+  private Properties previous;
+  private Properties current;
+
+  @Before
+  public void setUp() throws Exception {
+    someNamespace = "someNamespace";
+    previous = new Properties();
+    current = new Properties();
+  }
+
+  @Test
+  public void testDiff() throws Exception {
+    previous.setProperty("unchangedKey", "someValue");
+    previous.setProperty("modifiedKey", "someValue");
+    previous.setProperty("deletedKey", "someValue");
+    current.setProperty("unchangedKey", "someValue");
+    current.setProperty("modifiedKey", "anotherValue");
+    current.setProperty("addedKey", "anotherValue");
+
+    List<ConfigChange> changes = ConfigDiff.diff(someNamespace, previous, current);
+
+    assertEquals(3, changes.size());
+    assertChange(changes.get(0), "addedKey", null, "anotherValue", PropertyChangeType.ADDED);
+    assertChange(changes.get(1), "deletedKey", "someValue", null, PropertyChangeType.DELETED);
+    assertChange(changes.get(2), "modifiedKey", "someValue", "anotherValue", PropertyChangeType.MODIFIED);
+  }
+
+  @Test
+  public void testDiffWithoutChanges() throws Exception {
+    previous.setProperty("someKey", "someValue");
+    current.setProperty("someKey", "someValue");
+
+    assertTrue(ConfigDiff.diff(someNamespace, previous, current).isEmpty());
+    assertTrue(ConfigDiff.diff(someNamespace, null, null).isEmpty());
+  }
+
+  @Test
+  public void testDiffWithNullProperties() throws Exception {
+    previous.setProperty("someKey", "someValue");
+
+    List<ConfigChange> deleted = ConfigDiff.diff(someNamespace, previous, null);
+    List<ConfigChange> added = ConfigDiff.diff(someNamespace, null, previous);
+
+    assertEquals(1, deleted.size());
+    assertChange(deleted.get(0), "someKey", "someValue", null, PropertyChangeType.DELETED);
+    assertEquals(1, added.size());
+    assertChange(added.get(0), "someKey", null, "someValue", PropertyChangeType.ADDED);
+  }
+
+  @Test
+  public void testDiffIgnoresNonStringEntries() throws Exception {
+    previous.put("someKey", 1);
+    current.put("someKey", "someValue");
+    current.put(2, "anotherValue");
+
+    List<ConfigChange> changes = ConfigDiff.diff(someNamespace, previous, current);
+
+    assertEquals(1, changes.size());
+    assertChange(changes.get(0), "someKey", null, "someValue", PropertyChangeType.ADDED);
+  }
+
+  private void assertChange(ConfigChange change, String key, String oldValue, String newValue,
+      PropertyChangeType changeType) {
+    assertEquals(someNamespace, change.getNamespace());
+    assertEquals(key, change.getPropertyName());
+    if (oldValue == null) {
+      assertNull(change.getOldValue());
+    } else {
+      assertEquals(oldValue, change.getOldValue());
+    }
+    assertEquals(newValue, change.getNewValue());
+    assertEquals(changeType, change.getChangeType());
+  }
+}
@@ -0,0 +1,67 @@
+package com.ctrip.framework.apollo.internals;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.ctrip.framework.apollo.util.function.Functions;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ConfigSnapshotTest {
+
+  @Test
+  public void testGetEntry() throws Exception {
+    ConfigSnapshot snapshot = new ConfigSnapshot(ImmutableMap.of("someKey", "someValue"));
+
+    assertEquals("someValue", snapshot.getEntry("someKey").getValue());
+    assertNull(snapshot.getEntry("anotherKey"));
+    assertNull(ConfigSnapshot.EMPTY.getEntry("someKey"));
+  }
+
+  @Test
+  public void testGetParsedValueMemoized() throws Exception {
+    final AtomicInteger parseCount = new AtomicInteger();
+    Function<String, Integer> someParser = new Function<String, Integer>() {
+      @Override
+      public Integer apply(String input) {
+        parseCount.incrementAndGet();
+        return Integer.parseInt(input);
+      }
+    };
+    ConfigSnapshot.Entry entry = new ConfigSnapshot(ImmutableMap.of("someKey", "2")).getEntry("someKey");
+
+    assertEquals(2, (int) entry.getParsedValue(ConfigSnapshot.INT, someParser));
+    assertEquals(2, (int) entry.getParsedValue(ConfigSnapshot.INT, someParser));
+    assertEquals(1, parseCount.get());
+
+    //the other types are parsed separately
+    assertEquals(2L, (long) entry.getParsedValue(ConfigSnapshot.LONG, Functions.TO_LONG_FUNCTION));
+    assertEquals(2, (int) entry.getParsedValue(ConfigSnapshot.INT, someParser));
+    assertEquals(1, parseCount.get());
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testGetParsedValueWithInvalidValue() throws Exception {
+    ConfigSnapshot.Entry entry = new ConfigSnapshot(ImmutableMap.of("someKey", "someValue")).getEntry("someKey");
+
+    entry.getParsedValue(ConfigSnapshot.INT, Functions.TO_INT_FUNCTION);
+  }
+
+  @Test
+  public void testGetArrayValue() throws Exception {
+    ConfigSnapshot.Entry entry = new ConfigSnapshot(ImmutableMap.of("someKey", "a,b;c")).getEntry("someKey");
+
+    String[] result = entry.getArrayValue(",");
+    assertArrayEquals(new String[]{"a", "b;c"}, result);
+    assertSame(result, entry.getArrayValue(","));
+
+    String[] anotherResult = entry.getArrayValue(";");
+    assertArrayEquals(new String[]{"a,b", "c"}, anotherResult);
+    assertNotSame(result, entry.getArrayValue(","));
+  }
+}
@@ -2,12 +2,18 @@ package com.ctrip.framework.apollo.internals;
 
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 
 import com.ctrip.framework.apollo.enums.ConfigSourceType;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.After;
 import org.junit.Before;
@@ -92,6 +98,63 @@ public class DefaultConfigManagerTest {
 
   }
 
+  @Test(timeout = 5000)
+  public void testGetConfigNotBlockedByAnotherNamespace() throws Exception {
+    final String someNamespace = "someName";
+    String anotherNamespace = "anotherName";
+    final CountDownLatch someConfigCreating = new CountDownLatch(1);
+    final CountDownLatch someConfigRelease = new CountDownLatch(1);
+    final ConfigFactory mockConfigFactory = new MockConfigFactoryManager().getFactory(anotherNamespace);
+
+    MockInjector.setInstance(ConfigFactoryManager.class, new ConfigFactoryManager() {
+      @Override
+      public ConfigFactory getFactory(String namespace) {
+        if (!someNamespace.equals(namespace)) {
+          return mockConfigFactory;
+        }
+        return new ConfigFactory() {
+          @Override
+          public Config create(String namespace) {
+            someConfigCreating.countDown();
+            try {
+              someConfigRelease.await();
+            } catch (InterruptedException ex) {
+              Thread.currentThread().interrupt();
+            }
+            return mockConfigFactory.create(namespace);
+          }
+
+          @Override
+          public ConfigFile createConfigFile(String namespace, ConfigFileFormat configFileFormat) {
+            return null;
+          }
+        };
+      }
+    });
+    defaultConfigManager = new DefaultConfigManager();
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      Future<Config> someConfigFuture = executorService.submit(new Callable<Config>() {
+        @Override
+        public Config call() {
+          return defaultConfigManager.getConfig(someNamespace);
+        }
+      });
+      someConfigCreating.await();
+
+      Config anotherConfig = defaultConfigManager.getConfig(anotherNamespace);
+      assertFalse(someConfigFuture.isDone());
+
+      someConfigRelease.countDown();
+
+      assertEquals(anotherNamespace + ":someKey", anotherConfig.getProperty("someKey", null));
+      assertEquals(someNamespace + ":someKey", someConfigFuture.get().getProperty("someKey", null));
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
   public static class MockConfigFactoryManager implements ConfigFactoryManager {
 
     @Override
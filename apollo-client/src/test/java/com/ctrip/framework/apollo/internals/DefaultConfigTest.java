@@ -1,11 +1,13 @@
 package com.ctrip.framework.apollo.internals;
 
-import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -16,6 +18,8 @@ import com.ctrip.framework.apollo.util.factory.PropertiesFactory;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import java.io.File;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Type;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Map;
@@ -28,13 +32,13 @@ import java.util.concurrent.TimeUnit;
 import com.google.common.base.Function;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
-import org.awaitility.core.ThrowingRunnable;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.ctrip.framework.apollo.Config;
 import com.ctrip.framework.apollo.ConfigChangeListener;
+import com.ctrip.framework.apollo.PropertyHandle;
 import com.ctrip.framework.apollo.build.MockInjector;
 import com.ctrip.framework.apollo.core.utils.ClassLoaderUtil;
 import com.ctrip.framework.apollo.enums.PropertyChangeType;
@@ -45,9 +49,11 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
+import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.SettableFuture;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -176,8 +182,8 @@ public class DefaultConfigTest {
     Integer someDefaultValue = -1;
 
     //set up config repo
-    someProperties = mock(Properties.class);
-    when(someProperties.getProperty(someKey)).thenReturn(String.valueOf(someValue));
+    someProperties = spy(new Properties());
+    someProperties.setProperty(someKey, String.valueOf(someValue));
     when(configRepository.getConfig()).thenReturn(someProperties);
 
     DefaultConfig defaultConfig =
@@ -187,6 +193,7 @@ public class DefaultConfigTest {
     assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
     assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
 
+    //resolved once in the snapshot
     verify(someProperties, times(1)).getProperty(someKey);
   }
 
@@ -217,72 +224,152 @@ public class DefaultConfigTest {
   }
 
   @Test
-  public void testGetIntPropertyMultipleTimesWithSmallCache() throws Exception {
+  public void testGetIntPropertyHandle() throws Exception {
     String someKey = "someKey";
-    Integer someValue = 2;
-
     String anotherKey = "anotherKey";
+    Integer someValue = 2;
     Integer anotherValue = 3;
 
     Integer someDefaultValue = -1;
 
-    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtilWithSmallCache());
-
     //set up config repo
-    someProperties = mock(Properties.class);
-    when(someProperties.getProperty(someKey)).thenReturn(String.valueOf(someValue));
-    when(someProperties.getProperty(anotherKey)).thenReturn(String.valueOf(anotherValue));
+    someProperties = new Properties();
+    someProperties.setProperty(someKey, String.valueOf(someValue));
+    someProperties.setProperty(anotherKey, "anotherValue");
     when(configRepository.getConfig()).thenReturn(someProperties);
 
-    DefaultConfig defaultConfig =
+    final DefaultConfig defaultConfig =
         new DefaultConfig(someNamespace, configRepository);
 
-    assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
-    assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
+    final PropertyHandle<Integer> someHandle = defaultConfig.getIntPropertyHandle(someKey, someDefaultValue);
+    PropertyHandle<Integer> anotherHandle = defaultConfig.getIntPropertyHandle(anotherKey, someDefaultValue);
 
-    verify(someProperties, times(1)).getProperty(someKey);
+    assertEquals(someKey, someHandle.getKey());
+    assertEquals(someValue, someHandle.get());
+    //invalid value
+    assertEquals(someDefaultValue, anotherHandle.get());
 
-    assertEquals(anotherValue, defaultConfig.getIntProperty(anotherKey, someDefaultValue));
-    assertEquals(anotherValue, defaultConfig.getIntProperty(anotherKey, someDefaultValue));
+    //the handles are updated before the listeners are notified
+    final SettableFuture<Integer> valueSeenByListener = SettableFuture.create();
+    defaultConfig.addChangeListener(new ConfigChangeListener() {
+      @Override
+      public void onChange(ConfigChangeEvent changeEvent) {
+        valueSeenByListener.set(someHandle.get());
+      }
+    });
 
-    verify(someProperties, times(1)).getProperty(anotherKey);
+    Properties anotherProperties = new Properties();
+    anotherProperties.setProperty(someKey, String.valueOf(anotherValue));
+    anotherProperties.setProperty(anotherKey, String.valueOf(someValue));
 
-    assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
+    defaultConfig.onRepositoryChange(someNamespace, anotherProperties);
+
+    assertEquals(anotherValue, someHandle.get());
+    assertEquals(someValue, anotherHandle.get());
+    assertEquals(anotherValue, valueSeenByListener.get(500, TimeUnit.MILLISECONDS));
 
-    verify(someProperties, times(2)).getProperty(someKey);
+    //deleted
+    defaultConfig.onRepositoryChange(someNamespace, new Properties());
+
+    assertEquals(someDefaultValue, someHandle.get());
+    assertEquals(someDefaultValue, anotherHandle.get());
   }
 
   @Test
-  public void testGetIntPropertyMultipleTimesWithShortExpireTime() throws Exception {
-    final String someKey = "someKey";
-    final Integer someValue = 2;
+  public void testPropertyHandlesPrunedOnChange() throws Exception {
+    String someKey = "someKey";
+    String anotherKey = "anotherKey";
+    Integer someDefaultValue = -1;
+
+    someProperties = new Properties();
+    someProperties.setProperty(someKey, "1");
+    someProperties.setProperty(anotherKey, "2");
+    when(configRepository.getConfig()).thenReturn(someProperties);
+
+    DefaultConfig defaultConfig = new DefaultConfig(someNamespace, configRepository);
+
+    PropertyHandle<Integer> someHandle = defaultConfig.getIntPropertyHandle(someKey, someDefaultValue);
+    WeakReference<PropertyHandle<Integer>> anotherHandle =
+        new WeakReference<>(defaultConfig.getIntPropertyHandle(anotherKey, someDefaultValue));
+
+    for (int i = 0; i < 50 && anotherHandle.get() != null; i++) {
+      System.gc();
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    assertNull(anotherHandle.get());
 
-    final Integer someDefaultValue = -1;
+    Properties anotherProperties = new Properties();
+    anotherProperties.setProperty(someKey, "3");
+    anotherProperties.setProperty(anotherKey, "4");
 
-    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtilWithShortExpireTime());
+    defaultConfig.onRepositoryChange(someNamespace, anotherProperties);
+
+    Map<?, ?> propertyHandles = (Map<?, ?>) ReflectionTestUtils.getField(defaultConfig, "m_propertyHandles");
+    assertEquals(Collections.singleton(someKey), propertyHandles.keySet());
+    assertEquals(3, (int) someHandle.get());
+  }
+
+  @Test
+  public void testGetJsonPropertyHandle() throws Exception {
+    String someKey = "someKey";
+    List<String> someDefaultValue = Collections.emptyList();
+    Type someType = new TypeToken<List<String>>() {
+    }.getType();
 
     //set up config repo
-    someProperties = mock(Properties.class);
-    when(someProperties.getProperty(someKey)).thenReturn(String.valueOf(someValue));
+    someProperties = new Properties();
+    someProperties.setProperty(someKey, "[\"a\",\"b\"]");
     when(configRepository.getConfig()).thenReturn(someProperties);
 
-    final DefaultConfig defaultConfig =
+    DefaultConfig defaultConfig =
         new DefaultConfig(someNamespace, configRepository);
 
-    assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
-    assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
+    PropertyHandle<List<String>> someHandle = defaultConfig.getJsonPropertyHandle(someKey, someType,
+        someDefaultValue);
+    PropertyHandle<Long> someDurationHandle = defaultConfig.getDurationPropertyHandle("someDurationKey", 10L);
 
-    verify(someProperties, times(1)).getProperty(someKey);
+    assertEquals(Lists.newArrayList("a", "b"), someHandle.get());
+    //same instance until changed
+    assertSame(someHandle.get(), someHandle.get());
+    assertEquals(10L, (long) someDurationHandle.get());
 
-    await().atMost(500, TimeUnit.MILLISECONDS).untilAsserted(new ThrowingRunnable() {
-      @Override
-      public void run() throws Throwable {
-        assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
-        assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
+    Properties anotherProperties = new Properties();
+    anotherProperties.setProperty(someKey, "invalid json");
+    anotherProperties.setProperty("someDurationKey", "1S");
 
-        verify(someProperties, times(2)).getProperty(someKey);
-      }
-    });
+    defaultConfig.onRepositoryChange(someNamespace, anotherProperties);
+
+    assertEquals(someDefaultValue, someHandle.get());
+    assertEquals(1000L, (long) someDurationHandle.get());
+  }
+
+  @Test
+  public void testGetIntPropertyWithSystemPropertyOnly() throws Exception {
+    String someKey = "someKey";
+    Integer someValue = 2;
+    Integer anotherValue = 3;
+
+    Integer someDefaultValue = -1;
+
+    //set up config repo
+    someProperties = new Properties();
+    when(configRepository.getConfig()).thenReturn(someProperties);
+
+    DefaultConfig defaultConfig =
+        new DefaultConfig(someNamespace, configRepository);
+
+    //the keys absent from the snapshot are looked up each time
+    try {
+      System.setProperty(someKey, String.valueOf(someValue));
+      assertEquals(someValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
+
+      System.setProperty(someKey, String.valueOf(anotherValue));
+      assertEquals(anotherValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
+    } finally {
+      System.clearProperty(someKey);
+    }
+
+    assertEquals(someDefaultValue, defaultConfig.getIntProperty(someKey, someDefaultValue));
   }
 
   @Test
@@ -459,24 +546,23 @@ public class DefaultConfigTest {
     String[] someDefaultValue = new String[]{"1", "2"};
 
     //set up config repo
-    someProperties = mock(Properties.class);
-    when(someProperties.getProperty(someKey)).thenReturn(someValue);
+    someProperties = spy(new Properties());
+    someProperties.setProperty(someKey, someValue);
     when(configRepository.getConfig()).thenReturn(someProperties);
 
     DefaultConfig defaultConfig =
         new DefaultConfig(someNamespace, configRepository);
 
-    assertArrayEquals(values, defaultConfig.getArrayProperty(someKey, someDelimiter, someDefaultValue));
-    assertArrayEquals(values, defaultConfig.getArrayProperty(someKey, someDelimiter, someDefaultValue));
-
-    verify(someProperties, times(1)).getProperty(someKey);
+    String[] result = defaultConfig.getArrayProperty(someKey, someDelimiter, someDefaultValue);
+    assertArrayEquals(values, result);
+    assertSame(result, defaultConfig.getArrayProperty(someKey, someDelimiter, someDefaultValue));
 
     assertArrayEquals(someDefaultValue, defaultConfig.getArrayProperty(someKey, someInvalidDelimiter,
         someDefaultValue));
     assertArrayEquals(someDefaultValue, defaultConfig.getArrayProperty(someKey, someInvalidDelimiter,
         someDefaultValue));
 
-    verify(someProperties, times(3)).getProperty(someKey);
+    verify(someProperties, times(1)).getProperty(someKey);
   }
 
   @Test
@@ -950,22 +1036,4 @@ public class DefaultConfigTest {
     }
   }
 
-  public static class MockConfigUtilWithSmallCache extends MockConfigUtil {
-    @Override
-    public long getMaxConfigCacheSize() {
-      return 1;
-    }
-  }
-
-  public static class MockConfigUtilWithShortExpireTime extends MockConfigUtil {
-    @Override
-    public long getConfigCacheExpireTime() {
-      return 50;
-    }
-
-    @Override
-    public TimeUnit getConfigCacheExpireTimeUnit() {
-      return TimeUnit.MILLISECONDS;
-    }
-  }
 }
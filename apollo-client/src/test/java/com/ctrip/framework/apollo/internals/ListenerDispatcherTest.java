@@ -0,0 +1,110 @@
+package com.ctrip.framework.apollo.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ListenerDispatcherTest {
+  private ListenerDispatcher dispatcher;
+  private String someTransactionType;
+
+  @Before
+  public void setUp() throws Exception {
+    dispatcher = new ListenerDispatcher("ListenerDispatcherTest", 2);
+    someTransactionType = "someTransactionType";
+  }
+
+  @Test(timeout = 10000)
+  public void testDispatchInOrderPerListener() throws Exception {
+    int someListeners = 5;
+    int someEvents = 200;
+    final CountDownLatch delivered = new CountDownLatch(someListeners * someEvents);
+    List<List<Integer>> receivedEvents = Lists.newArrayList();
+    for (int i = 0; i < someListeners; i++) {
+      receivedEvents.add(Lists.<Integer>newArrayList());
+    }
+
+    for (int event = 0; event < someEvents; event++) {
+      for (int i = 0; i < someListeners; i++) {
+        final List<Integer> received = receivedEvents.get(i);
+        final int someEvent = event;
+        dispatcher.dispatch(received, someTransactionType, new Runnable() {
+          @Override
+          public void run() {
+            received.add(someEvent);
+            delivered.countDown();
+          }
+        });
+      }
+    }
+    delivered.await();
+
+    for (List<Integer> received : receivedEvents) {
+      assertEquals(someEvents, received.size());
+      for (int event = 0; event < someEvents; event++) {
+        assertEquals(event, received.get(event).intValue());
+      }
+    }
+    assertEquals(0, dispatcher.getPendingEvents());
+  }
+
+  @Test(timeout = 10000)
+  public void testDispatchWithBoundedThreads() throws Exception {
+    int someListeners = 10;
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final CountDownLatch delivered = new CountDownLatch(someListeners);
+
+    for (int i = 0; i < someListeners; i++) {
+      dispatcher.dispatch(new Object(), someTransactionType, new Runnable() {
+        @Override
+        public void run() {
+          int current = running.incrementAndGet();
+          synchronized (maxRunning) {
+            maxRunning.set(Math.max(maxRunning.get(), current));
+          }
+          try {
+            TimeUnit.MILLISECONDS.sleep(20);
+          } catch (InterruptedException e) {
+          }
+          running.decrementAndGet();
+          delivered.countDown();
+        }
+      });
+    }
+
+    assertTrue(dispatcher.getPendingEvents() > 0);
+    delivered.await();
+
+    assertTrue(maxRunning.get() <= 2);
+    assertTrue(dispatcher.getMaxQueueTimeInMillis() > 0);
+  }
+
+  @Test(timeout = 10000)
+  public void testDispatchAfterListenerFailed() throws Exception {
+    Object someListener = new Object();
+    final CountDownLatch delivered = new CountDownLatch(1);
+
+    dispatcher.dispatch(someListener, someTransactionType, new Runnable() {
+      @Override
+      public void run() {
+        throw new RuntimeException("some exception");
+      }
+    });
+    dispatcher.dispatch(someListener, someTransactionType, new Runnable() {
+      @Override
+      public void run() {
+        delivered.countDown();
+      }
+    });
+
+    delivered.await();
+  }
+}
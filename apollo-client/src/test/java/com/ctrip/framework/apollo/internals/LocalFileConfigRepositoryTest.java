@@ -2,9 +2,12 @@ package com.ctrip.framework.apollo.internals;
 
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -12,9 +15,12 @@ import static org.mockito.Mockito.when;
 import com.ctrip.framework.apollo.enums.ConfigSourceType;
 import com.ctrip.framework.apollo.util.factory.PropertiesFactory;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -40,6 +46,7 @@ public class LocalFileConfigRepositoryTest {
   private Properties someProperties;
   private static String someAppId = "someApp";
   private static String someCluster = "someCluster";
+  private static String someAppTag = "someTag";
   private String defaultKey;
   private String defaultValue;
   private ConfigSourceType someSourceType;
@@ -94,6 +101,10 @@ public class LocalFileConfigRepositoryTest {
         .join(someAppId, someCluster, someNamespace));
   }
 
+  private String assembleStaleFirstLocalCacheFileName() {
+    return String.format("%s.properties", Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(someAppId, someAppTag, someCluster, someNamespace));
+  }
 
   @Test
   public void testLoadConfigWithLocalFile() throws Exception {
@@ -122,6 +133,7 @@ public class LocalFileConfigRepositoryTest {
     Files.write(defaultKey + "=" + someValue, file, Charsets.UTF_8);
 
     LocalFileConfigRepository localRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+
     localRepo.setLocalCacheDir(someBaseDir, true);
 
     Properties properties = localRepo.getConfig();
@@ -195,6 +207,188 @@ public class LocalFileConfigRepositoryTest {
     assertEquals(anotherSourceType, localFileConfigRepository.getSourceType());
   }
 
+  @Test(timeout = 10000)
+  public void testLoadConfigWithLocalFileFirst() throws Exception {
+    MockInjector.setInstance(ConfigUtil.class, new MockStaleFirstConfigUtil());
+    String someValue = "someValue";
+    Files.write(defaultKey + "=" + someValue, new File(someBaseDir, assembleStaleFirstLocalCacheFileName()),
+        Charsets.UTF_8);
+    final CountDownLatch upstreamLoaded = new CountDownLatch(1);
+    when(upstreamRepo.getConfig()).thenAnswer(new Answer<Properties>() {
+      @Override
+      public Properties answer(InvocationOnMock invocation) throws Throwable {
+        upstreamLoaded.await();
+        return someProperties;
+      }
+    });
+    RepositoryChangeListener someListener = mock(RepositoryChangeListener.class);
+
+    LocalFileConfigRepository localRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+
+    assertEquals(someValue, localRepo.getConfig().getProperty(defaultKey));
+    assertEquals(ConfigSourceType.LOCAL, localRepo.getSourceType());
+    assertTrue(localRepo.isServingLocalCacheFirst());
+
+    localRepo.addChangeListener(someListener);
+    upstreamLoaded.countDown();
+
+    ArgumentCaptor<Properties> captor = ArgumentCaptor.forClass(Properties.class);
+    verify(someListener, timeout(5000).times(1)).onRepositoryChange(eq(someNamespace), captor.capture());
+
+    assertEquals(someProperties, captor.getValue());
+    assertEquals(defaultValue, localRepo.getConfig().getProperty(defaultKey));
+    assertEquals(someSourceType, localRepo.getSourceType());
+    assertFalse(localRepo.isServingLocalCacheFirst());
+  }
+
+  @Test
+  public void testLoadConfigWithStaleLocalFileFirst() throws Exception {
+    MockInjector.setInstance(ConfigUtil.class, new MockStaleFirstConfigUtil());
+    File file = new File(someBaseDir, assembleStaleFirstLocalCacheFileName());
+    Files.write(defaultKey + "=someValue", file, Charsets.UTF_8);
+    file.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+
+    LocalFileConfigRepository localRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+
+    assertEquals(defaultValue, localRepo.getConfig().getProperty(defaultKey));
+    assertEquals(someSourceType, localRepo.getSourceType());
+    assertFalse(localRepo.isServingLocalCacheFirst());
+  }
+
+  @Test
+  public void testLoadConfigWithBinaryLocalCacheMigratesPropertiesFile() throws Exception {
+    MockInjector.setInstance(ConfigUtil.class, new MockBinaryLocalCacheConfigUtil());
+    File propertiesFile = new File(someBaseDir, assembleStaleFirstLocalCacheFileName());
+    File binaryFile = new File(someBaseDir, propertiesFile.getName().replace(".properties", ".bin"));
+    Files.write(defaultKey + "=someValue", propertiesFile, Charsets.UTF_8);
+    when(upstreamRepo.getConfig()).thenThrow(new RuntimeException("some exception"));
+
+    LocalFileConfigRepository localRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+
+    assertEquals("someValue", localRepo.getConfig().getProperty(defaultKey));
+    assertTrue(propertiesFile.isFile());
+    assertTrue(binaryFile.isFile());
+
+    LocalFileConfigRepository anotherLocalRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+
+    assertEquals("someValue", anotherLocalRepo.getConfig().getProperty(defaultKey));
+    assertEquals(ConfigSourceType.LOCAL, anotherLocalRepo.getSourceType());
+  }
+
+  @Test
+  public void testPersistBinaryLocalCacheFile() throws Exception {
+    MockInjector.setInstance(ConfigUtil.class, new MockBinaryLocalCacheConfigUtil());
+    File propertiesFile = new File(someBaseDir, assembleStaleFirstLocalCacheFileName());
+    File binaryFile = new File(someBaseDir, propertiesFile.getName().replace(".properties", ".bin"));
+
+    LocalFileConfigRepository localRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+
+    assertEquals(defaultValue, localRepo.getConfig().getProperty(defaultKey));
+    assertEquals(someProperties, BinaryLocalCacheFile.read(binaryFile, true).fill(new Properties()));
+
+    //the properties file is kept up to date in the background, so the binary local cache could be disabled again
+    awaitLocalCacheFile(propertiesFile, someProperties);
+    MockInjector.setInstance(ConfigUtil.class, new MockStaleFirstConfigUtil());
+    when(upstreamRepo.getConfig()).thenThrow(new RuntimeException("some exception"));
+
+    LocalFileConfigRepository anotherLocalRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+
+    assertEquals(defaultValue, anotherLocalRepo.getConfig().getProperty(defaultKey));
+    assertEquals(ConfigSourceType.LOCAL, anotherLocalRepo.getSourceType());
+  }
+
+  @Test
+  public void testPersistWithBinaryLocalCacheDisabledDeletesBinaryFile() throws Exception {
+    MockInjector.setInstance(ConfigUtil.class, new MockBinaryLocalCacheConfigUtil());
+    File propertiesFile = new File(someBaseDir, assembleStaleFirstLocalCacheFileName());
+    File binaryFile = new File(someBaseDir, propertiesFile.getName().replace(".properties", ".bin"));
+
+    new LocalFileConfigRepository(someNamespace, upstreamRepo);
+
+    assertTrue(binaryFile.isFile());
+    awaitLocalCacheFile(propertiesFile, someProperties);
+
+    Properties anotherProperties = new Properties();
+    anotherProperties.setProperty(defaultKey, "anotherValue");
+    MockInjector.setInstance(ConfigUtil.class, new MockBinaryLocalCacheConfigUtil() {
+      @Override
+      public boolean isBinaryLocalCacheEnabled() {
+        return false;
+      }
+    });
+    when(upstreamRepo.getConfig()).thenReturn(anotherProperties);
+
+    new LocalFileConfigRepository(someNamespace, upstreamRepo);
+
+    assertFalse(binaryFile.exists());
+
+    //the updated properties file is loaded once the binary local cache is enabled again
+    MockInjector.setInstance(ConfigUtil.class, new MockBinaryLocalCacheConfigUtil());
+    when(upstreamRepo.getConfig()).thenThrow(new RuntimeException("some exception"));
+
+    LocalFileConfigRepository anotherLocalRepo = new LocalFileConfigRepository(someNamespace, upstreamRepo);
+
+    assertEquals("anotherValue", anotherLocalRepo.getConfig().getProperty(defaultKey));
+  }
+
+  private void awaitLocalCacheFile(File file, Properties expected) throws Exception {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline) {
+      if (file.isFile() && expected.equals(loadLocalCacheFile(file))) {
+        return;
+      }
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    assertEquals(expected, loadLocalCacheFile(file));
+  }
+
+  private Properties loadLocalCacheFile(File file) throws IOException {
+    Properties properties = new Properties();
+    try (FileInputStream in = new FileInputStream(file)) {
+      properties.load(in);
+    }
+    return properties;
+  }
+
+  public static class MockBinaryLocalCacheConfigUtil extends MockConfigUtil {
+    @Override
+    public String getAppTag() {
+      return someAppTag;
+    }
+
+    @Override
+    public String getDefaultLocalCacheDir() {
+      return "src/test/resources";
+    }
+
+    @Override
+    public boolean isBinaryLocalCacheEnabled() {
+      return true;
+    }
+  }
+
+  public static class MockStaleFirstConfigUtil extends MockConfigUtil {
+    @Override
+    public String getAppTag() {
+      return someAppTag;
+    }
+
+    @Override
+    public String getDefaultLocalCacheDir() {
+      return "src/test/resources";
+    }
+
+    @Override
+    public boolean isStaleFirstStartupEnabled() {
+      return true;
+    }
+
+    @Override
+    public long getMaxStalenessInSeconds() {
+      return 60;
+    }
+  }
+
   public static class MockConfigUtil extends ConfigUtil {
     @Override
     public String getAppId() {
@@ -0,0 +1,173 @@
+package com.ctrip.framework.apollo.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.build.MockInjector;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigQuery;
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.apollo.util.http.HttpRequest;
+import com.ctrip.framework.apollo.util.http.HttpResponse;
+import com.ctrip.framework.apollo.util.http.HttpUtil;
+import com.google.common.collect.Lists;
+import java.lang.reflect.Type;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RemoteConfigBatchServiceTest {
+  @Mock
+  private ConfigServiceLocator configServiceLocator;
+  @Mock
+  private HttpUtil httpUtil;
+  @Mock
+  private HttpResponse<List<ApolloConfig>> someResponse;
+  private RemoteConfigBatchService remoteConfigBatchService;
+  private String someServerUrl;
+  private String someNamespace;
+  private String anotherNamespace;
+
+  private static String someAppId;
+  private static String someCluster;
+
+  @Before
+  public void setUp() throws Exception {
+    someAppId = "someAppId";
+    someCluster = "someCluster";
+    someServerUrl = "http://someServer";
+    someNamespace = "someNamespace";
+    anotherNamespace = "anotherNamespace";
+
+    ServiceDTO serviceDTO = mock(ServiceDTO.class);
+    when(serviceDTO.getHomepageUrl()).thenReturn(someServerUrl);
+    when(configServiceLocator.getConfigServices()).thenReturn(Lists.newArrayList(serviceDTO));
+
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
+    MockInjector.setInstance(ConfigServiceLocator.class, configServiceLocator);
+    MockInjector.setInstance(HttpUtil.class, httpUtil);
+
+    remoteConfigBatchService = new RemoteConfigBatchService();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    MockInjector.reset();
+  }
+
+  @Test
+  public void testPreload() throws Exception {
+    ApolloConfig someConfig = new ApolloConfig(someAppId, someCluster, someNamespace, "someReleaseKey");
+    when(someResponse.getBody()).thenReturn(Lists.newArrayList(someConfig));
+    when(httpUtil.<List<ApolloConfig>>doPost(any(HttpRequest.class), any(), any(Type.class)))
+        .thenReturn(someResponse);
+
+    remoteConfigBatchService.preload(Lists.newArrayList(someNamespace, anotherNamespace));
+
+    ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+    ArgumentCaptor<List> queriesCaptor = ArgumentCaptor.forClass(List.class);
+    verify(httpUtil, times(1)).doPost(requestCaptor.capture(), queriesCaptor.capture(), any(Type.class));
+
+    assertEquals(someServerUrl + "/configs/" + someAppId + "/" + someCluster + "?ip=" + new ConfigUtil().getLocalIp(),
+        requestCaptor.getValue().getUrl());
+    List<ApolloConfigQuery> queries = queriesCaptor.getValue();
+    assertEquals(2, queries.size());
+    assertEquals(someNamespace, queries.get(0).getNamespaceName());
+    assertNull(queries.get(0).getReleaseKey());
+    assertEquals(anotherNamespace, queries.get(1).getNamespaceName());
+
+    assertSame(someConfig, remoteConfigBatchService.takePreloadedConfig(someNamespace));
+    assertNull(remoteConfigBatchService.takePreloadedConfig(someNamespace));
+    assertNull(remoteConfigBatchService.takePreloadedConfig(anotherNamespace));
+  }
+
+  @Test
+  public void testPreloadWithBatchQueryNotSupported() throws Exception {
+    when(httpUtil.doPost(any(HttpRequest.class), any(), any(Type.class)))
+        .thenThrow(new ApolloConfigStatusCodeException(404, "not found"));
+
+    remoteConfigBatchService.preload(Lists.newArrayList(someNamespace, anotherNamespace));
+    remoteConfigBatchService.preload(Lists.newArrayList(someNamespace, anotherNamespace));
+
+    //the config service is not asked again
+    verify(httpUtil, times(1)).doPost(any(HttpRequest.class), any(), any(Type.class));
+    assertNull(remoteConfigBatchService.takePreloadedConfig(someNamespace));
+  }
+
+  @Test
+  public void testRefresh() throws Exception {
+    RemoteConfigRepository someRepository = mock(RemoteConfigRepository.class);
+    RemoteConfigRepository anotherRepository = mock(RemoteConfigRepository.class);
+    when(someRepository.assembleConfigQuery()).thenReturn(new ApolloConfigQuery(someNamespace, "someReleaseKey"));
+    when(anotherRepository.assembleConfigQuery())
+        .thenReturn(new ApolloConfigQuery(anotherNamespace, "anotherReleaseKey"));
+    ApolloConfig someConfig = new ApolloConfig(someAppId, someCluster, someNamespace, "someNewReleaseKey");
+    when(someResponse.getBody()).thenReturn(Lists.newArrayList(someConfig));
+    when(httpUtil.<List<ApolloConfig>>doPost(any(HttpRequest.class), anyListOf(ApolloConfigQuery.class),
+        any(Type.class))).thenReturn(someResponse);
+
+    remoteConfigBatchService.submit(someNamespace, someRepository);
+    remoteConfigBatchService.submit(anotherNamespace, anotherRepository);
+    remoteConfigBatchService.refresh();
+
+    //the namespaces absent from the response are not modified
+    verify(someRepository, times(1)).onBatchLoaded(someConfig);
+    verify(anotherRepository, never()).onBatchLoaded(any(ApolloConfig.class));
+    verify(someRepository, never()).trySync();
+    verify(anotherRepository, never()).trySync();
+  }
+
+  @Test
+  public void testRefreshFailed() throws Exception {
+    RemoteConfigRepository someRepository = mock(RemoteConfigRepository.class);
+    when(someRepository.assembleConfigQuery()).thenReturn(new ApolloConfigQuery(someNamespace, "someReleaseKey"));
+    when(httpUtil.doPost(any(HttpRequest.class), any(), any(Type.class)))
+        .thenThrow(new ApolloConfigException("some error"));
+
+    remoteConfigBatchService.submit(someNamespace, someRepository);
+    remoteConfigBatchService.refresh();
+
+    //refresh the namespaces one by one instead
+    verify(someRepository, times(1)).trySync();
+    verify(someRepository, never()).onBatchLoaded(any(ApolloConfig.class));
+  }
+
+  public static class MockConfigUtil extends ConfigUtil {
+    @Override
+    public String getAppId() {
+      return someAppId;
+    }
+
+    @Override
+    public String getCluster() {
+      return someCluster;
+    }
+
+    @Override
+    public String getDataCenter() {
+      return null;
+    }
+
+    @Override
+    public boolean isBatchConfigQueryEnabled() {
+      return true;
+    }
+  }
+}
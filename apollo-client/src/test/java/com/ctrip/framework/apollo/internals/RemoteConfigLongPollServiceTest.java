@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -17,7 +18,9 @@ import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
 import com.ctrip.framework.apollo.core.signature.Signature;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
 import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.apollo.util.http.EventStreamListener;
 import com.ctrip.framework.apollo.util.http.HttpRequest;
 import com.ctrip.framework.apollo.util.http.HttpResponse;
 import com.ctrip.framework.apollo.util.http.HttpUtil;
@@ -25,6 +28,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.net.HttpHeaders;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.gson.Gson;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
@@ -60,6 +64,7 @@ public class RemoteConfigLongPollServiceTest {
   private static String someAppId;
   private static String someCluster;
   private static String someSecret;
+  private static boolean notificationStreamEnabled;
 
   @Before
   public void setUp() throws Exception {
@@ -80,6 +85,7 @@ public class RemoteConfigLongPollServiceTest {
 
     someAppId = "someAppId";
     someCluster = "someCluster";
+    notificationStreamEnabled = false;
   }
 
   @After
@@ -476,6 +482,126 @@ public class RemoteConfigLongPollServiceTest {
     assertEquals(anotherNotificationId, captured.get(anotherKey).longValue());
   }
 
+  @Test
+  public void testSubmitNotificationStream() throws Exception {
+    notificationStreamEnabled = true;
+    RemoteConfigRepository someRepository = mock(RemoteConfigRepository.class);
+    final String someNamespace = "someNamespace";
+    final String someKey = "someKey";
+    final long someNotificationId = 1;
+
+    ApolloConfigNotification someNotification = new ApolloConfigNotification(someNamespace, someNotificationId);
+    someNotification.addMessage(someKey, someNotificationId);
+    final String someEventData = new Gson().toJson(Lists.newArrayList(someNotification));
+    final AtomicInteger subscriptions = new AtomicInteger();
+
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        HttpRequest request = invocation.getArgumentAt(0, HttpRequest.class);
+        EventStreamListener listener = invocation.getArgumentAt(1, EventStreamListener.class);
+
+        assertTrue(request.getUrl().contains(someServerUrl + "/notifications/v2/stream?"));
+        assertTrue(request.getUrl().contains("appId=" + someAppId));
+        assertTrue(request.getUrl().contains(someNamespace));
+
+        if (subscriptions.incrementAndGet() == 1) {
+          listener.onEvent("heartbeat", "");
+          listener.onEvent("notifications", someEventData);
+        } else {
+          TimeUnit.MILLISECONDS.sleep(50);
+        }
+        return null;
+      }
+    }).when(httpUtil).doGetEventStream(any(HttpRequest.class), any(EventStreamListener.class));
+
+    final SettableFuture<Boolean> onNotified = SettableFuture.create();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        onNotified.set(true);
+        return null;
+      }
+    }).when(someRepository).onLongPollNotified(any(ServiceDTO.class), any(ApolloNotificationMessages.class));
+
+    remoteConfigLongPollService.submit(someNamespace, someRepository);
+
+    onNotified.get(5000, TimeUnit.MILLISECONDS);
+
+    remoteConfigLongPollService.stopLongPollingRefresh();
+
+    final ArgumentCaptor<ApolloNotificationMessages> captor = ArgumentCaptor.forClass(ApolloNotificationMessages.class);
+    verify(someRepository, times(1)).onLongPollNotified(any(ServiceDTO.class), captor.capture());
+    assertEquals(someNotificationId, captor.getValue().get(someKey).longValue());
+    verify(httpUtil, never()).doGet(any(HttpRequest.class), eq(responseType));
+  }
+
+  @Test
+  public void testNotificationStreamNotSupported() throws Exception {
+    notificationStreamEnabled = true;
+    RemoteConfigRepository someRepository = mock(RemoteConfigRepository.class);
+    final String someNamespace = "someNamespace";
+
+    ApolloConfigNotification someNotification = new ApolloConfigNotification(someNamespace, 1);
+
+    when(pollResponse.getStatusCode()).thenReturn(HttpServletResponse.SC_OK);
+    when(pollResponse.getBody()).thenReturn(Lists.newArrayList(someNotification));
+
+    doThrow(new ApolloConfigStatusCodeException(HttpServletResponse.SC_NOT_FOUND, "some error"))
+        .when(httpUtil).doGetEventStream(any(HttpRequest.class), any(EventStreamListener.class));
+
+    doAnswer(new Answer<HttpResponse<List<ApolloConfigNotification>>>() {
+      @Override
+      public HttpResponse<List<ApolloConfigNotification>> answer(InvocationOnMock invocation)
+          throws Throwable {
+        try {
+          TimeUnit.MILLISECONDS.sleep(50);
+        } catch (InterruptedException e) {
+        }
+        HttpRequest request = invocation.getArgumentAt(0, HttpRequest.class);
+        assertTrue(request.getUrl().contains(someServerUrl + "/notifications/v2?"));
+
+        return pollResponse;
+      }
+    }).when(httpUtil).doGet(any(HttpRequest.class), eq(responseType));
+
+    final SettableFuture<Boolean> onNotified = SettableFuture.create();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        onNotified.set(true);
+        return null;
+      }
+    }).when(someRepository).onLongPollNotified(any(ServiceDTO.class), any(ApolloNotificationMessages.class));
+
+    remoteConfigLongPollService.submit(someNamespace, someRepository);
+
+    onNotified.get(5000, TimeUnit.MILLISECONDS);
+
+    remoteConfigLongPollService.stopLongPollingRefresh();
+
+    //the config service not supporting the stream is not tried again
+    verify(httpUtil, times(1)).doGetEventStream(any(HttpRequest.class), any(EventStreamListener.class));
+  }
+
+  @Test
+  public void testAssembleNotificationStreamUrl() throws Exception {
+    String someUri = someServerUrl;
+    String someNamespace = "someNamespace";
+    long someNotificationId = 1;
+    Map<String, Long> notificationsMap = ImmutableMap.of(someNamespace, someNotificationId);
+
+    String notificationStreamUrl =
+        remoteConfigLongPollService
+            .assembleNotificationStreamUrl(someUri, someAppId, null, someCluster, null, notificationsMap);
+
+    assertTrue(notificationStreamUrl.contains(someServerUrl + "/notifications/v2/stream?"));
+    assertTrue(notificationStreamUrl.contains("appId=" + someAppId));
+    assertTrue(notificationStreamUrl.contains("cluster=" + someCluster));
+    assertTrue(notificationStreamUrl.contains("notifications=%5B%7B%22namespaceName%22%3A%22" + someNamespace
+        + "%22%2C%22notificationId%22%3A" + someNotificationId + "%7D%5D"));
+  }
+
   @Test
   public void testAssembleLongPollRefreshUrl() throws Exception {
     String someUri = someServerUrl;
@@ -560,6 +686,11 @@ public class RemoteConfigLongPollServiceTest {
     public long getLongPollingInitialDelayInMills() {
       return 0;
     }
+
+    @Override
+    public boolean isNotificationStreamEnabled() {
+      return notificationStreamEnabled;
+    }
   }
 
 }
@@ -0,0 +1,205 @@
+package com.ctrip.framework.apollo.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.build.MockInjector;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RemoteConfigRefreshSchedulerTest {
+  @Mock
+  private RemoteConfigBatchService remoteConfigBatchService;
+  @Mock
+  private RemoteConfigRepository someRepository;
+  @Mock
+  private RemoteConfigRepository anotherRepository;
+  private String someNamespace;
+  private String anotherNamespace;
+
+  private static boolean someBatchConfigQueryEnabled;
+  private static int someMaxConcurrency;
+
+  @Before
+  public void setUp() throws Exception {
+    someNamespace = "someNamespace";
+    anotherNamespace = "anotherNamespace";
+    someBatchConfigQueryEnabled = false;
+    someMaxConcurrency = 4;
+
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
+    MockInjector.setInstance(RemoteConfigBatchService.class, remoteConfigBatchService);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    MockInjector.reset();
+  }
+
+  @Test
+  public void testRequestRefreshCoalesced() throws Exception {
+    RemoteConfigRefreshScheduler scheduler = new RemoteConfigRefreshScheduler();
+    scheduler.register(someNamespace, someRepository);
+    scheduler.register(anotherNamespace, anotherRepository);
+
+    for (int i = 0; i < 5; i++) {
+      scheduler.requestRefresh(someNamespace);
+      scheduler.requestRefresh(anotherNamespace);
+    }
+
+    verify(someRepository, timeout(1000).times(1)).trySync();
+    verify(anotherRepository, timeout(1000).times(1)).trySync();
+    TimeUnit.MILLISECONDS.sleep(300);
+    verify(someRepository, times(1)).trySync();
+    verify(anotherRepository, times(1)).trySync();
+
+    Map<String, Long> lags = scheduler.getRefreshLagsInMillis();
+    assertEquals(2, lags.size());
+    assertTrue(lags.get(someNamespace) >= 0);
+  }
+
+  @Test
+  public void testRequestRefreshWithUnknownNamespace() throws Exception {
+    RemoteConfigRefreshScheduler scheduler = new RemoteConfigRefreshScheduler();
+    scheduler.register(someNamespace, someRepository);
+
+    scheduler.requestRefresh(anotherNamespace);
+
+    TimeUnit.MILLISECONDS.sleep(300);
+    verify(someRepository, never()).trySync();
+    assertTrue(scheduler.getRefreshLagsInMillis().isEmpty());
+  }
+
+  @Test
+  public void testRequestRefreshInBatch() throws Exception {
+    someBatchConfigQueryEnabled = true;
+    when(remoteConfigBatchService.tryRefresh(anyMapOf(String.class, RemoteConfigRepository.class)))
+        .thenReturn(true);
+    RemoteConfigRefreshScheduler scheduler = new RemoteConfigRefreshScheduler();
+    scheduler.register(someNamespace, someRepository);
+    scheduler.register(anotherNamespace, anotherRepository);
+
+    scheduler.requestRefresh(someNamespace);
+    scheduler.requestRefresh(anotherNamespace);
+
+    ArgumentCaptor<Map> captor = ArgumentCaptor.forClass(Map.class);
+    verify(remoteConfigBatchService, timeout(1000).times(1)).tryRefresh(captor.capture());
+    assertEquals(2, captor.getValue().size());
+    assertEquals(someRepository, captor.getValue().get(someNamespace));
+    assertEquals(anotherRepository, captor.getValue().get(anotherNamespace));
+    verify(someRepository, never()).trySync();
+    verify(anotherRepository, never()).trySync();
+  }
+
+  @Test
+  public void testRequestRefreshInBatchFailed() throws Exception {
+    someBatchConfigQueryEnabled = true;
+    when(remoteConfigBatchService.tryRefresh(anyMapOf(String.class, RemoteConfigRepository.class)))
+        .thenReturn(false);
+    RemoteConfigRefreshScheduler scheduler = new RemoteConfigRefreshScheduler();
+    scheduler.register(someNamespace, someRepository);
+    scheduler.register(anotherNamespace, anotherRepository);
+
+    scheduler.requestRefresh(someNamespace);
+    scheduler.requestRefresh(anotherNamespace);
+
+    verify(someRepository, timeout(1000).times(1)).trySync();
+    verify(anotherRepository, timeout(1000).times(1)).trySync();
+  }
+
+  @Test(timeout = 10000)
+  public void testRefreshWithMaxConcurrency() throws Exception {
+    someMaxConcurrency = 1;
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final CountDownLatch refreshed = new CountDownLatch(2);
+    Answer<Boolean> slowSync = new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) throws Throwable {
+        int current = running.incrementAndGet();
+        maxRunning.set(Math.max(maxRunning.get(), current));
+        TimeUnit.MILLISECONDS.sleep(100);
+        running.decrementAndGet();
+        refreshed.countDown();
+        return true;
+      }
+    };
+    when(someRepository.trySync()).thenAnswer(slowSync);
+    when(anotherRepository.trySync()).thenAnswer(slowSync);
+    RemoteConfigRefreshScheduler scheduler = new RemoteConfigRefreshScheduler();
+    scheduler.register(someNamespace, someRepository);
+    scheduler.register(anotherNamespace, anotherRepository);
+
+    scheduler.requestRefresh(someNamespace);
+    scheduler.requestRefresh(anotherNamespace);
+    refreshed.await();
+
+    assertEquals(1, maxRunning.get());
+  }
+
+  @Test(timeout = 10000)
+  public void testRequestRefreshWhileRefreshing() throws Exception {
+    final CountDownLatch refreshing = new CountDownLatch(1);
+    final CountDownLatch notified = new CountDownLatch(1);
+    when(someRepository.trySync()).thenAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(InvocationOnMock invocation) throws Throwable {
+        refreshing.countDown();
+        notified.await();
+        return true;
+      }
+    }).thenReturn(true);
+    RemoteConfigRefreshScheduler scheduler = new RemoteConfigRefreshScheduler();
+    scheduler.register(someNamespace, someRepository);
+
+    scheduler.requestRefresh(someNamespace);
+    refreshing.await();
+    scheduler.requestRefresh(someNamespace);
+    notified.countDown();
+
+    //refreshed again for the notification received while refreshing
+    verify(someRepository, timeout(1000).times(2)).trySync();
+  }
+
+  public static class MockConfigUtil extends ConfigUtil {
+    @Override
+    public int getRefreshInterval() {
+      return 1;
+    }
+
+    @Override
+    public TimeUnit getRefreshIntervalTimeUnit() {
+      return TimeUnit.HOURS;
+    }
+
+    @Override
+    public boolean isBatchConfigQueryEnabled() {
+      return someBatchConfigQueryEnabled;
+    }
+
+    @Override
+    public int getCoalescedRefreshMaxConcurrency() {
+      return someMaxConcurrency;
+    }
+  }
+}
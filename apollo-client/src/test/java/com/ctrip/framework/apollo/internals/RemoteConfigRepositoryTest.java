@@ -2,6 +2,7 @@ package com.ctrip.framework.apollo.internals;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
@@ -9,6 +10,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -17,8 +19,12 @@ import static org.mockito.Mockito.when;
 import com.ctrip.framework.apollo.build.MockInjector;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigQuery;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
+import com.ctrip.framework.apollo.core.enums.ConfigurationChangeType;
 import com.ctrip.framework.apollo.core.signature.Signature;
 import com.ctrip.framework.apollo.enums.ConfigSourceType;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
@@ -29,6 +35,8 @@ import com.ctrip.framework.apollo.util.factory.PropertiesFactory;
 import com.ctrip.framework.apollo.util.http.HttpRequest;
 import com.ctrip.framework.apollo.util.http.HttpResponse;
 import com.ctrip.framework.apollo.util.http.HttpUtil;
+import com.ctrip.framework.apollo.util.loadbalancer.AdaptiveConfigServiceLoadBalancer;
+import com.ctrip.framework.apollo.util.loadbalancer.ConfigServiceLoadBalancer;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -36,11 +44,20 @@ import com.google.common.net.HttpHeaders;
 import com.google.common.net.UrlEscapers;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.http.HttpServletResponse;
 import org.junit.After;
 import org.junit.Before;
@@ -51,6 +68,7 @@ import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
 
 /**
  * Created by Jason on 4/9/16.
@@ -71,10 +89,17 @@ public class RemoteConfigRepositoryTest {
   private RemoteConfigLongPollService remoteConfigLongPollService;
   @Mock
   private PropertiesFactory propertiesFactory;
+  @Mock
+  private RemoteConfigBatchService remoteConfigBatchService;
+  @Mock
+  private RemoteConfigRefreshScheduler remoteConfigRefreshScheduler;
 
   private static String someAppId;
   private static String someCluster;
   private static String someSecret;
+  private static boolean someIncrementalSyncEnabled;
+  private static boolean someBatchConfigQueryEnabled;
+  private static boolean someCoalescedRefreshEnabled;
 
   @Before
   public void setUp() throws Exception {
@@ -107,9 +132,14 @@ public class RemoteConfigRepositoryTest {
       }
     });
     MockInjector.setInstance(PropertiesFactory.class, propertiesFactory);
+    MockInjector.setInstance(RemoteConfigBatchService.class, remoteConfigBatchService);
+    MockInjector.setInstance(RemoteConfigRefreshScheduler.class, remoteConfigRefreshScheduler);
 
     someAppId = "someAppId";
     someCluster = "someCluster";
+    someIncrementalSyncEnabled = false;
+    someBatchConfigQueryEnabled = false;
+    someCoalescedRefreshEnabled = false;
   }
 
   @After
@@ -255,6 +285,129 @@ public class RemoteConfigRepositoryTest {
     remoteConfigLongPollService.stopLongPollingRefresh();
   }
 
+  @Test
+  public void testLoadConfigWithPreloadedConfig() throws Exception {
+    someBatchConfigQueryEnabled = true;
+    Map<String, String> configurations = ImmutableMap.of("someKey", "someValue");
+    ApolloConfig someApolloConfig = assembleApolloConfig(configurations);
+
+    when(remoteConfigBatchService.takePreloadedConfig(someNamespace)).thenReturn(someApolloConfig);
+
+    RemoteConfigRepository remoteConfigRepository = new RemoteConfigRepository(someNamespace);
+
+    assertEquals(configurations, remoteConfigRepository.getConfig());
+    verify(httpUtil, never()).doGet(any(HttpRequest.class), eq(ApolloConfig.class));
+    //refreshed by the batch service instead
+    verify(remoteConfigBatchService, times(1)).submit(someNamespace, remoteConfigRepository);
+    remoteConfigLongPollService.stopLongPollingRefresh();
+  }
+
+  @Test
+  public void testLongPollNotifiedWithCoalescedRefresh() throws Exception {
+    someCoalescedRefreshEnabled = true;
+    Map<String, String> configurations = ImmutableMap.of("someKey", "someValue");
+    ApolloConfig someApolloConfig = assembleApolloConfig(configurations);
+
+    when(someResponse.getStatusCode()).thenReturn(200);
+    when(someResponse.getBody()).thenReturn(someApolloConfig);
+
+    RemoteConfigRepository remoteConfigRepository = new RemoteConfigRepository(someNamespace);
+    remoteConfigRepository.onLongPollNotified(mock(ServiceDTO.class), null);
+
+    //refreshed by the scheduler instead
+    verify(remoteConfigRefreshScheduler, times(1)).register(someNamespace, remoteConfigRepository);
+    verify(remoteConfigRefreshScheduler, times(1)).requestRefresh(someNamespace);
+    verify(httpUtil, times(1)).doGet(any(HttpRequest.class), eq(ApolloConfig.class));
+    remoteConfigLongPollService.stopLongPollingRefresh();
+  }
+
+  @Test
+  public void testRepositoryChangeListenerWithBatchLoaded() throws Exception {
+    Map<String, String> configurations = ImmutableMap.of("someKey", "someValue");
+    ApolloConfig someApolloConfig = assembleApolloConfig(configurations);
+
+    when(someResponse.getStatusCode()).thenReturn(200);
+    when(someResponse.getBody()).thenReturn(someApolloConfig);
+
+    RepositoryChangeListener someListener = mock(RepositoryChangeListener.class);
+    RemoteConfigRepository remoteConfigRepository = new RemoteConfigRepository(someNamespace);
+    remoteConfigRepository.addChangeListener(someListener);
+    final ArgumentCaptor<Properties> captor = ArgumentCaptor.forClass(Properties.class);
+
+    ApolloConfigQuery query = remoteConfigRepository.assembleConfigQuery();
+    assertEquals(someNamespace, query.getNamespaceName());
+    assertEquals(someApolloConfig.getReleaseKey(), query.getReleaseKey());
+
+    //same release
+    remoteConfigRepository.onBatchLoaded(assembleApolloConfig(ImmutableMap.of("someKey", "someValue")));
+
+    Map<String, String> newConfigurations = ImmutableMap.of("someKey", "anotherValue");
+    ApolloConfig newApolloConfig = assembleApolloConfig(newConfigurations);
+    newApolloConfig.setReleaseKey("anotherReleaseKey");
+
+    remoteConfigRepository.onBatchLoaded(newApolloConfig);
+
+    verify(someListener, times(1)).onRepositoryChange(eq(someNamespace), captor.capture());
+    assertEquals(newConfigurations, captor.getValue());
+
+    remoteConfigLongPollService.stopLongPollingRefresh();
+  }
+
+  @Test
+  public void testBatchLoadedResetsForceRefresh() throws Exception {
+    RemoteConfigRepository remoteConfigRepository = new RemoteConfigRepository(someNamespace, true);
+    AtomicBoolean configNeedForceRefresh =
+        (AtomicBoolean) ReflectionTestUtils.getField(remoteConfigRepository, "m_configNeedForceRefresh");
+
+    assertTrue(configNeedForceRefresh.get());
+
+    remoteConfigRepository.onBatchLoaded(assembleApolloConfig(ImmutableMap.of("someKey", "someValue")));
+
+    assertFalse(configNeedForceRefresh.get());
+
+    remoteConfigLongPollService.stopLongPollingRefresh();
+  }
+
+  @Test
+  public void testRepositoryChangeListenerWithIncrementalSync() throws Exception {
+    someIncrementalSyncEnabled = true;
+    Map<String, String> configurations = ImmutableMap.of("someKey", "someValue", "anotherKey", "anotherValue",
+        "yetAnotherKey", "yetAnotherValue");
+    ApolloConfig someApolloConfig = assembleApolloConfig(configurations);
+
+    when(someResponse.getStatusCode()).thenReturn(200);
+    when(someResponse.getBody()).thenReturn(someApolloConfig);
+
+    RepositoryChangeListener someListener = mock(RepositoryChangeListener.class);
+    RemoteConfigRepository remoteConfigRepository = new RemoteConfigRepository(someNamespace);
+    remoteConfigRepository.addChangeListener(someListener);
+    final ArgumentCaptor<Properties> captor = ArgumentCaptor.forClass(Properties.class);
+
+    ApolloConfig incrementalApolloConfig = assembleApolloConfig(null);
+    incrementalApolloConfig.setReleaseKey("2");
+    incrementalApolloConfig.setConfigSyncType(ConfigSyncType.INCREMENTAL_SYNC);
+    incrementalApolloConfig.setConfigurationChanges(Lists.newArrayList(
+        new ConfigurationChange("someKey", "someNewValue", ConfigurationChangeType.MODIFIED),
+        new ConfigurationChange("anotherKey", null, ConfigurationChangeType.DELETED),
+        new ConfigurationChange("newKey", "newValue", ConfigurationChangeType.ADDED)));
+
+    when(someResponse.getBody()).thenReturn(incrementalApolloConfig);
+
+    remoteConfigRepository.sync();
+
+    remoteConfigLongPollService.stopLongPollingRefresh();
+
+    verify(someListener, times(1)).onRepositoryChange(eq(someNamespace), captor.capture());
+    assertEquals(ImmutableMap.of("someKey", "someNewValue", "yetAnotherKey", "yetAnotherValue", "newKey",
+        "newValue"), captor.getValue());
+
+    final ArgumentCaptor<HttpRequest> httpRequestArgumentCaptor = ArgumentCaptor.forClass(HttpRequest.class);
+    verify(httpUtil, times(2)).doGet(httpRequestArgumentCaptor.capture(), eq(ApolloConfig.class));
+
+    assertFalse(httpRequestArgumentCaptor.getAllValues().get(0).getUrl().contains("incrementalSync"));
+    assertTrue(httpRequestArgumentCaptor.getAllValues().get(1).getUrl().contains("incrementalSync=true"));
+  }
+
   @Test
   public void testLongPollingRefresh() throws Exception {
     Map<String, String> configurations = ImmutableMap.of("someKey", "someValue");
@@ -348,6 +501,64 @@ public class RemoteConfigRepositoryTest {
             .escape(gson.toJson(notificationMessages))));
   }
 
+  @Test
+  public void testLoadConfigFromFasterConfigService() throws Exception {
+    ApolloConfig someApolloConfig = assembleApolloConfig(ImmutableMap.of("someKey", "someValue"));
+    AtomicInteger fastRequests = new AtomicInteger();
+    AtomicInteger slowRequests = new AtomicInteger();
+    HttpServer fastServer = startConfigServer(someApolloConfig, 0, fastRequests);
+    HttpServer slowServer = startConfigServer(someApolloConfig, 200, slowRequests);
+    try {
+      when(configServiceLocator.getConfigServices()).thenReturn(Lists.newArrayList(
+          assembleServiceDTO(fastServer), assembleServiceDTO(slowServer)));
+      MockInjector.setInstance(HttpUtil.class, new HttpUtil());
+      MockInjector.setInstance(ConfigServiceLoadBalancer.class, new AdaptiveConfigServiceLoadBalancer());
+
+      RemoteConfigRepository remoteConfigRepository = new RemoteConfigRepository(someNamespace);
+      for (int i = 0; i < 20; i++) {
+        remoteConfigRepository.sync();
+      }
+      remoteConfigLongPollService.stopLongPollingRefresh();
+
+      //each measured once, then the faster one is preferred
+      assertEquals(21, fastRequests.get() + slowRequests.get());
+      assertEquals(1, slowRequests.get());
+      assertEquals("someValue", remoteConfigRepository.getConfig().getProperty("someKey"));
+    } finally {
+      fastServer.stop(0);
+      slowServer.stop(0);
+    }
+  }
+
+  private HttpServer startConfigServer(final ApolloConfig apolloConfig, final long latencyInMillis,
+      final AtomicInteger requests) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/configs", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+          TimeUnit.MILLISECONDS.sleep(latencyInMillis);
+        } catch (InterruptedException e) {
+        }
+        byte[] body = new Gson().toJson(apolloConfig).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+    });
+    server.start();
+    return server;
+  }
+
+  private ServiceDTO assembleServiceDTO(HttpServer server) {
+    ServiceDTO serviceDTO = new ServiceDTO();
+    serviceDTO.setHomepageUrl(String.format("http://127.0.0.1:%d/", server.getAddress().getPort()));
+    return serviceDTO;
+  }
+
   private ApolloConfig assembleApolloConfig(Map<String, String> configurations) {
     String someAppId = "appId";
     String someClusterName = "cluster";
@@ -406,6 +617,21 @@ public class RemoteConfigRepositoryTest {
     public long getLongPollingInitialDelayInMills() {
       return 0;
     }
+
+    @Override
+    public boolean isIncrementalSyncEnabled() {
+      return someIncrementalSyncEnabled;
+    }
+
+    @Override
+    public boolean isBatchConfigQueryEnabled() {
+      return someBatchConfigQueryEnabled;
+    }
+
+    @Override
+    public boolean isCoalescedRefreshEnabled() {
+      return someCoalescedRefreshEnabled;
+    }
   }
 
   public static class MockHttpUtil extends HttpUtil {
@@ -12,6 +12,7 @@ import com.ctrip.framework.apollo.spring.JavaConfigPlaceholderTest.JsonBean;
 import com.ctrip.framework.apollo.spring.XmlConfigPlaceholderTest.TestXmlBean;
 import com.ctrip.framework.apollo.spring.annotation.ApolloJsonValue;
 import com.ctrip.framework.apollo.spring.annotation.EnableApolloConfig;
+import com.ctrip.framework.apollo.spring.property.AutoUpdateLockProvider;
 import com.ctrip.framework.apollo.util.ConfigUtil;
 import com.google.common.primitives.Ints;
 import java.text.SimpleDateFormat;
@@ -20,6 +21,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -792,6 +795,90 @@ public class JavaConfigPlaceholderAutoUpdateTest extends AbstractSpringIntegrati
     assertEquals(someNewValue, bean.getNestedProperty());
   }
 
+  @Test
+  public void testAutoUpdateWithPlaceholderOfSeveralChangedKeys() throws Exception {
+    Properties properties = assembleProperties(TIMEOUT_PROPERTY, "1000", BATCH_PROPERTY, "2000");
+
+    SimpleConfig config = prepareConfig(ConfigConsts.NAMESPACE_APPLICATION, properties);
+
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig15.class);
+
+    TestJavaConfigBean6 bean = context.getBean(TestJavaConfigBean6.class);
+
+    assertEquals("1000-2000", bean.getTimeoutAndBatch());
+    assertEquals("1000", bean.getTimeoutOrBatch());
+    assertEquals(1, bean.getTimeoutAndBatchUpdates());
+    assertEquals(1, bean.getTimeoutOrBatchUpdates());
+
+    config.onRepositoryChange(ConfigConsts.NAMESPACE_APPLICATION,
+        assembleProperties(TIMEOUT_PROPERTY, "1001", BATCH_PROPERTY, "2001"));
+
+    TimeUnit.MILLISECONDS.sleep(100);
+
+    // updated once for both keys changed
+    assertEquals("1001-2001", bean.getTimeoutAndBatch());
+    assertEquals("1001", bean.getTimeoutOrBatch());
+    assertEquals(2, bean.getTimeoutAndBatchUpdates());
+    assertEquals(2, bean.getTimeoutOrBatchUpdates());
+
+    config.onRepositoryChange(ConfigConsts.NAMESPACE_APPLICATION,
+        assembleProperties(TIMEOUT_PROPERTY, "1001", BATCH_PROPERTY, "2002"));
+
+    TimeUnit.MILLISECONDS.sleep(100);
+
+    // not updated as the resolved value doesn't change
+    assertEquals("1001-2002", bean.getTimeoutAndBatch());
+    assertEquals("1001", bean.getTimeoutOrBatch());
+    assertEquals(3, bean.getTimeoutAndBatchUpdates());
+    assertEquals(2, bean.getTimeoutOrBatchUpdates());
+  }
+
+  @Test
+  public void testAutoUpdateWithAutoUpdateLockProvider() throws Exception {
+    Properties properties = assembleProperties(TIMEOUT_PROPERTY, "1000", BATCH_PROPERTY, "2000");
+
+    SimpleConfig config = prepareConfig(ConfigConsts.NAMESPACE_APPLICATION, properties);
+
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig16.class);
+
+    TestJavaConfigBean7 bean = context.getBean(TestJavaConfigBean7.class);
+
+    assertEquals(1000, bean.getTimeout());
+    assertEquals(2000, bean.getBatch());
+
+    config.onRepositoryChange(ConfigConsts.NAMESPACE_APPLICATION,
+        assembleProperties(TIMEOUT_PROPERTY, "1001", BATCH_PROPERTY, "2001"));
+
+    TimeUnit.MILLISECONDS.sleep(100);
+
+    assertEquals(1001, bean.getTimeout());
+    assertEquals(2001, bean.getBatch());
+    // both values are written while holding the lock of the bean
+    assertEquals(2, bean.getUpdatesWithLockHeld());
+  }
+
+  @Test
+  public void testAutoUpdateNotBlockedByBeanMonitor() throws Exception {
+    Properties properties = assembleProperties(TIMEOUT_PROPERTY, "1000", BATCH_PROPERTY, "2000");
+
+    SimpleConfig config = prepareConfig(ConfigConsts.NAMESPACE_APPLICATION, properties);
+
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig1.class);
+
+    TestJavaConfigBean bean = context.getBean(TestJavaConfigBean.class);
+
+    // e.g. a synchronized method of the bean blocked on I/O
+    synchronized (bean) {
+      config.onRepositoryChange(ConfigConsts.NAMESPACE_APPLICATION,
+          assembleProperties(TIMEOUT_PROPERTY, "1001", BATCH_PROPERTY, "2001"));
+
+      TimeUnit.MILLISECONDS.sleep(100);
+
+      assertEquals(1001, bean.getTimeout());
+      assertEquals(2001, bean.getBatch());
+    }
+  }
+
   @Test
   public void testAutoUpdateWithAllKindsOfDataTypes() throws Exception {
     int someInt = 1000;
@@ -1133,6 +1220,24 @@ public class JavaConfigPlaceholderAutoUpdateTest extends AbstractSpringIntegrati
     }
   }
 
+  @Configuration
+  @EnableApolloConfig
+  static class AppConfig15 {
+    @Bean
+    TestJavaConfigBean6 testJavaConfigBean() {
+      return new TestJavaConfigBean6();
+    }
+  }
+
+  @Configuration
+  @EnableApolloConfig
+  static class AppConfig16 {
+    @Bean
+    TestJavaConfigBean7 testJavaConfigBean() {
+      return new TestJavaConfigBean7();
+    }
+  }
+
   static class TestJavaConfigBean {
 
     @Value("${timeout:100}")
@@ -1240,6 +1345,81 @@ public class JavaConfigPlaceholderAutoUpdateTest extends AbstractSpringIntegrati
     }
   }
 
+  static class TestJavaConfigBean6 {
+    private String timeoutAndBatch;
+    private String timeoutOrBatch;
+    private int timeoutAndBatchUpdates;
+    private int timeoutOrBatchUpdates;
+
+    @Value("${timeout:100}-${batch:200}")
+    public void setTimeoutAndBatch(String timeoutAndBatch) {
+      this.timeoutAndBatch = timeoutAndBatch;
+      timeoutAndBatchUpdates++;
+    }
+
+    @Value("${timeout:${batch:200}}")
+    public void setTimeoutOrBatch(String timeoutOrBatch) {
+      this.timeoutOrBatch = timeoutOrBatch;
+      timeoutOrBatchUpdates++;
+    }
+
+    public String getTimeoutAndBatch() {
+      return timeoutAndBatch;
+    }
+
+    public String getTimeoutOrBatch() {
+      return timeoutOrBatch;
+    }
+
+    public int getTimeoutAndBatchUpdates() {
+      return timeoutAndBatchUpdates;
+    }
+
+    public int getTimeoutOrBatchUpdates() {
+      return timeoutOrBatchUpdates;
+    }
+  }
+
+  static class TestJavaConfigBean7 implements AutoUpdateLockProvider {
+    private final ReentrantLock lock = new ReentrantLock();
+    @Value("${timeout:100}")
+    private int timeout;
+    private int batch;
+    private int updatesWithLockHeld;
+
+    @Value("${batch:200}")
+    public void setBatch(int batch) {
+      this.batch = batch;
+      if (lock.isHeldByCurrentThread()) {
+        updatesWithLockHeld++;
+      }
+    }
+
+    @Value("${timeout:100}")
+    public void setTimeoutChecked(int timeout) {
+      if (lock.isHeldByCurrentThread()) {
+        updatesWithLockHeld++;
+      }
+    }
+
+    @Override
+    public Lock getAutoUpdateLock() {
+      return lock;
+    }
+
+    public int getTimeout() {
+      return timeout;
+    }
+
+    public int getBatch() {
+      return batch;
+    }
+
+    public int getUpdatesWithLockHeld() {
+      return updatesWithLockHeld;
+    }
+  }
+
   static class TestNestedPropertyBean {
 
     @Value("${${someKey}.${anotherKey}}")
@@ -0,0 +1,158 @@
+package com.ctrip.framework.apollo.spring.annotation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.support.ApplicationObjectSupport;
+
+public class ApolloInjectionPointIndexTest {
+  private File someDir;
+
+  @Before
+  public void setUp() throws Exception {
+    someDir = java.nio.file.Files.createTempDirectory("ApolloInjectionPointIndexTest").toFile();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    new File(someDir, ApolloInjectionPointIndex.INDEX_LOCATION).delete();
+    new File(someDir, "META-INF/apollo").delete();
+    new File(someDir, "META-INF").delete();
+    someDir.delete();
+  }
+
+  @Test
+  public void testHasNoInjectionPoints() throws Exception {
+    ApolloInjectionPointIndex index = load(
+        PlainBean.class.getName(),
+        PlainInterface.class.getName(),
+        SubBean.class.getName(),
+        AnnotatedBean.class.getName(),
+        AnnotatedBean.class.getName() + "\tfield\tsomeField\t" + Value.class.getName() + "\tsome.key");
+
+    assertTrue(index.hasNoInjectionPoints(PlainBean.class));
+    assertFalse(index.hasNoInjectionPoints(AnnotatedBean.class));
+    // super class not indexed
+    assertFalse(index.hasNoInjectionPoints(SubBean.class));
+    assertFalse(index.hasNoInjectionPoints(NotIndexedBean.class));
+  }
+
+  @Test
+  public void testHasNoInjectionPointsWithSpringSuperClass() throws Exception {
+    ApolloInjectionPointIndex index = load(SpringSubBean.class.getName());
+
+    // the spring classes are never indexed, and may have @Value injection points
+    assertFalse(index.hasNoInjectionPoints(SpringSubBean.class));
+  }
+
+  @Test
+  public void testHasNoInjectionPointsWithProxies() throws Exception {
+    ApolloInjectionPointIndex index = load(PlainBean.class.getName(), PlainInterface.class.getName());
+
+    Object jdkProxy = new ProxyFactory(PlainInterface.class, new org.aopalliance.intercept.MethodInterceptor() {
+      @Override
+      public Object invoke(org.aopalliance.intercept.MethodInvocation invocation) {
+        return null;
+      }
+    }).getProxy();
+    assertTrue(Proxy.isProxyClass(jdkProxy.getClass()));
+    assertTrue(index.hasNoInjectionPoints(jdkProxy.getClass()));
+
+    ProxyFactory proxyFactory = new ProxyFactory(new PlainBean());
+    proxyFactory.setProxyTargetClass(true);
+    assertTrue(index.hasNoInjectionPoints(proxyFactory.getProxy().getClass()));
+  }
+
+  @Test
+  public void testWithoutIndex() throws Exception {
+    ApolloInjectionPointIndex index = new ApolloInjectionPointIndex(
+        new URLClassLoader(new URL[0], null));
+
+    assertFalse(index.hasNoInjectionPoints(PlainBean.class));
+    assertNull(index.getPlaceholderKeys(AnnotatedBean.class.getDeclaredField("someField"), Value.class));
+  }
+
+  @Test
+  public void testGetPlaceholderKeys() throws Exception {
+    String valueMethod = AnnotatedBean.class.getName() + "\tmethod\tsetValue\t" + Value.class.getName();
+    ApolloInjectionPointIndex index = load(
+        AnnotatedBean.class.getName(),
+        AnnotatedBean.class.getName() + "\tfield\tsomeField\t" + Value.class.getName() + "\tsome.key\tanother.key",
+        AnnotatedBean.class.getName() + "\tfield\tliteralField\t" + Value.class.getName(),
+        valueMethod + "\tsome.key",
+        valueMethod + "\tanother.key");
+
+    assertEquals(Sets.newHashSet("some.key", "another.key"),
+        index.getPlaceholderKeys(AnnotatedBean.class.getDeclaredField("someField"), Value.class));
+    assertEquals(Collections.emptySet(),
+        index.getPlaceholderKeys(AnnotatedBean.class.getDeclaredField("literalField"), Value.class));
+    assertNull(index.getPlaceholderKeys(AnnotatedBean.class.getDeclaredField("someField"), ApolloJsonValue.class));
+    // overloaded methods with different placeholders
+    assertNull(index.getPlaceholderKeys(AnnotatedBean.class.getDeclaredMethod("setValue", String.class),
+        Value.class));
+  }
+
+  private ApolloInjectionPointIndex load(String... lines) throws Exception {
+    File indexFile = new File(someDir, ApolloInjectionPointIndex.INDEX_LOCATION);
+    indexFile.getParentFile().mkdirs();
+    Files.write(Joiner.on('\n').join(lines), indexFile, Charsets.UTF_8);
+    return new ApolloInjectionPointIndex(new URLClassLoader(new URL[]{someDir.toURI().toURL()}, null));
+  }
+
+  public interface PlainInterface {
+    void someMethod();
+  }
+
+  public static class PlainBean implements PlainInterface, InitializingBean {
+    private String someField;
+
+    @Override
+    public void someMethod() {
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+    }
+  }
+
+  public static class NotIndexedBean {
+  }
+
+  public static class SubBean extends NotIndexedBean {
+  }
+
+  public static class SpringSubBean extends ApplicationObjectSupport {
+  }
+
+  public static class AnnotatedBean {
+    @Value("${some.key:${another.key}}")
+    private String someField;
+    @Value("someLiteral")
+    private String literalField;
+
+    @Value("${some.key}")
+    public void setValue(String value) {
+    }
+
+    @Value("${another.key}")
+    public void setValue(Integer value) {
+    }
+  }
+}
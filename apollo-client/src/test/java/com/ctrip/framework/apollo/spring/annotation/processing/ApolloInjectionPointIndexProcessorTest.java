@@ -0,0 +1,148 @@
+package com.ctrip.framework.apollo.spring.annotation.processing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.ctrip.framework.apollo.spring.annotation.ApolloInjectionPointIndex;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ApolloInjectionPointIndexProcessorTest {
+  private File outputDir;
+
+  @Before
+  public void setUp() throws Exception {
+    outputDir = java.nio.file.Files.createTempDirectory("ApolloInjectionPointIndexProcessorTest").toFile();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    deleteRecursively(outputDir);
+  }
+
+  @Test
+  public void testIndexInjectionPoints() throws Exception {
+    List<String> index = compile(
+        source("some.pkg.NoInjectionPoint",
+            "package some.pkg;",
+            "public class NoInjectionPoint {",
+            "  private String someField;",
+            "  public void someMethod() {}",
+            "  public static class Nested {",
+            "    @org.springframework.beans.factory.annotation.Value(\"${nested.key}\")",
+            "    private String nestedField;",
+            "  }",
+            "}"),
+        source("some.pkg.SomeBean",
+            "package some.pkg;",
+            "import com.ctrip.framework.apollo.Config;",
+            "import com.ctrip.framework.apollo.model.ConfigChangeEvent;",
+            "import com.ctrip.framework.apollo.spring.annotation.*;",
+            "import org.springframework.beans.factory.annotation.Value;",
+            "public class SomeBean {",
+            "  @Value(\"${some.key:${some.other.key:100}}\")",
+            "  private int someField;",
+            "  @ApolloConfig",
+            "  private Config config;",
+            "  @ApolloJsonValue(\"${some.json.key}\")",
+            "  public void setJson(String json) {}",
+            "  @ApolloConfigChangeListener",
+            "  public void onChange(ConfigChangeEvent changeEvent) {}",
+            "  @Value(\"someLiteral\")",
+            "  public void setLiteral(String literal) {}",
+            "}"));
+
+    assertEquals(Arrays.asList(
+        "some.pkg.NoInjectionPoint$Nested",
+        "some.pkg.NoInjectionPoint$Nested\tfield\tnestedField\torg.springframework.beans.factory.annotation.Value"
+            + "\tnested.key",
+        "some.pkg.NoInjectionPoint",
+        "some.pkg.SomeBean"), index.subList(0, 4));
+    List<String> points = index.subList(4, index.size());
+    assertEquals(5, points.size());
+    assertTrue(points.contains("some.pkg.SomeBean\tfield\tsomeField\torg.springframework.beans.factory.annotation.Value"
+        + "\tsome.key\tsome.other.key") || points.contains("some.pkg.SomeBean\tfield\tsomeField"
+        + "\torg.springframework.beans.factory.annotation.Value\tsome.other.key\tsome.key"));
+    assertTrue(points.contains("some.pkg.SomeBean\tfield\tconfig\tcom.ctrip.framework.apollo.spring.annotation.ApolloConfig"));
+    assertTrue(points.contains("some.pkg.SomeBean\tmethod\tsetJson"
+        + "\tcom.ctrip.framework.apollo.spring.annotation.ApolloJsonValue\tsome.json.key"));
+    assertTrue(points.contains("some.pkg.SomeBean\tmethod\tonChange"
+        + "\tcom.ctrip.framework.apollo.spring.annotation.ApolloConfigChangeListener"));
+    assertTrue(points.contains("some.pkg.SomeBean\tmethod\tsetLiteral"
+        + "\torg.springframework.beans.factory.annotation.Value"));
+  }
+
+  @Test
+  public void testIndexMetaAnnotatedInjectionPoints() throws Exception {
+    List<String> index = compile(
+        source("some.pkg.SomeValue",
+            "package some.pkg;",
+            "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)",
+            "@org.springframework.beans.factory.annotation.Value(\"${some.key}\")",
+            "public @interface SomeValue {}"),
+        source("some.pkg.SomeBean",
+            "package some.pkg;",
+            "public class SomeBean {",
+            "  @SomeValue",
+            "  private Object someField;",
+            "  @Deprecated",
+            "  private Object anotherField;",
+            "}"));
+
+    assertEquals(Arrays.asList("some.pkg.SomeValue", "some.pkg.SomeBean",
+        "some.pkg.SomeBean\tfield\tsomeField\tsome.pkg.SomeValue"), index);
+  }
+
+  private List<String> compile(JavaFileObject... sources) throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    List<String> options = Arrays.asList("-proc:only", "-d", outputDir.getAbsolutePath(),
+        "-classpath", System.getProperty("java.class.path"));
+    JavaCompiler.CompilationTask task = compiler.getTask(null, null, null, options, null, Arrays.asList(sources));
+    task.setProcessors(Arrays.asList(new ApolloInjectionPointIndexProcessor()));
+
+    assertTrue(task.call());
+
+    File index = new File(outputDir, ApolloInjectionPointIndex.INDEX_LOCATION);
+    assertTrue(index.exists());
+    List<String> lines = Lists.newArrayList(Files.readLines(index, Charsets.UTF_8));
+    assertFalse(lines.isEmpty());
+    return lines;
+  }
+
+  private JavaFileObject source(String className, final String... lines) {
+    return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+        JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        StringBuilder content = new StringBuilder();
+        for (String line : lines) {
+          content.append(line).append('\n');
+        }
+        return content;
+      }
+    };
+  }
+
+  private void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,143 @@
+package com.ctrip.framework.apollo.spring.boot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.internals.SimpleConfig;
+import com.ctrip.framework.apollo.spring.AbstractSpringIntegrationTest;
+import com.ctrip.framework.apollo.spring.annotation.EnableApolloConfig;
+import com.ctrip.framework.apollo.spring.property.AutoUpdateLockProvider;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.Test;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+public class ApolloConfigurationPropertiesRebinderTest extends AbstractSpringIntegrationTest {
+
+  @Test
+  public void testRebindAffectedBeansOnly() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty("some-prefix.timeout", "100");
+    properties.setProperty("another.prefix.batch", "200");
+    SimpleConfig config = prepareConfig(ConfigConsts.NAMESPACE_APPLICATION, properties);
+
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig.class);
+
+    SomeProperties someProperties = context.getBean(SomeProperties.class);
+    AnotherProperties anotherProperties = context.getBean(AnotherProperties.class);
+
+    assertEquals(100, someProperties.getTimeout());
+    assertEquals(200, anotherProperties.getBatch());
+    assertEquals(1, someProperties.getBinds());
+    assertEquals(1, anotherProperties.getBinds());
+
+    Properties newProperties = new Properties();
+    newProperties.setProperty("some-prefix.timeout", "101");
+    newProperties.setProperty("another.prefix.batch", "200");
+    newProperties.setProperty("some.irrelevant.key", "someValue");
+    config.onRepositoryChange(ConfigConsts.NAMESPACE_APPLICATION, newProperties);
+
+    TimeUnit.MILLISECONDS.sleep(100);
+
+    assertEquals(101, someProperties.getTimeout());
+    assertEquals(2, someProperties.getBinds());
+    assertEquals(1, anotherProperties.getBinds());
+    // rebound while holding the lock provided by the bean
+    assertTrue(someProperties.isBoundWithLockHeld());
+
+    newProperties = new Properties();
+    newProperties.setProperty("some-prefix.timeout", "101");
+    newProperties.setProperty("another.prefix.batch", "201");
+
+    // the monitor of the bean is not taken by the rebinding
+    synchronized (anotherProperties) {
+      config.onRepositoryChange(ConfigConsts.NAMESPACE_APPLICATION, newProperties);
+
+      TimeUnit.MILLISECONDS.sleep(100);
+
+      assertEquals(201, anotherProperties.getBatch());
+      assertEquals(2, someProperties.getBinds());
+      assertEquals(2, anotherProperties.getBinds());
+    }
+  }
+
+  @Test
+  public void testToRelaxedName() throws Exception {
+    assertEquals("someprefix.somekey", ApolloConfigurationPropertiesRebinder.toRelaxedName("some-prefix.someKey"));
+    assertEquals("someprefix.somekey", ApolloConfigurationPropertiesRebinder.toRelaxedName("some_prefix.some-key"));
+    assertEquals("someprefix.somelist", ApolloConfigurationPropertiesRebinder.toRelaxedName("somePrefix.someList[0]"));
+    assertEquals("", ApolloConfigurationPropertiesRebinder.toRelaxedName(""));
+  }
+
+  @Configuration
+  @EnableApolloConfig
+  @EnableConfigurationProperties(AnotherProperties.class)
+  static class AppConfig {
+    @Bean
+    public static ApolloConfigurationPropertiesRebinder apolloConfigurationPropertiesRebinder() {
+      return new ApolloConfigurationPropertiesRebinder();
+    }
+
+    @Bean
+    @ConfigurationProperties("somePrefix")
+    public SomeProperties someProperties() {
+      return new SomeProperties();
+    }
+  }
+
+  public static class SomeProperties implements AutoUpdateLockProvider {
+    private final ReentrantLock lock = new ReentrantLock();
+    private int timeout;
+    private int binds;
+    private boolean boundWithLockHeld;
+
+    public int getTimeout() {
+      return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+      this.timeout = timeout;
+      binds++;
+      boundWithLockHeld = lock.isHeldByCurrentThread();
+    }
+
+    public int getBinds() {
+      return binds;
+    }
+
+    public boolean isBoundWithLockHeld() {
+      return boundWithLockHeld;
+    }
+
+    @Override
+    public Lock getAutoUpdateLock() {
+      return lock;
+    }
+  }
+
+  @ConfigurationProperties(prefix = "another.prefix")
+  public static class AnotherProperties {
+    private int batch;
+    private int binds;
+
+    public int getBatch() {
+      return batch;
+    }
+
+    public void setBatch(int batch) {
+      this.batch = batch;
+      binds++;
+    }
+
+    public int getBinds() {
+      return binds;
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.ctrip.framework.apollo.spring.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.Config;
+import com.ctrip.framework.apollo.internals.ConfigRepository;
+import com.ctrip.framework.apollo.internals.SimpleConfig;
+import com.google.common.collect.Sets;
+import java.util.Properties;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ApolloCompositePropertySourceTest {
+  private static final String SOME_NAMESPACE = "someNamespace";
+  private static final String ANOTHER_NAMESPACE = "anotherNamespace";
+
+  private SimpleConfig someConfig;
+  private SimpleConfig anotherConfig;
+  private ApolloCompositePropertySource composite;
+
+  @Before
+  public void setUp() throws Exception {
+    someConfig = prepareConfig(SOME_NAMESPACE, properties("someKey", "someValue", "sharedKey", "someSharedValue"));
+    anotherConfig = prepareConfig(ANOTHER_NAMESPACE,
+        properties("anotherKey", "anotherValue", "sharedKey", "anotherSharedValue"));
+
+    composite = new ApolloCompositePropertySource("someComposite");
+    composite.addPropertySource(new ConfigPropertySource(SOME_NAMESPACE, someConfig));
+    composite.addPropertySource(new ConfigPropertySource(ANOTHER_NAMESPACE, anotherConfig));
+  }
+
+  @Test
+  public void testGetProperty() throws Exception {
+    assertEquals("someValue", composite.getProperty("someKey"));
+    assertEquals("anotherValue", composite.getProperty("anotherKey"));
+    // the namespace added first takes precedence
+    assertEquals("someSharedValue", composite.getProperty("sharedKey"));
+    assertNull(composite.getProperty("missingKey"));
+
+    assertTrue(composite.containsProperty("anotherKey"));
+    assertFalse(composite.containsProperty("missingKey"));
+
+    String[] names = composite.getPropertyNames();
+    assertEquals(Sets.newHashSet("someKey", "anotherKey", "sharedKey"), Sets.newHashSet(names));
+    assertEquals(3, names.length);
+    // cached until the configs change
+    assertSame(names, composite.getPropertyNames());
+  }
+
+  @Test
+  public void testGetPropertyAfterConfigChanges() throws Exception {
+    String[] names = composite.getPropertyNames();
+
+    someConfig.onRepositoryChange(SOME_NAMESPACE, properties("someKey", "someNewValue", "newKey", "newValue"));
+
+    // visible right after the change, without waiting for the change listeners
+    assertEquals("someNewValue", composite.getProperty("someKey"));
+    assertEquals("newValue", composite.getProperty("newKey"));
+    // deleted from the first namespace, so resolved from the second one
+    assertEquals("anotherSharedValue", composite.getProperty("sharedKey"));
+    assertEquals("anotherValue", composite.getProperty("anotherKey"));
+
+    String[] newNames = composite.getPropertyNames();
+    assertNotSame(names, newNames);
+    assertEquals(Sets.newHashSet("someKey", "newKey", "anotherKey", "sharedKey"), Sets.newHashSet(newNames));
+
+    anotherConfig.onRepositoryChange(ANOTHER_NAMESPACE, properties("anotherKey", "anotherValue"));
+
+    assertNull(composite.getProperty("sharedKey"));
+    assertFalse(composite.containsProperty("sharedKey"));
+    assertEquals("someNewValue", composite.getProperty("someKey"));
+  }
+
+  @Test
+  public void testGetPropertyWithNotVersionedConfig() throws Exception {
+    Config notVersionedConfig = mock(Config.class);
+    when(notVersionedConfig.getProperty("sharedKey", null)).thenReturn("notVersionedValue");
+    when(notVersionedConfig.getPropertyNames()).thenReturn(Sets.newHashSet("sharedKey"));
+
+    composite.addFirstPropertySource(new ConfigPropertySource("notVersioned", notVersionedConfig));
+
+    assertNull(composite.currentIndex());
+    assertEquals("notVersionedValue", composite.getProperty("sharedKey"));
+    assertEquals("someValue", composite.getProperty("someKey"));
+    assertTrue(composite.containsProperty("anotherKey"));
+    assertEquals(Sets.newHashSet("someKey", "anotherKey", "sharedKey"),
+        Sets.newHashSet(composite.getPropertyNames()));
+  }
+
+  private SimpleConfig prepareConfig(String namespace, Properties properties) {
+    ConfigRepository configRepository = mock(ConfigRepository.class);
+    when(configRepository.getConfig()).thenReturn(properties);
+
+    return new SimpleConfig(namespace, configRepository);
+  }
+
+  private Properties properties(String... keyValues) {
+    Properties properties = new Properties();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      properties.setProperty(keyValues[i], keyValues[i + 1]);
+    }
+    return properties;
+  }
+}
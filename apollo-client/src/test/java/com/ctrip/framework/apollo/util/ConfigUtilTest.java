@@ -29,6 +29,17 @@ public class ConfigUtilTest {
     System.clearProperty("apollo.autoUpdateInjectedSpringProperties");
     System.clearProperty("apollo.cacheDir");
     System.clearProperty(PropertiesFactory.APOLLO_PROPERTY_ORDER_ENABLE);
+    System.clearProperty("apollo.incrementalSync.enabled");
+    System.clearProperty("apollo.notificationStream.enabled");
+    System.clearProperty("apollo.batchConfigQuery.enabled");
+    System.clearProperty("apollo.staleFirstStartup.enabled");
+    System.clearProperty("apollo.staleFirstStartup.maxStalenessInSeconds");
+    System.clearProperty("apollo.binaryLocalCache.enabled");
+    System.clearProperty("apollo.coalescedRefresh.enabled");
+    System.clearProperty("apollo.coalescedRefresh.maxConcurrency");
+    System.clearProperty("apollo.configService.loadBalancer");
+    System.clearProperty("apollo.configService.maxConsecutiveFailures");
+    System.clearProperty("apollo.configService.ejectionTimeInMillis");
   }
 
   @Test
@@ -194,6 +205,134 @@ public class ConfigUtilTest {
         configUtil.isAutoUpdateInjectedSpringPropertiesEnabled());
   }
 
+  @Test
+  public void testCustomizeIncrementalSyncEnabled() throws Exception {
+    ConfigUtil configUtil = new ConfigUtil();
+
+    assertFalse(configUtil.isIncrementalSyncEnabled());
+
+    System.setProperty("apollo.incrementalSync.enabled", "true");
+
+    configUtil = new ConfigUtil();
+
+    assertTrue(configUtil.isIncrementalSyncEnabled());
+  }
+
+  @Test
+  public void testCustomizeNotificationStreamEnabled() throws Exception {
+    ConfigUtil configUtil = new ConfigUtil();
+
+    assertFalse(configUtil.isNotificationStreamEnabled());
+
+    System.setProperty("apollo.notificationStream.enabled", "true");
+
+    configUtil = new ConfigUtil();
+
+    assertTrue(configUtil.isNotificationStreamEnabled());
+  }
+
+  @Test
+  public void testCustomizeBatchConfigQueryEnabled() throws Exception {
+    ConfigUtil configUtil = new ConfigUtil();
+
+    assertFalse(configUtil.isBatchConfigQueryEnabled());
+
+    System.setProperty("apollo.batchConfigQuery.enabled", "true");
+
+    configUtil = new ConfigUtil();
+
+    assertTrue(configUtil.isBatchConfigQueryEnabled());
+  }
+
+  @Test
+  public void testCustomizeStaleFirstStartup() throws Exception {
+    long someMaxStaleness = 60;
+    ConfigUtil configUtil = new ConfigUtil();
+
+    assertFalse(configUtil.isStaleFirstStartupEnabled());
+    assertEquals(24 * 60 * 60, configUtil.getMaxStalenessInSeconds());
+
+    System.setProperty("apollo.staleFirstStartup.enabled", "true");
+    System.setProperty("apollo.staleFirstStartup.maxStalenessInSeconds", String.valueOf(someMaxStaleness));
+
+    configUtil = new ConfigUtil();
+
+    assertTrue(configUtil.isStaleFirstStartupEnabled());
+    assertEquals(someMaxStaleness, configUtil.getMaxStalenessInSeconds());
+  }
+
+  @Test
+  public void testCustomizeBinaryLocalCacheEnabled() throws Exception {
+    ConfigUtil configUtil = new ConfigUtil();
+
+    assertFalse(configUtil.isBinaryLocalCacheEnabled());
+
+    System.setProperty("apollo.binaryLocalCache.enabled", "true");
+
+    configUtil = new ConfigUtil();
+
+    assertTrue(configUtil.isBinaryLocalCacheEnabled());
+  }
+
+  @Test
+  public void testCustomizeCoalescedRefresh() throws Exception {
+    int someMaxConcurrency = 8;
+    ConfigUtil configUtil = new ConfigUtil();
+
+    assertFalse(configUtil.isCoalescedRefreshEnabled());
+    assertEquals(4, configUtil.getCoalescedRefreshMaxConcurrency());
+
+    System.setProperty("apollo.coalescedRefresh.enabled", "true");
+    System.setProperty("apollo.coalescedRefresh.maxConcurrency", String.valueOf(someMaxConcurrency));
+
+    configUtil = new ConfigUtil();
+
+    assertTrue(configUtil.isCoalescedRefreshEnabled());
+    assertEquals(someMaxConcurrency, configUtil.getCoalescedRefreshMaxConcurrency());
+  }
+
+  @Test
+  public void testCustomizeInvalidCoalescedRefreshMaxConcurrency() throws Exception {
+    System.setProperty("apollo.coalescedRefresh.maxConcurrency", "0");
+
+    ConfigUtil configUtil = new ConfigUtil();
+
+    assertEquals(4, configUtil.getCoalescedRefreshMaxConcurrency());
+  }
+
+  @Test
+  public void testCustomizeConfigServiceLoadBalancer() throws Exception {
+    String someLoadBalancer = "adaptive";
+    int someMaxConsecutiveFailures = 5;
+    long someEjectionTimeInMillis = 10000;
+    ConfigUtil configUtil = new ConfigUtil();
+
+    assertEquals("random", configUtil.getConfigServiceLoadBalancer());
+    assertEquals(3, configUtil.getConfigServiceMaxConsecutiveFailures());
+    assertEquals(30000, configUtil.getConfigServiceEjectionTimeInMillis());
+
+    System.setProperty("apollo.configService.loadBalancer", someLoadBalancer);
+    System.setProperty("apollo.configService.maxConsecutiveFailures", String.valueOf(someMaxConsecutiveFailures));
+    System.setProperty("apollo.configService.ejectionTimeInMillis", String.valueOf(someEjectionTimeInMillis));
+
+    configUtil = new ConfigUtil();
+
+    assertEquals(someLoadBalancer, configUtil.getConfigServiceLoadBalancer());
+    assertEquals(someMaxConsecutiveFailures, configUtil.getConfigServiceMaxConsecutiveFailures());
+    assertEquals(someEjectionTimeInMillis, configUtil.getConfigServiceEjectionTimeInMillis());
+  }
+
+  @Test
+  public void testCustomizeInvalidConfigServiceEjection() throws Exception {
+    System.setProperty("apollo.configService.maxConsecutiveFailures", "0");
+    System.setProperty("apollo.configService.ejectionTimeInMillis", "someInvalidValue");
+
+    ConfigUtil configUtil = new ConfigUtil();
+
+    assertEquals(3, configUtil.getConfigServiceMaxConsecutiveFailures());
+    assertEquals(30000, configUtil.getConfigServiceEjectionTimeInMillis());
+  }
+
   @Test
   public void testLocalCacheDirWithSystemProperty() throws Exception {
     String someCacheDir = "someCacheDir";
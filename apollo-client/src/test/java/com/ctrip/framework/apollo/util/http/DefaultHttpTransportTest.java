@@ -0,0 +1,175 @@
+package com.ctrip.framework.apollo.util.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.CharStreams;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DefaultHttpTransportTest {
+  private static final Gson GSON = new Gson();
+  private HttpServer server;
+  private List<String> acceptEncodings;
+  private List<InetSocketAddress> clientAddresses;
+  private DefaultHttpTransport transport;
+  private Function<Reader, ApolloConfig> configReader;
+
+  @Before
+  public void setUp() throws Exception {
+    acceptEncodings = Lists.newCopyOnWriteArrayList();
+    clientAddresses = Lists.newCopyOnWriteArrayList();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.start();
+    transport = new DefaultHttpTransport();
+    configReader = new Function<Reader, ApolloConfig>() {
+      @Override
+      public ApolloConfig apply(Reader input) {
+        return GSON.fromJson(input, ApolloConfig.class);
+      }
+    };
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop(0);
+  }
+
+  @Test
+  public void testExecuteWithGzipResponse() throws Exception {
+    ApolloConfig someConfig = assembleConfig();
+    context("/configs", 200, GSON.toJson(someConfig), true);
+
+    HttpResponse<ApolloConfig> response = transport.execute(assembleRequest("/configs"), "GET", null, configReader);
+
+    assertEquals(200, response.getStatusCode());
+    assertEquals(someConfig.getReleaseKey(), response.getBody().getReleaseKey());
+    assertEquals(someConfig.getConfigurations(), response.getBody().getConfigurations());
+    assertEquals("gzip", acceptEncodings.get(0));
+  }
+
+  @Test
+  public void testExecuteReusesConnection() throws Exception {
+    ApolloConfig someConfig = assembleConfig();
+    context("/configs", 200, GSON.toJson(someConfig), true);
+    context("/notFound", 404, "{\"status\":404}", false);
+
+    transport.execute(assembleRequest("/configs"), "GET", null, configReader);
+    try {
+      transport.execute(assembleRequest("/notFound"), "GET", null, configReader);
+      fail();
+    } catch (ApolloConfigStatusCodeException ex) {
+      //expected
+    }
+    transport.execute(assembleRequest("/configs"), "GET", null, configReader);
+
+    assertEquals(3, clientAddresses.size());
+    assertEquals(clientAddresses.get(0), clientAddresses.get(1));
+    assertEquals(clientAddresses.get(0), clientAddresses.get(2));
+  }
+
+  @Test
+  public void testExecuteWithNotModified() throws Exception {
+    context("/configs", 304, null, false);
+
+    HttpResponse<ApolloConfig> response = transport.execute(assembleRequest("/configs"), "GET", null, configReader);
+
+    assertEquals(304, response.getStatusCode());
+    assertNull(response.getBody());
+  }
+
+  @Test
+  public void testExecuteWithErrorStatusCode() throws Exception {
+    context("/configs", 404, "{\"status\":404}", false);
+
+    try {
+      transport.execute(assembleRequest("/configs"), "GET", null, configReader);
+      fail();
+    } catch (ApolloConfigStatusCodeException ex) {
+      assertEquals(404, ex.getStatusCode());
+    }
+  }
+
+  @Test
+  public void testExecutePost() throws Exception {
+    final List<String> requestBodies = Lists.newCopyOnWriteArrayList();
+    server.createContext("/post", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requestBodies.add(CharStreams.toString(
+            new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)));
+        byte[] content = "{\"releaseKey\":\"someReleaseKey\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, content.length);
+        exchange.getResponseBody().write(content);
+        exchange.close();
+      }
+    });
+
+    HttpResponse<ApolloConfig> response =
+        transport.execute(assembleRequest("/post"), "POST", "{\"someKey\":\"someValue\"}", configReader);
+
+    assertEquals("someReleaseKey", response.getBody().getReleaseKey());
+    assertEquals("{\"someKey\":\"someValue\"}", requestBodies.get(0));
+  }
+
+  private void context(String path, final int statusCode, final String body, final boolean gzip) {
+    server.createContext(path, new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        acceptEncodings.add(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        clientAddresses.add(exchange.getRemoteAddress());
+        if (body == null) {
+          exchange.sendResponseHeaders(statusCode, -1);
+          exchange.close();
+          return;
+        }
+        if (gzip) {
+          exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(statusCode, 0);
+        OutputStream out = gzip ? new GZIPOutputStream(exchange.getResponseBody()) : exchange.getResponseBody();
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+        out.close();
+        exchange.close();
+      }
+    });
+  }
+
+  private HttpRequest assembleRequest(String path) {
+    HttpRequest request = new HttpRequest(
+        String.format("http://127.0.0.1:%d%s", server.getAddress().getPort(), path));
+    request.setConnectTimeout(1000);
+    request.setReadTimeout(1000);
+    return request;
+  }
+
+  private ApolloConfig assembleConfig() {
+    Map<String, String> configurations = Maps.newHashMap();
+    for (int i = 0; i < 100; i++) {
+      configurations.put("someKey" + i, "someValue" + i);
+    }
+    ApolloConfig config = new ApolloConfig("someAppId", "someCluster", "someNamespace", "someReleaseKey");
+    config.setConfigurations(configurations);
+    return config;
+  }
+}
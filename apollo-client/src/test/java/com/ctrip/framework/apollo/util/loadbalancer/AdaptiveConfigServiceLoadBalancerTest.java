@@ -0,0 +1,142 @@
+package com.ctrip.framework.apollo.util.loadbalancer;
+
+import static org.junit.Assert.assertEquals;
+
+import com.ctrip.framework.apollo.core.dto.ServiceDTO;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveConfigServiceLoadBalancerTest {
+  private FakeTicker ticker;
+  private AdaptiveConfigServiceLoadBalancer loadBalancer;
+  private ServiceDTO someService;
+  private ServiceDTO anotherService;
+  private List<ServiceDTO> services;
+
+  private static int someMaxConsecutiveFailures;
+  private static long someEjectionTimeInMillis;
+
+  @Before
+  public void setUp() throws Exception {
+    someMaxConsecutiveFailures = 3;
+    someEjectionTimeInMillis = 1000;
+    ticker = new FakeTicker();
+    loadBalancer = new AdaptiveConfigServiceLoadBalancer(new MockConfigUtil(), ticker);
+    someService = assembleService("http://someServer");
+    anotherService = assembleService("http://anotherServer");
+    services = Lists.newArrayList(someService, anotherService);
+  }
+
+  @Test
+  public void testSelectFasterService() throws Exception {
+    loadBalancer.onSuccess(someService, 10);
+    loadBalancer.onSuccess(anotherService, 100);
+
+    for (int i = 0; i < 20; i++) {
+      assertEquals(Lists.newArrayList(someService, anotherService), loadBalancer.select(services));
+    }
+  }
+
+  @Test
+  public void testSelectServiceNotMeasuredFirst() throws Exception {
+    loadBalancer.onSuccess(someService, 10);
+
+    assertEquals(anotherService, loadBalancer.select(services).get(0));
+  }
+
+  @Test
+  public void testSelectSlowServiceAgainAfterLatencyDecayed() throws Exception {
+    loadBalancer.onSuccess(someService, 10);
+    loadBalancer.onSuccess(anotherService, 1000);
+    assertEquals(someService, loadBalancer.select(services).get(0));
+
+    ticker.advance(60, TimeUnit.SECONDS);
+    loadBalancer.onSuccess(someService, 10);
+
+    assertEquals(anotherService, loadBalancer.select(services).get(0));
+  }
+
+  @Test
+  public void testSelectWithFailingService() throws Exception {
+    loadBalancer.onSuccess(someService, 100);
+    loadBalancer.onSuccess(anotherService, 10);
+    for (int i = 0; i < someMaxConsecutiveFailures; i++) {
+      loadBalancer.onFailure(anotherService);
+    }
+
+    //ejected, still tried last
+    assertEquals(Lists.newArrayList(someService, anotherService), loadBalancer.select(services));
+
+    ticker.advance(someEjectionTimeInMillis, TimeUnit.MILLISECONDS);
+    assertEquals(anotherService, loadBalancer.select(services).get(0));
+
+    //ejected again for twice as long after one more failure
+    loadBalancer.onFailure(anotherService);
+    ticker.advance(someEjectionTimeInMillis, TimeUnit.MILLISECONDS);
+    assertEquals(someService, loadBalancer.select(services).get(0));
+    ticker.advance(someEjectionTimeInMillis, TimeUnit.MILLISECONDS);
+    assertEquals(anotherService, loadBalancer.select(services).get(0));
+  }
+
+  @Test
+  public void testSuccessResetsConsecutiveFailures() throws Exception {
+    loadBalancer.onSuccess(someService, 100);
+    loadBalancer.onSuccess(anotherService, 10);
+    for (int i = 0; i < someMaxConsecutiveFailures - 1; i++) {
+      loadBalancer.onFailure(anotherService);
+    }
+    loadBalancer.onSuccess(anotherService, 10);
+    for (int i = 0; i < someMaxConsecutiveFailures - 1; i++) {
+      loadBalancer.onFailure(anotherService);
+    }
+
+    assertEquals(anotherService, loadBalancer.select(services).get(0));
+  }
+
+  @Test
+  public void testSelectWithAllServicesEjected() throws Exception {
+    for (int i = 0; i < someMaxConsecutiveFailures; i++) {
+      loadBalancer.onFailure(someService);
+      loadBalancer.onFailure(anotherService);
+    }
+
+    assertEquals(2, loadBalancer.select(services).size());
+  }
+
+  private ServiceDTO assembleService(String homepageUrl) {
+    ServiceDTO service = new ServiceDTO();
+    service.setHomepageUrl(homepageUrl);
+    return service;
+  }
+
+  private static class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    void advance(long time, TimeUnit timeUnit) {
+      nanos.addAndGet(timeUnit.toNanos(time));
+    }
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+  }
+
+  public static class MockConfigUtil extends ConfigUtil {
+    @Override
+    public int getConfigServiceMaxConsecutiveFailures() {
+      return someMaxConsecutiveFailures;
+    }
+
+    @Override
+    public long getConfigServiceEjectionTimeInMillis() {
+      return someEjectionTimeInMillis;
+    }
+  }
+}
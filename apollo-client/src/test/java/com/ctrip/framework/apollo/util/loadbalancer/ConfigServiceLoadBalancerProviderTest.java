@@ -0,0 +1,44 @@
+package com.ctrip.framework.apollo.util.loadbalancer;
+
+import static org.junit.Assert.assertTrue;
+
+import com.ctrip.framework.apollo.build.MockInjector;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigServiceLoadBalancerProviderTest {
+  private static String someLoadBalancer;
+
+  @Before
+  public void setUp() throws Exception {
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    MockInjector.reset();
+  }
+
+  @Test
+  public void testGetByName() throws Exception {
+    someLoadBalancer = "adaptive";
+
+    assertTrue(new ConfigServiceLoadBalancerProvider().get() instanceof AdaptiveConfigServiceLoadBalancer);
+  }
+
+  @Test
+  public void testGetWithUnknownName() throws Exception {
+    someLoadBalancer = "unknown";
+
+    assertTrue(new ConfigServiceLoadBalancerProvider().get() instanceof RandomConfigServiceLoadBalancer);
+  }
+
+  public static class MockConfigUtil extends ConfigUtil {
+    @Override
+    public String getConfigServiceLoadBalancer() {
+      return someLoadBalancer;
+    }
+  }
+}
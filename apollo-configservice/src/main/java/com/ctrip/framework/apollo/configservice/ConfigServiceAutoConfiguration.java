@@ -13,6 +13,7 @@ import com.ctrip.framework.apollo.configservice.controller.ConfigFileController;
 import com.ctrip.framework.apollo.configservice.controller.NotificationController;
 import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
 import com.ctrip.framework.apollo.configservice.filter.ClientAuthenticationFilter;
+import com.ctrip.framework.apollo.configservice.service.ConfigResponseCache;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigServiceWithCache;
@@ -75,6 +76,7 @@ public class ConfigServiceAutoConfiguration {
     private final TagReleaseRulesHolder tagReleaseRulesHolder;
     private final ReleaseMessageServiceWithCache releaseMessageServiceWithCache;
     private final ConfigService configService;
+    private final ConfigResponseCache configResponseCache;
 
     public MessageScannerConfiguration(
         final NotificationController notificationController,
@@ -83,7 +85,8 @@ public class ConfigServiceAutoConfiguration {
         final GrayReleaseRulesHolder grayReleaseRulesHolder,
         final TagReleaseRulesHolder tagReleaseRulesHolder,
         final ReleaseMessageServiceWithCache releaseMessageServiceWithCache,
-        final ConfigService configService) {
+        final ConfigService configService,
+        final ConfigResponseCache configResponseCache) {
       this.notificationController = notificationController;
       this.configFileController = configFileController;
       this.notificationControllerV2 = notificationControllerV2;
@@ -91,6 +94,7 @@ public class ConfigServiceAutoConfiguration {
       this.tagReleaseRulesHolder = tagReleaseRulesHolder;
       this.releaseMessageServiceWithCache = releaseMessageServiceWithCache;
       this.configService = configService;
+      this.configResponseCache = configResponseCache;
     }
 
     @Bean
@@ -104,6 +108,7 @@ public class ConfigServiceAutoConfiguration {
       //2. handle server cache
       releaseMessageScanner.addMessageListener(configService);
       releaseMessageScanner.addMessageListener(configFileController);
+      releaseMessageScanner.addMessageListener(configResponseCache);
       //3. notify clients
       releaseMessageScanner.addMessageListener(notificationControllerV2);
       releaseMessageScanner.addMessageListener(notificationController);
@@ -1,8 +1,9 @@
 package com.ctrip.framework.apollo.configservice.controller;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -10,28 +11,45 @@ import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.ConfigResponseCache;
+import com.ctrip.framework.apollo.configservice.service.ConfigResponseCache.ConfigResponse;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
 import com.ctrip.framework.apollo.configservice.util.InstanceConfigAuditUtil;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.ReleaseConfigurationsMerger;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigQuery;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
+import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
+import com.ctrip.framework.apollo.core.enums.ConfigurationChangeType;
 import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -41,42 +59,186 @@ import com.google.gson.reflect.TypeToken;
 public class ConfigController {
   private static final Splitter X_FORWARDED_FOR_SPLITTER = Splitter.on(",").omitEmptyStrings()
       .trimResults();
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
+  private static final Splitter RELEASE_KEY_SPLITTER = Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+      .omitEmptyStrings();
+  private static final String GZIP_ENCODING = "gzip";
   private final ConfigService configService;
   private final AppNamespaceServiceWithCache appNamespaceService;
   private final NamespaceUtil namespaceUtil;
   private final InstanceConfigAuditUtil instanceConfigAuditUtil;
+  private final ConfigResponseCache configResponseCache;
+  private final BizConfig bizConfig;
   private final Gson gson;
-
-  private static final Type configurationTypeReference = new TypeToken<Map<String, String>>() {
-      }.getType();
+  private final ReleaseConfigurationsMerger releaseConfigurationsMerger;
 
   public ConfigController(
       final ConfigService configService,
       final AppNamespaceServiceWithCache appNamespaceService,
       final NamespaceUtil namespaceUtil,
       final InstanceConfigAuditUtil instanceConfigAuditUtil,
+      final ConfigResponseCache configResponseCache,
+      final BizConfig bizConfig,
       final Gson gson) {
     this.configService = configService;
     this.appNamespaceService = appNamespaceService;
     this.namespaceUtil = namespaceUtil;
     this.instanceConfigAuditUtil = instanceConfigAuditUtil;
+    this.configResponseCache = configResponseCache;
+    this.bizConfig = bizConfig;
     this.gson = gson;
+    this.releaseConfigurationsMerger = new ReleaseConfigurationsMerger(gson);
   }
 
   @GetMapping(value = "/{appId}/{clusterName}/{namespace:.+}")
-  public ApolloConfig queryConfig(@PathVariable String appId, @PathVariable String clusterName,
-                                  @PathVariable String namespace,
-                                  @RequestParam(value = "dataCenter", required = false) String dataCenter,
-                                  @RequestParam(value = "releaseKey", defaultValue = "-1") String clientSideReleaseKey,
-                                  @RequestParam(value = "ip", required = false) String clientIp,
-                                  @RequestParam(value = "appTag", required = false) String appTag,
-                                  @RequestParam(value = "messages", required = false) String messagesAsString,
-                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+  public ResponseEntity<byte[]> queryConfigAsResponse(@PathVariable String appId, @PathVariable String clusterName,
+                                                      @PathVariable String namespace,
+                                                      @RequestParam(value = "dataCenter", required = false) String dataCenter,
+                                                      @RequestParam(value = "releaseKey", defaultValue = "-1") String clientSideReleaseKey,
+                                                      @RequestParam(value = "ip", required = false) String clientIp,
+                                                      @RequestParam(value = "appTag", required = false) String appTag,
+                                                      @RequestParam(value = "messages", required = false) String messagesAsString,
+                                                      @RequestParam(value = "incrementalSync", defaultValue = "false") boolean incrementalSync,
+                                                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String originalNamespace = namespace;
+    LoadedReleases loadedReleases = loadReleases(appId, clusterName, namespace, dataCenter, clientSideReleaseKey,
+        clientIp, appTag, messagesAsString, request, response);
+
+    if (loadedReleases == null) {
+      return null;
+    }
+
+    String eTag = String.format("\"%s\"", loadedReleases.mergedReleaseKey);
+    if (eTag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+      Tracer.logEvent("Apollo.Config.NotModified",
+          assembleKey(appId, loadedReleases.appClusterNameLoaded, originalNamespace, dataCenter));
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+    }
+
+    List<Release> historyReleases = null;
+    if (incrementalSync && bizConfig.isConfigServiceIncrementalSyncEnabled()) {
+      historyReleases = findHistoryReleases(clientSideReleaseKey, loadedReleases.releases);
+    }
+
+    ConfigResponse configResponse;
+    if (historyReleases == null) {
+      String cacheKey = STRING_JOINER.join(appId, loadedReleases.appClusterNameLoaded, originalNamespace,
+          loadedReleases.mergedReleaseKey);
+      configResponse = configResponseCache.getOrCreate(cacheKey, loadedReleases.releases,
+          () -> gson.toJson(assembleApolloConfig(appId, originalNamespace, loadedReleases))
+              .getBytes(StandardCharsets.UTF_8));
+    } else {
+      //the changes between two releases are the same for all the clients, so they are cached as well
+      String cacheKey = STRING_JOINER.join(appId, loadedReleases.appClusterNameLoaded, originalNamespace,
+          loadedReleases.mergedReleaseKey, ConfigSyncType.INCREMENTAL_SYNC, clientSideReleaseKey);
+      List<Release> releasesOnClientSide = historyReleases;
+      configResponse = configResponseCache.getOrCreate(cacheKey, loadedReleases.releases,
+          () -> gson.toJson(assembleIncrementalApolloConfig(appId, originalNamespace, loadedReleases,
+              releasesOnClientSide)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    Tracer.logEvent("Apollo.Config.Found", assembleKey(appId, loadedReleases.appClusterNameLoaded,
+        originalNamespace, dataCenter));
+
+    ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .eTag(eTag);
+    if (configResponseCache.isGzipEnabled() && acceptsGzip(request)) {
+      return builder.header(HttpHeaders.CONTENT_ENCODING, GZIP_ENCODING)
+          .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+          .body(configResponse.getGzippedBody());
+    }
+    return builder.body(configResponse.getBody());
+  }
+
+  /**
+   * Loads the config for {@link ConfigFileController}, which renders it in its own formats instead of the cached
+   * response of {@link #queryConfigAsResponse}.
+   */
+  ApolloConfig queryConfig(String appId, String clusterName, String namespace, String dataCenter,
+                           String clientSideReleaseKey, String clientIp, String appTag,
+                           String messagesAsString, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String originalNamespace = namespace;
+    LoadedReleases loadedReleases = loadReleases(appId, clusterName, namespace, dataCenter, clientSideReleaseKey,
+        clientIp, appTag, messagesAsString, request, response);
+
+    if (loadedReleases == null) {
+      return null;
+    }
+
+    ApolloConfig apolloConfig = assembleApolloConfig(appId, originalNamespace, loadedReleases);
+
+    Tracer.logEvent("Apollo.Config.Found", assembleKey(appId, loadedReleases.appClusterNameLoaded,
+        originalNamespace, dataCenter));
+    return apolloConfig;
+  }
+
+  /**
+   * Batch version of {@link #queryConfigAsResponse}, returns the configs of the namespaces changed against the release
+   * keys on client side in one response. The namespaces not changed or not found are left out of the response.
+   */
+  @PostMapping(value = "/{appId}/{clusterName}")
+  public ResponseEntity<List<ApolloConfig>> queryConfigs(@PathVariable String appId, @PathVariable String clusterName,
+                                                         @RequestParam(value = "dataCenter", required = false) String dataCenter,
+                                                         @RequestParam(value = "ip", required = false) String clientIp,
+                                                         @RequestParam(value = "appTag", required = false) String appTag,
+                                                         @RequestBody List<ApolloConfigQuery> queries,
+                                                         HttpServletRequest request) {
+    if (!bizConfig.isConfigServiceBatchQueryEnabled()) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    if (CollectionUtils.isEmpty(queries)) {
+      throw new BadRequestException("No namespace to query");
+    }
+    if (queries.size() > bizConfig.configServiceBatchQueryMaxNamespaces()) {
+      throw new BadRequestException(String.format("Too many namespaces to query: %d, max: %d", queries.size(),
+          bizConfig.configServiceBatchQueryMaxNamespaces()));
+    }
+
+    if (Strings.isNullOrEmpty(clientIp)) {
+      clientIp = tryToGetClientIp(request);
+    }
+
+    List<ApolloConfig> apolloConfigs = Lists.newArrayList();
+    for (ApolloConfigQuery query : queries) {
+      String originalNamespace = query.getNamespaceName();
+      if (Strings.isNullOrEmpty(originalNamespace)) {
+        continue;
+      }
+
+      LoadedReleases loadedReleases = findReleases(appId, clusterName, originalNamespace, dataCenter, clientIp,
+          appTag, query.getMessages());
+
+      if (loadedReleases == null) {
+        Tracer.logEvent("Apollo.Config.NotFound", assembleKey(appId, clusterName, originalNamespace, dataCenter));
+        continue;
+      }
+
+      if (loadedReleases.mergedReleaseKey.equals(query.getReleaseKey())) {
+        Tracer.logEvent("Apollo.Config.NotModified",
+            assembleKey(appId, loadedReleases.appClusterNameLoaded, originalNamespace, dataCenter));
+        continue;
+      }
+
+      apolloConfigs.add(assembleApolloConfig(appId, originalNamespace, loadedReleases));
+      Tracer.logEvent("Apollo.Config.Found", assembleKey(appId, loadedReleases.appClusterNameLoaded,
+          originalNamespace, dataCenter));
+    }
+
+    Tracer.logEvent("Apollo.Config.BatchQuery", STRING_JOINER.join(appId, clusterName),
+        Transaction.SUCCESS, String.format("namespaces=%d&changed=%d", queries.size(), apolloConfigs.size()));
+    return ResponseEntity.ok(apolloConfigs);
+  }
+
+  /**
+   * Load the releases of the namespace, returns null if the response is already decided, i.e. 404 or 304
+   */
+  private LoadedReleases loadReleases(String appId, String clusterName, String namespace, String dataCenter,
+                                      String clientSideReleaseKey, String clientIp, String appTag,
+                                      String messagesAsString, HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
     String originalNamespace = namespace;
-    //strip out .properties suffix
-    namespace = namespaceUtil.filterNamespaceName(namespace);
-    //fix the character case issue, such as FX.apollo <-> fx.apollo
-    namespace = namespaceUtil.normalizeNamespace(appId, namespace);
 
     if (Strings.isNullOrEmpty(clientIp)) {
       clientIp = tryToGetClientIp(request);
@@ -84,6 +246,40 @@ public class ConfigController {
 
     ApolloNotificationMessages clientMessages = transformMessages(messagesAsString);
 
+    LoadedReleases loadedReleases = findReleases(appId, clusterName, namespace, dataCenter, clientIp, appTag,
+        clientMessages);
+
+    if (loadedReleases == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND,
+          String.format(
+              "Could not load configurations with appId: %s, clusterName: %s, namespace: %s",
+              appId, clusterName, originalNamespace));
+      Tracer.logEvent("Apollo.Config.NotFound",
+          assembleKey(appId, clusterName, originalNamespace, dataCenter));
+      return null;
+    }
+
+    if (loadedReleases.mergedReleaseKey.equals(clientSideReleaseKey)) {
+      // Client side configuration is the same with server side, return 304
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      Tracer.logEvent("Apollo.Config.NotModified",
+          assembleKey(appId, loadedReleases.appClusterNameLoaded, originalNamespace, dataCenter));
+      return null;
+    }
+
+    return loadedReleases;
+  }
+
+  /**
+   * Find and audit the releases of the namespace, returns null if not found
+   */
+  private LoadedReleases findReleases(String appId, String clusterName, String namespace, String dataCenter,
+                                      String clientIp, String appTag, ApolloNotificationMessages clientMessages) {
+    //strip out .properties suffix
+    namespace = namespaceUtil.filterNamespaceName(namespace);
+    //fix the character case issue, such as FX.apollo <-> fx.apollo
+    namespace = namespaceUtil.normalizeNamespace(appId, namespace);
+
     List<Release> releases = Lists.newLinkedList();
 
     String appClusterNameLoaded = clusterName;
@@ -108,12 +304,6 @@ public class ConfigController {
     }
 
     if (releases.isEmpty()) {
-      response.sendError(HttpServletResponse.SC_NOT_FOUND,
-          String.format(
-              "Could not load configurations with appId: %s, clusterName: %s, namespace: %s",
-              appId, clusterName, originalNamespace));
-      Tracer.logEvent("Apollo.Config.NotFound",
-          assembleKey(appId, clusterName, originalNamespace, dataCenter));
       return null;
     }
 
@@ -122,21 +312,103 @@ public class ConfigController {
     String mergedReleaseKey = releases.stream().map(Release::getReleaseKey)
             .collect(Collectors.joining(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR));
 
-    if (mergedReleaseKey.equals(clientSideReleaseKey)) {
-      // Client side configuration is the same with server side, return 304
-      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-      Tracer.logEvent("Apollo.Config.NotModified",
-          assembleKey(appId, appClusterNameLoaded, originalNamespace, dataCenter));
+    return new LoadedReleases(releases, appClusterNameLoaded, mergedReleaseKey);
+  }
+
+  private ApolloConfig assembleApolloConfig(String appId, String originalNamespace, LoadedReleases loadedReleases) {
+    ApolloConfig apolloConfig = new ApolloConfig(appId, loadedReleases.appClusterNameLoaded, originalNamespace,
+        loadedReleases.mergedReleaseKey);
+    apolloConfig.setConfigurations(mergeReleaseConfigurations(loadedReleases.releases));
+    return apolloConfig;
+  }
+
+  /**
+   * Assemble the changes against the releases on client side, falls back to the full configurations if the changes
+   * are not smaller
+   */
+  private ApolloConfig assembleIncrementalApolloConfig(String appId, String originalNamespace,
+                                                       LoadedReleases loadedReleases,
+                                                       List<Release> historyReleases) {
+    Map<String, String> latestConfigurations = mergeReleaseConfigurations(loadedReleases.releases);
+    List<ConfigurationChange> changes = calcConfigurationChanges(latestConfigurations,
+        mergeReleaseConfigurations(historyReleases));
+
+    ApolloConfig apolloConfig = new ApolloConfig(appId, loadedReleases.appClusterNameLoaded, originalNamespace,
+        loadedReleases.mergedReleaseKey);
+    if (changes.size() >= latestConfigurations.size()) {
+      apolloConfig.setConfigurations(latestConfigurations);
+      return apolloConfig;
+    }
+
+    Tracer.logEvent("Apollo.Config.IncrementalSync", STRING_JOINER.join(appId, loadedReleases.appClusterNameLoaded,
+        originalNamespace));
+    apolloConfig.setConfigSyncType(ConfigSyncType.INCREMENTAL_SYNC);
+    apolloConfig.setConfigurationChanges(changes);
+    return apolloConfig;
+  }
+
+  /**
+   * Find the releases of the client side merged release key in the merge order, returns null if any of them is
+   * missing or not of the same app, cluster and namespace as the loaded one in the same position, so that the full
+   * configurations are returned
+   */
+  private List<Release> findHistoryReleases(String clientSideReleaseKey, List<Release> loadedReleases) {
+    if (Strings.isNullOrEmpty(clientSideReleaseKey) || "-1".equals(clientSideReleaseKey)) {
       return null;
     }
 
-    ApolloConfig apolloConfig = new ApolloConfig(appId, appClusterNameLoaded, originalNamespace,
-        mergedReleaseKey);
-    apolloConfig.setConfigurations(mergeReleaseConfigurations(releases));
+    List<String> releaseKeys = RELEASE_KEY_SPLITTER.splitToList(clientSideReleaseKey);
+    if (releaseKeys.size() != loadedReleases.size()) {
+      return null;
+    }
+    Map<String, Release> releases = configService.findReleasesByReleaseKeys(Sets.newHashSet(releaseKeys));
 
-    Tracer.logEvent("Apollo.Config.Found", assembleKey(appId, appClusterNameLoaded,
-        originalNamespace, dataCenter));
-    return apolloConfig;
+    List<Release> historyReleases = Lists.newArrayListWithCapacity(releaseKeys.size());
+    for (int i = 0; i < releaseKeys.size(); i++) {
+      Release release = releases.get(releaseKeys.get(i));
+      if (release == null) {
+        return null;
+      }
+      if (!isSameNamespace(release, loadedReleases.get(i))) {
+        Tracer.logEvent("Apollo.Config.IncrementalSync.Mismatch", releaseKeys.get(i));
+        return null;
+      }
+      historyReleases.add(release);
+    }
+    return historyReleases;
+  }
+
+  private boolean isSameNamespace(Release release, Release anotherRelease) {
+    return Objects.equals(release.getAppId(), anotherRelease.getAppId())
+        && Objects.equals(release.getClusterName(), anotherRelease.getClusterName())
+        && Objects.equals(release.getNamespaceName(), anotherRelease.getNamespaceName());
+  }
+
+  List<ConfigurationChange> calcConfigurationChanges(Map<String, String> latestConfigurations,
+                                                     Map<String, String> historyConfigurations) {
+    List<ConfigurationChange> changes = Lists.newArrayList();
+
+    for (Map.Entry<String, String> entry : latestConfigurations.entrySet()) {
+      String key = entry.getKey();
+      if (!historyConfigurations.containsKey(key)) {
+        changes.add(new ConfigurationChange(key, entry.getValue(), ConfigurationChangeType.ADDED));
+      } else if (!Objects.equals(entry.getValue(), historyConfigurations.get(key))) {
+        changes.add(new ConfigurationChange(key, entry.getValue(), ConfigurationChangeType.MODIFIED));
+      }
+    }
+
+    for (String key : historyConfigurations.keySet()) {
+      if (!latestConfigurations.containsKey(key)) {
+        changes.add(new ConfigurationChange(key, null, ConfigurationChangeType.DELETED));
+      }
+    }
+
+    return changes;
+  }
+
+  private boolean acceptsGzip(HttpServletRequest request) {
+    String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    return acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains(GZIP_ENCODING);
   }
 
   private boolean namespaceBelongsToAppId(String appId, String namespaceName) {
@@ -175,16 +447,8 @@ public class ConfigController {
         clientMessages);
   }
 
-  /**
-   * Merge configurations of releases.
-   * Release in lower index override those in higher index
-   */
   Map<String, String> mergeReleaseConfigurations(List<Release> releases) {
-    Map<String, String> result = Maps.newLinkedHashMap();
-    for (Release release : Lists.reverse(releases)) {
-      result.putAll(gson.fromJson(release.getConfigurations(), configurationTypeReference));
-    }
-    return result;
+    return releaseConfigurationsMerger.merge(releases);
   }
 
   private String assembleKey(String appId, String cluster, String namespace, String dataCenter) {
@@ -232,4 +496,16 @@ public class ConfigController {
 
     return notificationMessages;
   }
+
+  private static class LoadedReleases {
+    private final List<Release> releases;
+    private final String appClusterNameLoaded;
+    private final String mergedReleaseKey;
+
+    private LoadedReleases(List<Release> releases, String appClusterNameLoaded, String mergedReleaseKey) {
+      this.releases = releases;
+      this.appClusterNameLoaded = appClusterNameLoaded;
+      this.mergedReleaseKey = mergedReleaseKey;
+    }
+  }
 }
@@ -8,8 +8,12 @@ import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.NotificationFanOutScheduler;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultRegistry;
 import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.ctrip.framework.apollo.configservice.wrapper.NotificationStreamWrapper;
+import com.ctrip.framework.apollo.configservice.wrapper.NotificationSubscriber;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
@@ -19,15 +23,14 @@ import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultimap;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -35,6 +38,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.lang.reflect.Type;
 import java.util.Collection;
@@ -42,8 +46,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -54,15 +63,19 @@ import java.util.function.Function;
 @RequestMapping("/notifications/v2")
 public class NotificationControllerV2 implements ReleaseMessageListener {
   private static final Logger logger = LoggerFactory.getLogger(NotificationControllerV2.class);
-  private final Multimap<String, DeferredResultWrapper> deferredResults =
-      Multimaps.synchronizedSetMultimap(TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
+  private final DeferredResultRegistry<NotificationSubscriber> deferredResults = new DeferredResultRegistry<>();
+  private final Set<NotificationStreamWrapper> notificationStreams = ConcurrentHashMap.newKeySet();
   private static final Splitter STRING_SPLITTER =
       Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).omitEmptyStrings();
   private static final Type notificationsTypeReference =
       new TypeToken<List<ApolloConfigNotification>>() {
       }.getType();
 
-  private final ExecutorService largeNotificationBatchExecutorService;
+  private final NotificationFanOutScheduler notificationFanOutScheduler;
+  private final ScheduledExecutorService heartbeatExecutorService;
+  //the writes of the notification streams, a stalled write holds a thread until its stream is dropped, the streams
+  //rejected when all the threads and the queue are taken are dropped, and their clients subscribe again
+  private final ExecutorService notificationStreamSendExecutorService;
 
   private final WatchKeysUtil watchKeysUtil;
   private final ReleaseMessageServiceWithCache releaseMessageService;
@@ -79,8 +92,19 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       final NamespaceUtil namespaceUtil,
       final Gson gson,
       final BizConfig bizConfig) {
-    largeNotificationBatchExecutorService = Executors.newSingleThreadExecutor(ApolloThreadFactory.create
-        ("NotificationControllerV2", true));
+    notificationFanOutScheduler = new NotificationFanOutScheduler(bizConfig);
+    heartbeatExecutorService = Executors.newSingleThreadScheduledExecutor(
+        ApolloThreadFactory.create("NotificationStreamHeartbeat", true));
+    heartbeatExecutorService.scheduleWithFixedDelay(this::sendHeartbeats, 1, 1, TimeUnit.SECONDS);
+    ThreadPoolExecutor notificationStreamSendExecutor = new ThreadPoolExecutor(
+        bizConfig.notificationStreamSendThreads(), bizConfig.notificationStreamSendThreads(), 60L, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(bizConfig.notificationStreamSendQueueSize()),
+        ApolloThreadFactory.create("NotificationStreamSend", true), (task, executor) -> {
+          Tracer.logEvent("Apollo.NotificationStream", "Rejected");
+          throw new RejectedExecutionException("Notification stream send queue is full");
+        });
+    notificationStreamSendExecutor.allowCoreThreadTimeOut(true);
+    notificationStreamSendExecutorService = notificationStreamSendExecutor;
     this.watchKeysUtil = watchKeysUtil;
     this.releaseMessageService = releaseMessageService;
     this.entityManagerUtil = entityManagerUtil;
@@ -97,25 +121,8 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       @RequestParam(value = "dataCenter", required = false) String dataCenter,
       @RequestParam(value = "appTag", required = false) String appTag,
       @RequestParam(value = "ip", required = false) String clientIp) {
-    List<ApolloConfigNotification> notifications = null;
-
-    try {
-      notifications =
-          gson.fromJson(notificationsAsString, notificationsTypeReference);
-    } catch (Throwable ex) {
-      Tracer.logError(ex);
-    }
-
-    if (CollectionUtils.isEmpty(notifications)) {
-      throw new BadRequestException("Invalid format of notifications: " + notificationsAsString);
-    }
-    
-    Map<String, ApolloConfigNotification> filteredNotifications = filterNotifications(appId, notifications);
+    Map<String, ApolloConfigNotification> filteredNotifications = parseNotifications(appId, notificationsAsString);
 
-    if (CollectionUtils.isEmpty(filteredNotifications)) {
-      throw new BadRequestException("Invalid format of notifications: " + notificationsAsString);
-    }
-    
     DeferredResultWrapper deferredResultWrapper = new DeferredResultWrapper(bizConfig.longPollingTimeoutInMilli());
     Set<String> namespaces = Sets.newHashSetWithExpectedSize(filteredNotifications.size());
     Map<String, Long> clientSideNotifications = Maps.newHashMapWithExpectedSize(filteredNotifications.size());
@@ -145,16 +152,12 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
 
     deferredResultWrapper.onCompletion(() -> {
       //unregister all keys
-      for (String key : watchedKeys) {
-        deferredResults.remove(key, deferredResultWrapper);
-      }
+      deferredResults.unregister(watchedKeys, deferredResultWrapper);
       logWatchedKeys(watchedKeys, "Apollo.LongPoll.CompletedKeys");
     });
 
     //register all keys
-    for (String key : watchedKeys) {
-      this.deferredResults.put(key, deferredResultWrapper);
-    }
+    deferredResults.register(watchedKeys, deferredResultWrapper);
 
     logWatchedKeys(watchedKeys, "Apollo.LongPoll.RegisteredKeys");
     logger.debug("Listening {} from appId: {}, appTag: {}, cluster: {}, namespace: {}, datacenter: {}",
@@ -185,6 +188,107 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     return deferredResultWrapper.getResult();
   }
 
+  /**
+   * Subscribe the notifications once and receive all the following ones over the same connection, see
+   * {@link NotificationStreamWrapper}. The clients fall back to {@link #pollNotification} when it's not found.
+   */
+  @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamNotifications(
+      @RequestParam(value = "appId") String appId,
+      @RequestParam(value = "cluster") String cluster,
+      @RequestParam(value = "notifications") String notificationsAsString,
+      @RequestParam(value = "dataCenter", required = false) String dataCenter,
+      @RequestParam(value = "appTag", required = false) String appTag,
+      @RequestParam(value = "ip", required = false) String clientIp) {
+    if (!bizConfig.isNotificationStreamEnabled()) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+
+    Map<String, ApolloConfigNotification> filteredNotifications = parseNotifications(appId, notificationsAsString);
+
+    NotificationStreamWrapper notificationStream =
+        new NotificationStreamWrapper(bizConfig.notificationStreamTimeoutInMilli(),
+            notificationStreamSendExecutorService);
+    Set<String> namespaces = Sets.newHashSetWithExpectedSize(filteredNotifications.size());
+    Map<String, Long> clientSideNotifications = Maps.newHashMapWithExpectedSize(filteredNotifications.size());
+
+    for (Map.Entry<String, ApolloConfigNotification> notificationEntry : filteredNotifications.entrySet()) {
+      String normalizedNamespace = notificationEntry.getKey();
+      ApolloConfigNotification notification = notificationEntry.getValue();
+      namespaces.add(normalizedNamespace);
+      clientSideNotifications.put(normalizedNamespace, notification.getNotificationId());
+      if (!Objects.equals(notification.getNamespaceName(), normalizedNamespace)) {
+        notificationStream.recordNamespaceNameNormalizedResult(notification.getNamespaceName(), normalizedNamespace);
+      }
+    }
+
+    Multimap<String, String> watchedKeysMap =
+        watchKeysUtil.assembleAllWatchKeys(appId, cluster, namespaces, dataCenter, appTag);
+
+    Set<String> watchedKeys = Sets.newHashSet(watchedKeysMap.values());
+
+    //register before the check like the long polling requests, the notifications found twice are only sent once
+    notificationStream.onTimeout(() -> logWatchedKeys(watchedKeys, "Apollo.NotificationStream.TimeOutKeys"));
+
+    notificationStream.onCompletion(() -> {
+      deferredResults.unregister(watchedKeys, notificationStream);
+      notificationStreams.remove(notificationStream);
+      logWatchedKeys(watchedKeys, "Apollo.NotificationStream.CompletedKeys");
+    });
+
+    deferredResults.register(watchedKeys, notificationStream);
+    notificationStreams.add(notificationStream);
+
+    logWatchedKeys(watchedKeys, "Apollo.NotificationStream.RegisteredKeys");
+    logger.debug("Streaming {} to appId: {}, appTag: {}, cluster: {}, namespace: {}, datacenter: {}",
+        watchedKeys, appId, appTag, cluster, namespaces, dataCenter);
+
+    List<ReleaseMessage> latestReleaseMessages =
+        releaseMessageService.findLatestReleaseMessagesGroupByMessages(watchedKeys);
+
+    //the db connection must not be held by the stream
+    entityManagerUtil.closeEntityManager();
+
+    List<ApolloConfigNotification> newNotifications =
+        getApolloConfigNotifications(namespaces, clientSideNotifications, watchedKeysMap,
+            latestReleaseMessages);
+
+    if (CollectionUtils.isEmpty(newNotifications)) {
+      //let the client know the subscription is done
+      notificationStream.sendHeartbeat();
+    } else {
+      notificationStream.setResult(newNotifications);
+    }
+
+    return ResponseEntity.ok().header("Cache-Control", "no-cache").body(notificationStream.getEmitter());
+  }
+
+  public int getNotificationStreamSize() {
+    return notificationStreams.size();
+  }
+
+  private Map<String, ApolloConfigNotification> parseNotifications(String appId, String notificationsAsString) {
+    List<ApolloConfigNotification> notifications = null;
+
+    try {
+      notifications =
+          gson.fromJson(notificationsAsString, notificationsTypeReference);
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+    }
+
+    if (CollectionUtils.isEmpty(notifications)) {
+      throw new BadRequestException("Invalid format of notifications: " + notificationsAsString);
+    }
+
+    Map<String, ApolloConfigNotification> filteredNotifications = filterNotifications(appId, notifications);
+
+    if (CollectionUtils.isEmpty(filteredNotifications)) {
+      throw new BadRequestException("Invalid format of notifications: " + notificationsAsString);
+    }
+    return filteredNotifications;
+  }
+
   private Map<String, ApolloConfigNotification> filterNotifications(String appId,
                                                                     List<ApolloConfigNotification> notifications) {
     Map<String, ApolloConfigNotification> filteredNotifications = Maps.newHashMap();
@@ -261,39 +365,24 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       return;
     }
 
-    if (!deferredResults.containsKey(content)) {
+    //a snapshot of the current watchers, so registering and unregistering could go on during the notification
+    List<NotificationSubscriber> results = deferredResults.get(content);
+    if (results.isEmpty()) {
       return;
     }
 
-    //create a new list to avoid ConcurrentModificationException
-    List<DeferredResultWrapper> results = Lists.newArrayList(deferredResults.get(content));
-
     ApolloConfigNotification configNotification = new ApolloConfigNotification(changedNamespace, message.getId());
     configNotification.addMessage(content, message.getId());
 
     //do async notification if too many clients
     if (results.size() > bizConfig.releaseMessageNotificationBatch()) {
-      largeNotificationBatchExecutorService.submit(() -> {
-        logger.debug("Async notify {} clients for key {} with batch {}", results.size(), content,
-            bizConfig.releaseMessageNotificationBatch());
-        for (int i = 0; i < results.size(); i++) {
-          if (i > 0 && i % bizConfig.releaseMessageNotificationBatch() == 0) {
-            try {
-              TimeUnit.MILLISECONDS.sleep(bizConfig.releaseMessageNotificationBatchIntervalInMilli());
-            } catch (InterruptedException e) {
-              //ignore
-            }
-          }
-          logger.debug("Async notify {}", results.get(i));
-          results.get(i).setResult(configNotification);
-        }
-      });
+      notificationFanOutScheduler.schedule(content, configNotification, results);
       return;
     }
 
     logger.debug("Notify {} clients for key {}", results.size(), content);
 
-    for (DeferredResultWrapper result : results) {
+    for (NotificationSubscriber result : results) {
       result.setResult(configNotification);
     }
     logger.debug("Notification completed");
@@ -313,6 +402,31 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
         return keys.get(2);
       };
 
+  /**
+   * Queue the heartbeats of the idle streams, and drop the streams whose write has not finished within a heartbeat
+   * interval, their clients would time out anyway
+   */
+  private void sendHeartbeats() {
+    if (notificationStreams.isEmpty()) {
+      return;
+    }
+    try {
+      long heartbeatInterval = bizConfig.notificationStreamHeartbeatIntervalInMilli();
+      long idleTimeout = System.currentTimeMillis() - heartbeatInterval;
+      for (NotificationStreamWrapper notificationStream : notificationStreams) {
+        if (notificationStream.isStalled(heartbeatInterval)) {
+          Tracer.logEvent("Apollo.NotificationStream", "Stalled");
+          notificationStream.close();
+        } else if (notificationStream.getLastSentTime() <= idleTimeout) {
+          notificationStream.sendHeartbeat();
+        }
+      }
+    } catch (Throwable ex) {
+      logger.error("Send notification stream heartbeats failed", ex);
+      Tracer.logError(ex);
+    }
+  }
+
   private void logWatchedKeys(Set<String> watchedKeys, String eventName) {
     for (String watchedKey : watchedKeys) {
       Tracer.logEvent(eventName, watchedKey);
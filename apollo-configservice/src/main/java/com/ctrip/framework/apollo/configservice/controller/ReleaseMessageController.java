@@ -0,0 +1,65 @@
+package com.ctrip.framework.apollo.configservice.controller;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessagePushListener;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageScanner;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.base.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Receives the release messages pushed by the admin services.
+ *
+ * <p>Only the message id is accepted, the message itself is always loaded from database by
+ * {@link ReleaseMessageScanner}. The endpoint is not found when the push is disabled, and the pushes without
+ * {@link BizConfig#releaseMessagePushAccessToken()} in the Authorization header are rejected.</p>
+ */
+@RestController
+@RequestMapping("/release-messages")
+public class ReleaseMessageController {
+  private static final Logger logger = LoggerFactory.getLogger(ReleaseMessageController.class);
+
+  private final ReleaseMessagePushListener releaseMessagePushListener;
+  private final BizConfig bizConfig;
+
+  public ReleaseMessageController(final ReleaseMessageScanner releaseMessageScanner, final BizConfig bizConfig) {
+    this.releaseMessagePushListener = releaseMessageScanner;
+    this.bizConfig = bizConfig;
+  }
+
+  @PostMapping("/push")
+  public ResponseEntity<Void> push(@RequestParam("id") long messageId,
+                                   @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String token) {
+    if (!bizConfig.isReleaseMessagePushEnabled()) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    if (!checkAccessToken(token)) {
+      Tracer.logEvent("Apollo.ReleaseMessage.Push.Unauthorized", String.valueOf(messageId));
+      logger.warn("Reject the release message {} pushed with invalid access token", messageId);
+      return new ResponseEntity<>(HttpStatus.UNAUTHORIZED);
+    }
+
+    releaseMessagePushListener.onMessagePushed(messageId);
+    return new ResponseEntity<>(HttpStatus.OK);
+  }
+
+  private boolean checkAccessToken(String token) {
+    String accessToken = bizConfig.releaseMessagePushAccessToken();
+    if (Strings.isNullOrEmpty(accessToken) || Strings.isNullOrEmpty(token)) {
+      return false;
+    }
+    return MessageDigest.isEqual(accessToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,175 @@
+package com.ctrip.framework.apollo.configservice.service;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of the serialized config responses, so the releases are not parsed and serialized again and again when all
+ * the clients refetch the same release.
+ *
+ * <p>The cache key contains the merged release key, so a cached response never goes stale. The entries are still
+ * invalidated on release messages so that the responses of the replaced releases do not occupy the cache.</p>
+ */
+@Service
+public class ConfigResponseCache implements ReleaseMessageListener {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigResponseCache.class);
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
+  private static final long MAX_CACHE_SIZE = 50 * 1024 * 1024; // 50MB
+  private static final long EXPIRE_AFTER_ACCESS = 30;
+
+  private final BizConfig bizConfig;
+  private final Cache<String, ConfigResponse> responseCache;
+  private final Multimap<String, String> watchedKeys2CacheKey = Multimaps.synchronizedSetMultimap(HashMultimap.create());
+  private final Multimap<String, String> cacheKey2WatchedKeys = Multimaps.synchronizedSetMultimap(HashMultimap.create());
+
+  public ConfigResponseCache(final BizConfig bizConfig) {
+    this.bizConfig = bizConfig;
+    responseCache = CacheBuilder.newBuilder()
+        .expireAfterAccess(EXPIRE_AFTER_ACCESS, TimeUnit.MINUTES)
+        .weigher((Weigher<String, ConfigResponse>) (key, value) -> value.weight())
+        .maximumWeight(MAX_CACHE_SIZE)
+        .removalListener(notification -> {
+          String cacheKey = (String) notification.getKey();
+          //create a new list to avoid ConcurrentModificationException
+          List<String> watchedKeys = Lists.newArrayList(cacheKey2WatchedKeys.removeAll(cacheKey));
+          for (String watchedKey : watchedKeys) {
+            watchedKeys2CacheKey.remove(watchedKey, cacheKey);
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Get the cached response of the releases, or serialize and cache it if absent.
+   *
+   * @param cacheKey   the key of the response, which must contain the merged release key
+   * @param releases   the releases merged into the response, which decides the invalidation of the entry
+   * @param serializer the function to serialize the response body
+   */
+  public ConfigResponse getOrCreate(String cacheKey, List<Release> releases, Supplier<byte[]> serializer) {
+    if (!bizConfig.isConfigServiceResponseCacheEnabled()) {
+      return new ConfigResponse(serializer.get());
+    }
+
+    ConfigResponse response = responseCache.getIfPresent(cacheKey);
+    if (response != null) {
+      Tracer.logEvent("Apollo.ConfigResponseCache.Hit", cacheKey);
+      return response;
+    }
+
+    try {
+      return responseCache.get(cacheKey, () -> {
+        Tracer.logEvent("Apollo.ConfigResponseCache.Miss", cacheKey);
+        ConfigResponse created = new ConfigResponse(serializer.get());
+        //register the watched keys before the entry is visible, so it could be invalidated by the next release
+        for (Release release : releases) {
+          String watchedKey = STRING_JOINER.join(release.getAppId(), release.getClusterName(),
+              release.getNamespaceName());
+          watchedKeys2CacheKey.put(watchedKey, cacheKey);
+          cacheKey2WatchedKeys.put(cacheKey, watchedKey);
+        }
+        return created;
+      });
+    } catch (ExecutionException ex) {
+      Tracer.logError(ex);
+      return new ConfigResponse(serializer.get());
+    }
+  }
+
+  public boolean isGzipEnabled() {
+    return bizConfig.isConfigServiceResponseGzipEnabled();
+  }
+
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    logger.info("message received - channel: {}, message: {}", channel, message);
+
+    String content = message.getMessage();
+    if (!Topics.APOLLO_RELEASE_TOPIC.equals(channel) || Strings.isNullOrEmpty(content)) {
+      return;
+    }
+
+    if (!watchedKeys2CacheKey.containsKey(content)) {
+      return;
+    }
+
+    //create a new list to avoid ConcurrentModificationException
+    List<String> cacheKeys = Lists.newArrayList(watchedKeys2CacheKey.get(content));
+
+    for (String cacheKey : cacheKeys) {
+      logger.debug("invalidate config response cache key: {}", cacheKey);
+      responseCache.invalidate(cacheKey);
+    }
+  }
+
+  long size() {
+    return responseCache.size();
+  }
+
+  public static class ConfigResponse {
+    private final byte[] body;
+    private volatile byte[] gzippedBody;
+
+    public ConfigResponse(byte[] body) {
+      this.body = body;
+    }
+
+    public byte[] getBody() {
+      return body;
+    }
+
+    /**
+     * The gzipped body is created on the first request which accepts gzip encoding.
+     */
+    public byte[] getGzippedBody() {
+      byte[] gzipped = gzippedBody;
+      if (gzipped == null) {
+        //concurrent requests might compress it more than once, which is harmless
+        gzipped = gzip(body);
+        gzippedBody = gzipped;
+      }
+      return gzipped;
+    }
+
+    private int weight() {
+      //reserve the space for the gzipped body, which is usually much smaller
+      return body.length + body.length / 4;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 32);
+      try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+        gzipOut.write(bytes);
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+      return out.toByteArray();
+    }
+  }
+}
@@ -5,12 +5,12 @@ import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import com.ctrip.framework.apollo.configservice.util.ReleaseMessageIdStore;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
@@ -20,13 +20,16 @@ import org.springframework.util.CollectionUtils;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Caches the latest release message id of each watch key in a {@link ReleaseMessageIdStore}, the release messages
+ * returned are assembled from the cached ids.
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 @Service
@@ -39,9 +42,9 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
   private int scanInterval;
   private TimeUnit scanIntervalTimeUnit;
 
-  private volatile long maxIdScanned;
+  private AtomicLong maxIdScanned;
 
-  private ConcurrentMap<String, ReleaseMessage> releaseMessageCache;
+  private ReleaseMessageIdStore releaseMessageIdStore;
 
   private AtomicBoolean doScan;
   private ExecutorService executorService;
@@ -55,7 +58,8 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
   }
 
   private void initialize() {
-    releaseMessageCache = Maps.newConcurrentMap();
+    maxIdScanned = new AtomicLong();
+    releaseMessageIdStore = new ReleaseMessageIdStore();
     doScan = new AtomicBoolean(true);
     executorService = Executors.newSingleThreadExecutor(ApolloThreadFactory
         .create("ReleaseMessageServiceWithCache", true));
@@ -66,17 +70,17 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
       return null;
     }
 
-    long maxReleaseMessageId = 0;
-    ReleaseMessage result = null;
+    long maxReleaseMessageId = ReleaseMessageIdStore.ABSENT;
+    String result = null;
     for (String message : messages) {
-      ReleaseMessage releaseMessage = releaseMessageCache.get(message);
-      if (releaseMessage != null && releaseMessage.getId() > maxReleaseMessageId) {
-        maxReleaseMessageId = releaseMessage.getId();
-        result = releaseMessage;
+      long releaseMessageId = releaseMessageIdStore.get(message);
+      if (releaseMessageId > maxReleaseMessageId) {
+        maxReleaseMessageId = releaseMessageId;
+        result = message;
       }
     }
 
-    return result;
+    return result == null ? null : assembleReleaseMessage(maxReleaseMessageId, result);
   }
 
   public List<ReleaseMessage> findLatestReleaseMessagesGroupByMessages(Set<String> messages) {
@@ -86,9 +90,9 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
     List<ReleaseMessage> releaseMessages = Lists.newArrayList();
 
     for (String message : messages) {
-      ReleaseMessage releaseMessage = releaseMessageCache.get(message);
-      if (releaseMessage != null) {
-        releaseMessages.add(releaseMessage);
+      long releaseMessageId = releaseMessageIdStore.get(message);
+      if (releaseMessageId != ReleaseMessageIdStore.ABSENT) {
+        releaseMessages.add(assembleReleaseMessage(releaseMessageId, message));
       }
     }
 
@@ -107,12 +111,12 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
       return;
     }
 
-    long gap = message.getId() - maxIdScanned;
+    long gap = message.getId() - maxIdScanned.get();
     if (gap == 1) {
       mergeReleaseMessage(message);
     } else if (gap > 1) {
       //gap found!
-      loadReleaseMessages(maxIdScanned);
+      loadReleaseMessages(maxIdScanned.get());
     }
   }
 
@@ -128,7 +132,7 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
         Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageServiceWithCache",
             "scanNewReleaseMessages");
         try {
-          loadReleaseMessages(maxIdScanned);
+          loadReleaseMessages(maxIdScanned.get());
           transaction.setStatus(Transaction.SUCCESS);
         } catch (Throwable ex) {
           transaction.setStatus(ex);
@@ -145,14 +149,22 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
     });
   }
 
-  private synchronized void mergeReleaseMessage(ReleaseMessage releaseMessage) {
-    ReleaseMessage old = releaseMessageCache.get(releaseMessage.getMessage());
-    if (old == null || releaseMessage.getId() > old.getId()) {
-      releaseMessageCache.put(releaseMessage.getMessage(), releaseMessage);
-      maxIdScanned = releaseMessage.getId();
-    }
+  private void mergeReleaseMessage(ReleaseMessage releaseMessage) {
+    //only the id is kept, the entity could be garbage collected right away
+    releaseMessageIdStore.updateIfGreater(releaseMessage.getMessage(), releaseMessage.getId());
+    maxIdScanned.accumulateAndGet(releaseMessage.getId(), Math::max);
+  }
+
+  private ReleaseMessage assembleReleaseMessage(long id, String message) {
+    ReleaseMessage releaseMessage = new ReleaseMessage(message);
+    releaseMessage.setId(id);
+    return releaseMessage;
   }
 
+  /**
+   * Load the release messages page by page and merge them into the store, so the memory used by the load is bounded
+   * by the page size no matter how many release messages there are
+   */
   private void loadReleaseMessages(long startId) {
     boolean hasMore = true;
     while (hasMore && !Thread.currentThread().isInterrupted()) {
@@ -3,6 +3,8 @@ package com.ctrip.framework.apollo.configservice.service.config;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -24,4 +26,13 @@ public interface ConfigService extends ReleaseMessageListener {
    */
   Release loadConfig(String clientAppId, String appTag, String clientIp, String configAppId, String
       configClusterName, String configNamespace, String dataCenter, ApolloNotificationMessages clientMessages);
+
+  /**
+   * Find the releases by release keys, the abandoned releases are included as their configurations are still
+   * held by the clients
+   *
+   * @param releaseKeys the release keys
+   * @return the releases found, keyed by release key
+   */
+  Map<String, Release> findReleasesByReleaseKeys(Set<String> releaseKeys);
 }
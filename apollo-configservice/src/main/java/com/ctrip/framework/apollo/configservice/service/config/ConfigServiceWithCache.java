@@ -1,11 +1,15 @@
 package com.ctrip.framework.apollo.configservice.service.config;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
@@ -24,14 +28,26 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.PostConstruct;
 
 /**
  * config service with guava cache
  *
+ * <p>The entries are versioned by the notification id. The release messages update the cached entries in place, and
+ * the requests with newer notifications refresh the entries with single-flight loading while the other requests are
+ * still served by the current entries.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 public class ConfigServiceWithCache extends AbstractConfigService {
@@ -42,8 +58,15 @@ public class ConfigServiceWithCache extends AbstractConfigService {
   private static final String TRACER_EVENT_CACHE_LOAD_ID = "ConfigCache.LoadFromDBById";
   private static final String TRACER_EVENT_CACHE_GET = "ConfigCache.Get";
   private static final String TRACER_EVENT_CACHE_GET_ID = "ConfigCache.GetById";
+  private static final String TRACER_EVENT_CACHE_LOAD_RELEASE_KEY = "ConfigCache.LoadFromDBByReleaseKey";
+  private static final String TRACER_EVENT_CACHE_GET_RELEASE_KEY = "ConfigCache.GetByReleaseKey";
+  private static final String TRACER_EVENT_CACHE_REFRESH = "ConfigCache.Refresh";
+  private static final String TRACER_EVENT_CACHE_SERVE_STALE = "ConfigCache.ServeStale";
+  private static final String TRACER_EVENT_CACHE_UPDATE = "ConfigCache.UpdateFromMessage";
+  private static final long REFRESH_WAIT_TIMEOUT_IN_MILLI = 3000;
   private static final Splitter STRING_SPLITTER =
       Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).omitEmptyStrings();
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
 
   @Autowired
   private ReleaseService releaseService;
@@ -55,10 +78,24 @@ public class ConfigServiceWithCache extends AbstractConfigService {
 
   private LoadingCache<Long, Optional<Release>> configIdCache;
 
+  private LoadingCache<String, Optional<Release>> releaseKeyCache;
+
   private ConfigCacheEntry nullConfigCacheEntry;
 
+  private final ConcurrentMap<String, CompletableFuture<ConfigCacheEntry>> refreshingEntries;
+
+  private final AtomicLong hitCount;
+  private final AtomicLong missCount;
+  private final AtomicLong loadCount;
+  private final AtomicLong totalLoadTimeInNanos;
+
   public ConfigServiceWithCache() {
     nullConfigCacheEntry = new ConfigCacheEntry(ConfigConsts.NOTIFICATION_ID_PLACEHOLDER, null);
+    refreshingEntries = Maps.newConcurrentMap();
+    hitCount = new AtomicLong();
+    missCount = new AtomicLong();
+    loadCount = new AtomicLong();
+    totalLoadTimeInNanos = new AtomicLong();
   }
 
   @PostConstruct
@@ -68,30 +105,22 @@ public class ConfigServiceWithCache extends AbstractConfigService {
         .build(new CacheLoader<String, ConfigCacheEntry>() {
           @Override
           public ConfigCacheEntry load(String key) throws Exception {
-            List<String> namespaceInfo = STRING_SPLITTER.splitToList(key);
-            if (namespaceInfo.size() != 3) {
-              Tracer.logError(
-                  new IllegalArgumentException(String.format("Invalid cache load key %s", key)));
-              return nullConfigCacheEntry;
-            }
-
-            Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD, key);
+            missCount.incrementAndGet();
+            return loadConfigCacheEntry(key);
+          }
+        });
+    configIdCache = CacheBuilder.newBuilder()
+        .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES)
+        .build(new CacheLoader<Long, Optional<Release>>() {
+          @Override
+          public Optional<Release> load(Long key) throws Exception {
+            Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD_ID, String.valueOf(key));
             try {
-              ReleaseMessage latestReleaseMessage = releaseMessageService.findLatestReleaseMessageForMessages(Lists
-                  .newArrayList(key));
-              Release latestRelease = releaseService.findLatestActiveRelease(namespaceInfo.get(0), namespaceInfo.get(1),
-                  namespaceInfo.get(2));
+              Release release = releaseService.findActiveOne(key);
 
               transaction.setStatus(Transaction.SUCCESS);
 
-              long notificationId = latestReleaseMessage == null ? ConfigConsts.NOTIFICATION_ID_PLACEHOLDER : latestReleaseMessage
-                  .getId();
-
-              if (notificationId == ConfigConsts.NOTIFICATION_ID_PLACEHOLDER && latestRelease == null) {
-                return nullConfigCacheEntry;
-              }
-
-              return new ConfigCacheEntry(notificationId, latestRelease);
+              return Optional.ofNullable(release);
             } catch (Throwable ex) {
               transaction.setStatus(ex);
               throw ex;
@@ -100,18 +129,32 @@ public class ConfigServiceWithCache extends AbstractConfigService {
             }
           }
         });
-    configIdCache = CacheBuilder.newBuilder()
+    //the configurations of a release never change, so the entries are not invalidated by release messages
+    releaseKeyCache = CacheBuilder.newBuilder()
         .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES)
-        .build(new CacheLoader<Long, Optional<Release>>() {
+        .build(new CacheLoader<String, Optional<Release>>() {
           @Override
-          public Optional<Release> load(Long key) throws Exception {
-            Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD_ID, String.valueOf(key));
+          public Optional<Release> load(String key) throws Exception {
+            return loadAll(Collections.singleton(key)).get(key);
+          }
+
+          @Override
+          public Map<String, Optional<Release>> loadAll(Iterable<? extends String> keys) throws Exception {
+            Set<String> releaseKeys = Sets.newHashSet(keys);
+            Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD_RELEASE_KEY,
+                STRING_JOINER.join(releaseKeys));
             try {
-              Release release = releaseService.findActiveOne(key);
+              Map<String, Optional<Release>> result = Maps.newHashMapWithExpectedSize(releaseKeys.size());
+              for (String releaseKey : releaseKeys) {
+                result.put(releaseKey, Optional.empty());
+              }
+              for (Release release : releaseService.findByReleaseKeys(releaseKeys)) {
+                result.put(release.getReleaseKey(), Optional.of(release));
+              }
 
               transaction.setStatus(Transaction.SUCCESS);
 
-              return Optional.ofNullable(release);
+              return result;
             } catch (Throwable ex) {
               transaction.setStatus(ex);
               throw ex;
@@ -122,6 +165,42 @@ public class ConfigServiceWithCache extends AbstractConfigService {
         });
   }
 
+  private ConfigCacheEntry loadConfigCacheEntry(String key) {
+    List<String> namespaceInfo = STRING_SPLITTER.splitToList(key);
+    if (namespaceInfo.size() != 3) {
+      Tracer.logError(
+          new IllegalArgumentException(String.format("Invalid cache load key %s", key)));
+      return nullConfigCacheEntry;
+    }
+
+    Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD, key);
+    long start = System.nanoTime();
+    try {
+      ReleaseMessage latestReleaseMessage = releaseMessageService.findLatestReleaseMessageForMessages(Lists
+          .newArrayList(key));
+      Release latestRelease = releaseService.findLatestActiveRelease(namespaceInfo.get(0), namespaceInfo.get(1),
+          namespaceInfo.get(2));
+
+      transaction.setStatus(Transaction.SUCCESS);
+
+      long notificationId = latestReleaseMessage == null ? ConfigConsts.NOTIFICATION_ID_PLACEHOLDER : latestReleaseMessage
+          .getId();
+
+      if (notificationId == ConfigConsts.NOTIFICATION_ID_PLACEHOLDER && latestRelease == null) {
+        return nullConfigCacheEntry;
+      }
+
+      return new ConfigCacheEntry(notificationId, latestRelease);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      loadCount.incrementAndGet();
+      totalLoadTimeInNanos.addAndGet(System.nanoTime() - start);
+      transaction.complete();
+    }
+  }
+
   @Override
   protected Release findActiveOne(long id, ApolloNotificationMessages clientMessages) {
     Tracer.logEvent(TRACER_EVENT_CACHE_GET_ID, String.valueOf(id));
@@ -135,22 +214,102 @@ public class ConfigServiceWithCache extends AbstractConfigService {
 
     Tracer.logEvent(TRACER_EVENT_CACHE_GET, key);
 
-    ConfigCacheEntry cacheEntry = configCache.getUnchecked(key);
+    ConfigCacheEntry cacheEntry = configCache.getIfPresent(key);
+    if (cacheEntry != null) {
+      hitCount.incrementAndGet();
+    } else {
+      //concurrent loads of the same key are merged by the cache
+      cacheEntry = configCache.getUnchecked(key);
+    }
 
     //cache is out-dated
     if (clientMessages != null && clientMessages.has(key) &&
         clientMessages.get(key) > cacheEntry.getNotificationId()) {
-      //invalidate the cache and try to load from db again
-      invalidate(key);
-      cacheEntry = configCache.getUnchecked(key);
+      cacheEntry = refresh(key, cacheEntry);
     }
 
     return cacheEntry.getRelease();
   }
 
-  private void invalidate(String key) {
-    configCache.invalidate(key);
-    Tracer.logEvent(TRACER_EVENT_CACHE_INVALIDATE, key);
+  /**
+   * Reload the entry from db in place. Only one request loads the entry, the concurrent ones wait for it and get the
+   * stale entry if the load fails or takes too long.
+   */
+  private ConfigCacheEntry refresh(String key, ConfigCacheEntry staleEntry) {
+    CompletableFuture<ConfigCacheEntry> refreshing = new CompletableFuture<>();
+    CompletableFuture<ConfigCacheEntry> inFlight = refreshingEntries.putIfAbsent(key, refreshing);
+
+    if (inFlight == null) {
+      Tracer.logEvent(TRACER_EVENT_CACHE_REFRESH, key);
+      try {
+        ConfigCacheEntry refreshed = update(key, loadConfigCacheEntry(key));
+        refreshing.complete(refreshed);
+        return refreshed;
+      } catch (Throwable ex) {
+        refreshing.completeExceptionally(ex);
+        logger.error("Refresh config cache {} failed", key, ex);
+        return serveStale(key, staleEntry);
+      } finally {
+        refreshingEntries.remove(key, refreshing);
+      }
+    }
+
+    try {
+      return inFlight.get(REFRESH_WAIT_TIMEOUT_IN_MILLI, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException ex) {
+      //fall through to serve the stale entry
+    }
+    return serveStale(key, staleEntry);
+  }
+
+  private ConfigCacheEntry serveStale(String key, ConfigCacheEntry staleEntry) {
+    Tracer.logEvent(TRACER_EVENT_CACHE_SERVE_STALE, key);
+    return staleEntry;
+  }
+
+  /**
+   * Put the entry into the cache unless a newer one is already there, as the loads and the release messages might
+   * complete out of order
+   */
+  private ConfigCacheEntry update(String key, ConfigCacheEntry entry) {
+    return configCache.asMap().merge(key, entry, (current, candidate) ->
+        candidate.getNotificationId() >= current.getNotificationId() ? candidate : current);
+  }
+
+  @Override
+  public Map<String, Release> findReleasesByReleaseKeys(Set<String> releaseKeys) {
+    Tracer.logEvent(TRACER_EVENT_CACHE_GET_RELEASE_KEY, STRING_JOINER.join(releaseKeys));
+
+    Map<String, Release> result = Maps.newHashMapWithExpectedSize(releaseKeys.size());
+    try {
+      for (Map.Entry<String, Optional<Release>> entry : releaseKeyCache.getAll(releaseKeys).entrySet()) {
+        if (entry.getValue().isPresent()) {
+          result.put(entry.getKey(), entry.getValue().get());
+        }
+      }
+    } catch (ExecutionException | UncheckedExecutionException ex) {
+      Tracer.logError(ex);
+      logger.error("Find releases by release keys {} failed", releaseKeys, ex);
+    }
+    return result;
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return the average time of loading an entry from db, including the initial loads and the refreshes
+   */
+  public double getAverageLoadTimeInMilli() {
+    long loads = loadCount.get();
+    return loads == 0 ? 0 : (double) totalLoadTimeInNanos.get() / loads / TimeUnit.MILLISECONDS.toNanos(1);
   }
 
   @Override
@@ -160,13 +319,32 @@ public class ConfigServiceWithCache extends AbstractConfigService {
       return;
     }
 
-    try {
-      invalidate(message.getMessage());
+    String key = message.getMessage();
+    //only the cached entries are updated, the others are loaded on demand
+    ConfigCacheEntry cacheEntry = configCache.getIfPresent(key);
+    if (cacheEntry == null || cacheEntry.getNotificationId() >= message.getId()) {
+      return;
+    }
 
-      //warm up the cache
-      configCache.getUnchecked(message.getMessage());
+    List<String> namespaceInfo = STRING_SPLITTER.splitToList(key);
+    if (namespaceInfo.size() != 3) {
+      return;
+    }
+
+    //the message id is the notification id of the new entry, so only the release needs to be loaded
+    Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_UPDATE, key);
+    try {
+      Release latestRelease = releaseService.findLatestActiveRelease(namespaceInfo.get(0), namespaceInfo.get(1),
+          namespaceInfo.get(2));
+      update(key, new ConfigCacheEntry(message.getId(), latestRelease));
+      transaction.setStatus(Transaction.SUCCESS);
     } catch (Throwable ex) {
-      //ignore
+      transaction.setStatus(ex);
+      //the entry would be refreshed by the clients with the newer notification
+      configCache.invalidate(key);
+      Tracer.logEvent(TRACER_EVENT_CACHE_INVALIDATE, key);
+    } finally {
+      transaction.complete();
     }
   }
 
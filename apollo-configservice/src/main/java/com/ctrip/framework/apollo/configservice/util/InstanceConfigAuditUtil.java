@@ -5,107 +5,192 @@ import com.google.common.base.Strings;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Instance;
 import com.ctrip.framework.apollo.biz.entity.InstanceConfig;
 import com.ctrip.framework.apollo.biz.service.InstanceService;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.InitializingBean;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
+ * Records the releases loaded by the client instances.
+ *
+ * <p>The audits are partitioned by instance to a pool of workers. Each worker drains its queue in batches, coalesces
+ * the audits of the same instance config, looks up the instances and instance configs with IN-queries and writes
+ * them with jdbc batches. The audits offered when the queue is full are dropped and counted, as well as the instances
+ * and instance configs failed to write for the data integrity violations other than duplicate keys.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 @Service
 public class InstanceConfigAuditUtil implements InitializingBean {
-  private static final int INSTANCE_CONFIG_AUDIT_MAX_SIZE = 10000;
+  private static final Logger logger = LoggerFactory.getLogger(InstanceConfigAuditUtil.class);
   private static final int INSTANCE_CACHE_MAX_SIZE = 50000;
   private static final int INSTANCE_CONFIG_CACHE_MAX_SIZE = 50000;
   private static final long OFFER_TIME_LAST_MODIFIED_TIME_THRESHOLD_IN_MILLI = TimeUnit.MINUTES.toMillis(10);//10 minutes
+  private static final long AUDIT_POLL_TIMEOUT_IN_MILLI = 1000;
   private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
-  private final ExecutorService auditExecutorService;
   private final AtomicBoolean auditStopped;
-  private BlockingQueue<InstanceConfigAuditModel> audits = Queues.newLinkedBlockingQueue
-      (INSTANCE_CONFIG_AUDIT_MAX_SIZE);
+  private final AtomicLong droppedAudits;
+  private final AtomicLong failedAudits;
+  private final AtomicLong auditLagInMilli;
+  private ExecutorService auditExecutorService;
+  private List<BlockingQueue<InstanceConfigAuditModel>> audits;
+  private int auditBatchSize;
   private Cache<String, Long> instanceCache;
   private Cache<String, String> instanceConfigReleaseKeyCache;
 
   private final InstanceService instanceService;
+  private final BizConfig bizConfig;
 
-  public InstanceConfigAuditUtil(final InstanceService instanceService) {
+  public InstanceConfigAuditUtil(final InstanceService instanceService, final BizConfig bizConfig) {
     this.instanceService = instanceService;
-    auditExecutorService = Executors.newSingleThreadExecutor(
-        ApolloThreadFactory.create("InstanceConfigAuditUtil", true));
+    this.bizConfig = bizConfig;
     auditStopped = new AtomicBoolean(false);
+    droppedAudits = new AtomicLong();
+    failedAudits = new AtomicLong();
+    auditLagInMilli = new AtomicLong();
     instanceCache = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS)
         .maximumSize(INSTANCE_CACHE_MAX_SIZE).build();
     instanceConfigReleaseKeyCache = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.DAYS)
         .maximumSize(INSTANCE_CONFIG_CACHE_MAX_SIZE).build();
+    initialize();
+  }
+
+  private void initialize() {
+    int workers = bizConfig.instanceConfigAuditWorkerThreads();
+    int queueSize = bizConfig.instanceConfigAuditQueueSize();
+    auditBatchSize = bizConfig.instanceConfigAuditBatchSize();
+    audits = Lists.newArrayListWithCapacity(workers);
+    for (int i = 0; i < workers; i++) {
+      audits.add(Queues.newLinkedBlockingQueue(queueSize));
+    }
+    auditExecutorService = Executors.newFixedThreadPool(workers,
+        ApolloThreadFactory.create("InstanceConfigAuditUtil", true));
   }
 
   public boolean audit(String appId, String clusterName, String dataCenter, String
       ip, String configAppId, String configClusterName, String configNamespace, String releaseKey) {
-    return this.audits.offer(new InstanceConfigAuditModel(appId, clusterName, dataCenter, ip,
-        configAppId, configClusterName, configNamespace, releaseKey));
+    InstanceConfigAuditModel auditModel = new InstanceConfigAuditModel(appId, clusterName, dataCenter, ip,
+        configAppId, configClusterName, configNamespace, releaseKey);
+    //the audits of the same instance go to the same worker, so they are never written concurrently
+    int worker = Math.abs(auditModel.getInstanceKey().hashCode() % audits.size());
+    boolean offered = audits.get(worker).offer(auditModel);
+    if (!offered) {
+      droppedAudits.incrementAndGet();
+    }
+    return offered;
   }
 
-  void doAudit(InstanceConfigAuditModel auditModel) {
-    String instanceCacheKey = assembleInstanceKey(auditModel.getAppId(), auditModel
-        .getClusterName(), auditModel.getIp(), auditModel.getDataCenter());
-    Long instanceId = instanceCache.getIfPresent(instanceCacheKey);
-    if (instanceId == null) {
-      instanceId = prepareInstanceId(auditModel);
-      instanceCache.put(instanceCacheKey, instanceId);
-    }
+  void doAudit(List<InstanceConfigAuditModel> auditModels) {
+    Collection<InstanceConfigAuditModel> coalescedModels = coalesce(auditModels);
+    Map<String, Long> instanceIds = prepareInstanceIds(coalescedModels);
 
-    //load instance config release key from cache, and check if release key is the same
-    String instanceConfigCacheKey = assembleInstanceConfigKey(instanceId, auditModel
-        .getConfigAppId(), auditModel.getConfigNamespace());
-    String cacheReleaseKey = instanceConfigReleaseKeyCache.getIfPresent(instanceConfigCacheKey);
+    //instance id => audit model, grouped by config app id and namespace
+    Map<String, Map<Long, InstanceConfigAuditModel>> modelsToAudit = Maps.newHashMap();
+    for (InstanceConfigAuditModel auditModel : coalescedModels) {
+      Long instanceId = instanceIds.get(auditModel.getInstanceKey());
+      if (instanceId == null) {
+        continue;
+      }
+
+      //load instance config release key from cache, and check if release key is the same
+      String instanceConfigCacheKey = assembleInstanceConfigKey(instanceId, auditModel
+          .getConfigAppId(), auditModel.getConfigNamespace());
+      String cacheReleaseKey = instanceConfigReleaseKeyCache.getIfPresent(instanceConfigCacheKey);
+
+      //if release key is the same, then skip audit
+      if (cacheReleaseKey != null && Objects.equals(cacheReleaseKey, auditModel.getReleaseKey())) {
+        continue;
+      }
 
-    //if release key is the same, then skip audit
-    if (cacheReleaseKey != null && Objects.equals(cacheReleaseKey, auditModel.getReleaseKey())) {
-      return;
+      instanceConfigReleaseKeyCache.put(instanceConfigCacheKey, auditModel.getReleaseKey());
+
+      modelsToAudit.computeIfAbsent(STRING_JOINER.join(auditModel.getConfigAppId(), auditModel.getConfigNamespace()),
+          key -> Maps.newHashMap()).put(instanceId, auditModel);
     }
 
-    instanceConfigReleaseKeyCache.put(instanceConfigCacheKey, auditModel.getReleaseKey());
-
-    //if release key is not the same or cannot find in cache, then do audit
-    InstanceConfig instanceConfig = instanceService.findInstanceConfig(instanceId, auditModel
-        .getConfigAppId(), auditModel.getConfigNamespace());
-
-    if (instanceConfig != null) {
-      if (!Objects.equals(instanceConfig.getReleaseKey(), auditModel.getReleaseKey())) {
-        instanceConfig.setConfigClusterName(auditModel.getConfigClusterName());
-        instanceConfig.setReleaseKey(auditModel.getReleaseKey());
-        instanceConfig.setReleaseDeliveryTime(auditModel.getOfferTime());
-      } else if (offerTimeAndLastModifiedTimeCloseEnough(auditModel.getOfferTime(),
-          instanceConfig.getDataChangeLastModifiedTime())) {
-        //when releaseKey is the same, optimize to reduce writes if the record was updated not long ago
-        return;
+    List<InstanceConfig> instanceConfigsToCreate = Lists.newArrayList();
+    List<InstanceConfig> instanceConfigsToUpdate = Lists.newArrayList();
+    for (Map<Long, InstanceConfigAuditModel> models : modelsToAudit.values()) {
+      InstanceConfigAuditModel anyModel = models.values().iterator().next();
+      List<InstanceConfig> instanceConfigs = instanceService.findInstanceConfigs(anyModel.getConfigAppId(),
+          anyModel.getConfigNamespace(), models.keySet());
+      Map<Long, InstanceConfig> existingInstanceConfigs = Maps.newHashMap();
+      for (InstanceConfig instanceConfig : instanceConfigs) {
+        existingInstanceConfigs.put(instanceConfig.getInstanceId(), instanceConfig);
+      }
+
+      for (Map.Entry<Long, InstanceConfigAuditModel> entry : models.entrySet()) {
+        InstanceConfigAuditModel auditModel = entry.getValue();
+        InstanceConfig instanceConfig = existingInstanceConfigs.get(entry.getKey());
+        if (instanceConfig == null) {
+          instanceConfigsToCreate.add(assembleInstanceConfig(entry.getKey(), auditModel));
+          continue;
+        }
+        if (!Objects.equals(instanceConfig.getReleaseKey(), auditModel.getReleaseKey())) {
+          instanceConfig.setConfigClusterName(auditModel.getConfigClusterName());
+          instanceConfig.setReleaseKey(auditModel.getReleaseKey());
+          instanceConfig.setReleaseDeliveryTime(auditModel.getOfferTime());
+        } else if (offerTimeAndLastModifiedTimeCloseEnough(auditModel.getOfferTime(),
+            instanceConfig.getDataChangeLastModifiedTime())) {
+          //when releaseKey is the same, optimize to reduce writes if the record was updated not long ago
+          continue;
+        }
+        //we need to update no matter the release key is the same or not, to ensure the
+        //last modified time is updated each day
+        instanceConfig.setDataChangeLastModifiedTime(auditModel.getOfferTime());
+        instanceConfigsToUpdate.add(instanceConfig);
       }
-      //we need to update no matter the release key is the same or not, to ensure the
-      //last modified time is updated each day
-      instanceConfig.setDataChangeLastModifiedTime(auditModel.getOfferTime());
-      instanceService.updateInstanceConfig(instanceConfig);
-      return;
     }
 
-    instanceConfig = new InstanceConfig();
+    if (!instanceConfigsToUpdate.isEmpty()) {
+      instanceService.batchUpdateInstanceConfigs(instanceConfigsToUpdate);
+    }
+    if (!instanceConfigsToCreate.isEmpty()) {
+      failedAudits.addAndGet(instanceService.batchCreateInstanceConfigs(instanceConfigsToCreate));
+    }
+  }
+
+  /**
+   * Keep the latest audit of each instance config
+   */
+  private Collection<InstanceConfigAuditModel> coalesce(List<InstanceConfigAuditModel> auditModels) {
+    Map<String, InstanceConfigAuditModel> coalescedModels = Maps.newLinkedHashMap();
+    for (InstanceConfigAuditModel auditModel : auditModels) {
+      coalescedModels.put(STRING_JOINER.join(auditModel.getInstanceKey(), auditModel.getConfigAppId(),
+          auditModel.getConfigNamespace()), auditModel);
+    }
+    return coalescedModels.values();
+  }
+
+  private InstanceConfig assembleInstanceConfig(long instanceId, InstanceConfigAuditModel auditModel) {
+    InstanceConfig instanceConfig = new InstanceConfig();
     instanceConfig.setInstanceId(instanceId);
     instanceConfig.setConfigAppId(auditModel.getConfigAppId());
     instanceConfig.setConfigClusterName(auditModel.getConfigClusterName());
@@ -113,12 +198,7 @@ public class InstanceConfigAuditUtil implements InitializingBean {
     instanceConfig.setReleaseKey(auditModel.getReleaseKey());
     instanceConfig.setReleaseDeliveryTime(auditModel.getOfferTime());
     instanceConfig.setDataChangeCreatedTime(auditModel.getOfferTime());
-
-    try {
-      instanceService.createInstanceConfig(instanceConfig);
-    } catch (DataIntegrityViolationException ex) {
-      //concurrent insertion, safe to ignore
-    }
+    return instanceConfig;
   }
 
   private boolean offerTimeAndLastModifiedTimeCloseEnough(Date offerTime, Date lastModifiedTime) {
@@ -126,52 +206,150 @@ public class InstanceConfigAuditUtil implements InitializingBean {
         OFFER_TIME_LAST_MODIFIED_TIME_THRESHOLD_IN_MILLI;
   }
 
-  private long prepareInstanceId(InstanceConfigAuditModel auditModel) {
-    Instance instance = instanceService.findInstance(auditModel.getAppId(), auditModel
-        .getClusterName(), auditModel.getDataCenter(), auditModel.getIp());
-    if (instance != null) {
-      return instance.getId();
+  /**
+   * @return instance key => instance id
+   */
+  private Map<String, Long> prepareInstanceIds(Collection<InstanceConfigAuditModel> auditModels) {
+    Map<String, Long> instanceIds = Maps.newHashMap();
+    //app id + cluster name + data center => models of the instances not in cache
+    Map<String, List<InstanceConfigAuditModel>> modelsToLoad = Maps.newHashMap();
+    for (InstanceConfigAuditModel auditModel : auditModels) {
+      String instanceKey = auditModel.getInstanceKey();
+      Long instanceId = instanceCache.getIfPresent(instanceKey);
+      if (instanceId != null) {
+        instanceIds.put(instanceKey, instanceId);
+        continue;
+      }
+      modelsToLoad.computeIfAbsent(STRING_JOINER.join(auditModel.getAppId(), auditModel.getClusterName(),
+          auditModel.getDataCenter()), key -> Lists.newArrayList()).add(auditModel);
+    }
+
+    for (List<InstanceConfigAuditModel> models : modelsToLoad.values()) {
+      Map<String, Long> loadedInstanceIds = loadInstanceIds(models);
+      if (loadedInstanceIds.size() < models.size()) {
+        List<Instance> instancesToCreate = Lists.newArrayList();
+        for (InstanceConfigAuditModel auditModel : models) {
+          if (!loadedInstanceIds.containsKey(auditModel.getIp())) {
+            instancesToCreate.add(assembleInstance(auditModel));
+          }
+        }
+        failedAudits.addAndGet(instanceService.batchCreateInstances(instancesToCreate));
+        loadedInstanceIds = loadInstanceIds(models);
+      }
+
+      for (InstanceConfigAuditModel auditModel : models) {
+        Long instanceId = loadedInstanceIds.get(auditModel.getIp());
+        if (instanceId != null) {
+          instanceIds.put(auditModel.getInstanceKey(), instanceId);
+          instanceCache.put(auditModel.getInstanceKey(), instanceId);
+        }
+      }
+    }
+
+    return instanceIds;
+  }
+
+  /**
+   * @param auditModels the audit models with the same app id, cluster name and data center
+   * @return ip => instance id
+   */
+  private Map<String, Long> loadInstanceIds(List<InstanceConfigAuditModel> auditModels) {
+    InstanceConfigAuditModel anyModel = auditModels.get(0);
+    Set<String> ips = auditModels.stream().map(InstanceConfigAuditModel::getIp).collect(Collectors.toSet());
+    List<Instance> instances = instanceService.findInstances(anyModel.getAppId(), anyModel.getClusterName(),
+        anyModel.getDataCenter(), ips);
+
+    Map<String, Long> instanceIds = Maps.newHashMap();
+    for (Instance instance : instances) {
+      instanceIds.put(instance.getIp(), instance.getId());
     }
-    instance = new Instance();
+    return instanceIds;
+  }
+
+  private Instance assembleInstance(InstanceConfigAuditModel auditModel) {
+    Instance instance = new Instance();
     instance.setAppId(auditModel.getAppId());
     instance.setClusterName(auditModel.getClusterName());
     instance.setDataCenter(auditModel.getDataCenter());
     instance.setIp(auditModel.getIp());
-
-
-    try {
-      return instanceService.createInstance(instance).getId();
-    } catch (DataIntegrityViolationException ex) {
-      //return the one exists
-      return instanceService.findInstance(instance.getAppId(), instance.getClusterName(),
-          instance.getDataCenter(), instance.getIp()).getId();
-    }
+    return instance;
   }
 
   @Override
   public void afterPropertiesSet() throws Exception {
-    auditExecutorService.submit(() -> {
-      while (!auditStopped.get() && !Thread.currentThread().isInterrupted()) {
-        try {
-          InstanceConfigAuditModel model = audits.poll();
-          if (model == null) {
-            TimeUnit.SECONDS.sleep(1);
-            continue;
+    for (BlockingQueue<InstanceConfigAuditModel> queue : audits) {
+      auditExecutorService.submit(() -> {
+        List<InstanceConfigAuditModel> batch = Lists.newArrayListWithCapacity(auditBatchSize);
+        while (!auditStopped.get() && !Thread.currentThread().isInterrupted()) {
+          try {
+            InstanceConfigAuditModel model = queue.poll(AUDIT_POLL_TIMEOUT_IN_MILLI, TimeUnit.MILLISECONDS);
+            if (model == null) {
+              continue;
+            }
+            batch.add(model);
+            queue.drainTo(batch, auditBatchSize - 1);
+            auditBatch(batch);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          } catch (Throwable ex) {
+            Tracer.logError(ex);
+          } finally {
+            batch.clear();
           }
-          doAudit(model);
-        } catch (Throwable ex) {
-          Tracer.logError(ex);
         }
-      }
-    });
+      });
+    }
   }
 
-  private String assembleInstanceKey(String appId, String cluster, String ip, String datacenter) {
-    List<String> keyParts = Lists.newArrayList(appId, cluster, ip);
-    if (!Strings.isNullOrEmpty(datacenter)) {
-      keyParts.add(datacenter);
+  private void auditBatch(List<InstanceConfigAuditModel> batch) {
+    //the first audit in the batch is the oldest one
+    long lag = System.currentTimeMillis() - batch.get(0).getOfferTime().getTime();
+    auditLagInMilli.set(lag);
+
+    Transaction transaction = Tracer.newTransaction("Apollo.InstanceConfigAudit", "batch");
+    transaction.addData("Size", batch.size());
+    transaction.addData("Lag", lag);
+    transaction.addData("Dropped", droppedAudits.get());
+    transaction.addData("Failed", failedAudits.get());
+    try {
+      doAudit(batch);
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.warn("Audit instance configs failed, batch size: {}", batch.size(), ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  /**
+   * @return the number of audits dropped since startup because the queue was full
+   */
+  public long getDroppedAudits() {
+    return droppedAudits.get();
+  }
+
+  /**
+   * @return the number of instances and instance configs failed to write since startup for the data integrity
+   * violations other than duplicate keys
+   */
+  public long getFailedAudits() {
+    return failedAudits.get();
+  }
+
+  /**
+   * @return the time between the offer and the write of the last batch audited
+   */
+  public long getAuditLagInMilli() {
+    return auditLagInMilli.get();
+  }
+
+  public int getPendingAudits() {
+    int pending = 0;
+    for (BlockingQueue<InstanceConfigAuditModel> queue : audits) {
+      pending += queue.size();
     }
-    return STRING_JOINER.join(keyParts);
+    return pending;
   }
 
   private String assembleInstanceConfigKey(long instanceId, String configAppId, String configNamespace) {
@@ -188,6 +366,7 @@ public class InstanceConfigAuditUtil implements InitializingBean {
     private String configNamespace;
     private String releaseKey;
     private Date offerTime;
+    private String instanceKey;
 
     public InstanceConfigAuditModel(String appId, String clusterName, String dataCenter, String
         clientIp, String configAppId, String configClusterName, String configNamespace, String
@@ -201,12 +380,25 @@ public class InstanceConfigAuditUtil implements InitializingBean {
       this.configClusterName = configClusterName;
       this.configNamespace = configNamespace;
       this.releaseKey = releaseKey;
+      this.instanceKey = assembleInstanceKey(appId, clusterName, clientIp, dataCenter);
+    }
+
+    private static String assembleInstanceKey(String appId, String cluster, String ip, String datacenter) {
+      List<String> keyParts = Lists.newArrayList(appId, cluster, ip);
+      if (!Strings.isNullOrEmpty(datacenter)) {
+        keyParts.add(datacenter);
+      }
+      return STRING_JOINER.join(keyParts);
     }
 
     public String getAppId() {
       return appId;
     }
 
+    String getInstanceKey() {
+      return instanceKey;
+    }
+
     public String getClusterName() {
       return clusterName;
     }
@@ -0,0 +1,129 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.wrapper.NotificationSubscriber;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notifies the long polling and streaming clients of large releases asynchronously.
+ *
+ * <p>Each release is notified batch by batch, and a release with more clients left is put back to the tail of the
+ * queue after each batch, so several releases are notified in parallel and a small release is never blocked
+ * behind a large one. All the releases share one token bucket sized to
+ * {@link BizConfig#releaseMessageNotificationQps()}, which caps the config refetch qps the notifications cause on
+ * this config service.</p>
+ */
+public class NotificationFanOutScheduler {
+  private static final Logger logger = LoggerFactory.getLogger(NotificationFanOutScheduler.class);
+
+  private final BizConfig bizConfig;
+  private final ExecutorService fanOutExecutorService;
+  private final RateLimiter rateLimiter;
+  private final AtomicInteger pendingReleases;
+  private final AtomicLong pendingClients;
+
+  public NotificationFanOutScheduler(final BizConfig bizConfig) {
+    this.bizConfig = bizConfig;
+    fanOutExecutorService = Executors.newFixedThreadPool(
+        Math.max(1, bizConfig.releaseMessageNotificationFanOutThreads()),
+        ApolloThreadFactory.create("NotificationFanOutScheduler", true));
+    rateLimiter = RateLimiter.create(notificationQps());
+    pendingReleases = new AtomicInteger();
+    pendingClients = new AtomicLong();
+  }
+
+  public void schedule(String watchKey, ApolloConfigNotification notification,
+      List<? extends NotificationSubscriber> results) {
+    FanOutTask task = new FanOutTask(watchKey, notification, results);
+    int releases = pendingReleases.incrementAndGet();
+    long clients = pendingClients.addAndGet(results.size());
+
+    Tracer.logEvent("Apollo.LongPoll.FanOut.Scheduled", watchKey, Transaction.SUCCESS,
+        String.format("clients=%d&pendingReleases=%d&pendingClients=%d", results.size(), releases, clients));
+    logger.debug("Async notify {} clients for key {}, pending releases: {}, pending clients: {}", results.size(),
+        watchKey, releases, clients);
+
+    fanOutExecutorService.submit(() -> notifyNextBatch(task));
+  }
+
+  public int getPendingReleases() {
+    return pendingReleases.get();
+  }
+
+  public long getPendingClients() {
+    return pendingClients.get();
+  }
+
+  private void notifyNextBatch(FanOutTask task) {
+    int from = task.notified;
+    int to = Math.min(from + Math.max(1, bizConfig.releaseMessageNotificationBatch()), task.results.size());
+
+    updateRateIfNecessary();
+    rateLimiter.acquire(to - from);
+
+    for (int i = from; i < to; i++) {
+      try {
+        logger.debug("Async notify {}", task.results.get(i));
+        task.results.get(i).setResult(task.notification);
+      } catch (Throwable ex) {
+        logger.error("Async notify {} failed", task.results.get(i), ex);
+        Tracer.logError(ex);
+      }
+    }
+    task.notified = to;
+    pendingClients.addAndGet(from - to);
+
+    if (to < task.results.size()) {
+      //go to the tail of the queue, so the other releases could be notified in the meantime
+      fanOutExecutorService.submit(() -> notifyNextBatch(task));
+      return;
+    }
+
+    int releases = pendingReleases.decrementAndGet();
+    long timeToNotify = System.currentTimeMillis() - task.scheduledTime;
+    Tracer.logEvent("Apollo.LongPoll.FanOut.Completed", task.watchKey, Transaction.SUCCESS,
+        String.format("clients=%d&timeToNotifyInMilli=%d&pendingReleases=%d", task.results.size(), timeToNotify,
+            releases));
+    logger.debug("Async notified {} clients for key {} in {} ms", task.results.size(), task.watchKey, timeToNotify);
+  }
+
+  private void updateRateIfNecessary() {
+    double qps = notificationQps();
+    if (Double.compare(qps, rateLimiter.getRate()) != 0) {
+      rateLimiter.setRate(qps);
+    }
+  }
+
+  private int notificationQps() {
+    return Math.max(1, bizConfig.releaseMessageNotificationQps());
+  }
+
+  private static class FanOutTask {
+    private final String watchKey;
+    private final ApolloConfigNotification notification;
+    private final List<? extends NotificationSubscriber> results;
+    private final long scheduledTime;
+    //only one batch of a task is running at any time, and submitting the next batch publishes the field
+    private int notified;
+
+    private FanOutTask(String watchKey, ApolloConfigNotification notification,
+        List<? extends NotificationSubscriber> results) {
+      this.watchKey = watchKey;
+      this.notification = notification;
+      this.results = results;
+      this.scheduledTime = System.currentTimeMillis();
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the configurations of the releases loaded for a config query.
+ */
+public class ReleaseConfigurationsMerger {
+  private static final Type configurationTypeReference = new TypeToken<Map<String, String>>() {
+      }.getType();
+
+  private final Gson gson;
+
+  public ReleaseConfigurationsMerger(final Gson gson) {
+    this.gson = gson;
+  }
+
+  /**
+   * Merge configurations of releases.
+   * Release in lower index override those in higher index
+   */
+  public Map<String, String> merge(List<Release> releases) {
+    Map<String, String> result = Maps.newLinkedHashMap();
+    for (Release release : Lists.reverse(releases)) {
+      result.putAll(gson.fromJson(release.getConfigurations(), configurationTypeReference));
+    }
+    return result;
+  }
+}
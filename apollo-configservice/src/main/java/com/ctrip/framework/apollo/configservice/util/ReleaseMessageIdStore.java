@@ -0,0 +1,183 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compact store of the latest release message id of each watch key.
+ *
+ * <p>The keys and ids are kept in two parallel open addressing arrays, so each key costs a reference and a primitive
+ * long instead of a map entry and a {@link com.ctrip.framework.apollo.biz.entity.ReleaseMessage} entity. The keys are
+ * never removed, as the release messages of a watch key are only replaced by newer ones.</p>
+ *
+ * <p>Lookups are lock free. The ids of the existing keys are updated lock free with compare-and-set and never go
+ * backwards. Only the insertion of new keys and the resize are guarded by a lock, during a resize the slots already
+ * copied are marked as moved so that the concurrent updates wait for the new table instead of being lost.</p>
+ */
+public class ReleaseMessageIdStore {
+  /**
+   * The release message ids start from 1
+   */
+  public static final long ABSENT = 0;
+  private static final long MOVED = -1;
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  private final Object insertLock = new Object();
+  private volatile Table table;
+
+  public ReleaseMessageIdStore() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  public ReleaseMessageIdStore(int expectedSize) {
+    table = new Table(tableSizeFor(expectedSize));
+  }
+
+  /**
+   * @return the latest release message id of the key, or {@link #ABSENT} if not found
+   */
+  public long get(String key) {
+    Table current = table;
+    while (true) {
+      int index = current.indexOf(key);
+      if (index < 0) {
+        return ABSENT;
+      }
+      long id = current.ids.get(index);
+      if (id != MOVED) {
+        return id;
+      }
+      current = awaitResize(current);
+    }
+  }
+
+  /**
+   * Set the release message id of the key if it is larger than the current one.
+   *
+   * @return true if the id is updated
+   */
+  public boolean updateIfGreater(String key, long id) {
+    Table current = table;
+    int index = current.indexOf(key);
+    if (index < 0) {
+      synchronized (insertLock) {
+        current = table;
+        index = current.indexOf(key);
+        if (index < 0) {
+          insert(key, id);
+          return true;
+        }
+      }
+    }
+
+    while (true) {
+      long existing = current.ids.get(index);
+      if (existing == MOVED) {
+        current = awaitResize(current);
+        index = current.indexOf(key);
+        continue;
+      }
+      if (existing >= id) {
+        return false;
+      }
+      if (current.ids.compareAndSet(index, existing, id)) {
+        return true;
+      }
+    }
+  }
+
+  public int size() {
+    return table.size;
+  }
+
+  private void insert(String key, long id) {
+    Table current = table;
+    if (current.size + 1 > current.threshold && current.capacity() < MAXIMUM_CAPACITY) {
+      current = resize(current);
+    }
+    current.insert(key, id);
+  }
+
+  private Table resize(Table old) {
+    Table resized = new Table(old.capacity() << 1);
+    for (int i = 0; i < old.capacity(); i++) {
+      String key = old.keys.get(i);
+      if (key == null) {
+        continue;
+      }
+      //the updates after this point wait for the new table
+      long id = old.ids.getAndSet(i, MOVED);
+      resized.insert(key, id);
+    }
+    table = resized;
+    return resized;
+  }
+
+  private Table awaitResize(Table old) {
+    Table current;
+    while ((current = table) == old) {
+      Thread.yield();
+    }
+    return current;
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    int capacity = 16;
+    //keep the load factor under 0.75
+    long minCapacity = (long) expectedSize * 4 / 3 + 1;
+    while (capacity < minCapacity && capacity < MAXIMUM_CAPACITY) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private static final class Table {
+    private final AtomicReferenceArray<String> keys;
+    private final AtomicLongArray ids;
+    private final int mask;
+    private final int threshold;
+    //guarded by insertLock
+    private volatile int size;
+
+    Table(int capacity) {
+      keys = new AtomicReferenceArray<>(capacity);
+      ids = new AtomicLongArray(capacity);
+      mask = capacity - 1;
+      threshold = capacity / 4 * 3;
+    }
+
+    int capacity() {
+      return mask + 1;
+    }
+
+    int indexOf(String key) {
+      int index = spread(key.hashCode()) & mask;
+      while (true) {
+        String existing = keys.get(index);
+        if (existing == null) {
+          return -1;
+        }
+        if (existing.equals(key)) {
+          return index;
+        }
+        index = (index + 1) & mask;
+      }
+    }
+
+    void insert(String key, long id) {
+      int index = spread(key.hashCode()) & mask;
+      while (keys.get(index) != null) {
+        index = (index + 1) & mask;
+      }
+      //publish the id before the key, so the readers finding the key always see the id
+      ids.set(index, id);
+      keys.set(index, key);
+      size++;
+    }
+
+    private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+  }
+}
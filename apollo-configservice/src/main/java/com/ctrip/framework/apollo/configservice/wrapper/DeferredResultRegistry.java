@@ -0,0 +1,84 @@
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the long polling requests and notification streams parked on each watch key.
+ *
+ * <p>Watch keys are case insensitive and normalized to lower case once, so the registry holds a single key
+ * instance per watch key no matter how many clients are watching it. Registration and unregistration of a
+ * watch key only lock the hash bin that key lives in, which means clients watching different keys never
+ * contend with each other, and the fan out reads are lock free.</p>
+ */
+public class DeferredResultRegistry<T extends NotificationSubscriber> {
+  private final ConcurrentMap<String, Set<T>> deferredResults;
+
+  public DeferredResultRegistry() {
+    deferredResults = new ConcurrentHashMap<>();
+  }
+
+  public void register(Collection<String> watchKeys, T deferredResultWrapper) {
+    for (String watchKey : watchKeys) {
+      //compute holds the bin lock, so the set could not be removed by unregister concurrently
+      deferredResults.compute(normalize(watchKey), (key, wrappers) -> {
+        if (wrappers == null) {
+          wrappers = ConcurrentHashMap.newKeySet();
+        }
+        wrappers.add(deferredResultWrapper);
+        return wrappers;
+      });
+    }
+  }
+
+  public void unregister(Collection<String> watchKeys, T deferredResultWrapper) {
+    for (String watchKey : watchKeys) {
+      deferredResults.computeIfPresent(normalize(watchKey), (key, wrappers) -> {
+        wrappers.remove(deferredResultWrapper);
+        return wrappers.isEmpty() ? null : wrappers;
+      });
+    }
+  }
+
+  public boolean containsKey(String watchKey) {
+    return deferredResults.containsKey(normalize(watchKey));
+  }
+
+  /**
+   * @return a snapshot of the deferred results watching the key, which is safe to iterate while other clients
+   * keep registering and unregistering
+   */
+  public List<T> get(String watchKey) {
+    Set<T> wrappers = deferredResults.get(normalize(watchKey));
+    if (wrappers == null) {
+      return Collections.emptyList();
+    }
+    return Lists.newArrayList(wrappers);
+  }
+
+  /**
+   * @return the total number of (watch key, deferred result) registrations, it iterates all the watch keys so
+   * should not be used in hot paths
+   */
+  public int size() {
+    int size = 0;
+    for (Set<T> wrappers : deferredResults.values()) {
+      size += wrappers.size();
+    }
+    return size;
+  }
+
+  public int watchKeySize() {
+    return deferredResults.size();
+  }
+
+  private String normalize(String watchKey) {
+    return watchKey.toLowerCase();
+  }
+}
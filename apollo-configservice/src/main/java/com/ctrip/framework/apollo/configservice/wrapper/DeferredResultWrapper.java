@@ -16,7 +16,7 @@ import java.util.Map;
 /**
  * @author Jason Song(song_s@ctrip.com)
  */
-public class DeferredResultWrapper implements Comparable<DeferredResultWrapper> {
+public class DeferredResultWrapper implements Comparable<DeferredResultWrapper>, NotificationSubscriber {
   private static final ResponseEntity<List<ApolloConfigNotification>>
       NOT_MODIFIED_RESPONSE_LIST = new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
 
@@ -45,6 +45,7 @@ public class DeferredResultWrapper implements Comparable<DeferredResultWrapper>
   }
 
 
+  @Override
   public void setResult(ApolloConfigNotification notification) {
     setResult(Lists.newArrayList(notification));
   }
@@ -0,0 +1,234 @@
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A notification stream of a client, which stays registered on its watch keys and receives all the notifications of
+ * them as server-sent events until it times out or the client disconnects.
+ *
+ * <p>Each notification is sent as a {@code notifications} event carrying the json array of
+ * {@link ApolloConfigNotification}, the same body as a long polling response. A {@code heartbeat} event is sent when
+ * the stream is idle, so the proxies keep the connection open and the dead clients are found.</p>
+ *
+ * <p>The events are queued in a bounded outbox and written by the send executor, one write at a time per stream, so
+ * neither the notification fan out nor the heartbeats block on a slow client, and no lock is held while writing. A
+ * stream is closed when its outbox is full, when the send executor rejects it, or by {@link #close()} when its write
+ * is found stalled by {@link #isStalled(long)}, then the client subscribes again with its latest notifications.</p>
+ */
+public class NotificationStreamWrapper implements NotificationSubscriber {
+  public static final String NOTIFICATIONS_EVENT = "notifications";
+  public static final String HEARTBEAT_EVENT = "heartbeat";
+  private static final Gson GSON = new Gson();
+  private static final int MAX_PENDING_EVENTS = 100;
+
+  private final SseEmitter emitter;
+  private final Executor sendExecutor;
+  private final Queue<SseEventBuilder> outbox;
+  private final AtomicInteger pendingEvents;
+  private final AtomicBoolean sending;
+  private final AtomicBoolean completed;
+  private final Map<String, String> normalizedNamespaceNameToOriginalNamespaceName;
+  //watch key -> the latest notification id sent for it, guarded by this
+  private final Map<String, Long> notifiedMessages;
+  private volatile long lastSentTime;
+  //the start time of the write in progress, or 0 if none
+  private volatile long sendStartTime;
+  private volatile boolean closed;
+  private volatile Runnable completionCallback;
+
+  public NotificationStreamWrapper(long timeoutInMilli, Executor sendExecutor) {
+    this(new SseEmitter(timeoutInMilli), sendExecutor);
+  }
+
+  NotificationStreamWrapper(SseEmitter emitter, Executor sendExecutor) {
+    this.emitter = emitter;
+    this.sendExecutor = sendExecutor;
+    outbox = new ConcurrentLinkedQueue<>();
+    pendingEvents = new AtomicInteger();
+    sending = new AtomicBoolean(false);
+    completed = new AtomicBoolean(false);
+    //the long polling requests may replace the namespace name of a shared notification with another case
+    normalizedNamespaceNameToOriginalNamespaceName = Maps.newTreeMap(String.CASE_INSENSITIVE_ORDER);
+    notifiedMessages = Maps.newHashMap();
+    lastSentTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Should be called before the stream is registered
+   */
+  public void recordNamespaceNameNormalizedResult(String originalNamespaceName, String normalizedNamespaceName) {
+    normalizedNamespaceNameToOriginalNamespaceName.put(normalizedNamespaceName, originalNamespaceName);
+  }
+
+  public void onTimeout(Runnable timeoutCallback) {
+    emitter.onTimeout(timeoutCallback);
+  }
+
+  public void onCompletion(Runnable completionCallback) {
+    this.completionCallback = completionCallback;
+    emitter.onCompletion(this::completed);
+  }
+
+  @Override
+  public void setResult(ApolloConfigNotification notification) {
+    setResult(Lists.newArrayList(notification));
+  }
+
+  /**
+   * Send the notifications not sent yet, a notification could be found by both the initial check and a release
+   * message when the release happens during the subscription. The lock only guards the notified ids, the events are
+   * written asynchronously.
+   */
+  public synchronized void setResult(List<ApolloConfigNotification> notifications) {
+    List<ApolloConfigNotification> toBeSent = Lists.newArrayListWithCapacity(notifications.size());
+    for (ApolloConfigNotification notification : notifications) {
+      if (!markNotified(notification)) {
+        continue;
+      }
+      //the notifications are shared by all the subscribers, so the namespace name is replaced on a copy
+      String namespaceName = normalizedNamespaceNameToOriginalNamespaceName
+          .getOrDefault(notification.getNamespaceName(), notification.getNamespaceName());
+      ApolloConfigNotification copy = new ApolloConfigNotification(namespaceName, notification.getNotificationId());
+      copy.setMessages(notification.getMessages());
+      toBeSent.add(copy);
+    }
+
+    if (!toBeSent.isEmpty()) {
+      send(SseEmitter.event().name(NOTIFICATIONS_EVENT).data(GSON.toJson(toBeSent)));
+    }
+  }
+
+  /**
+   * Send a heartbeat, unless the stream has events to send already
+   */
+  public void sendHeartbeat() {
+    if (pendingEvents.get() == 0) {
+      send(SseEmitter.event().name(HEARTBEAT_EVENT).data(""));
+    }
+  }
+
+  public long getLastSentTime() {
+    return lastSentTime;
+  }
+
+  /**
+   * @return whether the write in progress has not finished within the timeout, e.g. the client is half dead
+   */
+  public boolean isStalled(long timeoutInMilli) {
+    long startTime = sendStartTime;
+    return startTime > 0 && System.currentTimeMillis() - startTime > timeoutInMilli;
+  }
+
+  /**
+   * Drop the stream without waiting for the write in progress, the completion callback is called right away
+   */
+  public void close() {
+    closed = true;
+    outbox.clear();
+    try {
+      emitter.complete();
+    } catch (Throwable ex) {
+      //ignore, the stream is dropped anyway
+    }
+    completed();
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  public SseEmitter getEmitter() {
+    return emitter;
+  }
+
+  private boolean markNotified(ApolloConfigNotification notification) {
+    if (notification.getMessages() == null || notification.getMessages().isEmpty()) {
+      return true;
+    }
+    boolean hasNewMessage = false;
+    for (Map.Entry<String, Long> message : notification.getMessages().getDetails().entrySet()) {
+      Long notified = notifiedMessages.get(message.getKey());
+      if (notified == null || notified < message.getValue()) {
+        notifiedMessages.put(message.getKey(), message.getValue());
+        hasNewMessage = true;
+      }
+    }
+    return hasNewMessage;
+  }
+
+  private void send(SseEventBuilder event) {
+    if (closed) {
+      return;
+    }
+    if (pendingEvents.incrementAndGet() > MAX_PENDING_EVENTS) {
+      //the client is too slow to keep up, it catches up by subscribing again
+      close();
+      return;
+    }
+    outbox.add(event);
+    scheduleSend();
+  }
+
+  private void scheduleSend() {
+    if (outbox.isEmpty() || !sending.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      sendExecutor.execute(this::drainOutbox);
+    } catch (RejectedExecutionException ex) {
+      sending.set(false);
+      close();
+    }
+  }
+
+  /**
+   * Write the queued events in order, only one drain runs at a time for a stream
+   */
+  private void drainOutbox() {
+    try {
+      SseEventBuilder event;
+      while (!closed && (event = outbox.poll()) != null) {
+        pendingEvents.decrementAndGet();
+        sendStartTime = System.currentTimeMillis();
+        try {
+          emitter.send(event);
+          lastSentTime = System.currentTimeMillis();
+        } catch (Throwable ex) {
+          //the client is gone, the completion callback unregisters the stream
+          closed = true;
+          outbox.clear();
+          emitter.completeWithError(ex);
+        } finally {
+          sendStartTime = 0;
+        }
+      }
+    } finally {
+      sending.set(false);
+    }
+    //the events queued after the last poll
+    if (!closed) {
+      scheduleSend();
+    }
+  }
+
+  private void completed() {
+    closed = true;
+    if (completed.compareAndSet(false, true) && completionCallback != null) {
+      completionCallback.run();
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+
+/**
+ * A client watching the release messages of some watch keys, which is either a long polling request or a
+ * notification stream.
+ */
+public interface NotificationSubscriber {
+
+  void setResult(ApolloConfigNotification notification);
+}
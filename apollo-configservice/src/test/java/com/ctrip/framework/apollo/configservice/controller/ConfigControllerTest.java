@@ -1,17 +1,28 @@
 package com.ctrip.framework.apollo.configservice.controller;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.ConfigResponseCache;
+import com.ctrip.framework.apollo.configservice.service.ConfigResponseCache.ConfigResponse;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
 import com.ctrip.framework.apollo.configservice.util.InstanceConfigAuditUtil;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigQuery;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.dto.ConfigurationChange;
+import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
+import com.ctrip.framework.apollo.core.enums.ConfigurationChangeType;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import org.junit.Before;
@@ -19,10 +30,19 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -59,12 +79,17 @@ public class ConfigControllerTest {
   private InstanceConfigAuditUtil instanceConfigAuditUtil;
   @Mock
   private HttpServletRequest someRequest;
+  @Mock
+  private ConfigResponseCache configResponseCache;
+  @Mock
+  private BizConfig bizConfig;
   private Gson gson = new Gson();
 
   @Before
   public void setUp() throws Exception {
     configController = spy(new ConfigController(
-        configService, appNamespaceService, namespaceUtil, instanceConfigAuditUtil, gson
+        configService, appNamespaceService, namespaceUtil, instanceConfigAuditUtil, configResponseCache,
+        bizConfig, gson
     ));
 
     someAppId = "1";
@@ -101,13 +126,16 @@ public class ConfigControllerTest {
         someDataCenter, someNotificationMessages)).thenReturn(someRelease);
     when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
     when(someRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+    mockConfigResponseCache();
 
-    ApolloConfig result = configController.queryConfig(someAppId, someClusterName,
+    ResponseEntity<byte[]> response = configController.queryConfigAsResponse(someAppId, someClusterName,
         defaultNamespaceName, someDataCenter, someClientSideReleaseKey,
-        someClientIp, someAppTag, someMessagesAsString, someRequest, someResponse);
+        someClientIp, someAppTag, someMessagesAsString, false, someRequest, someResponse);
 
     verify(configService, times(1)).loadConfig(someAppId, someAppTag, someClientIp, someAppId, someClusterName,
         defaultNamespaceName, someDataCenter, someNotificationMessages);
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    ApolloConfig result = gson.fromJson(new String(response.getBody(), StandardCharsets.UTF_8), ApolloConfig.class);
     assertEquals(someAppId, result.getAppId());
     assertEquals(someClusterName, result.getCluster());
     assertEquals(defaultNamespaceName, result.getNamespaceName());
@@ -116,6 +144,204 @@ public class ConfigControllerTest {
         someClientIp, someAppId, someClusterName, defaultNamespaceName, someServerSideNewReleaseKey);
   }
 
+  @Test
+  public void testQueryConfigAsResponse() throws Exception {
+    String someServerSideNewReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(configService.loadConfig(someAppId, someAppTag, someClientIp, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+    mockConfigResponseCache();
+
+    ResponseEntity<byte[]> result = configController.queryConfigAsResponse(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, "-1", someClientIp, someAppTag, someMessagesAsString, false,
+        someRequest, someResponse);
+
+    String expectedCacheKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(someAppId, someClusterName, defaultNamespaceName, someServerSideNewReleaseKey);
+    verify(configResponseCache, times(1)).getOrCreate(eq(expectedCacheKey), eq(Lists.newArrayList(someRelease)),
+        any());
+    assertEquals(HttpStatus.OK, result.getStatusCode());
+    assertEquals("\"" + someServerSideNewReleaseKey + "\"", result.getHeaders().getETag());
+    assertNull(result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+
+    ApolloConfig apolloConfig = gson.fromJson(new String(result.getBody(), StandardCharsets.UTF_8),
+        ApolloConfig.class);
+    assertEquals(someAppId, apolloConfig.getAppId());
+    assertEquals(someClusterName, apolloConfig.getCluster());
+    assertEquals(defaultNamespaceName, apolloConfig.getNamespaceName());
+    assertEquals(someServerSideNewReleaseKey, apolloConfig.getReleaseKey());
+    assertEquals("foo", apolloConfig.getConfigurations().get("apollo.bar"));
+  }
+
+  @Test
+  public void testQueryConfigAsResponseWithGzip() throws Exception {
+    String someServerSideNewReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(configService.loadConfig(someAppId, someAppTag, someClientIp, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someRequest.getHeader(HttpHeaders.ACCEPT_ENCODING)).thenReturn("gzip, deflate");
+    when(configResponseCache.isGzipEnabled()).thenReturn(true);
+    mockConfigResponseCache();
+
+    ResponseEntity<byte[]> result = configController.queryConfigAsResponse(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, "-1", someClientIp, someAppTag, someMessagesAsString, false,
+        someRequest, someResponse);
+
+    assertEquals("gzip", result.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(HttpHeaders.ACCEPT_ENCODING, result.getHeaders().getFirst(HttpHeaders.VARY));
+
+    ApolloConfig apolloConfig = gson.fromJson(gunzip(result.getBody()), ApolloConfig.class);
+    assertEquals(someServerSideNewReleaseKey, apolloConfig.getReleaseKey());
+  }
+
+  @Test
+  public void testQueryConfigAsResponseWithETagNotModified() throws Exception {
+    String someServerSideReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(configService.loadConfig(someAppId, someAppTag, someClientIp, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideReleaseKey);
+    when(someRequest.getHeader(HttpHeaders.IF_NONE_MATCH)).thenReturn("\"" + someServerSideReleaseKey + "\"");
+
+    ResponseEntity<byte[]> result = configController.queryConfigAsResponse(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, "-1", someClientIp, someAppTag, someMessagesAsString, false,
+        someRequest, someResponse);
+
+    assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+    assertNull(result.getBody());
+    verify(configResponseCache, never()).getOrCreate(anyString(), anyList(), any());
+  }
+
+  @Test
+  public void testQueryConfigAsResponseWithReleaseKeyNotModified() throws Exception {
+    String someServerSideReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(configService.loadConfig(someAppId, someAppTag, someClientIp, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideReleaseKey);
+
+    ResponseEntity<byte[]> result = configController.queryConfigAsResponse(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someServerSideReleaseKey, someClientIp, someAppTag,
+        someMessagesAsString, false, someRequest, someResponse);
+
+    assertNull(result);
+    verify(someResponse, times(1)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(configResponseCache, never()).getOrCreate(anyString(), anyList(), any());
+  }
+
+  @Test
+  public void testQueryConfigAsResponseWithIncrementalSync() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+    Release someHistoryRelease = mock(Release.class);
+    Map<String, String> someLatestConfigurations = ImmutableMap.of("k1", "v1", "k2", "v2-new", "k3", "v3",
+        "k4", "v4");
+    Map<String, String> someHistoryConfigurations = ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3",
+        "k5", "v5");
+
+    when(configService.loadConfig(someAppId, someAppTag, someClientIp, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someRelease.getConfigurations()).thenReturn(gson.toJson(someLatestConfigurations));
+    when(someHistoryRelease.getConfigurations()).thenReturn(gson.toJson(someHistoryConfigurations));
+    when(someRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+    when(someHistoryRelease.getAppId()).thenReturn(someAppId);
+    when(someHistoryRelease.getClusterName()).thenReturn(someClusterName);
+    when(someHistoryRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+    when(configService.findReleasesByReleaseKeys(Sets.newHashSet(someClientSideReleaseKey)))
+        .thenReturn(ImmutableMap.of(someClientSideReleaseKey, someHistoryRelease));
+    when(bizConfig.isConfigServiceIncrementalSyncEnabled()).thenReturn(true);
+    mockConfigResponseCache();
+
+    ResponseEntity<byte[]> result = configController.queryConfigAsResponse(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someClientSideReleaseKey, someClientIp, someAppTag,
+        someMessagesAsString, true, someRequest, someResponse);
+
+    ApolloConfig apolloConfig = gson.fromJson(new String(result.getBody(), StandardCharsets.UTF_8),
+        ApolloConfig.class);
+    assertEquals(someServerSideNewReleaseKey, apolloConfig.getReleaseKey());
+    assertEquals(ConfigSyncType.INCREMENTAL_SYNC, apolloConfig.getConfigSyncType());
+    assertNull(apolloConfig.getConfigurations());
+
+    Map<String, ConfigurationChange> changes = Maps.newHashMap();
+    for (ConfigurationChange change : apolloConfig.getConfigurationChanges()) {
+      changes.put(change.getKey(), change);
+    }
+    assertEquals(3, changes.size());
+    assertEquals(ConfigurationChangeType.MODIFIED, changes.get("k2").getConfigurationChangeType());
+    assertEquals("v2-new", changes.get("k2").getNewValue());
+    assertEquals(ConfigurationChangeType.ADDED, changes.get("k4").getConfigurationChangeType());
+    assertEquals("v4", changes.get("k4").getNewValue());
+    assertEquals(ConfigurationChangeType.DELETED, changes.get("k5").getConfigurationChangeType());
+  }
+
+  @Test
+  public void testQueryConfigAsResponseWithIncrementalSyncAndForeignReleaseKey() throws Exception {
+    String someForeignReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    String anotherAppId = "anotherAppId";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+    Release someForeignRelease = mock(Release.class);
+
+    when(configService.loadConfig(someAppId, someAppTag, someClientIp, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someForeignRelease.getAppId()).thenReturn(anotherAppId);
+    when(configService.findReleasesByReleaseKeys(Sets.newHashSet(someForeignReleaseKey)))
+        .thenReturn(ImmutableMap.of(someForeignReleaseKey, someForeignRelease));
+    when(bizConfig.isConfigServiceIncrementalSyncEnabled()).thenReturn(true);
+    mockConfigResponseCache();
+
+    ResponseEntity<byte[]> result = configController.queryConfigAsResponse(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someForeignReleaseKey, someClientIp, someAppTag,
+        someMessagesAsString, true, someRequest, someResponse);
+
+    //the keys of the foreign release are never compared, the full configurations are returned and cached as usual
+    String expectedCacheKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(someAppId, someClusterName, defaultNamespaceName, someServerSideNewReleaseKey);
+    verify(configResponseCache, times(1)).getOrCreate(eq(expectedCacheKey), eq(Lists.newArrayList(someRelease)),
+        any());
+    verify(someForeignRelease, never()).getConfigurations();
+    ApolloConfig apolloConfig = gson.fromJson(new String(result.getBody(), StandardCharsets.UTF_8),
+        ApolloConfig.class);
+    assertNull(apolloConfig.getConfigSyncType());
+    assertNull(apolloConfig.getConfigurationChanges());
+    assertEquals("foo", apolloConfig.getConfigurations().get("apollo.bar"));
+  }
+
+  @Test
+  public void testQueryConfigAsResponseWithIncrementalSyncAndHistoryReleaseNotFound() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    HttpServletResponse someResponse = mock(HttpServletResponse.class);
+
+    when(configService.loadConfig(someAppId, someAppTag, someClientIp, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(configService.findReleasesByReleaseKeys(Sets.newHashSet(someClientSideReleaseKey)))
+        .thenReturn(Collections.emptyMap());
+    when(bizConfig.isConfigServiceIncrementalSyncEnabled()).thenReturn(true);
+    mockConfigResponseCache();
+
+    ResponseEntity<byte[]> result = configController.queryConfigAsResponse(someAppId, someClusterName,
+        defaultNamespaceName, someDataCenter, someClientSideReleaseKey, someClientIp, someAppTag,
+        someMessagesAsString, true, someRequest, someResponse);
+
+    ApolloConfig apolloConfig = gson.fromJson(new String(result.getBody(), StandardCharsets.UTF_8),
+        ApolloConfig.class);
+    assertNull(apolloConfig.getConfigSyncType());
+    assertNull(apolloConfig.getConfigurationChanges());
+    assertEquals("foo", apolloConfig.getConfigurations().get("apollo.bar"));
+  }
+
   @Test
   public void testQueryConfigFile() throws Exception {
     String someClientSideReleaseKey = "1";
@@ -202,6 +428,71 @@ public class ConfigControllerTest {
     verify(someResponse, times(1)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
   }
 
+  @Test
+  public void testQueryConfigs() throws Exception {
+    String someClientSideReleaseKey = "1";
+    String someServerSideNewReleaseKey = "2";
+    String someAppOwnNamespaceName = "someAppOwn";
+    Release anotherRelease = mock(Release.class);
+    ApolloConfigQuery someQuery = new ApolloConfigQuery(defaultNamespaceName, someClientSideReleaseKey);
+    someQuery.setMessages(someNotificationMessages);
+    ApolloConfigQuery anotherQuery = new ApolloConfigQuery(someAppOwnNamespaceName, someClientSideReleaseKey);
+    ApolloConfigQuery yetAnotherQuery = new ApolloConfigQuery(somePublicNamespaceName, null);
+
+    when(bizConfig.isConfigServiceBatchQueryEnabled()).thenReturn(true);
+    when(bizConfig.configServiceBatchQueryMaxNamespaces()).thenReturn(100);
+    when(configService.loadConfig(someAppId, someAppTag, someClientIp, someAppId, someClusterName, defaultNamespaceName,
+        someDataCenter, someNotificationMessages)).thenReturn(someRelease);
+    when(someRelease.getReleaseKey()).thenReturn(someServerSideNewReleaseKey);
+    when(someRelease.getNamespaceName()).thenReturn(defaultNamespaceName);
+    when(namespaceUtil.filterNamespaceName(someAppOwnNamespaceName)).thenReturn(someAppOwnNamespaceName);
+    when(namespaceUtil.normalizeNamespace(someAppId, someAppOwnNamespaceName)).thenReturn(someAppOwnNamespaceName);
+    when(appNamespaceService.findByAppIdAndNamespace(someAppId, someAppOwnNamespaceName))
+        .thenReturn(assemblePublicAppNamespace(someAppId, someAppOwnNamespaceName));
+    when(configService.loadConfig(someAppId, someAppTag, someClientIp, someAppId, someClusterName,
+        someAppOwnNamespaceName, someDataCenter, null)).thenReturn(anotherRelease);
+    when(anotherRelease.getReleaseKey()).thenReturn(someClientSideReleaseKey);
+
+    ResponseEntity<List<ApolloConfig>> response = configController.queryConfigs(someAppId, someClusterName,
+        someDataCenter, someClientIp, someAppTag, Lists.newArrayList(someQuery, anotherQuery, yetAnotherQuery),
+        someRequest);
+
+    //the not modified and not found namespaces are left out
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(1, response.getBody().size());
+    ApolloConfig result = response.getBody().get(0);
+    assertEquals(someAppId, result.getAppId());
+    assertEquals(someClusterName, result.getCluster());
+    assertEquals(defaultNamespaceName, result.getNamespaceName());
+    assertEquals(someServerSideNewReleaseKey, result.getReleaseKey());
+    assertEquals("foo", result.getConfigurations().get("apollo.bar"));
+    verify(instanceConfigAuditUtil, times(1)).audit(someAppId, someClusterName, someDataCenter,
+        someClientIp, someAppId, someClusterName, defaultNamespaceName, someServerSideNewReleaseKey);
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testQueryConfigsWithTooManyNamespaces() throws Exception {
+    when(bizConfig.isConfigServiceBatchQueryEnabled()).thenReturn(true);
+    when(bizConfig.configServiceBatchQueryMaxNamespaces()).thenReturn(1);
+
+    configController.queryConfigs(someAppId, someClusterName, someDataCenter, someClientIp, someAppTag,
+        Lists.newArrayList(new ApolloConfigQuery(defaultNamespaceName, null),
+            new ApolloConfigQuery(somePublicNamespaceName, null)), someRequest);
+  }
+
+  @Test
+  public void testQueryConfigsWithBatchQueryDisabled() throws Exception {
+    when(bizConfig.isConfigServiceBatchQueryEnabled()).thenReturn(false);
+
+    ResponseEntity<List<ApolloConfig>> response = configController.queryConfigs(someAppId, someClusterName,
+        someDataCenter, someClientIp, someAppTag,
+        Lists.newArrayList(new ApolloConfigQuery(defaultNamespaceName, null)), someRequest);
+
+    assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    verify(configService, never()).loadConfig(anyString(), anyString(), anyString(), anyString(), anyString(),
+        anyString(), anyString(), any());
+  }
+
   @Test
   public void testQueryConfigWithAppOwnNamespace() throws Exception {
     String someClientSideReleaseKey = "1";
@@ -462,4 +753,18 @@ public class ConfigControllerTest {
     appNamespace.setPublic(isPublic);
     return appNamespace;
   }
+
+  @SuppressWarnings("unchecked")
+  private void mockConfigResponseCache() {
+    when(configResponseCache.getOrCreate(anyString(), anyList(), any())).thenAnswer(invocation -> {
+      Supplier<byte[]> serializer = invocation.getArgument(2);
+      return new ConfigResponse(serializer.get());
+    });
+  }
+
+  private String gunzip(byte[] bytes) throws Exception {
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+    }
+  }
 }
@@ -7,7 +7,10 @@ import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultRegistry;
 import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.ctrip.framework.apollo.configservice.wrapper.NotificationStreamWrapper;
+import com.ctrip.framework.apollo.configservice.wrapper.NotificationSubscriber;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
@@ -16,7 +19,9 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,7 +30,11 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Collection;
 import java.util.List;
@@ -35,6 +44,8 @@ import java.util.concurrent.TimeUnit;
 import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -63,17 +74,18 @@ public class NotificationControllerV2Test {
 
   private Gson gson;
 
-  private Multimap<String, DeferredResultWrapper> deferredResults;
+  private DeferredResultRegistry<NotificationSubscriber> deferredResults;
 
   @Before
   public void setUp() throws Exception {
     gson = new Gson();
+    when(bizConfig.notificationStreamSendThreads()).thenReturn(1);
+    when(bizConfig.notificationStreamSendQueueSize()).thenReturn(1);
     controller = new NotificationControllerV2(
         watchKeysUtil, releaseMessageService, entityManagerUtil, namespaceUtil, gson, bizConfig
     );
 
     when(bizConfig.releaseMessageNotificationBatch()).thenReturn(100);
-    when(bizConfig.releaseMessageNotificationBatchIntervalInMilli()).thenReturn(5);
 
     someAppId = "someAppId";
     someCluster = "someCluster";
@@ -89,8 +101,10 @@ public class NotificationControllerV2Test {
     when(namespaceUtil.normalizeNamespace(someAppId, defaultNamespace)).thenReturn(defaultNamespace);
     when(namespaceUtil.normalizeNamespace(someAppId, somePublicNamespace)).thenReturn(somePublicNamespace);
 
-    deferredResults =
-        (Multimap<String, DeferredResultWrapper>) ReflectionTestUtils.getField(controller, "deferredResults");
+    deferredResults = (DeferredResultRegistry<NotificationSubscriber>) ReflectionTestUtils.getField(controller, "deferredResults");
+    //write the notification streams on the calling thread, so the events are sent once the calls return
+    ReflectionTestUtils.setField(controller, "notificationStreamSendExecutorService",
+        MoreExecutors.newDirectExecutorService());
   }
 
   @Test
@@ -321,7 +335,7 @@ public class NotificationControllerV2Test {
             someDataCenter, appTag)).thenReturn(watchKeysMap);
 
     when(bizConfig.releaseMessageNotificationBatch()).thenReturn(someBatch);
-    when(bizConfig.releaseMessageNotificationBatchIntervalInMilli()).thenReturn(someBatchInterval);
+    when(bizConfig.releaseMessageNotificationQps()).thenReturn(someBatch * 1000 / someBatchInterval);
 
     DeferredResult<ResponseEntity<List<ApolloConfigNotification>>>
         deferredResult = controller
@@ -396,6 +410,163 @@ public class NotificationControllerV2Test {
 
   }
 
+  @Test
+  public void testStreamNotificationsWithNewRelease() throws Exception {
+    String someWatchKey = "someKey";
+    String anotherWatchKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(someAppId, someCluster, defaultNamespace);
+    long someId = 10;
+
+    Multimap<String, String> watchKeysMap =
+        assembleMultiMap(defaultNamespace, Lists.newArrayList(someWatchKey, anotherWatchKey));
+
+    String notificationAsString =
+        transformApolloConfigNotificationsToString(defaultNamespace, someNotificationId);
+
+    ReleaseMessage someReleaseMessage = new ReleaseMessage(anotherWatchKey);
+    someReleaseMessage.setId(someId);
+
+    when(bizConfig.isNotificationStreamEnabled()).thenReturn(true);
+    when(watchKeysUtil.assembleAllWatchKeys(someAppId, someCluster, Sets.newHashSet(defaultNamespace),
+        someDataCenter, null)).thenReturn(watchKeysMap);
+    when(releaseMessageService.findLatestReleaseMessagesGroupByMessages(Sets.newHashSet(watchKeysMap.values())))
+        .thenReturn(Lists.newArrayList(someReleaseMessage));
+
+    MvcResult result = streamNotifications(notificationAsString);
+
+    assertEquals(watchKeysMap.size(), deferredResults.size());
+    assertEquals(1, controller.getNotificationStreamSize());
+
+    List<List<ApolloConfigNotification>> events = parseNotificationEvents(result);
+    assertEquals(1, events.size());
+    assertEquals(1, events.get(0).size());
+    ApolloConfigNotification notification = events.get(0).get(0);
+    assertEquals(defaultNamespace, notification.getNamespaceName());
+    assertEquals(someId, notification.getNotificationId());
+    assertEquals(someId, notification.getMessages().get(anotherWatchKey).longValue());
+
+    //the release found by the initial check is not sent again
+    controller.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    assertEquals(1, parseNotificationEvents(result).size());
+  }
+
+  @Test
+  public void testStreamNotificationsWithHandleMessage() throws Exception {
+    String someWatchKey = "someKey";
+    String anotherWatchKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(someAppId, someCluster, somePublicNamespace);
+    String somePublicNamespaceAsFile = String.format("%s.%s", somePublicNamespace, "properties");
+
+    Multimap<String, String> watchKeysMap =
+        assembleMultiMap(defaultNamespace, Lists.newArrayList(someWatchKey));
+    watchKeysMap
+        .putAll(assembleMultiMap(somePublicNamespace, Lists.newArrayList(anotherWatchKey)));
+
+    String notificationAsString =
+        transformApolloConfigNotificationsToString(defaultNamespace, someNotificationId,
+            somePublicNamespaceAsFile, someNotificationId);
+
+    when(bizConfig.isNotificationStreamEnabled()).thenReturn(true);
+    when(namespaceUtil.filterNamespaceName(somePublicNamespaceAsFile)).thenReturn(somePublicNamespace);
+    when(watchKeysUtil.assembleAllWatchKeys(someAppId, someCluster,
+        Sets.newHashSet(defaultNamespace, somePublicNamespace), someDataCenter, null)).thenReturn(watchKeysMap);
+
+    MvcResult result = streamNotifications(notificationAsString);
+
+    assertTrue(parseNotificationEvents(result).isEmpty());
+    assertTrue(result.getResponse().getContentAsString().contains(NotificationStreamWrapper.HEARTBEAT_EVENT));
+
+    long someId = 1;
+    long anotherId = 2;
+    ReleaseMessage someReleaseMessage = new ReleaseMessage(anotherWatchKey);
+    someReleaseMessage.setId(someId);
+    ReleaseMessage anotherReleaseMessage = new ReleaseMessage(anotherWatchKey);
+    anotherReleaseMessage.setId(anotherId);
+
+    controller.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+    controller.handleMessage(anotherReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    //the stream stays registered after the notifications
+    assertEquals(watchKeysMap.size(), deferredResults.size());
+
+    List<List<ApolloConfigNotification>> events = parseNotificationEvents(result);
+    assertEquals(2, events.size());
+    assertEquals(somePublicNamespace, events.get(0).get(0).getNamespaceName());
+    assertEquals(someId, events.get(0).get(0).getNotificationId());
+    assertEquals(somePublicNamespace, events.get(1).get(0).getNamespaceName());
+    assertEquals(anotherId, events.get(1).get(0).getNotificationId());
+    assertEquals(anotherId, events.get(1).get(0).getMessages().get(anotherWatchKey).longValue());
+  }
+
+  @Test
+  public void testStreamNotificationsCompleted() throws Exception {
+    String someWatchKey = "someKey";
+
+    Multimap<String, String> watchKeysMap =
+        assembleMultiMap(defaultNamespace, Lists.newArrayList(someWatchKey));
+
+    String notificationAsString =
+        transformApolloConfigNotificationsToString(defaultNamespace, someNotificationId);
+
+    when(bizConfig.isNotificationStreamEnabled()).thenReturn(true);
+    when(watchKeysUtil.assembleAllWatchKeys(someAppId, someCluster, Sets.newHashSet(defaultNamespace),
+        someDataCenter, null)).thenReturn(watchKeysMap);
+
+    MvcResult result = streamNotifications(notificationAsString);
+
+    assertEquals(watchKeysMap.size(), deferredResults.size());
+
+    result.getRequest().getAsyncContext().complete();
+
+    assertEquals(0, deferredResults.size());
+    assertEquals(0, controller.getNotificationStreamSize());
+  }
+
+  @Test
+  public void testStreamNotificationsDisabled() throws Exception {
+    String notificationAsString =
+        transformApolloConfigNotificationsToString(defaultNamespace, someNotificationId);
+
+    when(bizConfig.isNotificationStreamEnabled()).thenReturn(false);
+
+    ResponseEntity<SseEmitter> response = controller.streamNotifications(someAppId, someCluster,
+        notificationAsString, someDataCenter, null, someClientIp);
+
+    assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    assertEquals(0, deferredResults.size());
+    verify(watchKeysUtil, never()).assembleAllWatchKeys(anyString(), anyString(), anySet(), anyString(), any());
+  }
+
+  private MvcResult streamNotifications(String notificationAsString) throws Exception {
+    lenient().when(bizConfig.notificationStreamHeartbeatIntervalInMilli()).thenReturn(TimeUnit.MINUTES.toMillis(1));
+    MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+    return mockMvc.perform(get("/notifications/v2/stream")
+        .param("appId", someAppId)
+        .param("cluster", someCluster)
+        .param("notifications", notificationAsString)
+        .param("dataCenter", someDataCenter)
+        .param("ip", someClientIp))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+  }
+
+  private List<List<ApolloConfigNotification>> parseNotificationEvents(MvcResult result) throws Exception {
+    List<List<ApolloConfigNotification>> events = Lists.newArrayList();
+    String eventName = null;
+    for (String line : result.getResponse().getContentAsString().split("\n")) {
+      if (line.startsWith("event:")) {
+        eventName = line.substring("event:".length());
+      } else if (line.startsWith("data:") && NotificationStreamWrapper.NOTIFICATIONS_EVENT.equals(eventName)) {
+        events.add(gson.fromJson(line.substring("data:".length()),
+            new TypeToken<List<ApolloConfigNotification>>() {
+            }.getType()));
+      }
+    }
+    return events;
+  }
+
   private String transformApolloConfigNotificationsToString(
       String namespace, long notificationId) {
     List<ApolloConfigNotification> notifications =
@@ -438,10 +609,11 @@ public class NotificationControllerV2Test {
 
   private void assertWatchKeys(Multimap<String, String> watchKeysMap, DeferredResult deferredResult) {
     for (String watchKey : watchKeysMap.values()) {
-      Collection<DeferredResultWrapper> deferredResultWrappers = deferredResults.get(watchKey);
+      Collection<NotificationSubscriber> deferredResultWrappers = deferredResults.get(watchKey);
       boolean found = false;
-      for (DeferredResultWrapper wrapper: deferredResultWrappers) {
-        if (Objects.equals(wrapper.getResult(), deferredResult)) {
+      for (NotificationSubscriber wrapper: deferredResultWrappers) {
+        if (wrapper instanceof DeferredResultWrapper
+            && Objects.equals(((DeferredResultWrapper) wrapper).getResult(), deferredResult)) {
           found = true;
         }
       }
@@ -0,0 +1,72 @@
+package com.ctrip.framework.apollo.configservice.controller;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageScanner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReleaseMessageControllerTest {
+  private ReleaseMessageController releaseMessageController;
+  @Mock
+  private ReleaseMessageScanner releaseMessageScanner;
+  @Mock
+  private BizConfig bizConfig;
+  private long someMessageId;
+  private String someAccessToken;
+
+  @Before
+  public void setUp() throws Exception {
+    releaseMessageController = new ReleaseMessageController(releaseMessageScanner, bizConfig);
+    someMessageId = 1;
+    someAccessToken = "someAccessToken";
+  }
+
+  @Test
+  public void testPush() throws Exception {
+    when(bizConfig.isReleaseMessagePushEnabled()).thenReturn(true);
+    when(bizConfig.releaseMessagePushAccessToken()).thenReturn(someAccessToken);
+
+    assertEquals(HttpStatus.OK, releaseMessageController.push(someMessageId, someAccessToken).getStatusCode());
+    verify(releaseMessageScanner, times(1)).onMessagePushed(someMessageId);
+  }
+
+  @Test
+  public void testPushWhenPushDisabled() throws Exception {
+    when(bizConfig.isReleaseMessagePushEnabled()).thenReturn(false);
+
+    assertEquals(HttpStatus.NOT_FOUND, releaseMessageController.push(someMessageId, someAccessToken).getStatusCode());
+    verify(releaseMessageScanner, never()).onMessagePushed(anyLong());
+  }
+
+  @Test
+  public void testPushWithInvalidAccessToken() throws Exception {
+    when(bizConfig.isReleaseMessagePushEnabled()).thenReturn(true);
+    when(bizConfig.releaseMessagePushAccessToken()).thenReturn(someAccessToken);
+
+    assertEquals(HttpStatus.UNAUTHORIZED,
+        releaseMessageController.push(someMessageId, "anotherAccessToken").getStatusCode());
+    assertEquals(HttpStatus.UNAUTHORIZED, releaseMessageController.push(someMessageId, null).getStatusCode());
+    verify(releaseMessageScanner, never()).onMessagePushed(anyLong());
+  }
+
+  @Test
+  public void testPushWithoutAccessTokenConfigured() throws Exception {
+    when(bizConfig.isReleaseMessagePushEnabled()).thenReturn(true);
+    when(bizConfig.releaseMessagePushAccessToken()).thenReturn("");
+
+    assertEquals(HttpStatus.UNAUTHORIZED, releaseMessageController.push(someMessageId, "").getStatusCode());
+    verify(releaseMessageScanner, never()).onMessagePushed(anyLong());
+  }
+}
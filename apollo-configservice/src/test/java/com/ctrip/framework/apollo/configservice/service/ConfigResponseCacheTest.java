@@ -0,0 +1,138 @@
+package com.ctrip.framework.apollo.configservice.service;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.configservice.service.ConfigResponseCache.ConfigResponse;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigResponseCacheTest {
+  private ConfigResponseCache configResponseCache;
+  @Mock
+  private BizConfig bizConfig;
+  private String someAppId;
+  private String someClusterName;
+  private String someNamespaceName;
+  private String someCacheKey;
+  private List<Release> someReleases;
+  private AtomicInteger serializeCount;
+  private Supplier<byte[]> someSerializer;
+
+  @Before
+  public void setUp() throws Exception {
+    configResponseCache = new ConfigResponseCache(bizConfig);
+
+    someAppId = "someAppId";
+    someClusterName = "someClusterName";
+    someNamespaceName = "someNamespaceName";
+    someCacheKey = "someCacheKey";
+    someReleases = Lists.newArrayList(assembleRelease(someAppId, someClusterName, someNamespaceName));
+    serializeCount = new AtomicInteger();
+    someSerializer = () -> {
+      serializeCount.incrementAndGet();
+      return "{\"someKey\":\"someValue\"}".getBytes(StandardCharsets.UTF_8);
+    };
+  }
+
+  @Test
+  public void testGetOrCreate() throws Exception {
+    when(bizConfig.isConfigServiceResponseCacheEnabled()).thenReturn(true);
+
+    ConfigResponse someResponse = configResponseCache.getOrCreate(someCacheKey, someReleases, someSerializer);
+    ConfigResponse anotherResponse = configResponseCache.getOrCreate(someCacheKey, someReleases, someSerializer);
+
+    assertSame(someResponse, anotherResponse);
+    assertEquals(1, serializeCount.get());
+    assertEquals(1, configResponseCache.size());
+  }
+
+  @Test
+  public void testGetOrCreateWithCacheDisabled() throws Exception {
+    when(bizConfig.isConfigServiceResponseCacheEnabled()).thenReturn(false);
+
+    configResponseCache.getOrCreate(someCacheKey, someReleases, someSerializer);
+    configResponseCache.getOrCreate(someCacheKey, someReleases, someSerializer);
+
+    assertEquals(2, serializeCount.get());
+    assertEquals(0, configResponseCache.size());
+  }
+
+  @Test
+  public void testHandleMessageInvalidatesCache() throws Exception {
+    when(bizConfig.isConfigServiceResponseCacheEnabled()).thenReturn(true);
+    String anotherCacheKey = "anotherCacheKey";
+    List<Release> anotherReleases = Lists.newArrayList(
+        assembleRelease(someAppId, someClusterName, "anotherNamespaceName"));
+
+    configResponseCache.getOrCreate(someCacheKey, someReleases, someSerializer);
+    configResponseCache.getOrCreate(anotherCacheKey, anotherReleases, someSerializer);
+
+    configResponseCache.handleMessage(assembleReleaseMessage(someAppId, someClusterName, someNamespaceName),
+        Topics.APOLLO_RELEASE_TOPIC);
+
+    assertEquals(1, configResponseCache.size());
+
+    configResponseCache.getOrCreate(someCacheKey, someReleases, someSerializer);
+    configResponseCache.getOrCreate(anotherCacheKey, anotherReleases, someSerializer);
+
+    assertEquals(3, serializeCount.get());
+  }
+
+  @Test
+  public void testHandleMessageWithOtherTopic() throws Exception {
+    when(bizConfig.isConfigServiceResponseCacheEnabled()).thenReturn(true);
+
+    configResponseCache.getOrCreate(someCacheKey, someReleases, someSerializer);
+
+    configResponseCache.handleMessage(assembleReleaseMessage(someAppId, someClusterName, someNamespaceName),
+        "someOtherTopic");
+
+    assertEquals(1, configResponseCache.size());
+  }
+
+  @Test
+  public void testGzippedBody() throws Exception {
+    byte[] someBody = "{\"someKey\":\"someValue\"}".getBytes(StandardCharsets.UTF_8);
+    ConfigResponse someResponse = new ConfigResponse(someBody);
+
+    byte[] gzipped = someResponse.getGzippedBody();
+
+    assertSame(gzipped, someResponse.getGzippedBody());
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+      assertArrayEquals(someBody, ByteStreams.toByteArray(in));
+    }
+  }
+
+  private Release assembleRelease(String appId, String clusterName, String namespaceName) {
+    Release release = new Release();
+    release.setAppId(appId);
+    release.setClusterName(clusterName);
+    release.setNamespaceName(namespaceName);
+    return release;
+  }
+
+  private ReleaseMessage assembleReleaseMessage(String appId, String clusterName, String namespaceName) {
+    return new ReleaseMessage(Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(appId, clusterName, namespaceName));
+  }
+}
@@ -165,7 +165,7 @@ public class ReleaseMessageServiceWithCacheTest {
 
     assertEquals(someMessageId, latestReleaseMsg.getId());
     assertEquals(someMessageContent, latestReleaseMsg.getMessage());
-    assertEquals(latestReleaseMsg, latestReleaseMsgGroupByMsgContent.get(0));
+    assertReleaseMessageEquals(latestReleaseMsg, latestReleaseMsgGroupByMsgContent.get(0));
 
     long newMessageId = 2;
     ReleaseMessage newMessage = assembleReleaseMsg(newMessageId, someMessageContent);
@@ -184,7 +184,7 @@ public class ReleaseMessageServiceWithCacheTest {
 
       assertEquals(newMessageId, newLatestReleaseMsg.getId());
       assertEquals(someMessageContent, newLatestReleaseMsg.getMessage());
-      assertEquals(newLatestReleaseMsg, newLatestReleaseMsgGroupByMsgContent.get(0));
+      assertReleaseMessageEquals(newLatestReleaseMsg, newLatestReleaseMsgGroupByMsgContent.get(0));
     });
   }
 
@@ -209,7 +209,7 @@ public class ReleaseMessageServiceWithCacheTest {
 
     assertEquals(someMessageId, latestReleaseMsg.getId());
     assertEquals(someMessageContent, latestReleaseMsg.getMessage());
-    assertEquals(latestReleaseMsg, latestReleaseMsgGroupByMsgContent.get(0));
+    assertReleaseMessageEquals(latestReleaseMsg, latestReleaseMsgGroupByMsgContent.get(0));
 
     long newMessageId = 2;
     ReleaseMessage newMessage = assembleReleaseMsg(newMessageId, someMessageContent);
@@ -226,7 +226,12 @@ public class ReleaseMessageServiceWithCacheTest {
 
     assertEquals(newMessageId, newLatestReleaseMsg.getId());
     assertEquals(someMessageContent, newLatestReleaseMsg.getMessage());
-    assertEquals(newLatestReleaseMsg, newLatestReleaseMsgGroupByMsgContent.get(0));
+    assertReleaseMessageEquals(newLatestReleaseMsg, newLatestReleaseMsgGroupByMsgContent.get(0));
+  }
+
+  private void assertReleaseMessageEquals(ReleaseMessage expected, ReleaseMessage actual) {
+    assertEquals(expected.getId(), actual.getId());
+    assertEquals(expected.getMessage(), actual.getMessage());
   }
 
   private ReleaseMessage assembleReleaseMsg(long id, String msgContent) {
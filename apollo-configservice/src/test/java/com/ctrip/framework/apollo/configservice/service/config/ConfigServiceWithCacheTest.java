@@ -2,6 +2,7 @@ package com.ctrip.framework.apollo.configservice.service.config;
 
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
@@ -17,9 +18,20 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -76,6 +88,29 @@ public class ConfigServiceWithCacheTest {
     verify(releaseService, times(1)).findActiveOne(someId);
   }
 
+  @Test
+  public void testFindReleasesByReleaseKeys() throws Exception {
+    String someReleaseKey = "someReleaseKey";
+    String anotherReleaseKey = "anotherReleaseKey";
+    String notExistedReleaseKey = "notExistedReleaseKey";
+    Set<String> someReleaseKeys = Sets.newHashSet(someReleaseKey, anotherReleaseKey, notExistedReleaseKey);
+    Release anotherRelease = mock(Release.class);
+
+    when(someRelease.getReleaseKey()).thenReturn(someReleaseKey);
+    when(anotherRelease.getReleaseKey()).thenReturn(anotherReleaseKey);
+    when(releaseService.findByReleaseKeys(someReleaseKeys)).thenReturn(Lists.newArrayList(someRelease,
+        anotherRelease));
+
+    Map<String, Release> result = configServiceWithCache.findReleasesByReleaseKeys(someReleaseKeys);
+    Map<String, Release> anotherResult = configServiceWithCache.findReleasesByReleaseKeys(someReleaseKeys);
+
+    assertEquals(2, result.size());
+    assertEquals(someRelease, result.get(someReleaseKey));
+    assertEquals(anotherRelease, result.get(anotherReleaseKey));
+    assertEquals(result, anotherResult);
+    verify(releaseService, times(1)).findByReleaseKeys(someReleaseKeys);
+  }
+
   @Test
   public void testFindActiveOneWithSameIdMultipleTimes() throws Exception {
     long someId = 1;
@@ -224,8 +259,6 @@ public class ConfigServiceWithCacheTest {
     Release release = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
         someNotificationMessages);
 
-    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey))).thenReturn
-        (anotherReleaseMessage);
     when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName)).thenReturn
         (anotherRelease);
     when(anotherReleaseMessage.getMessage()).thenReturn(someKey);
@@ -236,6 +269,8 @@ public class ConfigServiceWithCacheTest {
 
     configServiceWithCache.handleMessage(anotherReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
 
+    someNotificationMessages.put(someKey, someNewNotificationId);
+
     Release shouldBeNewRelease = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName,
         someNamespaceName, someNotificationMessages);
 
@@ -243,10 +278,132 @@ public class ConfigServiceWithCacheTest {
     assertEquals(someRelease, stillOldRelease);
     assertEquals(anotherRelease, shouldBeNewRelease);
 
+    //the entry is updated with the message id, so the release message is not loaded again
+    verify(releaseMessageService, times(1)).findLatestReleaseMessageForMessages(Lists.newArrayList(someKey));
+    verify(releaseService, times(2)).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
+  }
+
+  @Test
+  public void testHandleOutdatedReleaseMessage() throws Exception {
+    ReleaseMessage outdatedReleaseMessage = mock(ReleaseMessage.class);
+
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey))).thenReturn
+        (someReleaseMessage);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName)).thenReturn
+        (someRelease);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+    when(outdatedReleaseMessage.getMessage()).thenReturn(someKey);
+    when(outdatedReleaseMessage.getId()).thenReturn(someNotificationId);
+
+    configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+        someNotificationMessages);
+
+    configServiceWithCache.handleMessage(outdatedReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    verify(releaseService, times(1)).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
+  }
+
+  @Test
+  public void testHandleReleaseMessageWithoutCachedEntry() throws Exception {
+    when(someReleaseMessage.getMessage()).thenReturn(someKey);
+
+    configServiceWithCache.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    verify(releaseService, never()).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
+  }
+
+  @Test
+  public void testFindLatestActiveReleaseWithConcurrentRefresh() throws Exception {
+    long someNewNotificationId = someNotificationId + 1;
+    ReleaseMessage anotherReleaseMessage = mock(ReleaseMessage.class);
+    Release anotherRelease = mock(Release.class);
+    CountDownLatch refreshStarted = new CountDownLatch(1);
+    CountDownLatch refreshBlocked = new CountDownLatch(1);
+
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenReturn(someReleaseMessage)
+        .thenAnswer(invocation -> {
+          refreshStarted.countDown();
+          refreshBlocked.await(5, TimeUnit.SECONDS);
+          return anotherReleaseMessage;
+        });
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenReturn(someRelease, anotherRelease);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+    when(anotherReleaseMessage.getId()).thenReturn(someNewNotificationId);
+
+    configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+        someNotificationMessages);
+
+    ApolloNotificationMessages newerNotificationMessages = new ApolloNotificationMessages();
+    newerNotificationMessages.put(someKey, someNewNotificationId);
+
+    int concurrentRequests = 5;
+    ExecutorService executorService = Executors.newFixedThreadPool(concurrentRequests);
+    List<Future<Release>> results = Lists.newArrayList();
+    for (int i = 0; i < concurrentRequests; i++) {
+      results.add(executorService.submit(() -> configServiceWithCache.findLatestActiveRelease(someAppId,
+          someClusterName, someNamespaceName, newerNotificationMessages)));
+    }
+
+    assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+
+    //the requests without newer notifications are served by the current entry during the refresh
+    assertEquals(someRelease, configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName, someNotificationMessages));
+
+    refreshBlocked.countDown();
+
+    for (Future<Release> result : results) {
+      assertEquals(anotherRelease, result.get(5, TimeUnit.SECONDS));
+    }
+    executorService.shutdown();
+
     verify(releaseMessageService, times(2)).findLatestReleaseMessageForMessages(Lists.newArrayList(someKey));
     verify(releaseService, times(2)).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
   }
 
+  @Test
+  public void testFindLatestActiveReleaseWithRefreshFailed() throws Exception {
+    long someNewNotificationId = someNotificationId + 1;
+
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenReturn(someReleaseMessage)
+        .thenThrow(new RuntimeException("some exception"));
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName)).thenReturn
+        (someRelease);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+
+    configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+        someNotificationMessages);
+
+    someNotificationMessages.put(someKey, someNewNotificationId);
+
+    Release staleRelease = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName, someNotificationMessages);
+
+    assertEquals(someRelease, staleRelease);
+  }
+
+  @Test
+  public void testCacheMetrics() throws Exception {
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey))).thenReturn
+        (someReleaseMessage);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName)).thenReturn
+        (someRelease);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+
+    int retryTimes = 3;
+    for (int i = 0; i < retryTimes; i++) {
+      configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+          someNotificationMessages);
+    }
+
+    assertEquals(1, configServiceWithCache.getMissCount());
+    assertEquals(retryTimes - 1, configServiceWithCache.getHitCount());
+    assertTrue(configServiceWithCache.getAverageLoadTimeInMilli() >= 0);
+  }
+
   @Test
   public void testFindLatestActiveReleaseWithIrrelevantMessages() throws Exception {
     long someNewNotificationId = someNotificationId + 1;
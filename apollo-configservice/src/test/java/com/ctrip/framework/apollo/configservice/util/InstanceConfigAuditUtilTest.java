@@ -1,18 +1,27 @@
 package com.ctrip.framework.apollo.configservice.util;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Instance;
 import com.ctrip.framework.apollo.biz.entity.InstanceConfig;
 import com.ctrip.framework.apollo.biz.service.InstanceService;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -25,7 +34,9 @@ public class InstanceConfigAuditUtilTest {
 
   @Mock
   private InstanceService instanceService;
-  private BlockingQueue<InstanceConfigAuditUtil.InstanceConfigAuditModel> audits;
+  @Mock
+  private BizConfig bizConfig;
+  private List<BlockingQueue<InstanceConfigAuditUtil.InstanceConfigAuditModel>> audits;
 
   private String someAppId;
   private String someConfigClusterName;
@@ -40,9 +51,12 @@ public class InstanceConfigAuditUtilTest {
 
   @Before
   public void setUp() throws Exception {
-    instanceConfigAuditUtil = new InstanceConfigAuditUtil(instanceService);
+    when(bizConfig.instanceConfigAuditWorkerThreads()).thenReturn(2);
+    when(bizConfig.instanceConfigAuditQueueSize()).thenReturn(100);
+    when(bizConfig.instanceConfigAuditBatchSize()).thenReturn(10);
+    instanceConfigAuditUtil = new InstanceConfigAuditUtil(instanceService, bizConfig);
 
-    audits = (BlockingQueue<InstanceConfigAuditUtil.InstanceConfigAuditModel>)
+    audits = (List<BlockingQueue<InstanceConfigAuditUtil.InstanceConfigAuditModel>>)
         ReflectionTestUtils.getField(instanceConfigAuditUtil, "audits");
 
     someAppId = "someAppId";
@@ -64,29 +78,112 @@ public class InstanceConfigAuditUtilTest {
     boolean result = instanceConfigAuditUtil.audit(someAppId, someClusterName, someDataCenter,
         someIp, someConfigAppId, someConfigClusterName, someConfigNamespace, someReleaseKey);
 
-    InstanceConfigAuditUtil.InstanceConfigAuditModel audit = audits.poll();
+    InstanceConfigAuditUtil.InstanceConfigAuditModel audit = null;
+    for (BlockingQueue<InstanceConfigAuditUtil.InstanceConfigAuditModel> queue : audits) {
+      if (audit == null) {
+        audit = queue.poll();
+      }
+    }
 
     assertTrue(result);
     assertTrue(Objects.equals(someAuditModel, audit));
+    assertEquals(0, instanceConfigAuditUtil.getPendingAudits());
+  }
+
+  @Test
+  public void testAuditDroppedWhenQueueIsFull() throws Exception {
+    when(bizConfig.instanceConfigAuditWorkerThreads()).thenReturn(1);
+    when(bizConfig.instanceConfigAuditQueueSize()).thenReturn(1);
+    instanceConfigAuditUtil = new InstanceConfigAuditUtil(instanceService, bizConfig);
+
+    assertTrue(instanceConfigAuditUtil.audit(someAppId, someClusterName, someDataCenter,
+        someIp, someConfigAppId, someConfigClusterName, someConfigNamespace, someReleaseKey));
+    assertFalse(instanceConfigAuditUtil.audit(someAppId, someClusterName, someDataCenter,
+        "anotherIp", someConfigAppId, someConfigClusterName, someConfigNamespace, someReleaseKey));
+
+    assertEquals(1, instanceConfigAuditUtil.getPendingAudits());
+    assertEquals(1, instanceConfigAuditUtil.getDroppedAudits());
   }
 
   @Test
   public void testDoAudit() throws Exception {
     long someInstanceId = 1;
-    Instance someInstance = mock(Instance.class);
-
-    when(someInstance.getId()).thenReturn(someInstanceId);
-    when(instanceService.createInstance(any(Instance.class))).thenReturn(someInstance);
-
-    instanceConfigAuditUtil.doAudit(someAuditModel);
-
-    verify(instanceService, times(1)).findInstance(someAppId, someClusterName, someDataCenter,
-        someIp);
-    verify(instanceService, times(1)).createInstance(any(Instance.class));
-    verify(instanceService, times(1)).findInstanceConfig(someInstanceId, someConfigAppId,
-        someConfigNamespace);
-    verify(instanceService, times(1)).createInstanceConfig(any(InstanceConfig.class));
+    Instance someInstance = assembleInstance(someInstanceId, someIp);
+
+    when(instanceService.findInstances(someAppId, someClusterName, someDataCenter, Sets.newHashSet(someIp)))
+        .thenReturn(Collections.emptyList(), Lists.newArrayList(someInstance));
+    when(instanceService.batchCreateInstanceConfigs(anyList())).thenReturn(1);
+
+    instanceConfigAuditUtil.doAudit(Lists.newArrayList(someAuditModel));
+
+    ArgumentCaptor<List<Instance>> instancesCaptor = ArgumentCaptor.forClass(List.class);
+    verify(instanceService, times(1)).batchCreateInstances(instancesCaptor.capture());
+    assertEquals(someIp, instancesCaptor.getValue().get(0).getIp());
+    verify(instanceService, times(1)).findInstanceConfigs(someConfigAppId, someConfigNamespace,
+        Sets.newHashSet(someInstanceId));
+
+    ArgumentCaptor<List<InstanceConfig>> instanceConfigsCaptor = ArgumentCaptor.forClass(List.class);
+    verify(instanceService, times(1)).batchCreateInstanceConfigs(instanceConfigsCaptor.capture());
+    InstanceConfig instanceConfig = instanceConfigsCaptor.getValue().get(0);
+    assertEquals(someInstanceId, instanceConfig.getInstanceId());
+    assertEquals(someReleaseKey, instanceConfig.getReleaseKey());
+    verify(instanceService, never()).batchUpdateInstanceConfigs(anyList());
+    assertEquals(1, instanceConfigAuditUtil.getFailedAudits());
   }
 
+  @Test
+  public void testDoAuditWithBatch() throws Exception {
+    long someInstanceId = 1;
+    long anotherInstanceId = 2;
+    String anotherIp = "anotherIp";
+    String anotherReleaseKey = "anotherReleaseKey";
+    InstanceConfigAuditUtil.InstanceConfigAuditModel someNewerAuditModel =
+        new InstanceConfigAuditUtil.InstanceConfigAuditModel(someAppId, someClusterName, someDataCenter, someIp,
+            someConfigAppId, someConfigClusterName, someConfigNamespace, anotherReleaseKey);
+    InstanceConfigAuditUtil.InstanceConfigAuditModel anotherAuditModel =
+        new InstanceConfigAuditUtil.InstanceConfigAuditModel(someAppId, someClusterName, someDataCenter, anotherIp,
+            someConfigAppId, someConfigClusterName, someConfigNamespace, anotherReleaseKey);
+
+    InstanceConfig someInstanceConfig = new InstanceConfig();
+    someInstanceConfig.setInstanceId(someInstanceId);
+    someInstanceConfig.setReleaseKey(someReleaseKey);
+    someInstanceConfig.setDataChangeLastModifiedTime(new Date());
+
+    when(instanceService.findInstances(someAppId, someClusterName, someDataCenter,
+        Sets.newHashSet(someIp, anotherIp))).thenReturn(Lists.newArrayList(
+        assembleInstance(someInstanceId, someIp), assembleInstance(anotherInstanceId, anotherIp)));
+    when(instanceService.findInstanceConfigs(someConfigAppId, someConfigNamespace,
+        Sets.newHashSet(someInstanceId, anotherInstanceId))).thenReturn(Lists.newArrayList(someInstanceConfig));
+
+    instanceConfigAuditUtil.doAudit(Lists.newArrayList(someAuditModel, anotherAuditModel, someNewerAuditModel));
+
+    verify(instanceService, never()).batchCreateInstances(anyList());
+
+    ArgumentCaptor<List<InstanceConfig>> updatedCaptor = ArgumentCaptor.forClass(List.class);
+    verify(instanceService, times(1)).batchUpdateInstanceConfigs(updatedCaptor.capture());
+    assertEquals(1, updatedCaptor.getValue().size());
+    assertEquals(anotherReleaseKey, updatedCaptor.getValue().get(0).getReleaseKey());
+
+    ArgumentCaptor<List<InstanceConfig>> createdCaptor = ArgumentCaptor.forClass(List.class);
+    verify(instanceService, times(1)).batchCreateInstanceConfigs(createdCaptor.capture());
+    assertEquals(1, createdCaptor.getValue().size());
+    assertEquals(anotherInstanceId, createdCaptor.getValue().get(0).getInstanceId());
+
+    //the audits with the same release keys are skipped by the cache
+    instanceConfigAuditUtil.doAudit(Lists.newArrayList(anotherAuditModel, someNewerAuditModel));
+
+    verify(instanceService, times(1)).findInstances(anyString(), anyString(), anyString(), anySet());
+    verify(instanceService, times(1)).findInstanceConfigs(anyString(), anyString(), anySet());
+    verifyNoMoreInteractions(instanceService);
+  }
 
+  private Instance assembleInstance(long id, String ip) {
+    Instance instance = new Instance();
+    instance.setId(id);
+    instance.setAppId(someAppId);
+    instance.setClusterName(someClusterName);
+    instance.setDataCenter(someDataCenter);
+    instance.setIp(ip);
+    return instance;
+  }
 }
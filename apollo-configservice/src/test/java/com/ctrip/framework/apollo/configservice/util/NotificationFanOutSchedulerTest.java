@@ -0,0 +1,83 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationFanOutSchedulerTest {
+  @Mock
+  private BizConfig bizConfig;
+  private NotificationFanOutScheduler scheduler;
+  private int someBatch;
+  private int someQps;
+
+  @Before
+  public void setUp() throws Exception {
+    someBatch = 10;
+    someQps = 100;
+    when(bizConfig.releaseMessageNotificationFanOutThreads()).thenReturn(2);
+    when(bizConfig.releaseMessageNotificationBatch()).thenReturn(someBatch);
+    when(bizConfig.releaseMessageNotificationQps()).thenReturn(someQps);
+
+    scheduler = new NotificationFanOutScheduler(bizConfig);
+  }
+
+  @Test
+  public void testScheduleNotifiesAllClients() throws Exception {
+    List<DeferredResultWrapper> results = assembleDeferredResults(someBatch * 3);
+
+    scheduler.schedule("someKey", new ApolloConfigNotification("someNamespace", 1), results);
+
+    await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> assertTrue(allHaveResults(results)));
+    await().atMost(1, TimeUnit.SECONDS).untilAsserted(() -> assertEquals(0, scheduler.getPendingReleases()));
+    assertEquals(0, scheduler.getPendingClients());
+  }
+
+  @Test
+  public void testSmallReleaseIsNotBlockedByLargeRelease() throws Exception {
+    //the large release takes about 3 seconds to notify with the qps budget
+    List<DeferredResultWrapper> largeResults = assembleDeferredResults(someQps * 3);
+    List<DeferredResultWrapper> smallResults = assembleDeferredResults(someBatch * 2);
+
+    scheduler.schedule("someKey", new ApolloConfigNotification("someNamespace", 1), largeResults);
+    scheduler.schedule("anotherKey", new ApolloConfigNotification("anotherNamespace", 2), smallResults);
+
+    await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> assertTrue(allHaveResults(smallResults)));
+    assertFalse(allHaveResults(largeResults));
+    assertEquals(1, scheduler.getPendingReleases());
+
+    await().atMost(10, TimeUnit.SECONDS).untilAsserted(() -> assertTrue(allHaveResults(largeResults)));
+  }
+
+  private List<DeferredResultWrapper> assembleDeferredResults(int size) {
+    List<DeferredResultWrapper> results = Lists.newArrayList();
+    for (int i = 0; i < size; i++) {
+      results.add(new DeferredResultWrapper(60000));
+    }
+    return results;
+  }
+
+  private boolean allHaveResults(List<DeferredResultWrapper> results) {
+    for (DeferredResultWrapper result : results) {
+      if (!result.getResult().hasResult()) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
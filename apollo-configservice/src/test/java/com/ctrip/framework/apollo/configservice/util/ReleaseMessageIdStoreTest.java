@@ -0,0 +1,97 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReleaseMessageIdStoreTest {
+  private ReleaseMessageIdStore releaseMessageIdStore;
+  private String someKey;
+  private String anotherKey;
+
+  @Before
+  public void setUp() throws Exception {
+    releaseMessageIdStore = new ReleaseMessageIdStore(16);
+    someKey = "someAppId+someCluster+someNamespace";
+    anotherKey = "anotherAppId+someCluster+someNamespace";
+  }
+
+  @Test
+  public void testGetAbsentKey() throws Exception {
+    assertEquals(ReleaseMessageIdStore.ABSENT, releaseMessageIdStore.get(someKey));
+    assertEquals(0, releaseMessageIdStore.size());
+  }
+
+  @Test
+  public void testUpdateIfGreater() throws Exception {
+    assertTrue(releaseMessageIdStore.updateIfGreater(someKey, 2));
+    assertTrue(releaseMessageIdStore.updateIfGreater(anotherKey, 1));
+
+    assertFalse(releaseMessageIdStore.updateIfGreater(someKey, 1));
+    assertFalse(releaseMessageIdStore.updateIfGreater(someKey, 2));
+    assertTrue(releaseMessageIdStore.updateIfGreater(someKey, 3));
+
+    assertEquals(3, releaseMessageIdStore.get(someKey));
+    assertEquals(1, releaseMessageIdStore.get(anotherKey));
+    assertEquals(2, releaseMessageIdStore.size());
+  }
+
+  @Test
+  public void testResize() throws Exception {
+    int someSize = 10000;
+    for (int i = 0; i < someSize; i++) {
+      releaseMessageIdStore.updateIfGreater(someKey + i, i + 1);
+    }
+
+    assertEquals(someSize, releaseMessageIdStore.size());
+    for (int i = 0; i < someSize; i++) {
+      assertEquals(i + 1, releaseMessageIdStore.get(someKey + i));
+    }
+  }
+
+  @Test
+  public void testConcurrentUpdatesDuringResize() throws Exception {
+    int threads = 4;
+    int keysPerThread = 5000;
+    int updatesPerKey = 3;
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    CountDownLatch startLatch = new CountDownLatch(1);
+    List<Future<?>> futures = Lists.newArrayList();
+
+    //every key is updated by all the threads with interleaved ids, while new keys keep growing the table
+    for (int t = 0; t < threads; t++) {
+      int offset = t;
+      futures.add(executorService.submit(() -> {
+        startLatch.await();
+        for (int round = 0; round < updatesPerKey; round++) {
+          for (int i = 0; i < keysPerThread; i++) {
+            releaseMessageIdStore.updateIfGreater(someKey + i, (long) round * threads + offset + 1);
+          }
+        }
+        return null;
+      }));
+    }
+    startLatch.countDown();
+    for (Future<?> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    executorService.shutdown();
+
+    long expectedId = (long) (updatesPerKey - 1) * threads + threads;
+    assertEquals(keysPerThread, releaseMessageIdStore.size());
+    for (int i = 0; i < keysPerThread; i++) {
+      assertEquals(expectedId, releaseMessageIdStore.get(someKey + i));
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DeferredResultRegistryTest {
+  private DeferredResultRegistry<DeferredResultWrapper> registry;
+  private long someTimeout;
+
+  @Before
+  public void setUp() throws Exception {
+    registry = new DeferredResultRegistry<>();
+    someTimeout = 1000;
+  }
+
+  @Test
+  public void testRegisterAndUnregister() throws Exception {
+    String someKey = "someKey";
+    String anotherKey = "anotherKey";
+    DeferredResultWrapper someWrapper = new DeferredResultWrapper(someTimeout);
+    DeferredResultWrapper anotherWrapper = new DeferredResultWrapper(someTimeout);
+
+    registry.register(Sets.newHashSet(someKey, anotherKey), someWrapper);
+    registry.register(Sets.newHashSet(someKey), anotherWrapper);
+
+    assertEquals(3, registry.size());
+    assertEquals(2, registry.watchKeySize());
+    assertEquals(Sets.newHashSet(someWrapper, anotherWrapper), Sets.newHashSet(registry.get(someKey)));
+    assertEquals(Lists.newArrayList(someWrapper), registry.get(anotherKey));
+
+    registry.unregister(Sets.newHashSet(someKey, anotherKey), someWrapper);
+
+    assertEquals(1, registry.size());
+    assertFalse(registry.containsKey(anotherKey));
+    assertTrue(registry.get(anotherKey).isEmpty());
+    assertEquals(Lists.newArrayList(anotherWrapper), registry.get(someKey));
+
+    registry.unregister(Sets.newHashSet(someKey), anotherWrapper);
+
+    assertEquals(0, registry.size());
+    assertEquals(0, registry.watchKeySize());
+  }
+
+  @Test
+  public void testWatchKeyIsCaseInsensitive() throws Exception {
+    String someKey = "someAppId+default+application";
+    DeferredResultWrapper someWrapper = new DeferredResultWrapper(someTimeout);
+
+    registry.register(Sets.newHashSet(someKey.toUpperCase()), someWrapper);
+
+    assertTrue(registry.containsKey(someKey));
+    assertEquals(Lists.newArrayList(someWrapper), registry.get(someKey.toLowerCase()));
+
+    registry.unregister(Sets.newHashSet(someKey), someWrapper);
+
+    assertFalse(registry.containsKey(someKey.toUpperCase()));
+  }
+
+  @Test
+  public void testGetReturnsSnapshot() throws Exception {
+    String someKey = "someKey";
+    DeferredResultWrapper someWrapper = new DeferredResultWrapper(someTimeout);
+    DeferredResultWrapper anotherWrapper = new DeferredResultWrapper(someTimeout);
+
+    registry.register(Sets.newHashSet(someKey), someWrapper);
+
+    List<DeferredResultWrapper> snapshot = registry.get(someKey);
+
+    registry.register(Sets.newHashSet(someKey), anotherWrapper);
+    registry.unregister(Sets.newHashSet(someKey), someWrapper);
+
+    assertEquals(Lists.newArrayList(someWrapper), snapshot);
+    assertEquals(Lists.newArrayList(anotherWrapper), registry.get(someKey));
+  }
+
+  @Test
+  public void testConcurrentRegisterAndUnregister() throws Exception {
+    int threads = 8;
+    int clientsPerThread = 1000;
+    Set<String> someKeys = Sets.newHashSet("someKey", "anotherKey", "yetAnotherKey");
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    CountDownLatch latch = new CountDownLatch(threads);
+
+    for (int i = 0; i < threads; i++) {
+      executorService.submit(() -> {
+        try {
+          for (int j = 0; j < clientsPerThread; j++) {
+            DeferredResultWrapper wrapper = new DeferredResultWrapper(someTimeout);
+            registry.register(someKeys, wrapper);
+            //keep the odd ones registered
+            if (j % 2 == 0) {
+              registry.unregister(someKeys, wrapper);
+            }
+          }
+        } finally {
+          latch.countDown();
+        }
+      });
+    }
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    executorService.shutdown();
+
+    int registeredClients = threads * clientsPerThread / 2;
+    assertEquals(registeredClients * someKeys.size(), registry.size());
+    for (String key : someKeys) {
+      assertEquals(registeredClients, registry.get(key).size());
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class NotificationStreamWrapperTest {
+  private ExecutorService sendExecutor;
+  private CountDownLatch stalledWriteReleased;
+
+  @Before
+  public void setUp() throws Exception {
+    sendExecutor = Executors.newCachedThreadPool();
+    stalledWriteReleased = new CountDownLatch(1);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    stalledWriteReleased.countDown();
+    sendExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testStalledStreamNotBlockingOthers() throws Exception {
+    StalledEmitter stalledEmitter = new StalledEmitter();
+    NotificationStreamWrapper stalledStream = new NotificationStreamWrapper(stalledEmitter, sendExecutor);
+    RecordingEmitter someEmitter = new RecordingEmitter();
+    NotificationStreamWrapper someStream = new NotificationStreamWrapper(someEmitter, sendExecutor);
+
+    stalledStream.sendHeartbeat();
+    assertTrue(stalledEmitter.writeStarted.await(5, TimeUnit.SECONDS));
+
+    //neither the heartbeats nor the notifications wait for the stalled write
+    stalledStream.sendHeartbeat();
+    stalledStream.setResult(new ApolloConfigNotification("someNamespace", 1));
+    someStream.sendHeartbeat();
+    someStream.setResult(new ApolloConfigNotification("someNamespace", 1));
+
+    assertEquals(NotificationStreamWrapper.HEARTBEAT_EVENT, someEmitter.events.poll(5, TimeUnit.SECONDS));
+    assertEquals(NotificationStreamWrapper.NOTIFICATIONS_EVENT, someEmitter.events.poll(5, TimeUnit.SECONDS));
+    assertFalse(someStream.isStalled(0));
+
+    TimeUnit.MILLISECONDS.sleep(50);
+    assertTrue(stalledStream.isStalled(10));
+    assertFalse(stalledStream.isStalled(TimeUnit.MINUTES.toMillis(1)));
+
+    AtomicInteger completions = new AtomicInteger();
+    stalledStream.onCompletion(completions::incrementAndGet);
+    stalledStream.close();
+
+    assertTrue(stalledStream.isClosed());
+    assertEquals(1, completions.get());
+
+    //the events queued behind the stalled write are dropped
+    stalledWriteReleased.countDown();
+    TimeUnit.MILLISECONDS.sleep(100);
+    assertEquals(1, stalledEmitter.writes.get());
+    assertEquals(1, completions.get());
+  }
+
+  @Test
+  public void testStreamClosedWhenOutboxFull() throws Exception {
+    StalledEmitter stalledEmitter = new StalledEmitter();
+    NotificationStreamWrapper stalledStream = new NotificationStreamWrapper(stalledEmitter, sendExecutor);
+    AtomicInteger completions = new AtomicInteger();
+    stalledStream.onCompletion(completions::incrementAndGet);
+
+    stalledStream.sendHeartbeat();
+    assertTrue(stalledEmitter.writeStarted.await(5, TimeUnit.SECONDS));
+
+    for (int i = 1; i <= 200 && !stalledStream.isClosed(); i++) {
+      stalledStream.setResult(new ApolloConfigNotification("someNamespace", i));
+    }
+
+    assertTrue(stalledStream.isClosed());
+    assertEquals(1, completions.get());
+  }
+
+  @Test
+  public void testStreamClosedWhenSendRejected() throws Exception {
+    RecordingEmitter someEmitter = new RecordingEmitter();
+    NotificationStreamWrapper someStream = new NotificationStreamWrapper(someEmitter, command -> {
+      throw new RejectedExecutionException();
+    });
+    AtomicInteger completions = new AtomicInteger();
+    someStream.onCompletion(completions::incrementAndGet);
+
+    someStream.setResult(new ApolloConfigNotification("someNamespace", 1));
+
+    assertTrue(someStream.isClosed());
+    assertEquals(1, completions.get());
+    assertTrue(someEmitter.events.isEmpty());
+  }
+
+  private class StalledEmitter extends SseEmitter {
+    private final CountDownLatch writeStarted = new CountDownLatch(1);
+    private final AtomicInteger writes = new AtomicInteger();
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      writes.incrementAndGet();
+      writeStarted.countDown();
+      try {
+        stalledWriteReleased.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static class RecordingEmitter extends SseEmitter {
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      String event = builder.build().iterator().next().getData().toString();
+      events.add(event.substring("event:".length(), event.indexOf('\n')));
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package com.ctrip.framework.apollo.core.dto;
 
+import com.ctrip.framework.apollo.core.enums.ConfigSyncType;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -17,6 +19,10 @@ public class ApolloConfig {
 
   private String releaseKey;
 
+  private ConfigSyncType configSyncType;
+
+  private List<ConfigurationChange> configurationChanges;
+
   public ApolloConfig() {
   }
 
@@ -50,6 +56,21 @@ public class ApolloConfig {
     return configurations;
   }
 
+  /**
+   * @return the sync type of the response, null is treated as {@link ConfigSyncType#FULL_SYNC}
+   */
+  public ConfigSyncType getConfigSyncType() {
+    return configSyncType;
+  }
+
+  /**
+   * @return the changes against the client side release key, only present when the sync type is
+   * {@link ConfigSyncType#INCREMENTAL_SYNC}
+   */
+  public List<ConfigurationChange> getConfigurationChanges() {
+    return configurationChanges;
+  }
+
   public void setAppId(String appId) {
     this.appId = appId;
   }
@@ -70,6 +91,14 @@ public class ApolloConfig {
     this.configurations = configurations;
   }
 
+  public void setConfigSyncType(ConfigSyncType configSyncType) {
+    this.configSyncType = configSyncType;
+  }
+
+  public void setConfigurationChanges(List<ConfigurationChange> configurationChanges) {
+    this.configurationChanges = configurationChanges;
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder("ApolloConfig{");
@@ -78,6 +107,8 @@ public class ApolloConfig {
     sb.append(", namespaceName='").append(namespaceName).append('\'');
     sb.append(", configurations=").append(configurations);
     sb.append(", releaseKey='").append(releaseKey).append('\'');
+    sb.append(", configSyncType=").append(configSyncType);
+    sb.append(", configurationChanges=").append(configurationChanges);
     sb.append('}');
     return sb.toString();
   }
@@ -0,0 +1,54 @@
+package com.ctrip.framework.apollo.core.dto;
+
+/**
+ * A namespace requested in a batch config query, with the release key and notification messages held by the client
+ */
+public class ApolloConfigQuery {
+
+  private String namespaceName;
+
+  private String releaseKey;
+
+  private ApolloNotificationMessages messages;
+
+  //for json converter
+  public ApolloConfigQuery() {
+  }
+
+  public ApolloConfigQuery(String namespaceName, String releaseKey) {
+    this.namespaceName = namespaceName;
+    this.releaseKey = releaseKey;
+  }
+
+  public String getNamespaceName() {
+    return namespaceName;
+  }
+
+  public void setNamespaceName(String namespaceName) {
+    this.namespaceName = namespaceName;
+  }
+
+  public String getReleaseKey() {
+    return releaseKey;
+  }
+
+  public void setReleaseKey(String releaseKey) {
+    this.releaseKey = releaseKey;
+  }
+
+  public ApolloNotificationMessages getMessages() {
+    return messages;
+  }
+
+  public void setMessages(ApolloNotificationMessages messages) {
+    this.messages = messages;
+  }
+
+  @Override
+  public String toString() {
+    return "ApolloConfigQuery{" +
+        "namespaceName='" + namespaceName + '\'' +
+        ", releaseKey='" + releaseKey + '\'' +
+        '}';
+  }
+}
@@ -0,0 +1,58 @@
+package com.ctrip.framework.apollo.core.dto;
+
+import com.ctrip.framework.apollo.core.enums.ConfigurationChangeType;
+
+/**
+ * The change of a single key in an incremental config response
+ */
+public class ConfigurationChange {
+
+  private String key;
+
+  private String newValue;
+
+  private ConfigurationChangeType configurationChangeType;
+
+  public ConfigurationChange() {
+  }
+
+  public ConfigurationChange(String key, String newValue, ConfigurationChangeType configurationChangeType) {
+    this.key = key;
+    this.newValue = newValue;
+    this.configurationChangeType = configurationChangeType;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  public String getNewValue() {
+    return newValue;
+  }
+
+  public ConfigurationChangeType getConfigurationChangeType() {
+    return configurationChangeType;
+  }
+
+  public void setKey(String key) {
+    this.key = key;
+  }
+
+  public void setNewValue(String newValue) {
+    this.newValue = newValue;
+  }
+
+  public void setConfigurationChangeType(ConfigurationChangeType configurationChangeType) {
+    this.configurationChangeType = configurationChangeType;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("ConfigurationChange{");
+    sb.append("key='").append(key).append('\'');
+    sb.append(", newValue='").append(newValue).append('\'');
+    sb.append(", configurationChangeType=").append(configurationChangeType);
+    sb.append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,15 @@
+package com.ctrip.framework.apollo.core.enums;
+
+/**
+ * How the configurations of a config response are synchronized to the client
+ */
+public enum ConfigSyncType {
+  /**
+   * the response contains all the configurations of the namespace
+   */
+  FULL_SYNC,
+  /**
+   * the response only contains the changes against the client side release key
+   */
+  INCREMENTAL_SYNC
+}
@@ -0,0 +1,5 @@
+package com.ctrip.framework.apollo.core.enums;
+
+public enum ConfigurationChangeType {
+  ADDED, MODIFIED, DELETED
+}